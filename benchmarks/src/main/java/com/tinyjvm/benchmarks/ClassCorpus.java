@@ -0,0 +1,168 @@
+package com.tinyjvm.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class files taken from the running JDK's {@code jrt:/} file system, so building a corpus needs
+ * neither network nor anything on the class path. The same JDK always yields the same corpus: the
+ * classes of the given modules in path order, spread evenly if there are more than requested.
+ * <p>
+ * The classes are kept as bytes and, for parsing from disk, also written to a temporary directory
+ * that is deleted on exit.
+ */
+final class ClassCorpus {
+    private final List<byte[]> classes;
+    private final List<Path> files;
+    private final long totalBytes;
+
+    private ClassCorpus(List<byte[]> classes, List<Path> files) {
+        this.classes = classes;
+        this.files = files;
+        long total = 0;
+        for (byte[] bytes : classes) {
+            total += bytes.length;
+        }
+        this.totalBytes = total;
+    }
+
+    /**
+     * @param modules The modules to take classes from, e.g. "java.base".
+     * @param limit   The maximum number of classes.
+     */
+    static ClassCorpus fromJrt(List<String> modules, int limit) throws IOException {
+        FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        List<Path> paths = new ArrayList<>();
+        for (String module : modules) {
+            try (Stream<Path> walk = Files.walk(jrt.getPath("/modules", module))) {
+                paths.addAll(walk.filter(path -> path.toString().endsWith(".class"))
+                        .filter(path -> !path.getFileName().toString().equals("module-info.class"))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalStateException("No classes found in " + modules + " of jrt:/");
+        }
+        List<Path> chosen = new ArrayList<>();
+        double step = Math.max(1.0, paths.size() / (double) limit);
+        for (double i = 0; i < paths.size() && chosen.size() < limit; i += step) {
+            chosen.add(paths.get((int) i));
+        }
+
+        Path directory = Files.createTempDirectory("tinyjvm-corpus");
+        directory.toFile().deleteOnExit();
+        List<byte[]> classes = new ArrayList<>(chosen.size());
+        List<Path> files = new ArrayList<>(chosen.size());
+        for (int i = 0; i < chosen.size(); i++) {
+            byte[] bytes = Files.readAllBytes(chosen.get(i));
+            Path file = directory.resolve(i + ".class");
+            Files.write(file, bytes);
+            file.toFile().deleteOnExit();
+            classes.add(bytes);
+            files.add(file);
+        }
+        return new ClassCorpus(classes, files);
+    }
+
+    int size() {
+        return classes.size();
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    byte[] bytes(int index) {
+        return classes.get(index);
+    }
+
+    Path file(int index) {
+        return files.get(index);
+    }
+
+    /**
+     * Parses every class once: the correctness sweep.
+     *
+     * @return The reason for every class the parser rejects, by index, in corpus order.
+     */
+    Map<Integer, String> sweep(ClassParser parser) {
+        Map<Integer, String> failures = new LinkedHashMap<>();
+        for (int i = 0; i < classes.size(); i++) {
+            try {
+                parser.parse(classes.get(i));
+            } catch (IOException | RuntimeException e) {
+                failures.put(i, e.toString());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return The corpus without the classes at the given indices.
+     */
+    ClassCorpus without(Set<Integer> indices) {
+        List<byte[]> keptClasses = new ArrayList<>();
+        List<Path> keptFiles = new ArrayList<>();
+        for (int i = 0; i < classes.size(); i++) {
+            if (!indices.contains(i)) {
+                keptClasses.add(classes.get(i));
+                keptFiles.add(files.get(i));
+            }
+        }
+        return new ClassCorpus(keptClasses, keptFiles);
+    }
+
+    /** A parser under test, from bytes or from a file. */
+    interface ClassParser {
+        Object parse(byte[] bytes) throws IOException;
+
+        Object parse(Path file) throws IOException;
+    }
+
+    static ClassParser parser(String name) {
+        switch (name) {
+            case "tinyjvm":
+                return new ClassParser() {
+                    private final com.tinyjvm.ClassFileParser parser = new com.tinyjvm.ClassFileParser();
+
+                    @Override
+                    public Object parse(byte[] bytes) throws IOException {
+                        return parser.parse(bytes);
+                    }
+
+                    @Override
+                    public Object parse(Path file) throws IOException {
+                        return parser.parse(file);
+                    }
+                };
+            case "dev":
+                return new ClassParser() {
+                    private final dev.jvm.core.classfile.ClassFileParser parser = new dev.jvm.core.classfile.ClassFileParser();
+
+                    @Override
+                    public Object parse(byte[] bytes) throws IOException {
+                        return parser.parse(bytes);
+                    }
+
+                    @Override
+                    public Object parse(Path file) throws IOException {
+                        return parser.parse(file);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown parser " + name);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.tinyjvm.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class file parsing throughput of {@code com.tinyjvm.ClassFileParser} and
+ * {@code dev.jvm.core.classfile.ClassFileParser} over a {@link ClassCorpus} taken from the running JDK.
+ * <p>
+ * {@link #memory} parses from bytes already in memory and {@link #disk} from the corpus files, one
+ * class per operation, so the primary score is classes per second and the {@code bytes} counter bytes
+ * per second. {@link #coldDisk} parses the whole corpus once in a fresh JVM, before the parser is
+ * compiled, and reports how long that took. Run with {@code -prof gc} for allocation per class:
+ * {@code gc.alloc.rate.norm} is in bytes per operation.
+ * <p>
+ * Setup parses the whole corpus once as a correctness sweep and prints every class the parser
+ * rejects. Rejected classes are left out of the measurements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClassFileParserBenchmark {
+
+    @Param({"tinyjvm", "dev"})
+    public String parser;
+
+    /** Modules to take classes from, comma-separated. */
+    @Param({"java.base"})
+    public String modules;
+
+    @Param({"2000"})
+    public int corpusSize;
+
+    private ClassCorpus corpus;
+    private ClassCorpus.ClassParser classParser;
+    private int next;
+
+    /** Bytes parsed, reported by JMH as bytes per second next to the classes per second. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Parsed {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ClassCorpus all = ClassCorpus.fromJrt(Arrays.asList(modules.split(",")), corpusSize);
+        classParser = ClassCorpus.parser(parser);
+        Map<Integer, String> failures = all.sweep(classParser);
+        if (!failures.isEmpty()) {
+            System.out.println("Parser '" + parser + "' rejects " + failures.size() + " of " + all.size() + " classes:");
+            failures.forEach((index, reason) -> System.out.println("  class " + index + ": " + reason));
+        }
+        corpus = all.without(failures.keySet());
+        if (corpus.size() == 0) {
+            throw new IllegalStateException("Parser '" + parser + "' rejects every class of the corpus");
+        }
+        System.out.println("Corpus: " + corpus.size() + " classes, " + corpus.getTotalBytes() + " bytes");
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == corpus.size() ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Object memory(Parsed parsed) throws IOException {
+        byte[] bytes = corpus.bytes(nextIndex());
+        parsed.bytes += bytes.length;
+        return classParser.parse(bytes);
+    }
+
+    @Benchmark
+    public Object disk(Parsed parsed) throws IOException {
+        int index = nextIndex();
+        parsed.bytes += corpus.bytes(index).length;
+        return classParser.parse(corpus.file(index));
+    }
+
+    /** Parses the whole corpus from disk once per fork: the time a cold JVM needs for it. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public int coldDisk() throws IOException {
+        int parsed = 0;
+        for (int i = 0; i < corpus.size(); i++) {
+            if (classParser.parse(corpus.file(i)) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,127 @@
+package com.tinyjvm.benchmarks;
+
+import com.tinyjvm.interpreter.BytecodeInterpreter;
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.utils.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instructions per second of {@link BytecodeInterpreter#executeCurrentInstruction(JVMThread)} on
+ * small kernels, each a method body without a return.
+ * <p>
+ * Heap, threads and frames are set up once per trial, as in {@code interpreter.Main}, and each
+ * kernel's frame stays on its thread's stack. A benchmark invocation runs the kernel to the end of
+ * the code and rewinds the frame's pc, so the score
+ * (operations per second, one operation per instruction executed) measures dispatch and execution
+ * only. What a call adds on top is measured separately by {@link #frameSetup()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InterpreterDispatchBenchmark {
+
+    private static final int REPEAT = 100;
+
+    // iconst_1; istore_0; iload_0; istore_1 -- loads, stores and constants, no arithmetic
+    static final byte[] STRAIGHT_LINE = repeat(new byte[]{0x04, 0x3b, 0x1a, 0x3c}, REPEAT);
+    static final int STRAIGHT_LINE_INSTRUCTIONS = 4 * REPEAT;
+
+    // iload_0; iload_1; iadd; istore_2; iload_2; iload_0; iadd; istore_1 -- a chain of dependent additions
+    static final byte[] ARITHMETIC = repeat(new byte[]{0x1a, 0x1b, 0x60, 0x3d, 0x1c, 0x1a, 0x60, 0x3c}, REPEAT);
+    static final int ARITHMETIC_INSTRUCTIONS = 8 * REPEAT;
+
+    // bipush 100; istore_0; loop: iinc 0 -1; iload_0; ifgt loop -- a counted loop with a safepoint poll per back-edge
+    static final byte[] LOOP = {0x10, 100, 0x3b, (byte) 0x84, 0, -1, 0x1a, (byte) 0x9d, (byte) 0xFF, (byte) 0xFC};
+    static final int LOOP_INSTRUCTIONS = 2 + 3 * 100;
+
+    private BytecodeInterpreter interpreter;
+    // One thread per kernel, with the kernel's frame pushed once
+    private JVMThread straightLineThread;
+    private JVMThread arithmeticThread;
+    private JVMThread loopThread;
+    private JVMThread callerThread; // For frameSetup
+
+    private static byte[] repeat(byte[] block, int times) {
+        byte[] code = new byte[block.length * times];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(block, 0, code, i * block.length, block.length);
+        }
+        return code;
+    }
+
+    @Setup
+    public void setUp() {
+        Logger.setLevel(Logger.LogLevel.ERROR);
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        interpreter = new BytecodeInterpreter(heap);
+        straightLineThread = threadRunning(new JFrame(2, 1, STRAIGHT_LINE));
+        JFrame arithmetic = new JFrame(3, 2, ARITHMETIC);
+        arithmetic.setLocal(0, 5);
+        arithmetic.setLocal(1, 10);
+        arithmeticThread = threadRunning(arithmetic);
+        loopThread = threadRunning(new JFrame(1, 1, LOOP));
+        callerThread = threadRunning(new JFrame(0, 0, new byte[0]));
+    }
+
+    private static JVMThread threadRunning(JFrame frame) {
+        JVMThread thread = new JVMThread(null, 256);
+        thread.getStack().push(frame);
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        return thread;
+    }
+
+    /** Runs the thread's kernel to the end of its code, then rewinds it. The frame stays on the stack. */
+    private int run(JVMThread thread) {
+        JFrame frame = thread.getStack().peek();
+        int length = frame.code.length;
+        while (frame.pc < length) {
+            interpreter.executeCurrentInstruction(thread);
+        }
+        frame.pc = 0;
+        return frame.getLocal(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRAIGHT_LINE_INSTRUCTIONS)
+    public int straightLine() {
+        return run(straightLineThread);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ARITHMETIC_INSTRUCTIONS)
+    public int arithmetic() {
+        return run(arithmeticThread);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOP_INSTRUCTIONS)
+    public int loop() {
+        return run(loopThread);
+    }
+
+    /** Creating, pushing and popping a frame, without executing anything: the per-call cost the kernels leave out. */
+    @Benchmark
+    public JFrame frameSetup() {
+        JFrame frame = new JFrame(3, 2, ARITHMETIC);
+        callerThread.getStack().push(frame);
+        return callerThread.getStack().pop();
+    }
+}
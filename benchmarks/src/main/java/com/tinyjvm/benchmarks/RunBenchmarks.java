@@ -0,0 +1,31 @@
+package com.tinyjvm.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar: runs JMH with the usual command line options, but writes the
+ * results as JSON to {@code jmh-result.json} unless {@code -rf} or {@code -rff} say otherwise,
+ * so that runs before and after a change can be compared by a script.
+ */
+public class RunBenchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            builder.result("jmh-result.json");
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
@@ -11,8 +11,15 @@ public class ClassFile {
     public int thisClass;
     public int superClass;
     public List<Integer> interfaces;
+    public List<FieldInfo> fields;
     public List<MethodInfo> methods;
 
+    public static class FieldInfo {
+        public int accessFlags;
+        public int nameIndex;
+        public int descriptorIndex;
+    }
+
     public static class MethodInfo {
         public int accessFlags;
         public int nameIndex;
@@ -1,5 +1,6 @@
 package com.tinyjvm;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -9,8 +10,11 @@ import java.util.List;
 
 public class ClassFileParser {
     public ClassFile parse(Path classFilePath) throws IOException {
-        byte[] bytes = Files.readAllBytes(classFilePath);
-        try (DataInputStream dis = new DataInputStream(Files.newInputStream(classFilePath))) {
+        return parse(Files.readAllBytes(classFilePath));
+    }
+
+    public ClassFile parse(byte[] classBytes) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(classBytes))) {
             ClassFile classFile = new ClassFile();
 
             // Parse magic number (0xCAFEBABE)
@@ -39,10 +43,19 @@ public class ClassFileParser {
                     case 3: // Integer
                         classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readInt()));
                         break;
+                    case 4: // Float
+                        classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readFloat()));
+                        break;
                     case 5: // Long
                         classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readLong()));
+                        classFile.constantPool.add(ConstantPoolEntry.UNUSABLE);
                         i++; // Long takes two slots in constant pool
                         break;
+                    case 6: // Double
+                        classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readDouble()));
+                        classFile.constantPool.add(ConstantPoolEntry.UNUSABLE);
+                        i++; // So does Double
+                        break;
                     case 7: // Class reference
                         classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readUnsignedShort()));
                         break;
@@ -57,6 +70,17 @@ public class ClassFileParser {
                         classFile.constantPool.add(new ConstantPoolEntry(tag,
                                 new int[] {dis.readUnsignedShort(), dis.readUnsignedShort()}));
                         break;
+                    case 15: // MethodHandle: reference kind, reference index
+                        classFile.constantPool.add(new ConstantPoolEntry(tag,
+                                new int[] {dis.readUnsignedByte(), dis.readUnsignedShort()}));
+                        break;
+                    case 16, 19, 20: // MethodType, Module, Package
+                        classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readUnsignedShort()));
+                        break;
+                    case 17, 18: // Dynamic, InvokeDynamic: bootstrap method index, NameAndType
+                        classFile.constantPool.add(new ConstantPoolEntry(tag,
+                                new int[] {dis.readUnsignedShort(), dis.readUnsignedShort()}));
+                        break;
                     default:
                         throw new IllegalArgumentException("Unknown constant pool tag: " + tag);
                 }
@@ -74,6 +98,25 @@ public class ClassFileParser {
                 classFile.interfaces.add(dis.readUnsignedShort());
             }
 
+            // Fields (simplified - attributes such as ConstantValue are skipped)
+            int fieldsCount = dis.readUnsignedShort();
+            classFile.fields = new ArrayList<>(fieldsCount);
+            for (int i = 0; i < fieldsCount; i++) {
+                ClassFile.FieldInfo field = new ClassFile.FieldInfo();
+                field.accessFlags = dis.readUnsignedShort();
+                field.nameIndex = dis.readUnsignedShort();
+                field.descriptorIndex = dis.readUnsignedShort();
+
+                int attributesCount = dis.readUnsignedShort();
+                for (int j = 0; j < attributesCount; j++) {
+                    dis.readUnsignedShort(); // name index
+                    int attributeLength = dis.readInt();
+                    dis.skipBytes(attributeLength);
+                }
+
+                classFile.fields.add(field);
+            }
+
             // Methods (simplified - we're not parsing attributes yet)
             int methodsCount = dis.readUnsignedShort();
             classFile.methods = new ArrayList<>(methodsCount);
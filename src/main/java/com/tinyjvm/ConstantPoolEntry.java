@@ -1,6 +1,12 @@
 package com.tinyjvm;
 
 public class ConstantPoolEntry {
+    /**
+     * Fills the slot after a Long or Double, which the class file format leaves unusable,
+     * so that {@code constantPool.get(index - 1)} holds the entry at every constant-pool index.
+     */
+    public static final ConstantPoolEntry UNUSABLE = new ConstantPoolEntry(0, null);
+
     public final int tag;
     public final Object value;
 
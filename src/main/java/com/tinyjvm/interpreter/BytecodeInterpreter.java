@@ -2,11 +2,20 @@ package com.tinyjvm.interpreter;
 
 import com.tinyjvm.memory.JVMObject;
 import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.ObjectSynchronizer;
+import com.tinyjvm.threads.Safepoint;
 import com.tinyjvm.threads.Scheduler; // For YIELD
+import com.tinyjvm.utils.Logger;
 
 /**
  * Interprets JVM bytecode for a given thread.
  * An instance of BytecodeInterpreter is typically associated with a JVMThread.
+ * <p>
+ * Loop back-edges (branches taken backwards) and returns to a caller frame poll for a
+ * {@link Safepoint}, so a thread in a long quantum stops promptly when a VM operation needs it.
+ * Monitor instructions that {@link LockElision} proved unnecessary are skipped, and objects that
+ * {@link ScalarReplacement} keeps off the heap are handled in the frame.
+ * Every instruction executed and every back-edge taken is counted in the thread's {@link ExecutionCounters}.
  */
 public class BytecodeInterpreter {
 
@@ -38,24 +47,24 @@ public class BytecodeInterpreter {
     public boolean executeCurrentInstruction(JVMThread thread) {
         JVMStack jvmStack = thread.getStack();
         if (jvmStack.isEmpty()) {
-            System.err.println("Interpreter: Thread " + thread.getThreadId() + " has an empty stack. Cannot execute instruction.");
+            Logger.error("Interpreter: Thread {} has an empty stack. Cannot execute instruction.", thread.getThreadId());
             thread.setState(JVMThread.ThreadState.TERMINATED);
             return false; // Cannot continue
         }
 
         JFrame currentFrame = jvmStack.peek();
         if (currentFrame == null) { // Should not happen if stack is not empty, but defensive check
-             System.err.println("Interpreter: Thread " + thread.getThreadId() + " has null currentFrame. Terminating.");
+             Logger.error("Interpreter: Thread {} has null currentFrame. Terminating.", thread.getThreadId());
              thread.setState(JVMThread.ThreadState.TERMINATED);
              return false;
         }
 
         if (currentFrame.pc >= currentFrame.code.length) {
-            System.err.println("Interpreter: Thread " + thread.getThreadId() + " PC beyond code length. Method likely missing return. Popping frame.");
+            Logger.error("Interpreter: Thread {} PC beyond code length. Method likely missing return. Popping frame.", thread.getThreadId());
             jvmStack.pop();
             if (jvmStack.isEmpty()) {
                 thread.setState(JVMThread.ThreadState.TERMINATED);
-                System.out.println("Interpreter: Thread " + thread.getThreadId() + " terminated after auto-pop from PC overrun.");
+                Logger.info("Interpreter: Thread {} terminated after auto-pop from PC overrun.", thread.getThreadId());
                 return false; // Thread terminated
             }
             return true; // Continue with next instruction in new top frame (if any) or terminate if stack empty
@@ -63,8 +72,11 @@ public class BytecodeInterpreter {
 
         byte opcode = currentFrame.code[currentFrame.pc++];
         thread.setProgramCounter(currentFrame.pc); // Keep thread's PC synced with frame's PC
+        jvmStack.counters.opcodes[opcode & 0xFF]++;
 
-        System.out.println("Thread " + thread.getThreadId() + " (PC:" + (currentFrame.pc-1) + ") Executing opcode: 0x" + String.format("%02X", opcode));
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("Thread {} (PC:{}) Executing opcode: 0x{}", thread.getThreadId(), currentFrame.pc - 1, Integer.toHexString(opcode & 0xFF));
+        }
 
         switch (Byte.toUnsignedInt(opcode)) {
             case 0x10: // bipush
@@ -77,21 +89,23 @@ public class BytecodeInterpreter {
                 int returnValue = InstructionSet.ireturn(currentFrame);
                 jvmStack.pop();
                 if (jvmStack.isEmpty()) {
-                    System.out.println("Thread " + thread.getThreadId() + " returned from initial method with value: " + returnValue + ". Terminating.");
+                    Logger.info("Thread {} returned from initial method with value: {}. Terminating.", thread.getThreadId(), returnValue);
                     thread.setState(JVMThread.ThreadState.TERMINATED);
                     return false; // Thread's main method returned, so thread terminates
                 } else {
                     jvmStack.peek().push(returnValue);
                 }
+                Safepoint.poll(thread);
                 break;
             case 0xb1: // return (void return)
                 InstructionSet.vreturn(currentFrame);
                 jvmStack.pop();
                 if (jvmStack.isEmpty()) {
-                    System.out.println("Thread " + thread.getThreadId() + " returned void from initial method. Terminating.");
+                    Logger.info("Thread {} returned void from initial method. Terminating.", thread.getThreadId());
                     thread.setState(JVMThread.ThreadState.TERMINATED);
                     return false; // Thread's main method returned, so thread terminates
                 }
+                Safepoint.poll(thread);
                 break;
             // iload instructions
             case 0x1a: InstructionSet.iload(currentFrame, 0); break;
@@ -103,6 +117,24 @@ public class BytecodeInterpreter {
             case 0x3c: InstructionSet.istore(currentFrame, 1); break;
             case 0x3d: InstructionSet.istore(currentFrame, 2); break;
             case 0x3e: InstructionSet.istore(currentFrame, 3); break;
+            // Reference loads and stores keep their slots tagged for the garbage collector
+            case 0x01: InstructionSet.aconst_null(currentFrame); break;
+            case 0x2a: InstructionSet.aload(currentFrame, 0); break;
+            case 0x2b: InstructionSet.aload(currentFrame, 1); break;
+            case 0x2c: InstructionSet.aload(currentFrame, 2); break;
+            case 0x2d: InstructionSet.aload(currentFrame, 3); break;
+            case 0x4b: InstructionSet.astore(currentFrame, 0); break;
+            case 0x4c: InstructionSet.astore(currentFrame, 1); break;
+            case 0x4d: InstructionSet.astore(currentFrame, 2); break;
+            case 0x4e: InstructionSet.astore(currentFrame, 3); break;
+            case 0x19: // aload
+                InstructionSet.aload(currentFrame, Byte.toUnsignedInt(currentFrame.code[currentFrame.pc++]));
+                thread.setProgramCounter(currentFrame.pc);
+                break;
+            case 0x3a: // astore
+                InstructionSet.astore(currentFrame, Byte.toUnsignedInt(currentFrame.code[currentFrame.pc++]));
+                thread.setProgramCounter(currentFrame.pc);
+                break;
             case 0x15: // iload
                 InstructionSet.iload(currentFrame, Byte.toUnsignedInt(currentFrame.code[currentFrame.pc++]));
                 thread.setProgramCounter(currentFrame.pc);
@@ -112,39 +144,95 @@ public class BytecodeInterpreter {
                 thread.setProgramCounter(currentFrame.pc);
                 break;
 
+            // Constants, increments and branches
+            case 0x02: case 0x03: case 0x04: case 0x05: case 0x06: case 0x07: case 0x08: // iconst_m1 .. iconst_5
+                InstructionSet.iconst(currentFrame, Byte.toUnsignedInt(opcode) - 0x03);
+                break;
+            case 0x84: // iinc
+                InstructionSet.iinc(currentFrame);
+                thread.setProgramCounter(currentFrame.pc);
+                break;
+            case 0x99: case 0x9a: case 0x9b: case 0x9c: case 0x9d: case 0x9e: // ifeq .. ifle
+            case 0x9f: case 0xa0: case 0xa1: case 0xa2: case 0xa3: case 0xa4: // if_icmpeq .. if_icmple
+            case 0xa7: { // goto
+                int op = Byte.toUnsignedInt(opcode);
+                boolean taken;
+                if (op == 0xa7) {
+                    taken = true;
+                } else if (op >= 0x9f) {
+                    int b = currentFrame.pop();
+                    taken = InstructionSet.compare(currentFrame.pop(), b, op - 0x9f);
+                } else {
+                    taken = InstructionSet.compare(currentFrame.pop(), 0, op - 0x99);
+                }
+                boolean backEdge = InstructionSet.branch(currentFrame, currentFrame.pc - 1, taken);
+                thread.setProgramCounter(currentFrame.pc);
+                if (backEdge) {
+                    currentFrame.methodCounter.backEdges++;
+                    Safepoint.poll(thread);
+                }
+                break;
+            }
+
+            // Object opcodes: fields are read and written at offsets fixed by the class layout
+            case 0xbb: // new
+                InstructionSet.newObject(currentFrame, sharedHeap, thread);
+                thread.setProgramCounter(currentFrame.pc);
+                break;
+            case 0xb4: // getfield
+                InstructionSet.getfield(currentFrame, sharedHeap);
+                thread.setProgramCounter(currentFrame.pc);
+                break;
+            case 0xb5: // putfield
+                InstructionSet.putfield(currentFrame, sharedHeap);
+                thread.setProgramCounter(currentFrame.pc);
+                break;
+
             // Synchronization Opcodes
             case 0xC2: // monitorenter
-                Object objRefEnter = currentFrame.pop();
-                if (objRefEnter instanceof JVMObject) {
-                    JVMObject jvmObjEnter = (JVMObject) objRefEnter;
-                    System.out.println("Thread " + thread.getThreadId() + " attempting MONITORENTER on " + jvmObjEnter);
-                    jvmObjEnter.getMonitor().enter(thread);
-                    // If enter() caused the thread to block, its state will be BLOCKED.
-                    // The executeNextInstruction in JVMThread should check this state.
-                    if (thread.getState() == JVMThread.ThreadState.BLOCKED) {
-                        // PC should not advance if blocked before instruction completes conceptually
-                        currentFrame.pc--;
-                        thread.setProgramCounter(currentFrame.pc);
-                        return false; // Yield execution because blocked
-                    }
-                } else {
-                    throw new IllegalStateException("MONITORENTER expects a JVMObject on stack, got: " + (objRefEnter != null ? objRefEnter.getClass().getName() : "null"));
+                int handleEnter = currentFrame.pop();
+                if (handleEnter != 0 && currentFrame.getLockElision().elide(currentFrame.pc - 1)) {
+                    break; // Thread-local object, or merged with the previous region
+                }
+                handleEnter = currentFrame.materialize(handleEnter); // A virtual object cannot be locked
+                JVMObject jvmObjEnter = sharedHeap.getObjectByAddress(handleEnter);
+                if (jvmObjEnter == null) {
+                    throw new IllegalStateException("MONITORENTER expects an object reference on stack, got handle: " + handleEnter);
+                }
+                if (Logger.isDebugEnabled()) {
+                    Logger.debug("Thread {} attempting MONITORENTER on object {}, lock word 0x{}",
+                            thread.getThreadId(), jvmObjEnter.getAddress(), Integer.toHexString(jvmObjEnter.getLockWord()));
+                }
+                if (!ObjectSynchronizer.tryEnter(jvmObjEnter, thread)) { // Thin lock unless contended
+                    // Queued on the monitor; exit() unparks us. The interpreter cannot park mid-instruction,
+                    // so the instruction is retried once the thread is scheduled again.
+                    boolean blocked = Scheduler.prepareToBlock(thread);
+                    currentFrame.pushReference(handleEnter);
+                    currentFrame.pc--;
+                    thread.setProgramCounter(currentFrame.pc);
+                    return !blocked; // Stop this quantum only if actually parked
                 }
                 break;
 
             case 0xC3: // monitorexit
-                Object objRefExit = currentFrame.pop();
-                if (objRefExit instanceof JVMObject) {
-                    JVMObject jvmObjExit = (JVMObject) objRefExit;
-                    System.out.println("Thread " + thread.getThreadId() + " attempting MONITOREXIT on " + jvmObjExit);
-                    jvmObjExit.getMonitor().exit(thread); // Can throw IllegalMonitorStateException
-                } else {
-                    throw new IllegalStateException("MONITOREXIT expects a JVMObject on stack, got: " + (objRefExit != null ? objRefExit.getClass().getName() : "null"));
+                int handleExit = currentFrame.pop();
+                if (handleExit != 0 && currentFrame.getLockElision().elide(currentFrame.pc - 1)) {
+                    break;
+                }
+                handleExit = currentFrame.materialize(handleExit);
+                JVMObject jvmObjExit = sharedHeap.getObjectByAddress(handleExit);
+                if (jvmObjExit == null) {
+                    throw new IllegalStateException("MONITOREXIT expects an object reference on stack, got handle: " + handleExit);
+                }
+                if (Logger.isDebugEnabled()) {
+                    Logger.debug("Thread {} attempting MONITOREXIT on object {}, lock word 0x{}",
+                            thread.getThreadId(), jvmObjExit.getAddress(), Integer.toHexString(jvmObjExit.getLockWord()));
                 }
+                ObjectSynchronizer.exit(jvmObjExit, thread); // Can throw IllegalMonitorStateException
                 break;
 
-            case Byte.toUnsignedInt(YIELD_OPCODE): // Custom YIELD (0xFF)
-                System.out.println("Thread " + thread.getThreadId() + " executing YIELD_OPCODE.");
+            case 0xFF: // Custom YIELD_OPCODE (must be a constant expression here)
+                Logger.debug("Thread {} executing YIELD_OPCODE.", thread.getThreadId());
                 thread.setState(JVMThread.ThreadState.RUNNABLE);
                 // Scheduler.reschedule(); // Implicitly handled by returning false
                 return false; // Signal to scheduler to yield this thread's quantum
@@ -0,0 +1,156 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.ClassFile;
+import com.tinyjvm.ClassFileParser;
+import com.tinyjvm.ConstantPoolEntry;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.utils.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads parsed class files for execution. Loading a class links its instance {@link ClassLayout}
+ * on top of its superclass's, then resolves its constant pool into the entries
+ * {@link JFrame#setResolvedConstants(Object[])} expects: the layout for class entries and the
+ * instance field for field references.
+ * <p>
+ * Superclasses must be loaded first; {@code java/lang/Object}, which has no instance fields,
+ * is the implicit root. Entries naming classes that are not loaded yet, and static fields,
+ * resolve to null.
+ */
+public class ClassLinker {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final String ROOT_CLASS = "java/lang/Object";
+
+    private final ClassFileParser parser = new ClassFileParser();
+    private final Map<String, LinkedClass> classes = new ConcurrentHashMap<>();
+
+    /**
+     * A loaded class: its class file, instance layout and resolved constant pool.
+     */
+    public static final class LinkedClass {
+        private final String name;
+        private final ClassFile classFile;
+        private final ClassLayout layout;
+        private final Object[] resolvedConstants;
+
+        LinkedClass(String name, ClassFile classFile, ClassLayout layout, Object[] resolvedConstants) {
+            this.name = name;
+            this.classFile = classFile;
+            this.layout = layout;
+            this.resolvedConstants = resolvedConstants;
+        }
+
+        public String getName() { return name; }
+        public ClassFile getClassFile() { return classFile; }
+        public ClassLayout getLayout() { return layout; }
+
+        /**
+         * @return The resolved constant pool, indexed like the class's constant pool; shared by all frames of the class.
+         */
+        public Object[] getResolvedConstants() {
+            return resolvedConstants;
+        }
+    }
+
+    /**
+     * Parses and loads a class file.
+     *
+     * @param classFilePath Path of the class file.
+     * @return The loaded class.
+     */
+    public LinkedClass load(Path classFilePath) throws IOException {
+        return define(parser.parse(classFilePath));
+    }
+
+    /**
+     * Parses and loads a class from its bytes.
+     *
+     * @param classBytes The contents of a class file.
+     * @return The loaded class.
+     */
+    public LinkedClass load(byte[] classBytes) throws IOException {
+        return define(parser.parse(classBytes));
+    }
+
+    /**
+     * Links and registers an already parsed class.
+     *
+     * @param classFile The parsed class.
+     * @return The loaded class.
+     * @throws IllegalStateException If the class is already loaded or its superclass is not.
+     */
+    public synchronized LinkedClass define(ClassFile classFile) {
+        String name = className(classFile, classFile.thisClass);
+        if (classes.containsKey(name)) {
+            throw new IllegalStateException("Class " + name + " is already loaded");
+        }
+        ClassLayout superLayout = null;
+        if (classFile.superClass != 0) {
+            String superName = className(classFile, classFile.superClass);
+            if (!ROOT_CLASS.equals(superName)) {
+                LinkedClass superClass = classes.get(superName);
+                if (superClass == null) {
+                    throw new IllegalStateException("Superclass " + superName + " of " + name + " is not loaded");
+                }
+                superLayout = superClass.layout;
+            }
+        }
+        ClassLayout layout = ClassLayout.link(classFile, superLayout);
+        LinkedClass linked = new LinkedClass(name, classFile, layout, resolve(classFile, name, layout));
+        classes.put(name, linked);
+        Logger.debug("ClassLinker: Loaded {}", layout);
+        return linked;
+    }
+
+    /**
+     * @param name Internal name of the class, e.g. "com/example/Point".
+     * @return The loaded class, or null if it is not loaded.
+     */
+    public LinkedClass getLoadedClass(String name) {
+        return classes.get(name);
+    }
+
+    private Object[] resolve(ClassFile classFile, String self, ClassLayout selfLayout) {
+        Object[] resolved = new Object[classFile.constantPool.size() + 1]; // Index 0 is unused, as in the class file
+        for (int index = 1; index < resolved.length; index++) {
+            ConstantPoolEntry entry = classFile.constantPool.get(index - 1);
+            if (entry.tag == CONSTANT_CLASS) {
+                resolved[index] = layoutOf(utf8(classFile, (Integer) entry.value), self, selfLayout);
+            } else if (entry.tag == CONSTANT_FIELDREF) {
+                int[] ref = (int[]) entry.value; // Class, NameAndType
+                ClassLayout owner = layoutOf(className(classFile, ref[0]), self, selfLayout);
+                if (owner != null) {
+                    int[] nameAndType = (int[]) classFile.constantPool.get(ref[1] - 1).value;
+                    resolved[index] = owner.getField(utf8(classFile, nameAndType[0]));
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private ClassLayout layoutOf(String name, String self, ClassLayout selfLayout) {
+        if (name.equals(self)) {
+            return selfLayout;
+        }
+        LinkedClass linked = classes.get(name);
+        return linked != null ? linked.layout : null;
+    }
+
+    private static String className(ClassFile classFile, int classIndex) {
+        return utf8(classFile, (Integer) classFile.constantPool.get(classIndex - 1).value);
+    }
+
+    private static String utf8(ClassFile classFile, int index) {
+        ConstantPoolEntry entry = classFile.constantPool.get(index - 1);
+        if (entry.tag != CONSTANT_UTF8) {
+            throw new IllegalArgumentException("Constant pool entry " + index + " is not a UTF-8 string: " + entry);
+        }
+        return (String) entry.value;
+    }
+}
@@ -0,0 +1,341 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.memory.ClassLayout;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * Intraprocedural escape analysis over a method's bytecode.
+ * <p>
+ * Every {@code new} instruction is an allocation site. The analysis interprets the method abstractly,
+ * tracking for each local variable and operand stack slot the set of sites whose objects it may hold
+ * (a bit mask, with {@link #UNKNOWN} for objects from outside: parameters and loaded fields). Sets are
+ * merged at branch targets until they no longer change. An object escapes when it is stored into a
+ * field, since another thread may then reach it; objects that do not escape live and die with the frame.
+ * <p>
+ * The analysis gives up on methods with instructions it does not model, or with more than 63 sites;
+ * {@link #isComplete()} is then false and every site counts as escaping.
+ */
+public final class EscapeAnalysis {
+    /** Site mask bit standing for any object not allocated in this method. */
+    public static final long UNKNOWN = 1L << 63;
+    private static final int MAX_SITES = 63;
+
+    private final byte[] code;
+    private final State[] states; // Abstract state before each reachable instruction, null elsewhere
+    private final long[] receivers; // Object operand of monitor and field instructions, per pc
+    private final BitSet jumpTargets = new BitSet();
+    private final int[] sitePcs = new int[MAX_SITES];
+    private int siteCount;
+    private long escaping;
+    private boolean complete = true;
+
+    /** Locals and operand stack before an instruction, as site masks. */
+    private static final class State {
+        final long[] locals;
+        long[] stack;
+        int depth;
+
+        State(int maxLocals) {
+            locals = new long[maxLocals];
+            stack = new long[4];
+        }
+
+        State(State other) {
+            locals = other.locals.clone();
+            stack = other.stack.clone();
+            depth = other.depth;
+        }
+
+        void push(long value) {
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = value;
+        }
+
+        long pop() {
+            if (depth == 0) {
+                throw new IllegalStateException("Operand stack underflow");
+            }
+            return stack[--depth];
+        }
+
+        /** Adds another state's sites to this one; returns true if anything changed. */
+        boolean merge(State other) {
+            if (other.depth != depth) {
+                throw new IllegalStateException("Operand stack depth differs at a join point");
+            }
+            boolean changed = false;
+            for (int i = 0; i < locals.length; i++) {
+                long merged = locals[i] | other.locals[i];
+                changed |= merged != locals[i];
+                locals[i] = merged;
+            }
+            for (int i = 0; i < depth; i++) {
+                long merged = stack[i] | other.stack[i];
+                changed |= merged != stack[i];
+                stack[i] = merged;
+            }
+            return changed;
+        }
+    }
+
+    private EscapeAnalysis(byte[] code) {
+        this.code = code;
+        this.states = new State[code.length];
+        this.receivers = new long[code.length];
+    }
+
+    /**
+     * Analyzes the method a frame is executing. Field instructions are resolved through the frame's constant pool.
+     *
+     * @param frame A frame of the method.
+     * @return The analysis result.
+     */
+    public static EscapeAnalysis analyze(JFrame frame) {
+        EscapeAnalysis analysis = new EscapeAnalysis(frame.code);
+        try {
+            analysis.run(frame);
+        } catch (RuntimeException e) {
+            // Unresolved constants, unknown opcodes, malformed code: assume the worst
+            analysis.complete = false;
+        }
+        if (!analysis.complete) {
+            analysis.escaping = ~0L;
+        }
+        return analysis;
+    }
+
+    private void run(JFrame frame) {
+        State initial = new State(maxLocals());
+        Arrays.fill(initial.locals, UNKNOWN); // Parameters, and whatever the caller left in the frame
+        states[0] = initial;
+        Deque<Integer> work = new ArrayDeque<>();
+        work.push(0);
+        while (!work.isEmpty() && complete) {
+            int pc = work.pop();
+            State state = new State(states[pc]);
+            int op = Byte.toUnsignedInt(code[pc]);
+            int next = pc + length(op);
+            int target = -1; // Branch target, if any
+            boolean fallsThrough = true;
+            switch (op) {
+                case 0x01: state.push(0); break; // aconst_null
+                case 0x02: case 0x03: case 0x04: case 0x05: case 0x06: case 0x07: case 0x08: // iconst
+                case 0x10: // bipush
+                case 0x1a: case 0x1b: case 0x1c: case 0x1d: case 0x15: // iload
+                    state.push(0);
+                    break;
+                case 0x3b: case 0x3c: case 0x3d: case 0x3e: case 0x36: // istore
+                    state.pop();
+                    state.locals[localIndex(pc, op)] = 0;
+                    break;
+                case 0x2a: case 0x2b: case 0x2c: case 0x2d: case 0x19: // aload
+                    state.push(state.locals[localIndex(pc, op)]);
+                    break;
+                case 0x4b: case 0x4c: case 0x4d: case 0x4e: case 0x3a: // astore
+                    state.locals[localIndex(pc, op)] = state.pop();
+                    break;
+                case 0x60: // iadd
+                    state.pop();
+                    state.pop();
+                    state.push(0);
+                    break;
+                case 0x84: // iinc
+                    break;
+                case 0x99: case 0x9a: case 0x9b: case 0x9c: case 0x9d: case 0x9e: // if<cond>
+                    state.pop();
+                    target = pc + (short) readIndex(pc);
+                    break;
+                case 0x9f: case 0xa0: case 0xa1: case 0xa2: case 0xa3: case 0xa4: // if_icmp<cond>
+                    state.pop();
+                    state.pop();
+                    target = pc + (short) readIndex(pc);
+                    break;
+                case 0xa7: // goto
+                    target = pc + (short) readIndex(pc);
+                    fallsThrough = false;
+                    break;
+                case 0xac: // ireturn
+                case 0xb1: // return
+                    fallsThrough = false;
+                    break;
+                case 0xbb: // new
+                    if (siteOf(pc) < 0) {
+                        if (siteCount == MAX_SITES) {
+                            complete = false;
+                            return;
+                        }
+                        sitePcs[siteCount++] = pc;
+                    }
+                    state.push(1L << siteOf(pc));
+                    break;
+                case 0xb4: { // getfield
+                    ClassLayout.Field field = (ClassLayout.Field) frame.getResolvedConstant(readIndex(pc));
+                    receivers[pc] |= state.pop();
+                    ClassLayout.FieldKind kind = field.getKind();
+                    if (kind == ClassLayout.FieldKind.LONG || kind == ClassLayout.FieldKind.DOUBLE) {
+                        state.push(0);
+                        state.push(0);
+                    } else {
+                        state.push(kind == ClassLayout.FieldKind.REFERENCE ? UNKNOWN : 0);
+                    }
+                    break;
+                }
+                case 0xb5: { // putfield
+                    ClassLayout.Field field = (ClassLayout.Field) frame.getResolvedConstant(readIndex(pc));
+                    ClassLayout.FieldKind kind = field.getKind();
+                    long value = state.pop();
+                    if (kind == ClassLayout.FieldKind.LONG || kind == ClassLayout.FieldKind.DOUBLE) {
+                        state.pop();
+                    }
+                    receivers[pc] |= state.pop();
+                    if (kind == ClassLayout.FieldKind.REFERENCE) {
+                        escaping |= value; // Reachable from the heap from now on
+                    }
+                    break;
+                }
+                case 0xc2: // monitorenter
+                case 0xc3: // monitorexit
+                    receivers[pc] |= state.pop();
+                    break;
+                case 0xff: // yield
+                    break;
+                default:
+                    complete = false;
+                    return;
+            }
+            if (target >= 0) {
+                jumpTargets.set(target);
+                flow(target, state, work);
+            }
+            if (fallsThrough) {
+                flow(next, state, work);
+            }
+        }
+    }
+
+    private void flow(int pc, State state, Deque<Integer> work) {
+        if (pc < 0 || pc >= code.length) {
+            throw new IllegalStateException("Control flow leaves the method at " + pc);
+        }
+        if (states[pc] == null) {
+            states[pc] = new State(state);
+            work.push(pc);
+        } else if (states[pc].merge(state)) {
+            work.push(pc);
+        }
+    }
+
+    private int siteOf(int pc) {
+        for (int i = 0; i < siteCount; i++) {
+            if (sitePcs[i] == pc) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int maxLocals() {
+        int max = 0;
+        for (int pc = 0; pc < code.length; ) {
+            int op = Byte.toUnsignedInt(code[pc]);
+            if (isLocalAccess(op)) {
+                max = Math.max(max, localIndex(pc, op) + 1);
+            } else if (op == 0x84) {
+                max = Math.max(max, Byte.toUnsignedInt(code[pc + 1]) + 1);
+            }
+            pc += length(op);
+        }
+        return max;
+    }
+
+    private static boolean isLocalAccess(int op) {
+        return (op >= 0x1a && op <= 0x1d) || (op >= 0x2a && op <= 0x2d) || (op >= 0x3b && op <= 0x3e)
+                || (op >= 0x4b && op <= 0x4e) || op == 0x15 || op == 0x19 || op == 0x36 || op == 0x3a;
+    }
+
+    private int localIndex(int pc, int op) {
+        switch (op) {
+            case 0x15: case 0x19: case 0x36: case 0x3a: return Byte.toUnsignedInt(code[pc + 1]);
+            case 0x1a: case 0x1b: case 0x1c: case 0x1d: return op - 0x1a;
+            case 0x2a: case 0x2b: case 0x2c: case 0x2d: return op - 0x2a;
+            case 0x3b: case 0x3c: case 0x3d: case 0x3e: return op - 0x3b;
+            case 0x4b: case 0x4c: case 0x4d: case 0x4e: return op - 0x4b;
+            default: return -1;
+        }
+    }
+
+    private int readIndex(int pc) {
+        return (Byte.toUnsignedInt(code[pc + 1]) << 8) | Byte.toUnsignedInt(code[pc + 2]);
+    }
+
+    /**
+     * @param op An opcode.
+     * @return The length of the instruction in bytes, including operands.
+     */
+    static int length(int op) {
+        switch (op) {
+            case 0x10: case 0x15: case 0x19: case 0x36: case 0x3a: return 2;
+            case 0x84: case 0xa7: case 0xbb: case 0xb4: case 0xb5: return 3;
+            default: return op >= 0x99 && op <= 0xa4 ? 3 : 1;
+        }
+    }
+
+    /**
+     * @return false if the method could not be analyzed; every object then counts as escaping.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param pc Address of an instruction.
+     * @return true if the instruction can be reached from the method's entry.
+     */
+    public boolean isReachable(int pc) {
+        return pc >= 0 && pc < states.length && states[pc] != null;
+    }
+
+    /**
+     * @param pc Address of an instruction.
+     * @return true if some branch jumps to it, so it may be reached other than from the instruction before it.
+     */
+    public boolean isJumpTarget(int pc) {
+        return jumpTargets.get(pc);
+    }
+
+    /**
+     * @param pc Address of a monitorenter, monitorexit, getfield or putfield.
+     * @return Mask of the sites whose objects the instruction may operate on, with {@link #UNKNOWN} for other objects.
+     */
+    public long getReceiverSites(int pc) {
+        return complete ? receivers[pc] : UNKNOWN;
+    }
+
+    /**
+     * @return Mask of the sites whose objects may escape the method, with {@link #UNKNOWN} always set.
+     */
+    public long getEscapingSites() {
+        return escaping | UNKNOWN;
+    }
+
+    /**
+     * @return The number of allocation sites found.
+     */
+    public int getSiteCount() {
+        return siteCount;
+    }
+
+    /**
+     * @param site Site index, as in the masks.
+     * @return Address of the site's {@code new} instruction.
+     */
+    public int getSitePc(int site) {
+        return sitePcs[site];
+    }
+}
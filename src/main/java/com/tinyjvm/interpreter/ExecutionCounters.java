@@ -0,0 +1,165 @@
+package com.tinyjvm.interpreter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Execution counts of one guest thread: invocations and loop back-edges per method, and how often
+ * each opcode was executed.
+ * <p>
+ * Every {@link JVMStack} owns a set of counters, and only the host thread running its guest writes
+ * them, so they are plain {@code long}s: counting costs an increment, with no atomic operation or
+ * shared cache line. {@link #snapshot()} merges the counters of every thread on read. It may miss
+ * increments made while it runs, and on hosts without atomic 64-bit writes a count may be read torn;
+ * both are fine for statistics. The counts of terminated threads are folded into one retired set.
+ * <p>
+ * Methods are told apart by the identity of their code array, as in {@link JFrame}, and reported
+ * under {@link JFrame#getMethodName()}.
+ */
+public final class ExecutionCounters {
+    private static final Set<ExecutionCounters> live = ConcurrentHashMap.newKeySet();
+    private static final ExecutionCounters retired = new ExecutionCounters(); // Guarded by itself, as is retiring
+
+    final long[] opcodes = new long[256];
+    // Keyed by code array: arrays compare by identity. Written by the owner only, read by snapshot()
+    private final Map<byte[], MethodCounter> methods = new ConcurrentHashMap<>();
+
+    /** Counts of one method on one thread. */
+    static final class MethodCounter {
+        final String name;
+        long invocations;
+        long backEdges;
+
+        MethodCounter(String name) {
+            this.name = name;
+        }
+    }
+
+    private ExecutionCounters() {
+    }
+
+    /**
+     * @return New counters for a thread, included in snapshots until {@link #retire()}d.
+     */
+    static ExecutionCounters register() {
+        ExecutionCounters counters = new ExecutionCounters();
+        live.add(counters);
+        return counters;
+    }
+
+    /**
+     * Returns the counter of a frame's method, creating it on the method's first invocation on this thread.
+     */
+    MethodCounter methodCounter(JFrame frame) {
+        MethodCounter counter = methods.get(frame.code);
+        if (counter == null) {
+            counter = new MethodCounter(frame.getMethodName());
+            methods.put(frame.code, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * Folds these counters into the retired totals, once their thread has terminated.
+     */
+    public void retire() {
+        synchronized (retired) {
+            if (live.remove(this)) {
+                retired.add(this);
+            }
+        }
+    }
+
+    private void add(ExecutionCounters other) {
+        for (int i = 0; i < opcodes.length; i++) {
+            opcodes[i] += other.opcodes[i];
+        }
+        for (Map.Entry<byte[], MethodCounter> entry : other.methods.entrySet()) {
+            MethodCounter from = entry.getValue();
+            MethodCounter to = methods.computeIfAbsent(entry.getKey(), code -> new MethodCounter(from.name));
+            to.invocations += from.invocations;
+            to.backEdges += from.backEdges;
+        }
+    }
+
+    /**
+     * @return The counts of all threads, live and terminated, summed up.
+     */
+    public static Snapshot snapshot() {
+        ExecutionCounters sum = new ExecutionCounters();
+        synchronized (retired) {
+            sum.add(retired);
+            for (ExecutionCounters counters : live) {
+                sum.add(counters);
+            }
+        }
+        return new Snapshot(sum);
+    }
+
+    /**
+     * Summed execution counts at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] opcodes;
+        private final Map<String, Long> invocations = new HashMap<>();
+        private final Map<String, Long> backEdges = new HashMap<>();
+
+        private Snapshot(ExecutionCounters sum) {
+            this.opcodes = sum.opcodes;
+            for (MethodCounter counter : sum.methods.values()) {
+                invocations.merge(counter.name, counter.invocations, Long::sum);
+                backEdges.merge(counter.name, counter.backEdges, Long::sum);
+            }
+        }
+
+        /**
+         * @return How often the opcode was executed, including retries of blocked monitorenters.
+         */
+        public long getOpcodeCount(int opcode) {
+            return opcodes[opcode & 0xFF];
+        }
+
+        /**
+         * @return Execution counts indexed by opcode.
+         */
+        public long[] getOpcodeHistogram() {
+            return opcodes.clone();
+        }
+
+        /**
+         * @return The total number of instructions executed.
+         */
+        public long getInstructions() {
+            long total = 0;
+            for (long count : opcodes) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * @return Invocation counts by method name.
+         */
+        public Map<String, Long> getInvocationCounts() {
+            return Collections.unmodifiableMap(invocations);
+        }
+
+        /**
+         * @return Counts of backward branches taken, by method name.
+         */
+        public Map<String, Long> getBackEdgeCounts() {
+            return Collections.unmodifiableMap(backEdges);
+        }
+
+        public long getInvocations(String method) {
+            return invocations.getOrDefault(method, 0L);
+        }
+
+        public long getBackEdges(String method) {
+            return backEdges.getOrDefault(method, 0L);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.tinyjvm.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Rough relative cost of interpreting each opcode, in units of a simple stack instruction such as {@code iadd}.
+ * <p>
+ * The time-sliced scheduler adds these up instead of reading the clock after every instruction:
+ * it only looks at the clock once a slice has accumulated enough cost, so a thread running
+ * expensive instructions (allocation, monitors, invocations) is checked more often than one doing arithmetic.
+ */
+public final class InstructionCost {
+
+    /** Cost charged for running host-side target code, whose length is unknown. */
+    public static final int UNKNOWN = 256;
+
+    private static final int[] COSTS = new int[256];
+
+    static {
+        Arrays.fill(COSTS, 1);
+        COSTS[0xac] = 4;  // ireturn
+        COSTS[0xb1] = 4;  // return
+        COSTS[0xb4] = 3;  // getfield
+        COSTS[0xb5] = 3;  // putfield
+        for (int invoke = 0xb6; invoke <= 0xba; invoke++) {
+            COSTS[invoke] = 10; // invokevirtual .. invokedynamic
+        }
+        COSTS[0xbb] = 20; // new
+        COSTS[0xbc] = 20; // newarray
+        COSTS[0xbd] = 20; // anewarray
+        COSTS[0xbf] = 30; // athrow
+        COSTS[0xc2] = 8;  // monitorenter
+        COSTS[0xc3] = 8;  // monitorexit
+    }
+
+    private InstructionCost() {
+    }
+
+    /**
+     * @param opcode An unsigned opcode, or -1 for host-side target code.
+     * @return The opcode's estimated cost.
+     */
+    public static int of(int opcode) {
+        return opcode < 0 ? UNKNOWN : COSTS[opcode & 0xFF];
+    }
+}
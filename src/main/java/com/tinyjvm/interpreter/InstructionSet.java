@@ -1,5 +1,10 @@
 package com.tinyjvm.interpreter;
 
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.LockProfiler;
+
 /**
  * Defines the set of JVM instructions and their execution logic.
  * Each method typically takes the current JFrame as a parameter to manipulate
@@ -84,4 +89,256 @@ public class InstructionSet {
         int value = frame.pop();
         frame.setLocal(index, value);
     }
+
+    /**
+     * Pushes a null reference onto the operand stack.
+     *
+     * @param frame The current execution frame.
+     */
+    public static void aconst_null(JFrame frame) {
+        frame.pushReference(0);
+    }
+
+    /**
+     * Loads an object reference from a local variable and pushes it onto the operand stack.
+     *
+     * @param frame The current execution frame.
+     * @param index The index of the local variable.
+     */
+    public static void aload(JFrame frame, int index) {
+        frame.pushReference(frame.getLocalReference(index));
+    }
+
+    /**
+     * Stores an object reference from the top of the operand stack into a local variable.
+     *
+     * @param frame The current execution frame.
+     * @param index The index of the local variable.
+     */
+    public static void astore(JFrame frame, int index) {
+        frame.setLocalReference(index, frame.pop());
+    }
+
+    /**
+     * Allocates a new instance of the class at the constant-pool index that follows the opcode
+     * and pushes its reference. The pc of the frame is advanced past the index.
+     * Instances from a {@link ScalarReplacement scalar-replaced} site are kept in the frame instead.
+     *
+     * @param frame  The current execution frame.
+     * @param heap   The heap to allocate on.
+     * @param thread The allocating thread.
+     */
+    public static void newObject(JFrame frame, JVMHeap heap, JVMThread thread) {
+        int sitePc = frame.pc - 1;
+        ClassLayout layout = (ClassLayout) frame.getResolvedConstant(readIndex(frame));
+        if (frame.getScalarReplacement().isVirtual(sitePc)) {
+            int handle = frame.allocateVirtual(layout, sitePc, heap, thread);
+            if (handle != 0) {
+                ScalarReplacement.recordReplaced();
+                frame.pushReference(handle);
+                return;
+            }
+        }
+        JVMObject obj = heap.allocate(thread, layout);
+        if (LockProfiler.isEnabled()) {
+            obj.setAllocationSite(LockProfiler.siteOf(layout.getClassName(), frame.code, sitePc));
+        }
+        frame.pushReference(obj.getAddress());
+    }
+
+    /**
+     * Replaces the object reference on top of the operand stack with the value of one of its fields.
+     * The field is resolved from the constant-pool index that follows the opcode and read at its
+     * fixed offset. Long and double values take two slots, high word first.
+     *
+     * @param frame The current execution frame.
+     * @param heap  The heap holding the object.
+     */
+    public static void getfield(JFrame frame, JVMHeap heap) {
+        ClassLayout.Field field = (ClassLayout.Field) frame.getResolvedConstant(readIndex(frame));
+        int handle = frame.pop();
+        if (handle < 0) {
+            getVirtualField(frame, frame.getVirtual(handle), field);
+            return;
+        }
+        JVMObject holder = resolve(heap, handle, "GETFIELD");
+        int offset = field.getOffset();
+        switch (field.getKind()) {
+            case BYTE:
+            case BOOLEAN: frame.push(holder.getByte(offset)); break;
+            case CHAR: frame.push(holder.getChar(offset)); break;
+            case SHORT: frame.push(holder.getShort(offset)); break;
+            case INT:
+            case FLOAT: frame.push(holder.getInt(offset)); break; // Floats travel as raw bits
+            case LONG:
+            case DOUBLE:
+                long value = holder.getLong(offset);
+                frame.push((int) (value >>> 32));
+                frame.push((int) value);
+                break;
+            case REFERENCE: frame.pushReference(holder.getReference(field.getReferenceSlot())); break;
+        }
+    }
+
+    private static void getVirtualField(JFrame frame, VirtualObject holder, ClassLayout.Field field) {
+        switch (field.getKind()) {
+            case LONG:
+            case DOUBLE:
+                long value = holder.get(field);
+                frame.push((int) (value >>> 32));
+                frame.push((int) value);
+                break;
+            case REFERENCE: frame.pushReference(holder.getReference(field.getReferenceSlot())); break;
+            default: frame.push((int) holder.get(field)); break;
+        }
+    }
+
+    /**
+     * Pops a value and an object reference from the operand stack and stores the value into a field
+     * of the object. The field is resolved from the constant-pool index that follows the opcode.
+     * Reference stores go through the heap so its write barriers see them.
+     *
+     * @param frame The current execution frame.
+     * @param heap  The heap holding the object.
+     */
+    public static void putfield(JFrame frame, JVMHeap heap) {
+        ClassLayout.Field field = (ClassLayout.Field) frame.getResolvedConstant(readIndex(frame));
+        if (putVirtualField(frame, field)) {
+            return;
+        }
+        int offset = field.getOffset();
+        switch (field.getKind()) {
+            case BYTE:
+            case BOOLEAN: {
+                byte value = (byte) frame.pop();
+                resolve(heap, frame.pop(), "PUTFIELD").putByte(offset, value);
+                break;
+            }
+            case CHAR:
+            case SHORT: {
+                short value = (short) frame.pop();
+                resolve(heap, frame.pop(), "PUTFIELD").putShort(offset, value);
+                break;
+            }
+            case INT:
+            case FLOAT: {
+                int value = frame.pop();
+                resolve(heap, frame.pop(), "PUTFIELD").putInt(offset, value);
+                break;
+            }
+            case LONG:
+            case DOUBLE: {
+                long low = frame.pop() & 0xFFFFFFFFL;
+                long high = frame.pop();
+                resolve(heap, frame.pop(), "PUTFIELD").putLong(offset, (high << 32) | low);
+                break;
+            }
+            case REFERENCE: {
+                int value = frame.pop();
+                JVMObject holder = resolve(heap, frame.pop(), "PUTFIELD");
+                heap.storeReference(holder, field.getReferenceSlot(), heap.getObjectByAddress(value));
+                break;
+            }
+        }
+    }
+
+    /**
+     * Performs a putfield whose holder is a virtual object. A virtual object being stored into a field
+     * would escape, so that deoptimizes the frame and leaves the store to the heap path.
+     *
+     * @return true if the store was done, false if the operands were left for a heap store.
+     */
+    private static boolean putVirtualField(JFrame frame, ClassLayout.Field field) {
+        boolean wide = field.getKind() == ClassLayout.FieldKind.LONG || field.getKind() == ClassLayout.FieldKind.DOUBLE;
+        if (field.getKind() == ClassLayout.FieldKind.REFERENCE && frame.peek(0) < 0) {
+            // The analysis rules this out, but a frame-local handle must never end up in an object
+            frame.deoptimize();
+            return false;
+        }
+        if (frame.peek(wide ? 2 : 1) >= 0) {
+            return false;
+        }
+        int low = frame.pop();
+        int high = wide ? frame.pop() : 0;
+        int handle = frame.pop();
+        VirtualObject holder = frame.getVirtual(handle);
+        if (field.getKind() == ClassLayout.FieldKind.REFERENCE) {
+            holder.setReference(field.getReferenceSlot(), low);
+        } else {
+            holder.put(field, wide ? ((long) high << 32) | (low & 0xFFFFFFFFL) : low);
+        }
+        return true;
+    }
+
+    /**
+     * Pushes an integer constant (iconst_m1 to iconst_5).
+     *
+     * @param frame The current execution frame.
+     * @param value The constant.
+     */
+    public static void iconst(JFrame frame, int value) {
+        frame.push(value);
+    }
+
+    /**
+     * Adds a signed byte constant to an int local variable. Operands: local index, constant.
+     *
+     * @param frame The current execution frame.
+     */
+    public static void iinc(JFrame frame) {
+        int index = Byte.toUnsignedInt(frame.code[frame.pc++]);
+        int delta = frame.code[frame.pc++];
+        frame.setLocal(index, frame.getLocal(index) + delta);
+    }
+
+    /**
+     * Evaluates a branch condition as used by if&lt;cond&gt; and if_icmp&lt;cond&gt;.
+     *
+     * @param a         Left operand.
+     * @param b         Right operand (0 for the single-operand forms).
+     * @param condition 0 to 5 for eq, ne, lt, ge, gt, le, in opcode order.
+     * @return true if the branch is taken.
+     */
+    public static boolean compare(int a, int b, int condition) {
+        switch (condition) {
+            case 0: return a == b;
+            case 1: return a != b;
+            case 2: return a < b;
+            case 3: return a >= b;
+            case 4: return a > b;
+            case 5: return a <= b;
+            default: throw new IllegalArgumentException("Unknown branch condition " + condition);
+        }
+    }
+
+    /**
+     * Reads a branch's 16-bit offset and jumps if the branch is taken. Offsets are relative to the branch opcode.
+     *
+     * @param frame    The current execution frame, with pc just past the opcode.
+     * @param opcodePc Address of the branch opcode.
+     * @param taken    Whether to jump.
+     * @return true if a jump was taken backwards, i.e. this was a loop back-edge.
+     */
+    public static boolean branch(JFrame frame, int opcodePc, boolean taken) {
+        int offset = (short) readIndex(frame);
+        if (!taken) {
+            return false;
+        }
+        frame.pc = opcodePc + offset;
+        return offset <= 0;
+    }
+
+    private static int readIndex(JFrame frame) {
+        int index = (Byte.toUnsignedInt(frame.code[frame.pc]) << 8) | Byte.toUnsignedInt(frame.code[frame.pc + 1]);
+        frame.pc += 2;
+        return index;
+    }
+
+    private static JVMObject resolve(JVMHeap heap, int handle, String instruction) {
+        JVMObject obj = heap.getObjectByAddress(handle);
+        if (obj == null) {
+            throw new IllegalStateException(instruction + " expects an object reference on stack, got handle: " + handle);
+        }
+        return obj;
+    }
 }
@@ -1,11 +1,25 @@
 package com.tinyjvm.interpreter;
 
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.threads.JVMThread;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Stack;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Represents a frame in the Java Virtual Machine (JVM) stack.
  * Each frame corresponds to a method invocation and holds its local variables,
  * operand stack, and a reference to the runtime constant pool of the class of the current method.
+ * <p>
+ * Slots holding object references (heap handles) are tagged, so the garbage collector
+ * can find them precisely instead of guessing which ints might be handles.
+ * <p>
+ * Objects that {@link ScalarReplacement} keeps off the heap live in the frame as {@link VirtualObject}s,
+ * referenced from slots by negative handles (-1 for the first). Host code never sees those:
+ * reading such a local through {@link #getLocal(int)} {@link #deoptimize() deoptimizes} the frame first.
  */
 public class JFrame {
 
@@ -29,6 +43,37 @@ public class JFrame {
      */
     private Stack<Integer> operandStack;
 
+    /**
+     * Constant-pool entries already resolved for this method's class, indexed like the constant pool:
+     * a {@link com.tinyjvm.memory.ClassLayout} for class entries, a
+     * {@link com.tinyjvm.memory.ClassLayout.Field} for field references.
+     */
+    private Object[] resolvedConstants = new Object[0];
+
+    /**
+     * Tags for local variables and operand stack slots that hold references.
+     */
+    private final BitSet localReferences = new BitSet();
+    private final BitSet stackReferences = new BitSet();
+
+    /**
+     * Monitor instructions of this method the interpreter skips, looked up on the first one executed.
+     */
+    private LockElision lockElision;
+
+    /**
+     * Allocation sites of this method whose objects are kept in the frame, looked up on the first {@code new}.
+     */
+    private ScalarReplacement scalarReplacement;
+    private List<VirtualObject> virtualObjects; // Indexed by -handle - 1
+    private JVMHeap heap;      // Where virtual objects go on deoptimization
+    private JVMThread thread;  // The frame's thread, which allocates them
+    private boolean deoptimized;
+
+    private String methodName; // For diagnostics; null if the loader did not name the method
+    Object flightEvent;        // The open guest method event, see GuestEvents
+    ExecutionCounters.MethodCounter methodCounter; // This method's counts on the frame's thread, set on push
+
     /**
      * Constructs a new JFrame.
      *
@@ -46,13 +91,187 @@ public class JFrame {
         // or potential future use (e.g. bounded stack).
     }
 
+    /**
+     * Installs the resolved constant pool used by instructions that take a constant-pool index.
+     *
+     * @param resolvedConstants The resolved entries, indexed like the class's constant pool.
+     */
+    public void setResolvedConstants(Object[] resolvedConstants) {
+        this.resolvedConstants = resolvedConstants;
+    }
+
+    /**
+     * Names this frame's method for diagnostics, e.g. "com/example/Point.move".
+     *
+     * @param methodName The name.
+     */
+    public void setMethodName(String methodName) {
+        this.methodName = methodName;
+    }
+
+    /**
+     * @return The name set by {@link #setMethodName(String)}, or "method@" and the identity of the code
+     *         array, which is the same for every frame of the method.
+     */
+    public String getMethodName() {
+        return methodName != null ? methodName : "method@" + Integer.toHexString(System.identityHashCode(code));
+    }
+
+    /**
+     * Gets a resolved constant-pool entry.
+     *
+     * @param index Constant-pool index.
+     * @return The resolved entry.
+     * @throws IllegalStateException if the entry has not been resolved.
+     */
+    public Object getResolvedConstant(int index) {
+        if (index >= resolvedConstants.length || resolvedConstants[index] == null) {
+            throw new IllegalStateException("Unresolved constant pool entry #" + index);
+        }
+        return resolvedConstants[index];
+    }
+
+    /**
+     * Gets the lock elision decisions for this frame's method.
+     *
+     * @return The decisions, computed when first needed.
+     */
+    public LockElision getLockElision() {
+        if (lockElision == null) {
+            lockElision = LockElision.forFrame(this);
+        }
+        return lockElision;
+    }
+
+    /**
+     * Gets the scalar replacement decisions for this frame's method.
+     *
+     * @return The decisions, computed when first needed; none once the frame has been deoptimized.
+     */
+    public ScalarReplacement getScalarReplacement() {
+        if (deoptimized) {
+            return ScalarReplacement.NONE;
+        }
+        if (scalarReplacement == null) {
+            scalarReplacement = ScalarReplacement.forFrame(this);
+        }
+        return scalarReplacement;
+    }
+
+    /**
+     * Creates a virtual object for a scalar-replaced allocation site. An earlier object from the same
+     * site is reused if no slot refers to it any more, so a loop does not pile up objects.
+     *
+     * @param layout The class being instantiated.
+     * @param sitePc Address of the {@code new} instruction.
+     * @param heap   The heap to materialize it on if the frame is deoptimized.
+     * @param thread The frame's thread.
+     * @return The virtual handle, or 0 if the frame holds too many live virtual objects already.
+     */
+    int allocateVirtual(ClassLayout layout, int sitePc, JVMHeap heap, JVMThread thread) {
+        if (virtualObjects == null) {
+            virtualObjects = new ArrayList<>();
+            this.heap = heap;
+            this.thread = thread;
+        }
+        for (int i = 0; i < virtualObjects.size(); i++) {
+            VirtualObject existing = virtualObjects.get(i);
+            if (existing.sitePc == sitePc && !isReferenced(-i - 1)) {
+                existing.reset();
+                return -i - 1;
+            }
+        }
+        if (virtualObjects.size() == ScalarReplacement.MAX_VIRTUAL_OBJECTS) {
+            return 0;
+        }
+        virtualObjects.add(new VirtualObject(layout, sitePc));
+        return -virtualObjects.size();
+    }
+
+    private boolean isReferenced(int handle) {
+        for (int i = localReferences.nextSetBit(0); i >= 0 && i < locals.length; i = localReferences.nextSetBit(i + 1)) {
+            if (locals[i] == handle) {
+                return true;
+            }
+        }
+        return operandStack.contains(handle);
+    }
+
+    /**
+     * Resolves a virtual handle.
+     *
+     * @param handle A negative handle from one of this frame's slots.
+     * @return The virtual object.
+     */
+    VirtualObject getVirtual(int handle) {
+        return virtualObjects.get(-handle - 1);
+    }
+
+    /**
+     * Returns the heap handle for a reference that may be virtual, deoptimizing the frame if it is.
+     *
+     * @param handle A reference from one of this frame's slots.
+     * @return The heap handle, unchanged if it already was one.
+     */
+    int materialize(int handle) {
+        if (handle >= 0) {
+            return handle;
+        }
+        deoptimize();
+        return getVirtual(handle).getMaterialized().getAddress();
+    }
+
+    /**
+     * Deoptimizes the frame: every virtual object is allocated on the heap with its current field
+     * values and every slot referring to it is updated. From then on the frame allocates normally.
+     * Used when a virtual object has to be seen as a heap object after all, e.g. by host code
+     * inspecting the frame or by an instruction that cannot work on a virtual object.
+     */
+    public void deoptimize() {
+        if (deoptimized) {
+            return;
+        }
+        deoptimized = true;
+        if (virtualObjects == null || virtualObjects.isEmpty()) {
+            return;
+        }
+        // Allocation may collect; materialized objects stay rooted through visitReferences meanwhile
+        for (VirtualObject virtual : virtualObjects) {
+            virtual.materialize(heap, thread);
+        }
+        rewriteReferences(handle -> handle < 0 ? getVirtual(handle).getMaterialized().getAddress() : handle);
+        ScalarReplacement.recordDeoptimization(virtualObjects.size());
+        virtualObjects.clear();
+    }
+
+    /**
+     * @return true if this frame has been deoptimized.
+     */
+    public boolean isDeoptimized() {
+        return deoptimized;
+    }
+
     /**
      * Gets the value of a local variable at the given index.
+     * A local referring to a virtual object deoptimizes the frame first, so callers always see a heap handle.
      *
      * @param index Index of the local variable.
      * @return Value of the local variable.
      */
     public int getLocal(int index) {
+        if (locals[index] < 0 && localReferences.get(index)) {
+            deoptimize();
+        }
+        return locals[index];
+    }
+
+    /**
+     * Reads a reference local as it is, virtual handles included. Used by the interpreter.
+     *
+     * @param index Index of the local variable.
+     * @return The handle in the local variable.
+     */
+    int getLocalReference(int index) {
         return locals[index];
     }
 
@@ -64,6 +283,18 @@ public class JFrame {
      */
     public void setLocal(int index, int value) {
         locals[index] = value;
+        localReferences.clear(index);
+    }
+
+    /**
+     * Stores an object reference (heap handle) into a local variable.
+     *
+     * @param index  Index of the local variable.
+     * @param handle Heap handle to store, 0 for null.
+     */
+    public void setLocalReference(int index, int handle) {
+        locals[index] = handle;
+        localReferences.set(index);
     }
 
     /**
@@ -72,9 +303,20 @@ public class JFrame {
      * @param value Value to push.
      */
     public void push(int value) {
+        stackReferences.clear(operandStack.size());
         operandStack.push(value);
     }
 
+    /**
+     * Pushes an object reference (heap handle) onto the operand stack.
+     *
+     * @param handle Heap handle to push, 0 for null.
+     */
+    public void pushReference(int handle) {
+        stackReferences.set(operandStack.size());
+        operandStack.push(handle);
+    }
+
     /**
      * Pops a value from the operand stack.
      *
@@ -83,4 +325,45 @@ public class JFrame {
     public int pop() {
         return operandStack.pop();
     }
+
+    /**
+     * Reads an operand stack slot without popping it.
+     *
+     * @param depth 0 for the top of the stack.
+     * @return The value in the slot.
+     */
+    int peek(int depth) {
+        return operandStack.get(operandStack.size() - 1 - depth);
+    }
+
+    /**
+     * Reports every reference held in this frame's locals and operand stack, and in the reference
+     * fields of its virtual objects. The visitor's result is stored back into the slot, so a moving collector can update it.
+     *
+     * @param visitor Receives each heap handle and returns the handle to keep in the slot.
+     */
+    public void visitReferences(IntUnaryOperator visitor) {
+        rewriteReferences(handle -> handle < 0 ? handle : visitor.applyAsInt(handle));
+        if (virtualObjects != null) {
+            for (VirtualObject virtual : virtualObjects) {
+                if (virtual.getMaterialized() != null) {
+                    visitor.applyAsInt(virtual.getMaterialized().getAddress()); // A moving collector updates the object itself
+                    continue;
+                }
+                for (int slot = 0; slot < virtual.getReferenceCount(); slot++) {
+                    virtual.setReference(slot, visitor.applyAsInt(virtual.getReference(slot)));
+                }
+            }
+        }
+    }
+
+    private void rewriteReferences(IntUnaryOperator visitor) {
+        for (int i = localReferences.nextSetBit(0); i >= 0 && i < locals.length; i = localReferences.nextSetBit(i + 1)) {
+            locals[i] = visitor.applyAsInt(locals[i]);
+        }
+        int depth = operandStack.size();
+        for (int i = stackReferences.nextSetBit(0); i >= 0 && i < depth; i = stackReferences.nextSetBit(i + 1)) {
+            operandStack.set(i, visitor.applyAsInt(operandStack.get(i)));
+        }
+    }
 }
@@ -1,51 +1,461 @@
 package com.tinyjvm.interpreter;
 
+import com.tinyjvm.jfr.GuestEvents;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.ConcurrentMarkSweepCollector;
+import com.tinyjvm.memory.GcStats;
+import com.tinyjvm.memory.GenerationalCollector;
+import com.tinyjvm.memory.HandleTable;
 import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.memory.MarkSweepCollector;
+import com.tinyjvm.memory.ObjectArena;
+import com.tinyjvm.memory.ThreadLocalAllocationBuffer;
 import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.ObjectSynchronizer;
+import com.tinyjvm.threads.Scheduler;
+import com.tinyjvm.utils.Logger;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Simulates the JVM's heap memory where objects are stored.
- * This version tracks allocations per thread and stores JVMObject instances.
+ * Objects are referenced by integer handles (addresses) resolved through a {@link HandleTable}.
+ * Each JVMThread allocates from its own {@link ThreadLocalAllocationBuffer}, so the common
+ * allocation path takes no locks; only refilling a TLAB is synchronized.
+ * <p>
+ * Object fields are stored off the host heap in an {@link ObjectArena}, laid out by the object's
+ * {@link ClassLayout}. TLABs bump-allocate field storage from private arena regions; once the arena
+ * has reached its limit, blocks freed by the collectors are reused, and a collection is forced
+ * when none of the right size is left.
+ * <p>
+ * Unreachable objects are reclaimed by a {@link MarkSweepCollector}. A collection is started
+ * from the TLAB refill path once the bytes allocated since the previous collection exceed
+ * the configured threshold, or explicitly through {@link #collect()}.
+ * Roots are the reference slots of every live thread's {@link JVMStack}, the heap's static
+ * fields and objects whose lock is held. Every stop-the-world collection also deflates idle
+ * inflated monitors through {@link ObjectSynchronizer#deflateIdleMonitors()}.
+ * <p>
+ * In {@link GcMode#GENERATIONAL} mode, TLABs are carved out of a bump-pointer nursery instead.
+ * A full nursery triggers a copying minor collection ({@link GenerationalCollector}) that promotes
+ * survivors into the handle table, which then acts as the old space; the mark-sweep collector
+ * only runs once the promoted volume crosses the threshold. Reference stores go through
+ * {@link #storeReference} so that the card-marking write barrier sees them.
+ * <p>
+ * In {@link GcMode#CONCURRENT_MARK_SWEEP} mode, crossing the threshold starts a
+ * {@link ConcurrentMarkSweepCollector} cycle instead: only initial mark and remark stop the guests,
+ * while marking and sweeping run on a background host thread. The remark pause is run from the
+ * allocation slow path or from {@link #runPendingCollectorWork()}, which the scheduler calls between quanta.
+ * <p>
+ * Every collection and pause is run through {@link Scheduler#stopTheWorld}, so that with several
+ * carrier threads the guests running elsewhere reach a safepoint before the heap is touched.
+ * Slow paths re-check their condition once the world is stopped, since another thread may have
+ * collected in the meantime.
  */
 public class JVMHeap {
-    // Primary storage for objects, mapping an address to the JVMObject.
-    // This allows objects to be referenced by a simple integer ID (address).
-    private final Map<Integer, JVMObject> objectStore = new HashMap<>();
-    private final AtomicInteger nextAddress = new AtomicInteger(1); // Thread-safe address generation
+    public static final long DEFAULT_GC_THRESHOLD_BYTES = 4L * 1024 * 1024;
+    public static final int DEFAULT_NURSERY_HANDLES = 64 * 1024;
 
-    // Tracks allocations per thread, as suggested by the article.
-    private final Map<JVMThread, List<JVMObject>> allocationsByThread = new HashMap<>();
+    /**
+     * Collector configuration of a heap. The default can be chosen at launch with
+     * {@code -Dtinyjvm.gc=generational}, {@code -Dtinyjvm.gc=concurrent} or {@code -Dtinyjvm.gc=marksweep}.
+     */
+    public enum GcMode { MARK_SWEEP, GENERATIONAL, CONCURRENT_MARK_SWEEP }
+
+    // Primary storage for objects, mapping an address (handle) to the JVMObject.
+    // In generational mode this is the old space.
+    private final HandleTable handles = new HandleTable();
+    private final ObjectArena arena;
+    private final MarkSweepCollector collector = new MarkSweepCollector(handles, this::visitRoots);
+    private final GenerationalCollector generational; // null unless in GENERATIONAL mode
+    private final ConcurrentMarkSweepCollector concurrent; // null unless in CONCURRENT_MARK_SWEEP mode
+
+    // Every TLAB ever handed out, for statistics. Appended once per thread, not per allocation.
+    private final List<ThreadLocalAllocationBuffer> tlabs = new ArrayList<>();
+
+    // Allocations made outside of any JVMThread (e.g. VM setup code) share this buffer under its own lock.
+    private final ThreadLocalAllocationBuffer sharedTlab = new ThreadLocalAllocationBuffer("<no thread>");
+
+    // Root sources: threads whose stacks are scanned, and named static fields.
+    private final List<JVMThread> threads = new ArrayList<>();
+    private final Map<String, Integer> staticFields = new ConcurrentHashMap<>();
+
+    private final AtomicLong bytesSinceLastGc = new AtomicLong();
+    private volatile long gcThresholdBytes = DEFAULT_GC_THRESHOLD_BYTES;
+
+    public JVMHeap() {
+        this(gcModeFromProperty(System.getProperty("tinyjvm.gc")));
+    }
+
+    private static GcMode gcModeFromProperty(String value) {
+        if ("generational".equalsIgnoreCase(value)) {
+            return GcMode.GENERATIONAL;
+        }
+        if ("concurrent".equalsIgnoreCase(value)) {
+            return GcMode.CONCURRENT_MARK_SWEEP;
+        }
+        return GcMode.MARK_SWEEP;
+    }
+
+    /**
+     * @param mode The collector configuration to use.
+     */
+    public JVMHeap(GcMode mode) {
+        this(mode, DEFAULT_NURSERY_HANDLES);
+    }
+
+    /**
+     * @param mode           The collector configuration to use.
+     * @param nurseryHandles Nursery size in objects, only used in GENERATIONAL mode.
+     */
+    public JVMHeap(GcMode mode, int nurseryHandles) {
+        this(mode, nurseryHandles, ObjectArena.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param mode           The collector configuration to use.
+     * @param nurseryHandles Nursery size in objects, only used in GENERATIONAL mode.
+     * @param arenaBytes     Upper bound for the off-heap field storage.
+     */
+    public JVMHeap(GcMode mode, int nurseryHandles, long arenaBytes) {
+        this.arena = new ObjectArena(arenaBytes);
+        this.generational = mode == GcMode.GENERATIONAL
+                ? new GenerationalCollector(handles, nurseryHandles, this::visitRoots)
+                : null;
+        this.concurrent = mode == GcMode.CONCURRENT_MARK_SWEEP
+                ? new ConcurrentMarkSweepCollector(handles, this::visitRoots)
+                : null;
+        registerTlab(sharedTlab);
+    }
 
     /**
-     * Allocates a new JVMObject on the heap, associated with a specific thread.
+     * Allocates a new JVMObject without fields on the heap, associated with a specific thread.
      *
-     * @param thread The thread for which the object is being allocated.
-     * @param data   The raw data to be wrapped by the JVMObject. This could be field data,
-     *               or a representation of a Java object's content.
+     * @param thread The thread for which the object is being allocated, or null for VM-internal allocations.
+     * @param data   Not stored: fields are described by a {@link ClassLayout}. Kept for callers of the
+     *               original API, which took a host-side payload.
      * @return The allocated JVMObject.
      */
     public JVMObject allocate(JVMThread thread, Object data) {
-        JVMObject jvmObject = new JVMObject(data); // JVMObject itself creates a Monitor
-        int address = nextAddress.getAndIncrement();
-        objectStore.put(address, jvmObject);
+        return allocate(thread, data, 0);
+    }
+
+    /**
+     * Allocates a new JVMObject with the given number of reference fields.
+     *
+     * @param thread         The thread for which the object is being allocated, or null for VM-internal allocations.
+     * @param data           Not stored, see {@link #allocate(JVMThread, Object)}.
+     * @param referenceSlots The number of reference fields, all initially null.
+     * @return The allocated JVMObject.
+     */
+    public JVMObject allocate(JVMThread thread, Object data, int referenceSlots) {
+        return allocate(thread, ClassLayout.withReferences(referenceSlots));
+    }
+
+    /**
+     * Allocates a new instance of a linked class. All fields start out zero or null.
+     *
+     * @param thread The thread for which the object is being allocated, or null for VM-internal allocations.
+     * @param layout The layout of the class being instantiated.
+     * @return The allocated JVMObject.
+     */
+    public JVMObject allocate(JVMThread thread, ClassLayout layout) {
+        GuestEvents.allocated(thread, layout);
+        if (thread == null) {
+            synchronized (sharedTlab) {
+                return allocateIn(sharedTlab, layout);
+            }
+        }
+        ThreadLocalAllocationBuffer tlab = thread.getTlab();
+        if (tlab == null) {
+            tlab = new ThreadLocalAllocationBuffer("Thread-" + thread.getThreadId());
+            thread.setTlab(tlab);
+            registerTlab(tlab);
+        }
+        return allocateIn(tlab, layout);
+    }
 
-        // Track allocation by thread
-        synchronized (allocationsByThread) { // Synchronize access to the allocationsByThread map
-            allocationsByThread.computeIfAbsent(thread, k -> new ArrayList<>()).add(jvmObject);
+    /**
+     * Allocates from the given TLAB, refilling it when exhausted.
+     * The caller must be the only thread using the TLAB.
+     */
+    private JVMObject allocateIn(ThreadLocalAllocationBuffer tlab, ClassLayout layout) {
+        // Storage first: its slow path may collect, which must not see a handle without an object
+        long storage = tlab.allocateStorage(layout.getInstanceSize());
+        if (storage < 0) {
+            storage = refillStorage(tlab, layout.getInstanceSize());
+        }
+        int address = tlab.allocate();
+        if (address == 0) {
+            refill(tlab);
+            address = tlab.allocate();
+        }
+        JVMObject jvmObject = new JVMObject(layout, arena, storage);
+        jvmObject.setAddress(address);
+        if (generational != null) {
+            generational.setYoung(address, jvmObject);
+        } else {
+            handles.set(address, jvmObject);
         }
+        tlab.recordBytes(jvmObject.getSizeInBytes());
 
-        System.out.println("JVMHeap: Allocated object " + jvmObject + " at address " + address + " for thread " + (thread != null ? thread.getThreadId() : "null") );
-        // The 'address' could be stored in the JVMObject if needed for identity or GC purposes,
-        // but for now, the reference to JVMObject itself is key.
+        Logger.debug("JVMHeap: Allocated {} at address {} in {}", layout.getClassName(), address, tlab.getOwnerName());
         return jvmObject;
     }
 
+    /**
+     * Slow path: accounts the TLAB's allocation volume, collects if the threshold is crossed,
+     * then refills the TLAB with reclaimed handles or, if there are none, a fresh chunk.
+     */
+    private void refill(ThreadLocalAllocationBuffer tlab) {
+        if (generational != null) {
+            int start = generational.claimNurseryChunk();
+            if (start == 0) {
+                start = Scheduler.getInstance().stopTheWorld("Minor GC", () -> {
+                    int chunk = generational.claimNurseryChunk();
+                    if (chunk == 0) {
+                        collectYoung("Nursery full");
+                        chunk = generational.claimNurseryChunk();
+                    }
+                    return chunk;
+                });
+            }
+            tlab.refill(start, start + HandleTable.CHUNK_SIZE);
+            return;
+        }
+        boolean cycleStarted = false;
+        if (bytesSinceLastGc.addAndGet(tlab.takeUnreportedBytes()) >= gcThresholdBytes) {
+            cycleStarted = Scheduler.getInstance().stopTheWorld(concurrent != null ? "Initial mark" : "GC", () -> {
+                if (bytesSinceLastGc.get() < gcThresholdBytes) {
+                    return false; // Someone else collected first
+                }
+                if (concurrent != null) {
+                    return startConcurrentCycle("Allocation threshold");
+                }
+                collect("Allocation threshold");
+                return false;
+            });
+        }
+        if (concurrent != null) {
+            if (!cycleStarted) {
+                runPendingCollectorWork(); // Not right after initial mark; marking should overlap guest work first
+            }
+            if (concurrent.isCycleActive()) {
+                // Only fresh handles (above TAMS) may be used while a cycle is running
+                int start = handles.claimChunk();
+                tlab.refill(start, HandleTable.chunkLimit(start));
+                return;
+            }
+        }
+        int recycled = handles.takeFree(tlab.recycleBuffer());
+        if (recycled > 0) {
+            tlab.refillRecycled(recycled);
+        } else {
+            int start = handles.claimChunk();
+            tlab.refill(start, HandleTable.chunkLimit(start));
+        }
+    }
+
+    /**
+     * Slow path for field storage: gives the TLAB a new arena region, or once the arena is at its
+     * limit, hands out a freed block of the right size, collecting first if there is none.
+     */
+    private long refillStorage(ThreadLocalAllocationBuffer tlab, int size) {
+        long region = arena.allocateRegion(Math.max(ObjectArena.REGION_SIZE, size));
+        if (region >= 0) {
+            tlab.refillStorage(region, region + Math.max(ObjectArena.REGION_SIZE, size));
+            return tlab.allocateStorage(size);
+        }
+        long block = arena.allocateFree(size);
+        if (block < 0) {
+            block = Scheduler.getInstance().stopTheWorld("GC", () -> {
+                long free = arena.allocateFree(size);
+                if (free < 0) {
+                    collect("Arena exhausted");
+                    free = arena.allocateFree(size);
+                }
+                return free;
+            });
+        }
+        if (block < 0) {
+            throw new OutOfMemoryError("TinyJVM object arena exhausted (" + arena.getCommittedBytes() + " bytes)");
+        }
+        return block;
+    }
+
+    private void registerTlab(ThreadLocalAllocationBuffer tlab) {
+        synchronized (tlabs) {
+            tlabs.add(tlab);
+        }
+    }
+
+    /**
+     * Registers a thread whose stack should be scanned for roots. Called by the JVMThread constructor.
+     * Terminated threads are dropped automatically at the next collection.
+     *
+     * @param thread The thread to register.
+     */
+    public void registerThread(JVMThread thread) {
+        synchronized (threads) {
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Reports all roots: the reference slots of every live thread's frames and all static fields.
+     * Objects with held locks are found by the collector itself.
+     */
+    private void visitRoots(IntUnaryOperator visitor) {
+        synchronized (threads) {
+            Iterator<JVMThread> it = threads.iterator();
+            while (it.hasNext()) {
+                JVMThread thread = it.next();
+                if (thread.getState() == JVMThread.ThreadState.TERMINATED) {
+                    it.remove();
+                } else {
+                    thread.getStack().visitReferences(visitor);
+                }
+            }
+        }
+        for (Map.Entry<String, Integer> field : staticFields.entrySet()) {
+            field.setValue(visitor.applyAsInt(field.getValue()));
+        }
+    }
+
+    /**
+     * Runs a full garbage collection now.
+     *
+     * @return The number of objects reclaimed.
+     */
+    public long collect() {
+        return Scheduler.getInstance().stopTheWorld("GC", () -> collect("Explicit"));
+    }
+
+    private long collect(String cause) {
+        bytesSinceLastGc.set(0);
+        if (concurrent != null) {
+            concurrent.awaitCycle(); // A full collection must not overlap a concurrent cycle
+        }
+        if (generational == null) {
+            long freed = collector.collect(cause);
+            ObjectSynchronizer.deflateIdleMonitors();
+            return freed;
+        }
+        // Empty the nursery first so the old-space collector sees every object
+        long freed = collectYoung(cause);
+        return freed + collectOld(cause);
+    }
+
+    /**
+     * @return true if a new cycle was started, false if one was already running.
+     */
+    private boolean startConcurrentCycle(String cause) {
+        bytesSinceLastGc.set(0);
+        if (concurrent.isCycleActive()) {
+            return false;
+        }
+        synchronized (tlabs) {
+            for (ThreadLocalAllocationBuffer tlab : tlabs) {
+                tlab.releaseRemaining(handles); // From now on every TLAB allocates above TAMS
+            }
+        }
+        ObjectSynchronizer.deflateIdleMonitors();
+        concurrent.startCycle(cause);
+        return true;
+    }
+
+    /**
+     * Runs collector work that needs the guests stopped, currently the remark pause of a
+     * concurrent cycle. The world is only stopped if there is such work.
+     */
+    public void runPendingCollectorWork() {
+        if (concurrent != null && concurrent.isRemarkPending()) {
+            Scheduler.getInstance().stopTheWorld("Remark", () -> {
+                concurrent.remark(); // Does nothing if another thread got here first
+                return null;
+            });
+        }
+    }
+
+    private long collectYoung(String cause) {
+        long freed = generational.collectMinor(cause);
+        ObjectSynchronizer.deflateIdleMonitors();
+        synchronized (tlabs) {
+            for (ThreadLocalAllocationBuffer tlab : tlabs) {
+                tlab.retire(); // Every TLAB pointed into the nursery that was just reset
+            }
+        }
+        if (generational.getPromotedBytesSinceMajor() >= gcThresholdBytes) {
+            freed += collectOld("Promotion threshold");
+        }
+        return freed;
+    }
+
+    private long collectOld(String cause) {
+        generational.resetPromotedBytes();
+        return collector.collect(cause);
+    }
+
+    /**
+     * Stores a reference into a field of a heap object.
+     *
+     * @param holder The object whose field is written.
+     * @param slot   Index of the reference field.
+     * @param value  The object to store, or null.
+     */
+    public void storeReference(JVMObject holder, int slot, JVMObject value) {
+        int handle = value != null ? value.getAddress() : 0;
+        if (concurrent != null) {
+            concurrent.preWriteBarrier(holder.getReference(slot));
+        }
+        holder.setReference(slot, handle);
+        if (generational != null) {
+            generational.writeBarrier(holder.getAddress(), handle);
+        }
+    }
+
+    /**
+     * Loads a reference from a field of a heap object.
+     *
+     * @param holder The object whose field is read.
+     * @param slot   Index of the reference field.
+     * @return The referenced object, or null.
+     */
+    public JVMObject loadReference(JVMObject holder, int slot) {
+        return getObjectByAddress(holder.getReference(slot));
+    }
+
+    /**
+     * Sets a static field. Static fields are GC roots, so this is also how VM or host code
+     * keeps an object alive that no guest frame references.
+     *
+     * @param name  Fully qualified field name, e.g. "com/example/Foo.bar".
+     * @param value The object to store, or null to clear the field.
+     */
+    public void putStatic(String name, JVMObject value) {
+        if (value == null) {
+            staticFields.remove(name);
+        } else {
+            staticFields.put(name, value.getAddress());
+        }
+    }
+
+    /**
+     * Reads a static field.
+     *
+     * @param name Fully qualified field name.
+     * @return The stored object, or null if the field is unset.
+     */
+    public JVMObject getStatic(String name) {
+        Integer handle = staticFields.get(name);
+        return handle != null ? getObjectByAddress(handle) : null;
+    }
+
     /**
      * Retrieves a JVMObject from the heap using its address (ID).
      *
@@ -53,19 +463,21 @@ public class JVMHeap {
      * @return The JVMObject stored at the given address, or null if the address is invalid.
      */
     public JVMObject getObjectByAddress(int address) {
-        return objectStore.get(address);
+        if (generational != null && GenerationalCollector.isYoung(address)) {
+            return generational.getYoung(address);
+        }
+        return handles.get(address);
     }
 
     /**
-     * Gets all objects allocated by a specific thread.
+     * Gets the number of objects allocated by a specific thread.
      *
-     * @param thread The thread whose allocated objects are to be retrieved.
-     * @return A list of JVMObjects allocated by the thread, or an empty list if none.
+     * @param thread The thread whose allocation count is to be retrieved.
+     * @return The number of objects the thread has allocated, or 0 if none.
      */
-    public List<JVMObject> getObjectsAllocatedByThread(JVMThread thread) {
-        synchronized (allocationsByThread) { // Synchronize access
-            return new ArrayList<>(allocationsByThread.getOrDefault(thread, new ArrayList<>()));
-        }
+    public long getAllocationCount(JVMThread thread) {
+        ThreadLocalAllocationBuffer tlab = thread != null ? thread.getTlab() : sharedTlab;
+        return tlab != null ? tlab.getAllocatedObjects() : 0;
     }
 
     /**
@@ -73,7 +485,35 @@ public class JVMHeap {
      * @return Total number of objects.
      */
     public int getTotalObjectsInHeap() {
-        return objectStore.size();
+        long total = 0;
+        synchronized (tlabs) {
+            for (ThreadLocalAllocationBuffer tlab : tlabs) {
+                total += tlab.getAllocatedObjects();
+            }
+        }
+        long freed = collector.getStats().getTotalFreed();
+        if (generational != null) {
+            freed += generational.getStats().getTotalFreed();
+        }
+        if (concurrent != null) {
+            freed += concurrent.getCycleStats().getTotalFreed();
+        }
+        return (int) (total - freed);
+    }
+
+    /**
+     * Returns the number of bytes allocated on this heap so far, summed over every TLAB.
+     * TLAB counters are written by their own thread only, so a concurrent read may lag slightly.
+     * @return Bytes allocated since the heap was created.
+     */
+    public long getAllocatedBytes() {
+        long total = 0;
+        synchronized (tlabs) {
+            for (ThreadLocalAllocationBuffer tlab : tlabs) {
+                total += tlab.getAllocatedBytes();
+            }
+        }
+        return total;
     }
 
     /**
@@ -81,8 +521,91 @@ public class JVMHeap {
      * @return Number of threads with allocations.
      */
     public int getThreadAllocationCount() {
-        synchronized (allocationsByThread) {
-            return allocationsByThread.size();
+        int count = 0;
+        synchronized (tlabs) {
+            for (ThreadLocalAllocationBuffer tlab : tlabs) {
+                if (tlab.getAllocatedObjects() > 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a snapshot of the per-thread allocation buffers, for reporting.
+     * @return A copy of the list of TLABs handed out by this heap.
+     */
+    public List<ThreadLocalAllocationBuffer> getTlabs() {
+        synchronized (tlabs) {
+            return new ArrayList<>(tlabs);
+        }
+    }
+
+    /**
+     * Sets how many bytes may be allocated between two collections.
+     * @param bytes The allocation volume that triggers a collection.
+     */
+    public void setGcThreshold(long bytes) {
+        this.gcThresholdBytes = bytes > 0 ? bytes : DEFAULT_GC_THRESHOLD_BYTES;
+    }
+
+    /**
+     * @return Pause-time statistics of the full (mark-sweep) collector.
+     */
+    public GcStats getGcStats() {
+        return collector.getStats();
+    }
+
+    /**
+     * @return Pause-time statistics of minor collections, or null if the heap is not generational.
+     */
+    public GcStats getMinorGcStats() {
+        return generational != null ? generational.getStats() : null;
+    }
+
+    /**
+     * @return Initial-mark pause statistics, or null if the heap does not mark concurrently.
+     */
+    public GcStats getInitialMarkStats() {
+        return concurrent != null ? concurrent.getInitialMarkStats() : null;
+    }
+
+    /**
+     * @return Remark pause statistics, or null if the heap does not mark concurrently.
+     */
+    public GcStats getRemarkStats() {
+        return concurrent != null ? concurrent.getRemarkStats() : null;
+    }
+
+    /**
+     * @return Whole-cycle statistics (duration, freed, live), or null if the heap does not mark concurrently.
+     */
+    public GcStats getConcurrentCycleStats() {
+        return concurrent != null ? concurrent.getCycleStats() : null;
+    }
+
+    /**
+     * @return true while a concurrent collection cycle is in progress.
+     */
+    public boolean isConcurrentCycleActive() {
+        return concurrent != null && concurrent.isCycleActive();
+    }
+
+    /**
+     * @return The off-heap store holding the fields of this heap's objects.
+     */
+    public ObjectArena getArena() {
+        return arena;
+    }
+
+    /**
+     * @return The collector configuration of this heap.
+     */
+    public GcMode getGcMode() {
+        if (generational != null) {
+            return GcMode.GENERATIONAL;
         }
+        return concurrent != null ? GcMode.CONCURRENT_MARK_SWEEP : GcMode.MARK_SWEEP;
     }
 }
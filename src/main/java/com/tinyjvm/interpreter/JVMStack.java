@@ -1,6 +1,11 @@
 package com.tinyjvm.interpreter;
 
+import com.tinyjvm.jfr.GuestEvents;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Stack;
+import java.util.function.IntUnaryOperator;
 // Assuming JFrame class is defined in this package or will be.
 // For example: public class JFrame { /* ... */ }
 
@@ -11,6 +16,7 @@ import java.util.Stack;
 public class JVMStack {
     private Stack<com.tinyjvm.interpreter.JFrame> frameStack;
     private int maxSize; // Not strictly enforced by java.util.Stack, but for conceptual alignment
+    final ExecutionCounters counters = ExecutionCounters.register(); // This thread's execution counts
 
     /**
      * Constructs a new JVMStack with a conceptual maximum size.
@@ -29,6 +35,9 @@ public class JVMStack {
      */
     public void push(com.tinyjvm.interpreter.JFrame frame) {
         // In a real JVM, you might check against maxSize here and throw StackOverflowError
+        frame.methodCounter = counters.methodCounter(frame);
+        frame.methodCounter.invocations++;
+        frame.flightEvent = GuestEvents.methodEntered();
         this.frameStack.push(frame);
     }
 
@@ -39,6 +48,11 @@ public class JVMStack {
      * @throws java.util.EmptyStackException if the stack is empty.
      */
     public com.tinyjvm.interpreter.JFrame pop() {
+        com.tinyjvm.interpreter.JFrame frame = this.frameStack.peek();
+        if (frame.flightEvent != null) {
+            GuestEvents.methodExited(frame.flightEvent, frame, this);
+            frame.flightEvent = null;
+        }
         return this.frameStack.pop();
     }
 
@@ -69,4 +83,33 @@ public class JVMStack {
     public int size() {
         return this.frameStack.size();
     }
+
+    /**
+     * @return The execution counters of the thread owning this stack.
+     */
+    public ExecutionCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Returns a copy of the frames, the current frame first, e.g. for a stack trace.
+     *
+     * @return The frames, innermost first.
+     */
+    public List<com.tinyjvm.interpreter.JFrame> getFrames() {
+        List<com.tinyjvm.interpreter.JFrame> frames = new ArrayList<>(this.frameStack);
+        Collections.reverse(frames);
+        return frames;
+    }
+
+    /**
+     * Reports every reference held in any frame of this stack. Used for GC root scanning.
+     *
+     * @param visitor Receives each heap handle and returns the handle to keep in the slot.
+     */
+    public void visitReferences(IntUnaryOperator visitor) {
+        for (com.tinyjvm.interpreter.JFrame frame : this.frameStack) {
+            frame.visitReferences(visitor);
+        }
+    }
 }
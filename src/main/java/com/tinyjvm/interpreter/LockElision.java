@@ -0,0 +1,207 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.utils.Logger;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which monitorenter and monitorexit instructions of a method the interpreter may skip.
+ * <p>
+ * Two kinds of monitor operations are dropped:
+ * <ul>
+ *   <li><b>Thread-local locks</b>: operations on objects that {@link EscapeAnalysis} proves never leave
+ *       the allocating frame. No other thread can ever see such an object, so its lock is never contended
+ *       and taking it has no effect. An allocation site counts only if every monitor operation that may
+ *       see its objects can be dropped, so an object is either always or never locked.</li>
+ *   <li><b>Coarsened regions</b>: a monitorexit followed, within a few straight-line instructions, by a
+ *       monitorenter on the same local variable. Both are dropped, merging the two regions into one.</li>
+ * </ul>
+ * The decisions are made once per method, from the {@link MethodAnalysis} shared with
+ * {@link ScalarReplacement}. {@code -Dtinyjvm.monitor.elide=false} turns them off.
+ */
+public final class LockElision {
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("tinyjvm.monitor.elide"));
+    private static final int COARSEN_WINDOW = 8; // Instructions allowed between the merged regions
+    private static final LockElision NONE = new LockElision(new BitSet(), 0, 0);
+    private static final LongAdder elided = new LongAdder();
+
+    private final BitSet elidedPcs;
+    private final int threadLocalCount;
+    private final int coarsenedCount;
+
+    private LockElision(BitSet elidedPcs, int threadLocalCount, int coarsenedCount) {
+        this.elidedPcs = elidedPcs;
+        this.threadLocalCount = threadLocalCount;
+        this.coarsenedCount = coarsenedCount;
+    }
+
+    /**
+     * Returns the elision decisions for the method a frame is executing, analyzing it on first use.
+     *
+     * @param frame A frame of the method.
+     * @return The decisions; none if elision is disabled.
+     */
+    public static LockElision forFrame(JFrame frame) {
+        return ENABLED ? MethodAnalysis.forFrame(frame).getLockElision() : NONE;
+    }
+
+    /**
+     * @param code   The method's bytecode.
+     * @param escape The method's escape analysis.
+     * @return The elision decisions; none if elision is disabled.
+     */
+    static LockElision decide(byte[] code, EscapeAnalysis escape) {
+        if (!ENABLED || !escape.isComplete()) {
+            return NONE;
+        }
+        BitSet elidedPcs = new BitSet();
+
+        // Sites that escape, or share a monitor instruction with an object that does, keep their locks
+        long locked = escape.getEscapingSites();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int pc = 0; pc < code.length; pc++) {
+                long sites = escape.getReceiverSites(pc);
+                if (isMonitorOp(code, pc, escape) && (sites & locked) != 0 && (sites | locked) != locked) {
+                    locked |= sites;
+                    changed = true;
+                }
+            }
+        }
+        int threadLocal = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            long sites = escape.getReceiverSites(pc);
+            if (isMonitorOp(code, pc, escape) && sites != 0 && (sites & locked) == 0) {
+                elidedPcs.set(pc);
+                threadLocal++;
+            }
+        }
+
+        int coarsened = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            if (Byte.toUnsignedInt(code[pc]) == 0xc3 && escape.isReachable(pc) && !elidedPcs.get(pc)) {
+                int enter = findCoarsenableEnter(code, pc, escape);
+                if (enter >= 0 && !elidedPcs.get(enter)) {
+                    elidedPcs.set(pc);
+                    elidedPcs.set(enter);
+                    coarsened += 2;
+                }
+            }
+        }
+        if (threadLocal + coarsened == 0) {
+            return NONE;
+        }
+        Logger.debug("LockElision: Dropping {} thread-local and {} coarsened monitor operations in a method of {} bytes.",
+                threadLocal, coarsened, code.length);
+        return new LockElision(elidedPcs, threadLocal, coarsened);
+    }
+
+    private static boolean isMonitorOp(byte[] code, int pc, EscapeAnalysis escape) {
+        int op = Byte.toUnsignedInt(code[pc]);
+        return (op == 0xc2 || op == 0xc3) && escape.isReachable(pc);
+    }
+
+    /**
+     * Finds a monitorenter that always runs right after the monitorexit at {@code exitPc}, on the object
+     * in the same unchanged local variable, with only straight-line code in between.
+     *
+     * @return Address of the monitorenter, or -1 if there is none.
+     */
+    private static int findCoarsenableEnter(byte[] code, int exitPc, EscapeAnalysis escape) {
+        int local = -1;
+        for (int pc = 0; pc < exitPc; pc += EscapeAnalysis.length(Byte.toUnsignedInt(code[pc]))) {
+            if (pc + EscapeAnalysis.length(Byte.toUnsignedInt(code[pc])) == exitPc) {
+                local = loadedLocal(code, pc);
+            }
+        }
+        if (local < 0 || escape.isJumpTarget(exitPc)) {
+            return -1; // The exit's operand does not always come from a local variable load
+        }
+        int pc = exitPc + 1;
+        for (int i = 0; i <= COARSEN_WINDOW && pc < code.length; i++) {
+            int op = Byte.toUnsignedInt(code[pc]);
+            int length = EscapeAnalysis.length(op);
+            if (escape.isJumpTarget(pc) || !escape.isReachable(pc)) {
+                return -1;
+            }
+            if (loadedLocal(code, pc) == local && pc + length < code.length
+                    && Byte.toUnsignedInt(code[pc + length]) == 0xc2 && !escape.isJumpTarget(pc + length)) {
+                return pc + length;
+            }
+            if (!isStraightLine(op) || storedLocal(code, pc) == local) {
+                return -1;
+            }
+            pc += length;
+        }
+        return -1;
+    }
+
+    /** Instructions that may sit between two coarsened regions: no control flow, locking or yielding. */
+    private static boolean isStraightLine(int op) {
+        return !(op >= 0x99 && op <= 0xa7) && op != 0xac && op != 0xb1 && op != 0xc2 && op != 0xc3 && op != 0xff;
+    }
+
+    private static int loadedLocal(byte[] code, int pc) {
+        int op = Byte.toUnsignedInt(code[pc]);
+        if (op >= 0x2a && op <= 0x2d) {
+            return op - 0x2a;
+        }
+        return op == 0x19 ? Byte.toUnsignedInt(code[pc + 1]) : -1;
+    }
+
+    private static int storedLocal(byte[] code, int pc) {
+        int op = Byte.toUnsignedInt(code[pc]);
+        if (op >= 0x4b && op <= 0x4e) {
+            return op - 0x4b;
+        }
+        if (op >= 0x3b && op <= 0x3e) {
+            return op - 0x3b;
+        }
+        return op == 0x3a || op == 0x36 ? Byte.toUnsignedInt(code[pc + 1]) : -1;
+    }
+
+    /**
+     * @param pc Address of a monitorenter or monitorexit.
+     * @return true if the instruction is dropped.
+     */
+    public boolean isElided(int pc) {
+        return elidedPcs.get(pc);
+    }
+
+    /**
+     * Checks whether a monitor instruction is dropped, and counts it if so.
+     *
+     * @param pc Address of a monitorenter or monitorexit.
+     * @return true if the interpreter should skip the lock operation.
+     */
+    public boolean elide(int pc) {
+        if (!elidedPcs.get(pc)) {
+            return false;
+        }
+        elided.increment();
+        return true;
+    }
+
+    /**
+     * @return The number of monitor instructions in this method dropped because their object is thread-local.
+     */
+    public int getThreadLocalCount() {
+        return threadLocalCount;
+    }
+
+    /**
+     * @return The number of monitor instructions in this method dropped by merging adjacent regions.
+     */
+    public int getCoarsenedCount() {
+        return coarsenedCount;
+    }
+
+    /**
+     * @return The number of monitor operations the interpreter skipped since startup.
+     */
+    public static long getElidedCount() {
+        return elided.sum();
+    }
+}
@@ -0,0 +1,90 @@
+package com.tinyjvm.interpreter;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The optimization decisions for one method: a single {@link EscapeAnalysis} run from which both
+ * the {@link LockElision} and the {@link ScalarReplacement} decisions are derived.
+ * <p>
+ * Results are cached by the method's code array, compared by identity and held weakly, so a
+ * method is analyzed once no matter which decision its frames ask for first. Lookups do not lock;
+ * two threads reaching a new method at the same time may both analyze it, and one result wins.
+ */
+final class MethodAnalysis {
+    private static final ConcurrentMap<CodeKey, MethodAnalysis> cache = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<byte[]> collected = new ReferenceQueue<>();
+
+    private final LockElision lockElision;
+    private final ScalarReplacement scalarReplacement;
+
+    private MethodAnalysis(JFrame frame) {
+        EscapeAnalysis escape = EscapeAnalysis.analyze(frame);
+        this.lockElision = LockElision.decide(frame.code, escape);
+        this.scalarReplacement = ScalarReplacement.decide(frame.code, escape, lockElision);
+    }
+
+    /**
+     * Returns the analysis of the method a frame is executing, running it on first use.
+     *
+     * @param frame A frame of the method.
+     * @return The shared analysis.
+     */
+    static MethodAnalysis forFrame(JFrame frame) {
+        MethodAnalysis analysis = cache.get(new CodeKey(frame.code, null));
+        if (analysis == null) {
+            expungeCollected();
+            analysis = new MethodAnalysis(frame);
+            MethodAnalysis raced = cache.putIfAbsent(new CodeKey(frame.code, collected), analysis);
+            if (raced != null) {
+                analysis = raced;
+            }
+        }
+        return analysis;
+    }
+
+    private static void expungeCollected() {
+        Reference<? extends byte[]> key;
+        while ((key = collected.poll()) != null) {
+            cache.remove(key);
+        }
+    }
+
+    LockElision getLockElision() {
+        return lockElision;
+    }
+
+    ScalarReplacement getScalarReplacement() {
+        return scalarReplacement;
+    }
+
+    /** A weak, identity-compared reference to a code array; a cleared key only equals itself. */
+    private static final class CodeKey extends WeakReference<byte[]> {
+        private final int hash;
+
+        CodeKey(byte[] code, ReferenceQueue<byte[]> queue) {
+            super(code, queue);
+            this.hash = System.identityHashCode(code);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CodeKey)) {
+                return false;
+            }
+            byte[] code = get();
+            return code != null && code == ((CodeKey) o).get();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.utils.Logger;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which allocation sites of a method are scalar-replaced: their objects are kept in the
+ * frame as {@link VirtualObject}s, field by field, and never touch the {@link JVMHeap}.
+ * <p>
+ * A site qualifies if {@link EscapeAnalysis} proves its objects never escape the method, and
+ * every monitor instruction that may see them is dropped by {@link LockElision}; a virtual object
+ * cannot be locked. Should a virtual object nevertheless need to become a heap object, e.g. because
+ * host code inspects the frame, the frame is {@link JFrame#deoptimize() deoptimized}.
+ * <p>
+ * The decisions are made once per method, from the {@link MethodAnalysis} shared with {@link LockElision}.
+ * {@code -Dtinyjvm.scalarReplacement=false} turns scalar replacement off.
+ */
+public final class ScalarReplacement {
+    /** Virtual objects one frame may hold at a time; further allocations go to the heap. */
+    static final int MAX_VIRTUAL_OBJECTS = 16;
+    static final ScalarReplacement NONE = new ScalarReplacement(new BitSet());
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("tinyjvm.scalarReplacement"));
+    private static final LongAdder replaced = new LongAdder();
+    private static final LongAdder deoptimizations = new LongAdder();
+    private static final LongAdder materialized = new LongAdder();
+
+    private final BitSet virtualSites; // Addresses of the new instructions whose objects stay in the frame
+
+    private ScalarReplacement(BitSet virtualSites) {
+        this.virtualSites = virtualSites;
+    }
+
+    /**
+     * Returns the scalar replacement decisions for the method a frame is executing, analyzing it on first use.
+     *
+     * @param frame A frame of the method.
+     * @return The decisions; none if scalar replacement is disabled.
+     */
+    public static ScalarReplacement forFrame(JFrame frame) {
+        return ENABLED ? MethodAnalysis.forFrame(frame).getScalarReplacement() : NONE;
+    }
+
+    /**
+     * @param code    The method's bytecode.
+     * @param escape  The method's escape analysis.
+     * @param elision The method's lock elision decisions.
+     * @return The scalar replacement decisions; none if scalar replacement is disabled.
+     */
+    static ScalarReplacement decide(byte[] code, EscapeAnalysis escape, LockElision elision) {
+        if (!ENABLED || !escape.isComplete()) {
+            return NONE;
+        }
+        long excluded = escape.getEscapingSites();
+        for (int pc = 0; pc < code.length; pc++) {
+            int op = Byte.toUnsignedInt(code[pc]);
+            if ((op == 0xc2 || op == 0xc3) && escape.isReachable(pc) && !elision.isElided(pc)) {
+                excluded |= escape.getReceiverSites(pc); // These objects really are locked
+            }
+        }
+        BitSet virtualSites = new BitSet();
+        for (int site = 0; site < escape.getSiteCount(); site++) {
+            if ((excluded & (1L << site)) == 0) {
+                virtualSites.set(escape.getSitePc(site));
+            }
+        }
+        if (virtualSites.isEmpty()) {
+            return NONE;
+        }
+        Logger.debug("ScalarReplacement: {} of {} allocation sites stay off the heap in a method of {} bytes.",
+                virtualSites.cardinality(), escape.getSiteCount(), code.length);
+        return new ScalarReplacement(virtualSites);
+    }
+
+    /**
+     * @param pc Address of a {@code new} instruction.
+     * @return true if its objects are kept in the frame instead of the heap.
+     */
+    public boolean isVirtual(int pc) {
+        return virtualSites.get(pc);
+    }
+
+    /**
+     * @return The number of allocation sites of this method that are scalar-replaced.
+     */
+    public int getVirtualSiteCount() {
+        return virtualSites.cardinality();
+    }
+
+    static void recordReplaced() {
+        replaced.increment();
+    }
+
+    static void recordDeoptimization(int objects) {
+        deoptimizations.increment();
+        materialized.add(objects);
+    }
+
+    /**
+     * @return The number of allocations kept off the heap since startup.
+     */
+    public static long getReplacedCount() {
+        return replaced.sum();
+    }
+
+    /**
+     * @return The number of frames deoptimized since startup.
+     */
+    public static long getDeoptimizationCount() {
+        return deoptimizations.sum();
+    }
+
+    /**
+     * @return The number of virtual objects moved to the heap by deoptimization since startup.
+     */
+    public static long getMaterializedCount() {
+        return materialized.sum();
+    }
+}
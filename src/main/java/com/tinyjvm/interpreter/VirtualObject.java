@@ -0,0 +1,106 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.threads.JVMThread;
+
+import java.util.Arrays;
+
+/**
+ * A scalar-replaced object: an instance that escape analysis proved never leaves its frame,
+ * so it is kept in the frame instead of the heap. Each primitive field is a separate scalar
+ * (indexed by its layout offset, so no lookup is needed), and each reference field a handle.
+ * <p>
+ * If the frame is deoptimized the object is {@link #materialize materialized}: allocated on the
+ * heap with the current field values.
+ */
+final class VirtualObject {
+    final ClassLayout layout;
+    final int sitePc; // Address of the new instruction that created it
+    private final long[] scalars; // Primitive fields by offset; sparse, but objects are small
+    private final int[] references; // Reference fields by oop map slot
+    private JVMObject materialized; // The heap copy once the frame was deoptimized
+
+    VirtualObject(ClassLayout layout, int sitePc) {
+        this.layout = layout;
+        this.sitePc = sitePc;
+        this.scalars = new long[layout.getInstanceSize()];
+        this.references = new int[layout.getReferenceCount()];
+    }
+
+    /** Resets all fields to zero and null, for reuse by a later execution of the same site. */
+    void reset() {
+        Arrays.fill(scalars, 0);
+        Arrays.fill(references, 0);
+    }
+
+    long get(ClassLayout.Field field) {
+        return scalars[field.getOffset()];
+    }
+
+    /** Stores a primitive field, narrowed to the field's kind as a heap store would be. */
+    void put(ClassLayout.Field field, long value) {
+        switch (field.getKind()) {
+            case BYTE:
+            case BOOLEAN: value = (byte) value; break;
+            case CHAR: value = (char) value; break;
+            case SHORT: value = (short) value; break;
+            case INT:
+            case FLOAT: value = (int) value; break;
+            default: break;
+        }
+        scalars[field.getOffset()] = value;
+    }
+
+    int getReference(int slot) {
+        return references[slot];
+    }
+
+    void setReference(int slot, int handle) {
+        references[slot] = handle;
+    }
+
+    int getReferenceCount() {
+        return references.length;
+    }
+
+    /**
+     * Allocates the object on the heap with the current field values, once.
+     *
+     * @param heap   The heap to allocate on.
+     * @param thread The thread owning the frame.
+     * @return The heap object.
+     */
+    JVMObject materialize(JVMHeap heap, JVMThread thread) {
+        if (materialized != null) {
+            return materialized;
+        }
+        JVMObject obj = heap.allocate(thread, layout);
+        for (ClassLayout.Field field : layout.getFields()) {
+            int offset = field.getOffset();
+            long value = scalars[offset];
+            switch (field.getKind()) {
+                case BYTE:
+                case BOOLEAN: obj.putByte(offset, (byte) value); break;
+                case CHAR:
+                case SHORT: obj.putShort(offset, (short) value); break;
+                case INT:
+                case FLOAT: obj.putInt(offset, (int) value); break;
+                case LONG:
+                case DOUBLE: obj.putLong(offset, value); break;
+                case REFERENCE:
+                    heap.storeReference(obj, field.getReferenceSlot(), heap.getObjectByAddress(references[field.getReferenceSlot()]));
+                    break;
+            }
+        }
+        materialized = obj;
+        return obj;
+    }
+
+    /**
+     * @return The heap copy, or null if the object has not been materialized.
+     */
+    JVMObject getMaterialized() {
+        return materialized;
+    }
+}
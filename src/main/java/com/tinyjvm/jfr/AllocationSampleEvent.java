@@ -0,0 +1,39 @@
+package com.tinyjvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A sampled guest heap allocation. Each sample stands for the bytes allocated on its host thread
+ * since the previous one, given as its weight.
+ */
+@Name("tinyjvm.AllocationSample")
+@Label("Guest Allocation Sample")
+@Category({"tinyJVM", "Heap"})
+@Description("A guest object allocation, taken about every tinyjvm.jfr.allocationSampleBytes bytes")
+@StackTrace(false)
+final class AllocationSampleEvent extends jdk.jfr.Event {
+    @Label("Class")
+    String className;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Weight")
+    @Description("Bytes allocated on this host thread since the previous sample, this object included")
+    @DataAmount
+    long weight;
+
+    @Label("Guest Thread")
+    @Description("The allocating guest thread, -1 for VM-internal allocations")
+    int guestThread;
+
+    @Label("Guest Stack")
+    @Description("The guest frames of the allocating thread, innermost first")
+    String guestStack;
+}
@@ -0,0 +1,26 @@
+package com.tinyjvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A host thread switching from one guest thread to another between quanta. Off by default.
+ */
+@Name("tinyjvm.ContextSwitch")
+@Label("Guest Context Switch")
+@Category({"tinyJVM", "Scheduler"})
+@Description("The event's host thread starting a quantum of a different guest thread than its last one")
+@StackTrace(false)
+@Enabled(false)
+final class ContextSwitchEvent extends jdk.jfr.Event {
+    @Label("From Guest Thread")
+    @Description("The guest thread the host thread ran last, -1 if none")
+    int fromThread;
+
+    @Label("To Guest Thread")
+    int toThread;
+}
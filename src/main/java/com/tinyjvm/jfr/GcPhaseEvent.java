@@ -0,0 +1,26 @@
+package com.tinyjvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A guest heap collection or collection phase, as recorded in its {@code GcStats}.
+ */
+@Name("tinyjvm.GcPhase")
+@Label("Guest GC Phase")
+@Category({"tinyJVM", "Heap"})
+@Description("A collection or collection phase of the guest heap")
+@StackTrace(false)
+final class GcPhaseEvent extends jdk.jfr.Event {
+    @Label("Name")
+    String name;
+
+    @Label("Freed Objects")
+    long freed;
+
+    @Label("Live Objects")
+    long live;
+}
@@ -0,0 +1,129 @@
+package com.tinyjvm.jfr;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMStack;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.threads.JVMThread;
+
+/**
+ * Emits JDK Flight Recorder events for what the guest does, so a recording of the host shows
+ * guest methods, quanta and context switches, monitor blocking, allocation samples and GC phases
+ * next to the host's own GC and CPU events. Start a recording as usual ({@code -XX:StartFlightRecording}
+ * or {@code jcmd JFR.start}); the events are in the "tinyJVM" category, named {@code tinyjvm.*}.
+ * Method, quantum and context switch events are off by default, since there is one every few
+ * instructions; enable them in the recording's settings.
+ * <p>
+ * JFR's own stack traces are those of the host thread, which is always somewhere in the
+ * interpreter. Events therefore carry the guest's frames as a {@code guestStack} field instead,
+ * innermost first, named by {@link JFrame#getMethodName()}. It is only built for events that are
+ * committed.
+ * <p>
+ * Callers keep the token returned when a duration event begins and hand it back when it ends;
+ * it is null if the event is not being recorded. Without a recording each hook costs a flag read,
+ * and with {@code -Dtinyjvm.jfr=false}, or on a host without JFR, nothing but a static final check.
+ */
+public final class GuestEvents {
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("tinyjvm.jfr")) && isJfrPresent();
+
+    private GuestEvents() {
+    }
+
+    private static boolean isJfrPresent() {
+        try {
+            Class.forName("jdk.jfr.Event", false, GuestEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if events can be emitted at all, whether or not a recording is running.
+     */
+    public static boolean isAvailable() {
+        return ENABLED;
+    }
+
+    /**
+     * Sets roughly how many bytes each host thread allocates between two allocation samples.
+     * Defaults to {@code -Dtinyjvm.jfr.allocationSampleBytes}, or 64 KiB.
+     */
+    public static void setAllocationSampleBytes(long bytes) {
+        if (ENABLED) {
+            JfrSupport.setAllocationSampleBytes(bytes);
+        }
+    }
+
+    /** Called when a frame is pushed; returns the token for {@link #methodExited}. */
+    public static Object methodEntered() {
+        return ENABLED ? JfrSupport.beginMethod() : null;
+    }
+
+    /** Called with the frame still on top of its stack, just before it is popped. */
+    public static void methodExited(Object token, JFrame frame, JVMStack stack) {
+        if (token != null) {
+            JfrSupport.endMethod(token, frame, stack);
+        }
+    }
+
+    /**
+     * Called when a host thread runs a quantum of a different guest thread than its previous one.
+     *
+     * @param from The guest of the host thread's previous quantum, or null for its first.
+     * @param to   The guest about to run.
+     */
+    public static void contextSwitched(JVMThread from, JVMThread to) {
+        if (ENABLED) {
+            JfrSupport.contextSwitch(from, to);
+        }
+    }
+
+    /** Called when a host thread starts running a quantum of a guest thread; returns the token for {@link #quantumEnded}. */
+    public static Object quantumStarted(JVMThread thread) {
+        return ENABLED ? JfrSupport.beginQuantum(thread) : null;
+    }
+
+    public static void quantumEnded(Object token, JVMThread thread) {
+        if (token != null) {
+            JfrSupport.endQuantum(token, thread);
+        }
+    }
+
+    /**
+     * Called when a thread joins a monitor's entry queue; returns the token for {@link #monitorAcquired}.
+     *
+     * @param monitor The monitor, only used for its identity.
+     * @param owner   Its owner at the time, or null.
+     */
+    public static Object monitorBlocked(Object monitor, JVMThread owner) {
+        return ENABLED ? JfrSupport.beginMonitorBlocked(monitor, owner) : null;
+    }
+
+    public static void monitorAcquired(Object token, JVMThread thread) {
+        if (token != null) {
+            JfrSupport.endMonitorBlocked(token, thread);
+        }
+    }
+
+    /**
+     * Called for every heap allocation; records a sample now and then.
+     *
+     * @param thread The allocating thread, or null for VM-internal allocations.
+     */
+    public static void allocated(JVMThread thread, ClassLayout layout) {
+        if (ENABLED) {
+            JfrSupport.allocated(thread, layout);
+        }
+    }
+
+    /** Called when a collection or collection phase starts; returns the token for {@link #gcPhaseEnded}. */
+    public static Object gcPhaseStarted() {
+        return ENABLED ? JfrSupport.beginGcPhase() : null;
+    }
+
+    public static void gcPhaseEnded(Object token, String name, long freed, long live) {
+        if (token != null) {
+            JfrSupport.endGcPhase(token, name, freed, live);
+        }
+    }
+}
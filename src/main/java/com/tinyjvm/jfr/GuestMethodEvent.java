@@ -0,0 +1,29 @@
+package com.tinyjvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A guest method invocation, from the push of its frame to its pop. Off by default: there is one per call.
+ */
+@Name("tinyjvm.GuestMethod")
+@Label("Guest Method")
+@Category({"tinyJVM", "Interpreter"})
+@Description("Execution of a guest method, from frame push to frame pop")
+@StackTrace(false)
+@Enabled(false)
+final class GuestMethodEvent extends jdk.jfr.Event {
+    @Label("Method")
+    String method;
+
+    @Label("Guest Thread")
+    int guestThread;
+
+    @Label("Guest Stack")
+    @Description("The guest frames when the method returned, innermost first")
+    String guestStack;
+}
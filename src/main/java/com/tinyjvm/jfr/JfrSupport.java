@@ -0,0 +1,167 @@
+package com.tinyjvm.jfr;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMStack;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.Scheduler;
+import jdk.jfr.EventType;
+
+import java.util.List;
+
+/**
+ * The JFR side of {@link GuestEvents}, kept apart so that the jdk.jfr classes are only loaded
+ * when events are available.
+ */
+final class JfrSupport {
+    private static final EventType METHOD = EventType.getEventType(GuestMethodEvent.class);
+    private static final EventType QUANTUM = EventType.getEventType(QuantumEvent.class);
+    private static final EventType CONTEXT_SWITCH = EventType.getEventType(ContextSwitchEvent.class);
+    private static final EventType MONITOR_BLOCKED = EventType.getEventType(MonitorBlockedEvent.class);
+    private static final EventType ALLOCATION_SAMPLE = EventType.getEventType(AllocationSampleEvent.class);
+    private static final EventType GC_PHASE = EventType.getEventType(GcPhaseEvent.class);
+    private static final int MAX_STACK_FRAMES = 64;
+
+    private static volatile long allocationSampleBytes = Long.getLong("tinyjvm.jfr.allocationSampleBytes", 64 * 1024);
+    // Per host thread: bytes allocated since its last sample
+    private static final ThreadLocal<long[]> allocatedSinceSample = ThreadLocal.withInitial(() -> new long[1]);
+
+    private JfrSupport() {
+    }
+
+    static void setAllocationSampleBytes(long bytes) {
+        allocationSampleBytes = Math.max(1, bytes);
+    }
+
+    static Object beginMethod() {
+        if (!METHOD.isEnabled()) {
+            return null;
+        }
+        GuestMethodEvent event = new GuestMethodEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endMethod(Object token, JFrame frame, JVMStack stack) {
+        GuestMethodEvent event = (GuestMethodEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = frame.getMethodName();
+            event.guestThread = idOf(Scheduler.getCurrentThread());
+            event.guestStack = describe(stack);
+            event.commit();
+        }
+    }
+
+    static void contextSwitch(JVMThread from, JVMThread to) {
+        if (CONTEXT_SWITCH.isEnabled()) {
+            ContextSwitchEvent event = new ContextSwitchEvent();
+            event.fromThread = idOf(from);
+            event.toThread = to.getThreadId();
+            event.commit();
+        }
+    }
+
+    static Object beginQuantum(JVMThread thread) {
+        if (!QUANTUM.isEnabled()) {
+            return null;
+        }
+        QuantumEvent event = new QuantumEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endQuantum(Object token, JVMThread thread) {
+        QuantumEvent event = (QuantumEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.guestThread = thread.getThreadId();
+            event.priority = thread.getPriority();
+            event.endState = thread.getState().name();
+            event.guestStack = describe(thread.getStack());
+            event.commit();
+        }
+    }
+
+    static Object beginMonitorBlocked(Object monitor, JVMThread owner) {
+        if (!MONITOR_BLOCKED.isEnabled()) {
+            return null;
+        }
+        MonitorBlockedEvent event = new MonitorBlockedEvent();
+        event.monitor = System.identityHashCode(monitor);
+        event.ownerThread = idOf(owner);
+        event.begin();
+        return event;
+    }
+
+    static void endMonitorBlocked(Object token, JVMThread thread) {
+        MonitorBlockedEvent event = (MonitorBlockedEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.guestThread = thread.getThreadId();
+            event.guestStack = describe(thread.getStack());
+            event.commit();
+        }
+    }
+
+    static void allocated(JVMThread thread, ClassLayout layout) {
+        if (!ALLOCATION_SAMPLE.isEnabled()) {
+            return;
+        }
+        long[] allocated = allocatedSinceSample.get();
+        long size = layout.getInstanceSize();
+        long weight = allocated[0] + size;
+        if (weight < allocationSampleBytes) {
+            allocated[0] = weight;
+            return;
+        }
+        allocated[0] = 0;
+        AllocationSampleEvent event = new AllocationSampleEvent();
+        if (event.shouldCommit()) {
+            event.className = layout.getClassName();
+            event.size = size;
+            event.weight = weight;
+            event.guestThread = idOf(thread);
+            event.guestStack = thread != null ? describe(thread.getStack()) : "";
+            event.commit();
+        }
+    }
+
+    static Object beginGcPhase() {
+        if (!GC_PHASE.isEnabled()) {
+            return null;
+        }
+        GcPhaseEvent event = new GcPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endGcPhase(Object token, String name, long freed, long live) {
+        GcPhaseEvent event = (GcPhaseEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.freed = freed;
+            event.live = live;
+            event.commit();
+        }
+    }
+
+    private static int idOf(JVMThread thread) {
+        return thread != null ? thread.getThreadId() : -1;
+    }
+
+    /** One line per guest frame, innermost first: method and pc. Deep stacks are cut off. */
+    static String describe(JVMStack stack) {
+        List<JFrame> frames = stack.getFrames();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < frames.size() && i < MAX_STACK_FRAMES; i++) {
+            JFrame frame = frames.get(i);
+            sb.append(frame.getMethodName()).append(" (pc ").append(frame.pc).append(")\n");
+        }
+        if (frames.size() > MAX_STACK_FRAMES) {
+            sb.append("... ").append(frames.size() - MAX_STACK_FRAMES).append(" more\n");
+        }
+        return sb.toString();
+    }
+}
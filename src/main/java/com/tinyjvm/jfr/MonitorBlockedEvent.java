@@ -0,0 +1,32 @@
+package com.tinyjvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A guest thread queued on a held monitor, from joining the entry queue to acquiring the lock.
+ */
+@Name("tinyjvm.MonitorBlocked")
+@Label("Guest Monitor Blocked")
+@Category({"tinyJVM", "Locks"})
+@Description("A guest thread waiting in a monitor's entry queue")
+@StackTrace(false)
+final class MonitorBlockedEvent extends jdk.jfr.Event {
+    @Label("Guest Thread")
+    int guestThread;
+
+    @Label("Monitor")
+    @Description("Identity hash of the monitor")
+    int monitor;
+
+    @Label("Owner")
+    @Description("The guest thread that held the monitor when this one queued, -1 if it was released meanwhile")
+    int ownerThread;
+
+    @Label("Guest Stack")
+    @Description("The guest frames of the blocked thread, innermost first")
+    String guestStack;
+}
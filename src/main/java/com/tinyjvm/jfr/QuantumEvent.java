@@ -0,0 +1,33 @@
+package com.tinyjvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One scheduler quantum of a guest thread. Off by default: there is one every few hundred instructions.
+ */
+@Name("tinyjvm.Quantum")
+@Label("Guest Quantum")
+@Category({"tinyJVM", "Scheduler"})
+@Description("A guest thread running for one scheduler quantum on the event's host thread")
+@StackTrace(false)
+@Enabled(false)
+final class QuantumEvent extends jdk.jfr.Event {
+    @Label("Guest Thread")
+    int guestThread;
+
+    @Label("Priority")
+    int priority;
+
+    @Label("End State")
+    @Description("The guest thread's state when the quantum ended, e.g. RUNNABLE if it was preempted")
+    String endState;
+
+    @Label("Guest Stack")
+    @Description("The guest frames when the quantum ended, innermost first")
+    String guestStack;
+}
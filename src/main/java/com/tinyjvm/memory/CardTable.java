@@ -0,0 +1,69 @@
+package com.tinyjvm.memory;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Remembered set for the generational heap. The old-space handle range is divided into
+ * cards of {@code 2^CARD_SHIFT} handles; the write barrier dirties the card of an old object
+ * whenever a reference to a young object is stored into it. Dirty cards are also queued, so a
+ * minor collection visits only those cards instead of scanning the whole table.
+ */
+public class CardTable {
+    public static final int CARD_SHIFT = 5; // 32 handles per card
+
+    private static final byte CLEAN = 0;
+    private static final byte DIRTY = 1;
+
+    private volatile byte[] cards = new byte[64];
+    private int[] dirtyCards = new int[64]; // Guarded by 'this'
+    private int dirtyCount = 0;             // Guarded by 'this'
+
+    /**
+     * Dirties the card covering the given old-space handle.
+     *
+     * @param handle Handle of the old object that now refers to a young object.
+     */
+    public void dirty(int handle) {
+        int card = handle >>> CARD_SHIFT;
+        byte[] current = cards;
+        if (card >= current.length || current[card] == CLEAN) {
+            enqueue(card); // Only the first store into a clean card takes the lock
+        }
+    }
+
+    private synchronized void enqueue(int card) {
+        if (card >= cards.length) {
+            cards = Arrays.copyOf(cards, Math.max(cards.length * 2, card + 1));
+        }
+        if (cards[card] == DIRTY) {
+            return;
+        }
+        cards[card] = DIRTY;
+        if (dirtyCount == dirtyCards.length) {
+            dirtyCards = Arrays.copyOf(dirtyCards, dirtyCount * 2);
+        }
+        dirtyCards[dirtyCount++] = card;
+    }
+
+    /**
+     * Visits and cleans every dirty card. Must only be called while mutators are stopped.
+     *
+     * @param visitor Receives the first handle covered by each dirty card.
+     */
+    public synchronized void drain(IntConsumer visitor) {
+        for (int i = 0; i < dirtyCount; i++) {
+            int card = dirtyCards[i];
+            cards[card] = CLEAN;
+            visitor.accept(card << CARD_SHIFT);
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * @return Number of cards currently dirty.
+     */
+    public synchronized int getDirtyCount() {
+        return dirtyCount;
+    }
+}
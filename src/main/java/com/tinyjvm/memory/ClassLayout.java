@@ -0,0 +1,227 @@
+package com.tinyjvm.memory;
+
+import com.tinyjvm.ClassFile;
+import com.tinyjvm.ConstantPoolEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The in-memory layout of a class's instances in the {@link ObjectArena}, computed once at link time.
+ * <p>
+ * An instance starts with an 8-byte header (layout id, then the object's handle), followed by the
+ * superclass's fields at unchanged offsets, then this class's own fields. Primitive fields are
+ * packed largest first so each is naturally aligned without padding; reference fields follow as
+ * 4-byte compressed handles. The total size is rounded up to 8 bytes.
+ * The offsets of all reference fields are kept in {@link #getReferenceOffset(int)} order,
+ * which is the "oop map" the garbage collector scans.
+ */
+public class ClassLayout {
+    public static final int HEADER_SIZE = 8;
+    public static final int LAYOUT_ID_OFFSET = 0;
+    public static final int HANDLE_OFFSET = 4;
+
+    private static final int ACC_STATIC = 0x0008;
+    private static final AtomicInteger nextLayoutId = new AtomicInteger(1);
+    private static final Map<Integer, ClassLayout> referenceOnlyLayouts = new ConcurrentHashMap<>();
+
+    /**
+     * Storage kind of a field, derived from its descriptor.
+     */
+    public enum FieldKind {
+        BYTE(1), BOOLEAN(1), CHAR(2), SHORT(2), INT(4), FLOAT(4), LONG(8), DOUBLE(8), REFERENCE(4);
+
+        public final int size;
+
+        FieldKind(int size) {
+            this.size = size;
+        }
+
+        public static FieldKind fromDescriptor(String descriptor) {
+            switch (descriptor.charAt(0)) {
+                case 'B': return BYTE;
+                case 'Z': return BOOLEAN;
+                case 'C': return CHAR;
+                case 'S': return SHORT;
+                case 'I': return INT;
+                case 'F': return FLOAT;
+                case 'J': return LONG;
+                case 'D': return DOUBLE;
+                case 'L':
+                case '[': return REFERENCE;
+                default:
+                    throw new IllegalArgumentException("Invalid field descriptor: " + descriptor);
+            }
+        }
+    }
+
+    /**
+     * A single instance field with its resolved offset.
+     */
+    public static class Field {
+        private final String name;
+        private final String descriptor;
+        private final FieldKind kind;
+        private final int offset;
+        private final int referenceSlot; // Index into the oop map, -1 for primitives
+
+        Field(String name, String descriptor, FieldKind kind, int offset, int referenceSlot) {
+            this.name = name;
+            this.descriptor = descriptor;
+            this.kind = kind;
+            this.offset = offset;
+            this.referenceSlot = referenceSlot;
+        }
+
+        public String getName() { return name; }
+        public String getDescriptor() { return descriptor; }
+        public FieldKind getKind() { return kind; }
+        public int getOffset() { return offset; }
+        public int getReferenceSlot() { return referenceSlot; }
+
+        @Override
+        public String toString() {
+            return name + ":" + descriptor + "@" + offset;
+        }
+    }
+
+    private final int id;
+    private final String className;
+    private final Map<String, Field> fields; // Includes inherited fields
+    private final int[] referenceOffsets;
+    private final int instanceSize;
+
+    private ClassLayout(String className, Map<String, Field> fields, int[] referenceOffsets, int instanceSize) {
+        this.id = nextLayoutId.getAndIncrement();
+        this.className = className;
+        this.fields = fields;
+        this.referenceOffsets = referenceOffsets;
+        this.instanceSize = instanceSize;
+    }
+
+    /**
+     * Computes the layout of a class.
+     *
+     * @param className   Internal name of the class, e.g. "com/example/Point".
+     * @param superLayout Layout of the superclass, or null for a root class.
+     * @param fieldNames  Names of the class's own instance fields.
+     * @param descriptors Field descriptors, parallel to {@code fieldNames}.
+     * @return The computed layout.
+     */
+    public static ClassLayout compute(String className, ClassLayout superLayout, List<String> fieldNames, List<String> descriptors) {
+        Map<String, Field> fields = new LinkedHashMap<>();
+        List<Integer> refOffsets = new ArrayList<>();
+        int offset = HEADER_SIZE;
+        if (superLayout != null) {
+            fields.putAll(superLayout.fields);
+            for (int refOffset : superLayout.referenceOffsets) {
+                refOffsets.add(refOffset);
+            }
+            offset = superLayout.instanceSize;
+        }
+
+        // Primitives largest first: every field stays naturally aligned without padding
+        int[] sizes = {8, 4, 2, 1};
+        for (int size : sizes) {
+            for (int i = 0; i < fieldNames.size(); i++) {
+                FieldKind kind = FieldKind.fromDescriptor(descriptors.get(i));
+                if (kind != FieldKind.REFERENCE && kind.size == size) {
+                    offset = align(offset, size);
+                    fields.put(fieldNames.get(i), new Field(fieldNames.get(i), descriptors.get(i), kind, offset, -1));
+                    offset += size;
+                }
+            }
+        }
+        // References last, as compressed 4-byte handles
+        offset = align(offset, 4);
+        for (int i = 0; i < fieldNames.size(); i++) {
+            if (FieldKind.fromDescriptor(descriptors.get(i)) == FieldKind.REFERENCE) {
+                fields.put(fieldNames.get(i), new Field(fieldNames.get(i), descriptors.get(i), FieldKind.REFERENCE, offset, refOffsets.size()));
+                refOffsets.add(offset);
+                offset += 4;
+            }
+        }
+
+        int[] oopMap = new int[refOffsets.size()];
+        for (int i = 0; i < oopMap.length; i++) {
+            oopMap[i] = refOffsets.get(i);
+        }
+        return new ClassLayout(className, Collections.unmodifiableMap(fields), oopMap, align(offset, 8));
+    }
+
+    /**
+     * Links a parsed class file: computes the layout of its non-static fields.
+     * {@link com.tinyjvm.interpreter.ClassLinker} calls this when it loads a class.
+     *
+     * @param classFile   The parsed class.
+     * @param superLayout Layout of the already linked superclass, or null.
+     * @return The computed layout.
+     */
+    public static ClassLayout link(ClassFile classFile, ClassLayout superLayout) {
+        List<String> names = new ArrayList<>();
+        List<String> descriptors = new ArrayList<>();
+        for (ClassFile.FieldInfo field : classFile.fields) {
+            if ((field.accessFlags & ACC_STATIC) == 0) {
+                names.add(utf8(classFile, field.nameIndex));
+                descriptors.add(utf8(classFile, field.descriptorIndex));
+            }
+        }
+        ConstantPoolEntry classEntry = classFile.constantPool.get(classFile.thisClass - 1);
+        String className = utf8(classFile, (Integer) classEntry.value);
+        return compute(className, superLayout, names, descriptors);
+    }
+
+    private static String utf8(ClassFile classFile, int index) {
+        return (String) classFile.constantPool.get(index - 1).value;
+    }
+
+    /**
+     * Returns the shared layout for anonymous objects that only have {@code count} reference fields.
+     *
+     * @param count Number of reference fields.
+     * @return The cached layout.
+     */
+    public static ClassLayout withReferences(int count) {
+        return referenceOnlyLayouts.computeIfAbsent(count, n -> {
+            List<String> names = new ArrayList<>();
+            List<String> descriptors = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                names.add("ref" + i);
+                descriptors.add("Ljava/lang/Object;");
+            }
+            return compute("<anonymous:" + n + ">", null, names, descriptors);
+        });
+    }
+
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) & -alignment;
+    }
+
+    public int getId() { return id; }
+    public String getClassName() { return className; }
+    public int getInstanceSize() { return instanceSize; }
+    public int getReferenceCount() { return referenceOffsets.length; }
+    public int getReferenceOffset(int slot) { return referenceOffsets[slot]; }
+
+    /**
+     * @param name Field name.
+     * @return The field, or null if the class (including superclasses) has no such instance field.
+     */
+    public Field getField(String name) {
+        return fields.get(name);
+    }
+
+    public Iterable<Field> getFields() {
+        return fields.values();
+    }
+
+    @Override
+    public String toString() {
+        return "ClassLayout[" + className + ", size=" + instanceSize + ", fields=" + fields.values() + "]";
+    }
+}
@@ -0,0 +1,271 @@
+package com.tinyjvm.memory;
+
+import com.tinyjvm.utils.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A mostly-concurrent mark-sweep collector over a {@link HandleTable}.
+ * <p>
+ * A cycle has two short stop-the-world pauses and two concurrent phases:
+ * <ol>
+ *   <li><b>Initial mark</b> (pause): records the top-at-mark-start (TAMS) handle and marks the roots.</li>
+ *   <li><b>Concurrent mark</b> (background host thread, shared by all collectors): finds objects with held monitors and traces
+ *       the object graph while guest threads keep running.</li>
+ *   <li><b>Remark</b> (pause): drains the snapshot-at-the-beginning (SATB) queue and rescans the roots.</li>
+ *   <li><b>Concurrent sweep</b> (background host thread): frees unmarked handles below TAMS.</li>
+ * </ol>
+ * Correctness relies on two invariants. First, {@link #preWriteBarrier(int)} logs every reference
+ * overwritten while marking, so everything reachable at initial mark gets marked (SATB).
+ * Second, while a cycle is active the heap hands out only fresh handles at or above TAMS.
+ * Those objects are implicitly live and are neither traced nor swept.
+ * <p>
+ * The pause phases are run by the heap on a guest thread while no other guest is running;
+ * the collector only does the work and measures it.
+ */
+public class ConcurrentMarkSweepCollector {
+    private enum Phase { IDLE, MARKING, REMARK_PENDING, SWEEPING }
+
+    // Shared by all collectors, so a heap that is simply dropped leaves no thread behind.
+    // Concurrent phases of different heaps run one after the other.
+    private static final ExecutorService background = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "tinyjvm-concurrent-gc");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HandleTable handles;
+    private final RootProvider roots;
+
+    private final GcStats initialMarkStats = new GcStats("Pause Initial Mark");
+    private final GcStats remarkStats = new GcStats("Pause Remark");
+    private final GcStats cycleStats = new GcStats("Concurrent Cycle");
+
+    private volatile Phase phase = Phase.IDLE;
+    private volatile Future<?> backgroundPhase; // The concurrent phase last handed to the background thread
+    private volatile boolean marking = false; // Read by the write barrier on every reference store
+    private int tams = 0; // Handles at or above this were allocated during the cycle
+
+    // Touched by the pause phases and by the background thread, never at the same time
+    private long[] markBits = new long[0];
+    private int[] markStack = new int[256];
+    private int markTop = 0;
+    private long marked = 0;
+    private long cycleStart = 0;
+
+    // SATB queue filled by mutators
+    private int[] satbQueue = new int[256]; // Guarded by 'this'
+    private int satbCount = 0;              // Guarded by 'this'
+
+    /**
+     * @param handles The handle table to collect.
+     * @param roots   Supplier of the root set.
+     */
+    public ConcurrentMarkSweepCollector(HandleTable handles, RootProvider roots) {
+        this.handles = handles;
+        this.roots = roots;
+    }
+
+    /**
+     * @return true while a cycle is in progress; the heap must then only allocate fresh handles.
+     */
+    public boolean isCycleActive() {
+        return phase != Phase.IDLE;
+    }
+
+    /**
+     * @return true once concurrent marking has finished and the remark pause should run.
+     */
+    public boolean isRemarkPending() {
+        return phase == Phase.REMARK_PENDING;
+    }
+
+    /**
+     * SATB pre-write barrier: called with the value a reference store is about to overwrite.
+     *
+     * @param overwritten The handle being overwritten, 0 for null.
+     */
+    public void preWriteBarrier(int overwritten) {
+        if (marking && overwritten > 0) {
+            enqueueSatb(overwritten);
+        }
+    }
+
+    private synchronized void enqueueSatb(int handle) {
+        if (satbCount == satbQueue.length) {
+            satbQueue = Arrays.copyOf(satbQueue, satbCount * 2);
+        }
+        satbQueue[satbCount++] = handle;
+    }
+
+    /**
+     * Initial-mark pause: snapshots the roots and hands marking to the background thread.
+     * Must be called with all guest threads stopped and every TLAB retired.
+     *
+     * @param cause Why the cycle was started, for logging.
+     */
+    public void startCycle(String cause) {
+        if (phase != Phase.IDLE) {
+            return;
+        }
+        long start = System.nanoTime();
+        cycleStart = start;
+        cycleStats.begin();
+        initialMarkStats.begin();
+        tams = handles.capacity();
+        int words = (tams + 63) >>> 6;
+        if (markBits.length < words) {
+            markBits = new long[words];
+        } else {
+            Arrays.fill(markBits, 0, words, 0L);
+        }
+        markTop = 0;
+        marked = 0;
+        roots.visitRoots(handle -> {
+            markAndPush(handle);
+            return handle;
+        });
+        marking = true;
+        phase = Phase.MARKING;
+        long pause = System.nanoTime() - start;
+        initialMarkStats.record(pause, 0, markTop);
+        Logger.info(String.format("GC(%d) Pause Initial Mark (%s): %d roots, %.3f ms",
+                cycleStats.getCollections() + 1, cause, markTop, pause / 1e6));
+
+        backgroundPhase = background.submit(this::concurrentMark);
+    }
+
+    private void concurrentMark() {
+        long start = System.nanoTime();
+        // Objects with held monitors are roots too; scanning for them is O(heap), so it happens here
+        for (int handle = 1; handle < tams; handle++) {
+            JVMObject obj = handles.get(handle);
+            if (obj != null && obj.isLocked()) {
+                markAndPush(handle);
+            }
+        }
+        drainMarkStack();
+        if (Logger.isDebugEnabled()) {
+            Logger.debug(String.format("GC(%d) Concurrent Mark: %d objects, %.3f ms",
+                    cycleStats.getCollections() + 1, marked, (System.nanoTime() - start) / 1e6));
+        }
+        phase = Phase.REMARK_PENDING;
+    }
+
+    /**
+     * Remark pause: finishes marking from the SATB queue and the current roots, then hands
+     * sweeping to the background thread. Must be called with all guest threads stopped.
+     * Does nothing unless {@link #isRemarkPending()}.
+     */
+    public void remark() {
+        if (phase != Phase.REMARK_PENDING) {
+            return;
+        }
+        long start = System.nanoTime();
+        remarkStats.begin();
+        int satbEntries;
+        synchronized (this) {
+            satbEntries = satbCount;
+            for (int i = 0; i < satbCount; i++) {
+                markAndPush(satbQueue[i]);
+            }
+            satbCount = 0;
+        }
+        roots.visitRoots(handle -> {
+            markAndPush(handle);
+            return handle;
+        });
+        drainMarkStack();
+        marking = false;
+        phase = Phase.SWEEPING;
+        long pause = System.nanoTime() - start;
+        remarkStats.record(pause, 0, marked);
+        Logger.info(String.format("GC(%d) Pause Remark: %d SATB entries, %d marked, %.3f ms",
+                cycleStats.getCollections() + 1, satbEntries, marked, pause / 1e6));
+
+        backgroundPhase = background.submit(this::concurrentSweep);
+    }
+
+    private void concurrentSweep() {
+        long freed = 0;
+        int[] released = new int[HandleTable.CHUNK_SIZE];
+        int releasedCount = 0;
+        for (int handle = 1; handle < tams; handle++) {
+            JVMObject obj = handles.get(handle);
+            if (obj != null && !isMarked(handle)) {
+                handles.set(handle, null);
+                obj.release();
+                released[releasedCount++] = handle;
+                if (releasedCount == released.length) {
+                    handles.release(released, releasedCount);
+                    releasedCount = 0;
+                }
+                freed++;
+            }
+        }
+        handles.release(released, releasedCount);
+        long duration = System.nanoTime() - cycleStart;
+        cycleStats.record(duration, freed, marked);
+        Logger.info(String.format("GC(%d) Concurrent Cycle: freed %d, live %d, %.3f ms total (pauses %.3f ms + %.3f ms)",
+                cycleStats.getCollections(), freed, marked, duration / 1e6,
+                initialMarkStats.getLastPauseNanos() / 1e6, remarkStats.getLastPauseNanos() / 1e6));
+        phase = Phase.IDLE;
+    }
+
+    /**
+     * Blocks the caller until the current cycle has finished. Runs the remark pause itself
+     * when it becomes due, so the caller must be allowed to stop the world. The caller waits
+     * for the concurrent phases without spinning.
+     */
+    public void awaitCycle() {
+        while (phase != Phase.IDLE) {
+            if (phase == Phase.REMARK_PENDING) {
+                remark();
+                continue;
+            }
+            try {
+                backgroundPhase.get(); // Each phase sets the next one before it completes
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Concurrent collection failed", e.getCause());
+            }
+        }
+    }
+
+    private void drainMarkStack() {
+        while (markTop > 0) {
+            int handle = markStack[--markTop];
+            marked++;
+            JVMObject obj = handles.get(handle);
+            for (int slot = 0; slot < obj.getReferenceCount(); slot++) {
+                markAndPush(obj.getReference(slot));
+            }
+        }
+    }
+
+    private void markAndPush(int handle) {
+        // Handles at or above TAMS are implicitly live and never traced
+        if (handle <= 0 || handle >= tams || isMarked(handle) || handles.get(handle) == null) {
+            return;
+        }
+        markBits[handle >>> 6] |= 1L << handle;
+        if (markTop == markStack.length) {
+            markStack = Arrays.copyOf(markStack, markStack.length * 2);
+        }
+        markStack[markTop++] = handle;
+    }
+
+    private boolean isMarked(int handle) {
+        return (markBits[handle >>> 6] & (1L << handle)) != 0;
+    }
+
+    public GcStats getInitialMarkStats() { return initialMarkStats; }
+    public GcStats getRemarkStats() { return remarkStats; }
+    public GcStats getCycleStats() { return cycleStats; }
+}
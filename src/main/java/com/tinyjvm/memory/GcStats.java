@@ -0,0 +1,69 @@
+package com.tinyjvm.memory;
+
+import com.tinyjvm.jfr.GuestEvents;
+
+/**
+ * Pause-time and reclamation statistics for one kind of collection.
+ * Updated only by the collector while the world is stopped; read by anyone.
+ * Each collection between {@link #begin()} and {@link #record} is also reported to a running flight
+ * recording as a GC phase, see {@link GuestEvents}.
+ */
+public class GcStats {
+    private final String name;
+    private volatile long collections = 0;
+    private volatile long lastPauseNanos = 0;
+    private volatile long maxPauseNanos = 0;
+    private volatile long totalPauseNanos = 0;
+    private volatile long lastFreed = 0;
+    private volatile long totalFreed = 0;
+    private volatile long lastLive = 0;
+    private Object flightEvent; // Open GC phase event; collections of one kind never overlap
+
+    /**
+     * @param name Name of the collection kind, used in reports (e.g. "Mark-Sweep").
+     */
+    public GcStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Marks the start of a collection, for the flight recorder.
+     */
+    public void begin() {
+        flightEvent = GuestEvents.gcPhaseStarted();
+    }
+
+    /**
+     * Records the outcome of one collection.
+     *
+     * @param pauseNanos Duration of the pause in nanoseconds.
+     * @param freed      Number of objects reclaimed.
+     * @param live       Number of objects that survived.
+     */
+    public void record(long pauseNanos, long freed, long live) {
+        collections++;
+        lastPauseNanos = pauseNanos;
+        maxPauseNanos = Math.max(maxPauseNanos, pauseNanos);
+        totalPauseNanos += pauseNanos;
+        lastFreed = freed;
+        totalFreed += freed;
+        lastLive = live;
+        GuestEvents.gcPhaseEnded(flightEvent, name, freed, live);
+        flightEvent = null;
+    }
+
+    public String getName() { return name; }
+    public long getCollections() { return collections; }
+    public long getLastPauseNanos() { return lastPauseNanos; }
+    public long getMaxPauseNanos() { return maxPauseNanos; }
+    public long getTotalPauseNanos() { return totalPauseNanos; }
+    public long getLastFreed() { return lastFreed; }
+    public long getTotalFreed() { return totalFreed; }
+    public long getLastLive() { return lastLive; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d collections, last pause %.3f ms, max pause %.3f ms, total pause %.3f ms, freed %d (last %d), live %d",
+                name, collections, lastPauseNanos / 1e6, maxPauseNanos / 1e6, totalPauseNanos / 1e6, totalFreed, lastFreed, lastLive);
+    }
+}
@@ -0,0 +1,227 @@
+package com.tinyjvm.memory;
+
+import com.tinyjvm.utils.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Young-generation collector for the generational heap mode.
+ * <p>
+ * New objects are bump-allocated in a {@link Nursery}. When it fills up, a minor collection
+ * evacuates every live young object into the old space (a {@link HandleTable}) Cheney-style:
+ * roots and remembered old objects are scanned first, and each promoted object is then scanned
+ * in turn from a work queue. Forwarding is recorded in the object's own address, which lets
+ * references that are reached more than once be redirected to the same copy. The nursery is
+ * then reset as a whole. Promotion moves only the handle: the object's fields stay in their
+ * {@link ObjectArena} block, and dead young objects give their blocks back to the arena.
+ * Apart from a linear pass over the nursery's slot array to find dead objects and held locks,
+ * the pause is proportional to the live young data rather than the heap size.
+ * <p>
+ * Old-to-young references are found through a {@link CardTable} maintained by
+ * {@link #writeBarrier(int, int)}; old space itself is left to the {@link MarkSweepCollector}.
+ * Like the mark-sweep collector, minor collections assume every guest thread is stopped.
+ */
+public class GenerationalCollector {
+    /** Set in every young handle. Old handles never reach this bit. */
+    public static final int YOUNG_BIT = 1 << 30;
+
+    private final HandleTable oldSpace;
+    private final Nursery nursery;
+    private final CardTable cards = new CardTable();
+    private final RootProvider roots;
+    private final GcStats stats = new GcStats("Minor (copying)");
+
+    // Allocates the promoted copies in old space; only used during a minor collection
+    private final ThreadLocalAllocationBuffer promotionBuffer = new ThreadLocalAllocationBuffer("<promotion>");
+    private int[] scanQueue = new int[256];
+    private int scanTail = 0;
+    private long promotedBytes = 0;
+    private long promotedBytesSinceMajor = 0;
+
+    /**
+     * @param oldSpace       Handle table that receives promoted objects.
+     * @param nurseryHandles Number of handle slots in the nursery.
+     * @param roots          Supplier of the root set.
+     */
+    public GenerationalCollector(HandleTable oldSpace, int nurseryHandles, RootProvider roots) {
+        this.oldSpace = oldSpace;
+        this.nursery = new Nursery(nurseryHandles);
+        this.roots = roots;
+    }
+
+    public static boolean isYoung(int handle) {
+        return (handle & YOUNG_BIT) != 0;
+    }
+
+    /**
+     * Resolves a young handle.
+     * @param handle A handle with {@link #YOUNG_BIT} set.
+     * @return The young object, or null if the slot is unused.
+     */
+    public JVMObject getYoung(int handle) {
+        return nursery.get(handle & ~YOUNG_BIT);
+    }
+
+    /**
+     * Stores a freshly allocated object in its young slot.
+     * @param handle A handle previously handed out through {@link #claimNurseryChunk()}.
+     * @param object The new object.
+     */
+    public void setYoung(int handle, JVMObject object) {
+        nursery.set(handle & ~YOUNG_BIT, object);
+    }
+
+    /**
+     * Claims a chunk of the nursery for a TLAB.
+     * @return The first young handle of the chunk, or 0 if the nursery is full.
+     */
+    public int claimNurseryChunk() {
+        int start = nursery.claimChunk();
+        return start < 0 ? 0 : start | YOUNG_BIT;
+    }
+
+    /**
+     * Post-write barrier for reference stores: remembers old objects that now point into the nursery.
+     *
+     * @param holder Handle of the object written to.
+     * @param value  Handle that was stored.
+     */
+    public void writeBarrier(int holder, int value) {
+        if (isYoung(value) && holder > 0 && !isYoung(holder)) {
+            cards.dirty(holder);
+        }
+    }
+
+    /**
+     * Performs a minor collection: evacuates all live nursery objects into old space and empties the nursery.
+     * The caller must retire every TLAB afterwards, since they all point into the reset nursery.
+     *
+     * @param cause Why the collection was started, for logging.
+     * @return The number of young objects reclaimed.
+     */
+    public synchronized long collectMinor(String cause) {
+        long start = System.nanoTime();
+        stats.begin();
+        scanTail = 0;
+        promotedBytes = 0;
+
+        // Roots: stacks and statics (updated in place), young objects with held monitors, dirty cards
+        roots.visitRoots(this::evacuate);
+        int used = nursery.used();
+        for (int index = 0; index < used; index++) {
+            JVMObject obj = nursery.get(index);
+            if (obj != null && obj.getAddress() == (index | YOUNG_BIT) && obj.isLocked()) {
+                evacuate(index | YOUNG_BIT);
+            }
+        }
+        cards.drain(firstHandle -> {
+            int end = firstHandle + (1 << CardTable.CARD_SHIFT);
+            for (int handle = firstHandle; handle < end; handle++) {
+                JVMObject obj = oldSpace.get(handle);
+                if (obj != null) {
+                    scanSlots(obj);
+                }
+            }
+        });
+
+        // Transitively evacuate everything reachable from the promoted objects
+        for (int scan = 0; scan < scanTail; scan++) {
+            scanSlots(oldSpace.get(scanQueue[scan]));
+        }
+        long promoted = scanTail;
+
+        // Whatever was not forwarded is dead
+        long freed = 0;
+        for (int index = 0; index < used; index++) {
+            JVMObject obj = nursery.get(index);
+            if (obj != null && obj.getAddress() == (index | YOUNG_BIT)) {
+                obj.release();
+                freed++;
+            }
+        }
+        nursery.reset(); // The promotion buffer keeps its old-space range for the next collection
+        promotedBytesSinceMajor += promotedBytes;
+
+        long pause = System.nanoTime() - start;
+        stats.record(pause, freed, promoted);
+        Logger.info(String.format("GC(%d) Pause Young (%s): promoted %d (%d bytes), freed %d, %.3f ms",
+                stats.getCollections(), cause, promoted, promotedBytes, freed, pause / 1e6));
+        return freed;
+    }
+
+    /**
+     * Copies a young object into old space, or returns its existing copy.
+     * Old handles are returned unchanged.
+     */
+    private int evacuate(int handle) {
+        if (!isYoung(handle)) {
+            return handle;
+        }
+        JVMObject obj = getYoung(handle);
+        if (obj == null) {
+            return 0;
+        }
+        int forwarded = obj.getAddress();
+        if (!isYoung(forwarded)) {
+            return forwarded; // Already promoted in this collection
+        }
+        int copy = allocateOld();
+        oldSpace.set(copy, obj);
+        obj.setAddress(copy);
+        promotedBytes += obj.getSizeInBytes();
+        if (scanTail == scanQueue.length) {
+            scanQueue = Arrays.copyOf(scanQueue, scanTail * 2);
+        }
+        scanQueue[scanTail++] = copy;
+        return copy;
+    }
+
+    private void scanSlots(JVMObject obj) {
+        for (int slot = 0; slot < obj.getReferenceCount(); slot++) {
+            int ref = obj.getReference(slot);
+            if (isYoung(ref)) {
+                obj.setReference(slot, evacuate(ref));
+            }
+        }
+    }
+
+    private int allocateOld() {
+        int handle = promotionBuffer.allocate();
+        if (handle == 0) {
+            int recycled = oldSpace.takeFree(promotionBuffer.recycleBuffer());
+            if (recycled > 0) {
+                promotionBuffer.refillRecycled(recycled);
+            } else {
+                int chunk = oldSpace.claimChunk();
+                promotionBuffer.refill(chunk, HandleTable.chunkLimit(chunk));
+            }
+            handle = promotionBuffer.allocate();
+        }
+        return handle;
+    }
+
+    /**
+     * @return Bytes promoted into old space since the last call to {@link #resetPromotedBytes()}.
+     */
+    public long getPromotedBytesSinceMajor() {
+        return promotedBytesSinceMajor;
+    }
+
+    /**
+     * Resets the promotion counter after a major (old space) collection.
+     */
+    public void resetPromotedBytes() {
+        promotedBytesSinceMajor = 0;
+    }
+
+    /**
+     * @return The number of objects currently in the nursery, live or dead.
+     */
+    public int getNurseryUsed() {
+        return nursery.used();
+    }
+
+    public GcStats getStats() {
+        return stats;
+    }
+}
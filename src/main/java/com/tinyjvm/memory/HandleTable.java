@@ -0,0 +1,122 @@
+package com.tinyjvm.memory;
+
+/**
+ * Maps integer handles (the "addresses" guest code sees) to {@link JVMObject} instances.
+ * The table is split into fixed-size chunks so that whole chunks can be handed to a
+ * {@link ThreadLocalAllocationBuffer} and filled without any locking.
+ * Handle 0 is reserved and always means {@code null}.
+ * Handles reclaimed by the garbage collector are kept on a free list and handed out again
+ * in batches before any new chunk is claimed.
+ */
+public class HandleTable {
+    public static final int CHUNK_SHIFT = 8;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 256 handles per chunk
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Readers only ever see a fully initialised array; it is replaced (never mutated in size) when growing.
+    private volatile JVMObject[][] chunks = new JVMObject[16][];
+    private int chunkCount = 0; // Guarded by 'this'
+    private int[] freeHandles = new int[CHUNK_SIZE]; // Guarded by 'this'
+    private int freeCount = 0; // Guarded by 'this'
+
+    /**
+     * Claims a fresh, empty chunk of handles. This is the only synchronized operation
+     * in the allocation path and is taken once per {@link #CHUNK_SIZE} allocations.
+     *
+     * @return The first handle of the claimed chunk. Chunk 0 skips handle 0 (null).
+     */
+    public synchronized int claimChunk() {
+        if (chunkCount == chunks.length) {
+            JVMObject[][] grown = new JVMObject[chunks.length * 2][];
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+            chunks = grown;
+        }
+        chunks[chunkCount] = new JVMObject[CHUNK_SIZE];
+        int firstHandle = chunkCount << CHUNK_SHIFT;
+        chunkCount++;
+        return firstHandle == 0 ? 1 : firstHandle;
+    }
+
+    /**
+     * Returns the handle one past the last handle of the chunk containing {@code handle}.
+     *
+     * @param handle Any handle within a chunk.
+     * @return The exclusive upper bound of that chunk.
+     */
+    public static int chunkLimit(int handle) {
+        return (handle & ~CHUNK_MASK) + CHUNK_SIZE;
+    }
+
+    /**
+     * Looks up the object stored at the given handle.
+     *
+     * @param handle The handle to resolve.
+     * @return The object, or null if the handle is 0, out of range or unused.
+     */
+    public JVMObject get(int handle) {
+        if (handle <= 0) {
+            return null;
+        }
+        JVMObject[][] current = chunks;
+        int chunkIndex = handle >>> CHUNK_SHIFT;
+        if (chunkIndex >= current.length || current[chunkIndex] == null) {
+            return null;
+        }
+        return current[chunkIndex][handle & CHUNK_MASK];
+    }
+
+    /**
+     * Stores an object at a handle previously obtained from {@link #claimChunk()}.
+     * Callers must own the handle (e.g. through their TLAB), so no locking is needed.
+     *
+     * @param handle The handle to write.
+     * @param object The object to store, or null to clear the slot.
+     */
+    public void set(int handle, JVMObject object) {
+        chunks[handle >>> CHUNK_SHIFT][handle & CHUNK_MASK] = object;
+    }
+
+    /**
+     * Returns reclaimed handles to the free list. Called by the collector after sweeping.
+     *
+     * @param released Array holding the released handles.
+     * @param count    Number of valid entries in {@code released}.
+     */
+    public synchronized void release(int[] released, int count) {
+        if (freeCount + count > freeHandles.length) {
+            int[] grown = new int[Math.max(freeHandles.length * 2, freeCount + count)];
+            System.arraycopy(freeHandles, 0, grown, 0, freeCount);
+            freeHandles = grown;
+        }
+        System.arraycopy(released, 0, freeHandles, freeCount, count);
+        freeCount += count;
+    }
+
+    /**
+     * Moves up to {@code batch.length} reclaimed handles into the given batch.
+     *
+     * @param batch Destination array, typically owned by a TLAB.
+     * @return The number of handles written, 0 if the free list is empty.
+     */
+    public synchronized int takeFree(int[] batch) {
+        int count = Math.min(batch.length, freeCount);
+        freeCount -= count;
+        System.arraycopy(freeHandles, freeCount, batch, 0, count);
+        return count;
+    }
+
+    /**
+     * @return The number of reclaimed handles waiting to be reused.
+     */
+    public synchronized int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * Returns the number of handles covered by claimed chunks (used and unused).
+     * @return The handle capacity.
+     */
+    public synchronized int capacity() {
+        return chunkCount << CHUNK_SHIFT;
+    }
+}
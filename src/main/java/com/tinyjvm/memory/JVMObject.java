@@ -1,52 +1,232 @@
 package com.tinyjvm.memory;
 
+import com.tinyjvm.threads.LockProfiler;
 import com.tinyjvm.threads.Monitor;
+import com.tinyjvm.threads.ObjectSynchronizer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Represents an object instance in the TinyJVM's heap.
- * Each object has associated data and a monitor for synchronization.
+ * <p>
+ * The object's fields live in an {@link ObjectArena} block laid out by the object's
+ * {@link ClassLayout}: a header followed by packed primitive fields and reference fields
+ * stored as heap handles. This host-side object only keeps what the VM needs to reach that
+ * block (the arena and the block's address), plus the handle and a lock word. The lock word is
+ * managed by {@link ObjectSynchronizer}: most objects are never locked, and only contended locks
+ * get a {@link Monitor}.
  */
 public class JVMObject {
-    // In a more detailed JVM, 'data' would represent the object's fields.
-    // For this example, it can be a simple placeholder or the actual Java object being represented.
-    private final Object data;
-    private final Monitor monitor; // Each object has an intrinsic lock (monitor)
+    /** Size of the object header in the arena (layout id and handle). */
+    public static final int HEADER_SIZE = ClassLayout.HEADER_SIZE;
+
+    private static final AtomicIntegerFieldUpdater<JVMObject> LOCK_WORD =
+            AtomicIntegerFieldUpdater.newUpdater(JVMObject.class, "lockWord");
+
+    private final ClassLayout layout;
+    private final ObjectArena arena;
+    private final long storage; // Arena address of the field block
+    private int address; // Handle under which the heap stores this object, 0 once collected
+    private volatile int lockWord = ObjectSynchronizer.UNLOCKED; // Thin lock state, see ObjectSynchronizer
+    private volatile Monitor monitor; // Only set while the lock is inflated
+    private LockProfiler.Site allocationSite; // Lock statistics of where this object was allocated; only with lock profiling on
 
     /**
-     * Constructs a new JVMObject.
+     * Constructs a JVMObject on a block of arena storage.
      *
-     * @param data The actual data or representation of the object's fields.
+     * @param layout  The layout of the object's fields.
+     * @param arena   The arena holding the fields.
+     * @param storage The address of a zeroed block of {@code layout.getInstanceSize()} bytes in {@code arena}.
      */
-    public JVMObject(Object data) {
-        this.data = data;
-        this.monitor = new Monitor(); // Create a new monitor for each object
-        System.out.println("JVMObject: Created. Data: " + (data != null ? data.toString() : "null") + ", Monitor: " + monitor.hashCode());
+    public JVMObject(ClassLayout layout, ObjectArena arena, long storage) {
+        this.layout = layout;
+        this.arena = arena;
+        this.storage = storage;
+        page().putInt(at(ClassLayout.LAYOUT_ID_OFFSET), layout.getId());
+    }
+
+    private ByteBuffer page() {
+        return arena.page(storage);
+    }
+
+    /** @return The position of a field offset inside {@link #page()}. */
+    private int at(int offset) {
+        return ObjectArena.offset(storage) + offset;
     }
 
     /**
-     * Gets the monitor associated with this object.
+     * Gets the monitor associated with this object, inflating the lock if necessary.
+     * Locking through {@link ObjectSynchronizer} is cheaper; a monitor obtained here is never deflated.
      *
      * @return The monitor for this object.
      */
     public Monitor getMonitor() {
+        return ObjectSynchronizer.getMonitor(this);
+    }
+
+    /**
+     * @return The monitor of an inflated lock, or null if the lock is thin.
+     */
+    public Monitor getInflatedMonitor() {
         return monitor;
     }
 
     /**
-     * Gets the data associated with this object.
-     * In a real JVM, this would provide access to the object's fields.
+     * Attaches or detaches the inflated monitor. Only {@link ObjectSynchronizer} should call this.
+     * @param monitor The monitor, or null on deflation.
+     */
+    public void setInflatedMonitor(Monitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * @return The lock profiling site of this object, or null if none was assigned yet.
+     */
+    public LockProfiler.Site getAllocationSite() {
+        return allocationSite;
+    }
+
+    /**
+     * Records where this object was allocated, for {@link LockProfiler}.
+     * @param site The site.
+     */
+    public void setAllocationSite(LockProfiler.Site site) {
+        this.allocationSite = site;
+    }
+
+    /**
+     * @return The current lock word.
+     */
+    public int getLockWord() {
+        return lockWord;
+    }
+
+    /**
+     * Atomically replaces the lock word if it still has the expected value.
      *
-     * @return The object's data.
+     * @param expect The expected lock word.
+     * @param update The new lock word.
+     * @return true if the lock word was replaced.
+     */
+    public boolean compareAndSetLockWord(int expect, int update) {
+        return LOCK_WORD.compareAndSet(this, expect, update);
+    }
+
+    /**
+     * Sets the lock word. Only valid while no other thread can change it, e.g. after winning the INFLATING state.
+     * @param word The new lock word.
+     */
+    public void setLockWord(int word) {
+        this.lockWord = word;
+    }
+
+    /**
+     * Checks whether the object's lock is held or has threads queued on it.
+     * The garbage collector treats such objects as roots.
+     * @return true if the lock is in use.
+     */
+    public boolean isLocked() {
+        int word = lockWord;
+        if (word == ObjectSynchronizer.INFLATED) {
+            Monitor inflated = monitor;
+            return inflated != null && inflated.isInUse();
+        }
+        return word != ObjectSynchronizer.UNLOCKED;
+    }
+
+    /**
+     * @return The layout of this object's fields.
+     */
+    public ClassLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Gets the heap address (handle) of this object.
+     * @return The handle, or 0 if the object is not (or no longer) on a heap.
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * Sets the heap address (handle) of this object. Only the heap and its collector should call this.
+     * The handle is mirrored into the object header.
+     * @param address The new handle.
+     */
+    public void setAddress(int address) {
+        this.address = address;
+        page().putInt(at(ClassLayout.HANDLE_OFFSET), address);
+    }
+
+    /**
+     * Frees the object's storage once a collector has found it dead. The object must not be used afterwards.
+     */
+    public void release() {
+        this.address = 0;
+        arena.free(storage, layout.getInstanceSize());
+    }
+
+    /**
+     * @return The number of reference fields of this object.
+     */
+    public int getReferenceCount() {
+        return layout.getReferenceCount();
+    }
+
+    /**
+     * Reads a reference field.
+     *
+     * @param slot Index of the reference field in the layout's oop map.
+     * @return The handle stored in the field, 0 for null.
+     */
+    public int getReference(int slot) {
+        return page().getInt(at(layout.getReferenceOffset(slot)));
+    }
+
+    /**
+     * Writes a reference field without any heap bookkeeping.
+     * Guest stores should go through {@code JVMHeap.storeReference} instead.
+     *
+     * @param slot   Index of the reference field in the layout's oop map.
+     * @param handle The handle to store, 0 for null.
+     */
+    public void setReference(int slot, int handle) {
+        page().putInt(at(layout.getReferenceOffset(slot)), handle);
+    }
+
+    // Primitive field accessors; offsets come from ClassLayout.Field#getOffset()
+
+    public byte getByte(int offset) { return page().get(at(offset)); }
+    public void putByte(int offset, byte value) { page().put(at(offset), value); }
+    public short getShort(int offset) { return page().getShort(at(offset)); }
+    public void putShort(int offset, short value) { page().putShort(at(offset), value); }
+    public char getChar(int offset) { return page().getChar(at(offset)); }
+    public void putChar(int offset, char value) { page().putChar(at(offset), value); }
+    public int getInt(int offset) { return page().getInt(at(offset)); }
+    public void putInt(int offset, int value) { page().putInt(at(offset), value); }
+    public float getFloat(int offset) { return page().getFloat(at(offset)); }
+    public void putFloat(int offset, float value) { page().putFloat(at(offset), value); }
+    public long getLong(int offset) { return page().getLong(at(offset)); }
+    public void putLong(int offset, long value) { page().putLong(at(offset), value); }
+    public double getDouble(int offset) { return page().getDouble(at(offset)); }
+    public void putDouble(int offset, double value) { page().putDouble(at(offset), value); }
+
+    /**
+     * Returns the heap footprint of this object, used for allocation accounting.
+     * @return The instance size in bytes.
      */
-    public Object getData() {
-        return data;
+    public int getSizeInBytes() {
+        return layout.getInstanceSize();
     }
 
     @Override
     public String toString() {
         return "JVMObject{" +
-               "data=" + (data != null ? data.toString() : "null") +
-               ", monitor=" + monitor.hashCode() +
+               "class=" + layout.getClassName() +
+               ", address=" + address +
+               ", lock=0x" + Integer.toHexString(lockWord) +
                '}';
     }
 }
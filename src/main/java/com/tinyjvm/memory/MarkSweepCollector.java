@@ -0,0 +1,129 @@
+package com.tinyjvm.memory;
+
+import com.tinyjvm.utils.Logger;
+
+import java.util.Arrays;
+
+/**
+ * A stop-the-world, non-moving tracing collector over a {@link HandleTable}.
+ * <p>
+ * Marking starts from the roots supplied by a {@link RootProvider} plus every object whose
+ * monitor is held or contended, and follows reference slots using an explicit mark stack
+ * (so deep object graphs cannot overflow the host stack). Sweeping clears every unmarked
+ * handle and returns it to the table's free list for reuse by TLAB refills.
+ * <p>
+ * The caller is responsible for making sure no guest thread runs during {@link #collect(String)}.
+ * With the cooperative {@code Scheduler} this holds trivially, because collections are
+ * triggered from the allocating guest thread on the only host thread that runs guests.
+ */
+public class MarkSweepCollector {
+    private final HandleTable handles;
+    private final RootProvider roots;
+    private final GcStats stats = new GcStats("Mark-Sweep");
+
+    // Reused between collections to avoid allocating during a pause
+    private long[] markBits = new long[0];
+    private int[] markStack = new int[256];
+    private int markTop = 0;
+    private int[] released = new int[HandleTable.CHUNK_SIZE];
+    private int markLimit = 0; // Handle capacity at the start of the current collection
+
+    /**
+     * @param handles The handle table to collect.
+     * @param roots   Supplier of the root set.
+     */
+    public MarkSweepCollector(HandleTable handles, RootProvider roots) {
+        this.handles = handles;
+        this.roots = roots;
+    }
+
+    /**
+     * Performs a full mark-sweep collection.
+     *
+     * @param cause Why the collection was started, for logging.
+     * @return The number of objects reclaimed.
+     */
+    public synchronized long collect(String cause) {
+        long start = System.nanoTime();
+        stats.begin();
+        markLimit = handles.capacity();
+        int words = (markLimit + 63) >>> 6;
+        if (markBits.length < words) {
+            markBits = new long[words];
+        } else {
+            Arrays.fill(markBits, 0, words, 0L);
+        }
+
+        // Mark phase: roots from stacks and statics, then objects with held monitors
+        roots.visitRoots(handle -> {
+            markAndPush(handle);
+            return handle;
+        });
+        for (int handle = 1; handle < markLimit; handle++) {
+            JVMObject obj = handles.get(handle);
+            if (obj != null && obj.isLocked()) {
+                markAndPush(handle);
+            }
+        }
+        long live = drainMarkStack();
+
+        // Sweep phase: reclaim every allocated but unmarked handle
+        long freed = 0;
+        int releasedCount = 0;
+        for (int handle = 1; handle < markLimit; handle++) {
+            JVMObject obj = handles.get(handle);
+            if (obj != null && !isMarked(handle)) {
+                handles.set(handle, null);
+                obj.release();
+                released[releasedCount++] = handle;
+                if (releasedCount == released.length) {
+                    handles.release(released, releasedCount);
+                    releasedCount = 0;
+                }
+                freed++;
+            }
+        }
+        handles.release(released, releasedCount);
+
+        long pause = System.nanoTime() - start;
+        stats.record(pause, freed, live);
+        Logger.info(String.format("GC(%d) Pause Mark-Sweep (%s): freed %d, live %d, %.3f ms",
+                stats.getCollections(), cause, freed, live, pause / 1e6));
+        return freed;
+    }
+
+    private long drainMarkStack() {
+        long marked = 0;
+        while (markTop > 0) {
+            int handle = markStack[--markTop];
+            marked++;
+            JVMObject obj = handles.get(handle);
+            for (int slot = 0; slot < obj.getReferenceCount(); slot++) {
+                markAndPush(obj.getReference(slot));
+            }
+        }
+        return marked;
+    }
+
+    private void markAndPush(int handle) {
+        if (handle <= 0 || handle >= markLimit || isMarked(handle) || handles.get(handle) == null) {
+            return;
+        }
+        markBits[handle >>> 6] |= 1L << handle;
+        if (markTop == markStack.length) {
+            markStack = Arrays.copyOf(markStack, markStack.length * 2);
+        }
+        markStack[markTop++] = handle;
+    }
+
+    private boolean isMarked(int handle) {
+        return (markBits[handle >>> 6] & (1L << handle)) != 0;
+    }
+
+    /**
+     * @return Pause-time statistics for this collector.
+     */
+    public GcStats getStats() {
+        return stats;
+    }
+}
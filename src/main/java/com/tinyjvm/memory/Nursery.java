@@ -0,0 +1,60 @@
+package com.tinyjvm.memory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The young generation of the generational heap: a fixed-size, bump-pointer allocated
+ * array of handle slots. TLABs claim whole chunks of it; a minor collection evacuates the
+ * survivors and then resets the bump pointer, freeing the whole space at once.
+ * Young handles carry {@link GenerationalCollector#YOUNG_BIT} so they never collide with old handles.
+ */
+public class Nursery {
+    private final JVMObject[] slots;
+    private final AtomicInteger top = new AtomicInteger(0);
+
+    /**
+     * @param capacity Number of handle slots, rounded up to a whole number of TLAB chunks.
+     */
+    public Nursery(int capacity) {
+        int chunks = Math.max(1, (capacity + HandleTable.CHUNK_SIZE - 1) / HandleTable.CHUNK_SIZE);
+        this.slots = new JVMObject[chunks * HandleTable.CHUNK_SIZE];
+    }
+
+    /**
+     * Claims the next chunk of the nursery for a TLAB.
+     *
+     * @return Index of the first slot of the chunk, or -1 if the nursery is full.
+     */
+    public int claimChunk() {
+        int start = top.getAndAdd(HandleTable.CHUNK_SIZE);
+        return start + HandleTable.CHUNK_SIZE <= slots.length ? start : -1;
+    }
+
+    public JVMObject get(int index) {
+        return index < slots.length ? slots[index] : null;
+    }
+
+    public void set(int index, JVMObject object) {
+        slots[index] = object;
+    }
+
+    /**
+     * @return Number of slots handed out since the last reset.
+     */
+    public int used() {
+        return Math.min(top.get(), slots.length);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Empties the nursery after its survivors have been evacuated.
+     */
+    public void reset() {
+        Arrays.fill(slots, 0, used(), null);
+        top.set(0);
+    }
+}
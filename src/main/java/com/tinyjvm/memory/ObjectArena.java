@@ -0,0 +1,146 @@
+package com.tinyjvm.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Off-heap backing store for the fields of guest objects.
+ * <p>
+ * The arena is a list of direct {@link ByteBuffer} pages that are committed lazily. An object's
+ * storage is addressed by a {@code long} whose high bits select the page and whose low
+ * {@link #PAGE_SHIFT} bits are the offset inside it. Threads bump-allocate from private regions
+ * handed out by {@link #allocateRegion(int)}, so the common path never touches the arena itself.
+ * Blocks freed by the collectors go onto exact-size free lists, which are used once the arena
+ * has reached its limit.
+ * <p>
+ * Since the field data lives outside the Java heap, the host garbage collector never scans it.
+ */
+public class ObjectArena {
+    public static final int PAGE_SHIFT = 20; // 1 MB pages
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    public static final int REGION_SIZE = 16 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private final long maxBytes;
+    private volatile ByteBuffer[] pages = new ByteBuffer[8];
+    private int pageCount = 0;   // Guarded by 'this'
+    private int pageTop = PAGE_SIZE; // Bump offset in the last page, guarded by 'this'
+
+    // Freed blocks by size; each entry is a stack of addresses. Guarded by 'this'.
+    private final Map<Integer, long[]> freeLists = new HashMap<>();
+    private final Map<Integer, Integer> freeCounts = new HashMap<>();
+    private long freeBytes = 0;
+
+    public ObjectArena() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes Upper bound for the committed pages; beyond it only freed blocks are reused.
+     */
+    public ObjectArena(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reserves a region for a thread's private bump allocation.
+     *
+     * @param bytes Size of the region, at most {@link #PAGE_SIZE}.
+     * @return The address of the region, or -1 if the arena has reached its limit.
+     */
+    public synchronized long allocateRegion(int bytes) {
+        if (bytes > PAGE_SIZE) {
+            throw new IllegalArgumentException("Object too large for the arena: " + bytes + " bytes");
+        }
+        if (pageTop + bytes > PAGE_SIZE) {
+            if ((long) (pageCount + 1) * PAGE_SIZE > maxBytes) {
+                return -1;
+            }
+            addPage(); // The tail of the previous page is left unused
+        }
+        long address = ((long) (pageCount - 1) << PAGE_SHIFT) | pageTop;
+        pageTop += bytes;
+        return address;
+    }
+
+    private void addPage() {
+        if (pageCount == pages.length) {
+            pages = Arrays.copyOf(pages, pageCount * 2);
+        }
+        pages[pageCount++] = ByteBuffer.allocateDirect(PAGE_SIZE).order(ByteOrder.nativeOrder());
+        pageTop = 0;
+    }
+
+    /**
+     * Takes a previously freed block of exactly the given size. The block is zeroed.
+     *
+     * @param bytes The block size.
+     * @return The address of the block, or -1 if no block of that size is free.
+     */
+    public synchronized long allocateFree(int bytes) {
+        Integer count = freeCounts.get(bytes);
+        if (count == null || count == 0) {
+            return -1;
+        }
+        long address = freeLists.get(bytes)[count - 1];
+        freeCounts.put(bytes, count - 1);
+        freeBytes -= bytes;
+        ByteBuffer page = page(address);
+        int base = offset(address);
+        for (int i = 0; i < bytes; i += 8) {
+            page.putLong(base + i, 0L); // Instance sizes are multiples of 8
+        }
+        return address;
+    }
+
+    /**
+     * Returns an object's block to the free list of its size.
+     *
+     * @param address The block address.
+     * @param bytes   The block size.
+     */
+    public synchronized void free(long address, int bytes) {
+        long[] list = freeLists.get(bytes);
+        int count = freeCounts.getOrDefault(bytes, 0);
+        if (list == null || count == list.length) {
+            list = list == null ? new long[64] : Arrays.copyOf(list, count * 2);
+            freeLists.put(bytes, list);
+        }
+        list[count] = address;
+        freeCounts.put(bytes, count + 1);
+        freeBytes += bytes;
+    }
+
+    /**
+     * @param address An arena address.
+     * @return The page containing the address.
+     */
+    public ByteBuffer page(long address) {
+        return pages[(int) (address >>> PAGE_SHIFT)];
+    }
+
+    /**
+     * @param address An arena address.
+     * @return The offset of the address inside its page.
+     */
+    public static int offset(long address) {
+        return (int) (address & (PAGE_SIZE - 1));
+    }
+
+    /**
+     * @return Bytes of direct memory committed so far.
+     */
+    public synchronized long getCommittedBytes() {
+        return (long) pageCount * PAGE_SIZE;
+    }
+
+    /**
+     * @return Bytes sitting on the free lists.
+     */
+    public synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+}
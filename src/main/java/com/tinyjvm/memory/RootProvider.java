@@ -0,0 +1,17 @@
+package com.tinyjvm.memory;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Supplies the garbage collector with the heap's root set: every handle that is
+ * directly reachable from outside the heap (thread stacks, static fields, ...).
+ */
+public interface RootProvider {
+    /**
+     * Reports every root handle to the given visitor. Handles of 0 (null) may be reported and are ignored.
+     * The visitor's result replaces the root, which lets a moving collector update it.
+     *
+     * @param visitor Receives each root handle and returns the handle to store back.
+     */
+    void visitRoots(IntUnaryOperator visitor);
+}
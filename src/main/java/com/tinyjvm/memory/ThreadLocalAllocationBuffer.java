@@ -0,0 +1,173 @@
+package com.tinyjvm.memory;
+
+/**
+ * A thread-local allocation buffer (TLAB): a private range of handles that a single
+ * thread bump-allocates from without synchronization. When the range is used up the
+ * heap refills it, either with a batch of handles reclaimed by the collector or with
+ * a new chunk from the {@link HandleTable}. Object field storage is bump-allocated the same way,
+ * from a private region of the {@link ObjectArena}.
+ * <p>
+ * The buffer also carries the owning thread's allocation statistics as plain counters,
+ * so tracking allocations no longer keeps every allocated object reachable.
+ * Counters are only written by the owning thread; other threads may read slightly stale values.
+ */
+public class ThreadLocalAllocationBuffer {
+    private final String ownerName; // For reporting only
+    private int cursor = 0;         // Next free handle in the current range
+    private int limit = 0;          // Exclusive end of the current range
+    private int[] recycled;         // Batch of reclaimed handles, used before the range
+    private int recycledCount = 0;
+    private long storageCursor = 0; // Next free byte of the current arena region
+    private long storageLimit = 0;  // Exclusive end of the current arena region
+
+    private long allocatedObjects = 0;
+    private long allocatedBytes = 0;
+    private long reportedBytes = 0; // Part of allocatedBytes already reported to the heap
+    private long refills = 0;
+
+    /**
+     * Constructs an empty TLAB. The first allocation will trigger a refill.
+     *
+     * @param ownerName A descriptive name of the owning thread, used in reports.
+     */
+    public ThreadLocalAllocationBuffer(String ownerName) {
+        this.ownerName = ownerName;
+    }
+
+    /**
+     * Bump-allocates the next handle from the current range.
+     *
+     * @return The allocated handle, or 0 if the buffer is exhausted and needs a refill.
+     */
+    public int allocate() {
+        if (recycledCount > 0) {
+            allocatedObjects++;
+            return recycled[--recycledCount];
+        }
+        if (cursor < limit) {
+            allocatedObjects++;
+            return cursor++;
+        }
+        return 0;
+    }
+
+    /**
+     * Bump-allocates field storage from the current arena region.
+     *
+     * @param bytes The instance size.
+     * @return The arena address of the block, or -1 if the region cannot hold it.
+     */
+    public long allocateStorage(int bytes) {
+        long address = storageCursor;
+        if (address + bytes <= storageLimit) {
+            storageCursor = address + bytes;
+            return address;
+        }
+        return -1;
+    }
+
+    /**
+     * Installs a new arena region for field storage. The rest of the old region is abandoned.
+     *
+     * @param start The first address of the region.
+     * @param end   The exclusive end of the region.
+     */
+    public void refillStorage(long start, long end) {
+        this.storageCursor = start;
+        this.storageLimit = end;
+    }
+
+    /**
+     * Installs a new range of handles into this buffer, discarding whatever remained of the old one.
+     *
+     * @param start The first handle of the new range.
+     * @param end   The exclusive end of the new range.
+     */
+    public void refill(int start, int end) {
+        this.cursor = start;
+        this.limit = end;
+        this.refills++;
+    }
+
+    /**
+     * Returns the array the heap should fill with reclaimed handles before calling
+     * {@link #refillRecycled(int)}. The array is allocated once and reused.
+     *
+     * @return The recycle batch array.
+     */
+    public int[] recycleBuffer() {
+        if (recycled == null) {
+            recycled = new int[HandleTable.CHUNK_SIZE];
+        }
+        return recycled;
+    }
+
+    /**
+     * Installs a batch of reclaimed handles previously written into {@link #recycleBuffer()}.
+     *
+     * @param count The number of handles in the batch.
+     */
+    public void refillRecycled(int count) {
+        this.recycledCount = count;
+        this.refills++;
+    }
+
+    /**
+     * Drops the remaining range, so the next allocation goes to the slow path.
+     */
+    public void retire() {
+        this.cursor = 0;
+        this.limit = 0;
+        this.recycledCount = 0;
+    }
+
+    /**
+     * Gives the handles this buffer has not used yet back to the table's free list and retires it.
+     * Used when a collection needs every thread to start allocating from a new range.
+     *
+     * @param table The table the handles came from.
+     */
+    public void releaseRemaining(HandleTable table) {
+        int[] rest = new int[getRemaining()];
+        int count = 0;
+        for (int i = 0; i < recycledCount; i++) {
+            rest[count++] = recycled[i];
+        }
+        for (int handle = cursor; handle < limit; handle++) {
+            rest[count++] = handle;
+        }
+        table.release(rest, count);
+        retire();
+    }
+
+    /**
+     * Adds the size of an object just allocated from this buffer to the byte counter.
+     * @param bytes The object's size in bytes.
+     */
+    public void recordBytes(int bytes) {
+        allocatedBytes += bytes;
+    }
+
+    /**
+     * Returns the bytes allocated since the previous call, for the heap's collection trigger.
+     * Only called by the owning thread from the refill slow path.
+     *
+     * @return Newly allocated bytes since the last report.
+     */
+    public long takeUnreportedBytes() {
+        long delta = allocatedBytes - reportedBytes;
+        reportedBytes = allocatedBytes;
+        return delta;
+    }
+
+    public String getOwnerName() { return ownerName; }
+    public long getAllocatedObjects() { return allocatedObjects; }
+    public long getAllocatedBytes() { return allocatedBytes; }
+    public long getRefills() { return refills; }
+    public int getRemaining() { return recycledCount + (limit - cursor); }
+
+    @Override
+    public String toString() {
+        return "TLAB[" + ownerName + ", allocated=" + allocatedObjects + ", refills=" + refills + ", remaining=" + getRemaining() + "]";
+    }
+}
@@ -0,0 +1,196 @@
+package com.tinyjvm.metrics;
+
+import com.tinyjvm.interpreter.ExecutionCounters;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.Scheduler;
+import com.tinyjvm.utils.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * VM-wide metrics: the interpreter's {@link ExecutionCounters}, and scheduler and heap figures.
+ * <p>
+ * They are available as a JMX MXBean, registered by {@link #registerMBean()} or, with
+ * {@code -Dtinyjvm.metrics.jmx=true}, by {@link Scheduler#start()}, and as a text snapshot in the
+ * Prometheus exposition format: one {@code name{label="value"} number} line per metric, e.g.
+ * {@code tinyjvm_method_invocations_total{method="Main.main"} 1}.
+ * Every value is computed when it is read; nothing is collected in the background.
+ */
+public class VmMetrics implements VmMetricsMXBean {
+    public static final String OBJECT_NAME = "com.tinyjvm:type=VmMetrics";
+
+    private static VmMetrics registered; // Guarded by VmMetrics.class
+
+    private long lastAllocatedBytes; // Guarded by this; for the allocation rate
+    private long lastRateNanos;
+
+    public VmMetrics() {
+        lastAllocatedBytes = getAllocatedBytes();
+        lastRateNanos = System.nanoTime();
+    }
+
+    /**
+     * Registers the VM's metrics with the platform MBean server, once.
+     *
+     * @return The registered instance.
+     */
+    public static synchronized VmMetrics registerMBean() {
+        if (registered == null) {
+            VmMetrics metrics = new VmMetrics();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+            }
+            registered = metrics;
+        }
+        return registered;
+    }
+
+    /**
+     * Registers the MBean if {@code -Dtinyjvm.metrics.jmx=true}.
+     */
+    public static void registerIfRequested() {
+        if (Boolean.getBoolean("tinyjvm.metrics.jmx")) {
+            try {
+                registerMBean();
+            } catch (IllegalStateException e) {
+                Logger.error("VmMetrics: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public long getInstructionsExecuted() {
+        return ExecutionCounters.snapshot().getInstructions();
+    }
+
+    @Override
+    public Map<String, Long> getOpcodeCounts() {
+        return opcodeCounts(ExecutionCounters.snapshot());
+    }
+
+    @Override
+    public Map<String, Long> getMethodInvocationCounts() {
+        return new TreeMap<>(ExecutionCounters.snapshot().getInvocationCounts());
+    }
+
+    @Override
+    public Map<String, Long> getBackEdgeCounts() {
+        return new TreeMap<>(ExecutionCounters.snapshot().getBackEdgeCounts());
+    }
+
+    @Override
+    public int getRunQueueLength() {
+        return Scheduler.getInstance().getRunQueueLength();
+    }
+
+    @Override
+    public long getDispatchCount() {
+        return Scheduler.getInstance().getDispatchCount();
+    }
+
+    @Override
+    public long getContextSwitchCount() {
+        return Scheduler.getInstance().getContextSwitchCount();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        JVMHeap heap = JVMThread.getSharedHeapInstance();
+        return heap != null ? heap.getAllocatedBytes() : 0;
+    }
+
+    @Override
+    public synchronized double getAllocationRateBytesPerSecond() {
+        long bytes = getAllocatedBytes();
+        long now = System.nanoTime();
+        // A new heap starts over at zero; count its bytes from there
+        long allocated = bytes >= lastAllocatedBytes ? bytes - lastAllocatedBytes : bytes;
+        double rate = allocated * 1e9 / Math.max(1, now - lastRateNanos);
+        lastAllocatedBytes = bytes;
+        lastRateNanos = now;
+        return rate;
+    }
+
+    @Override
+    public int getLiveObjects() {
+        JVMHeap heap = JVMThread.getSharedHeapInstance();
+        return heap != null ? heap.getTotalObjectsInHeap() : 0;
+    }
+
+    @Override
+    public String getSnapshot() {
+        return snapshot();
+    }
+
+    /**
+     * @return Every metric in the Prometheus text exposition format.
+     */
+    public String snapshot() {
+        ExecutionCounters.Snapshot counters = ExecutionCounters.snapshot();
+        StringBuilder sb = new StringBuilder();
+        header(sb, "tinyjvm_instructions_total", "counter", "Guest instructions executed");
+        sb.append("tinyjvm_instructions_total ").append(counters.getInstructions()).append('\n');
+        header(sb, "tinyjvm_opcode_executions_total", "counter", "Guest instructions executed by opcode");
+        labeled(sb, "tinyjvm_opcode_executions_total", "opcode", opcodeCounts(counters));
+        header(sb, "tinyjvm_method_invocations_total", "counter", "Guest method invocations");
+        labeled(sb, "tinyjvm_method_invocations_total", "method", new TreeMap<>(counters.getInvocationCounts()));
+        header(sb, "tinyjvm_method_back_edges_total", "counter", "Backward branches taken by guest method");
+        labeled(sb, "tinyjvm_method_back_edges_total", "method", new TreeMap<>(counters.getBackEdgeCounts()));
+        header(sb, "tinyjvm_scheduler_run_queue_length", "gauge", "Guest threads waiting to run");
+        sb.append("tinyjvm_scheduler_run_queue_length ").append(getRunQueueLength()).append('\n');
+        header(sb, "tinyjvm_scheduler_dispatches_total", "counter", "Quanta dispatched");
+        sb.append("tinyjvm_scheduler_dispatches_total ").append(getDispatchCount()).append('\n');
+        header(sb, "tinyjvm_scheduler_context_switches_total", "counter", "Quanta in which a host thread switched guests");
+        sb.append("tinyjvm_scheduler_context_switches_total ").append(getContextSwitchCount()).append('\n');
+        header(sb, "tinyjvm_heap_allocated_bytes_total", "counter", "Bytes allocated on the guest heap");
+        sb.append("tinyjvm_heap_allocated_bytes_total ").append(getAllocatedBytes()).append('\n');
+        header(sb, "tinyjvm_heap_allocation_rate_bytes_per_second", "gauge", "Allocation rate since the previous read");
+        sb.append("tinyjvm_heap_allocation_rate_bytes_per_second ").append(getAllocationRateBytesPerSecond()).append('\n');
+        header(sb, "tinyjvm_heap_live_objects", "gauge", "Objects on the guest heap");
+        sb.append("tinyjvm_heap_live_objects ").append(getLiveObjects()).append('\n');
+        return sb.toString();
+    }
+
+    private static Map<String, Long> opcodeCounts(ExecutionCounters.Snapshot counters) {
+        Map<String, Long> counts = new TreeMap<>();
+        long[] histogram = counters.getOpcodeHistogram();
+        for (int opcode = 0; opcode < histogram.length; opcode++) {
+            if (histogram[opcode] != 0) {
+                counts.put(String.format("0x%02X", opcode), histogram[opcode]);
+            }
+        }
+        return counts;
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void labeled(StringBuilder sb, String name, String label, Map<String, Long> values) {
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            sb.append(name).append('{').append(label).append("=\"");
+            String value = entry.getKey();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append("\"} ").append(entry.getValue()).append('\n');
+        }
+    }
+}
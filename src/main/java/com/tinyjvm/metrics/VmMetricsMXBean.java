@@ -0,0 +1,42 @@
+package com.tinyjvm.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link VmMetrics}, registered as {@value VmMetrics#OBJECT_NAME}.
+ */
+public interface VmMetricsMXBean {
+
+    /** @return Guest instructions executed by all threads. */
+    long getInstructionsExecuted();
+
+    /** @return Execution counts by opcode, as "0x60"; opcodes never executed are left out. */
+    Map<String, Long> getOpcodeCounts();
+
+    /** @return Invocation counts by guest method. */
+    Map<String, Long> getMethodInvocationCounts();
+
+    /** @return Counts of backward branches taken, by guest method. */
+    Map<String, Long> getBackEdgeCounts();
+
+    /** @return Guest threads waiting to run. */
+    int getRunQueueLength();
+
+    /** @return Quanta dispatched since startup. */
+    long getDispatchCount();
+
+    /** @return Quanta in which a host thread switched to a different guest. */
+    long getContextSwitchCount();
+
+    /** @return Bytes allocated on the guest heap since it was created. */
+    long getAllocatedBytes();
+
+    /** @return Bytes allocated per second since the previous call, or since this object was created. */
+    double getAllocationRateBytesPerSecond();
+
+    /** @return Objects on the guest heap that have not been collected. */
+    int getLiveObjects();
+
+    /** @return All of the above in the text format of {@link VmMetrics#snapshot()}. */
+    String getSnapshot();
+}
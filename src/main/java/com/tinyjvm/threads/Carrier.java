@@ -0,0 +1,153 @@
+package com.tinyjvm.threads;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A host thread that runs guest threads in the scheduler's M:N mode.
+ * <p>
+ * Each carrier owns a run deque. The carrier itself takes work from the head and puts preempted
+ * threads back at the tail, so its own threads are run round-robin; idle carriers steal from the
+ * tail of other carriers' deques, away from the end the owner works on. A thread remembers the
+ * carrier that last ran it and is queued there again when it becomes runnable, so it tends to stay
+ * on the same host thread (and CPU caches) unless another carrier runs out of work.
+ */
+final class Carrier {
+    private final Scheduler scheduler;
+    private final int index;
+    private final Thread host;
+    private final Deque<JVMThread> runDeque = new ConcurrentLinkedDeque<>();
+    private volatile boolean idle = false;
+    private volatile boolean preemptRequested = false; // A woken thread waits at the head of the deque
+    private long steals = 0;     // Written by the carrier's own host thread only
+    private long dispatches = 0; // Ditto
+
+    Carrier(Scheduler scheduler, int index) {
+        this.scheduler = scheduler;
+        this.index = index;
+        this.host = new Thread(this::run, "tinyjvm-carrier-" + index);
+    }
+
+    void start() {
+        host.start();
+    }
+
+    void join() throws InterruptedException {
+        host.join();
+    }
+
+    private void run() {
+        while (!scheduler.isCarrierShutdown()) {
+            scheduler.runExpiredTimeouts(false);
+            JVMThread thread = runDeque.pollFirst();
+            if (thread == null) {
+                thread = scheduler.steal(this);
+                if (thread != null) {
+                    steals++;
+                }
+            }
+            if (thread == null) {
+                scheduler.idle(this);
+            } else {
+                scheduler.runOnCarrier(thread, this);
+                dispatches++;
+            }
+        }
+    }
+
+    /**
+     * Queues a thread at the tail of this carrier's deque and wakes the carrier if it is idle.
+     */
+    void push(JVMThread thread) {
+        runDeque.offerLast(thread);
+        wake();
+    }
+
+    /**
+     * Queues a thread at the head of this carrier's deque, to run next. Used for threads that just
+     * woke up under time slicing, so an interactive thread does not wait behind every CPU-bound one.
+     */
+    void pushFirst(JVMThread thread) {
+        runDeque.offerFirst(thread);
+        wake();
+    }
+
+    /**
+     * Takes a thread for another carrier.
+     *
+     * @return The thread at the tail, or null if the deque is empty.
+     */
+    JVMThread steal() {
+        return runDeque.pollLast();
+    }
+
+    /**
+     * Asks the slice running on this carrier to end early under time slicing.
+     */
+    void requestPreempt() {
+        preemptRequested = true;
+    }
+
+    boolean takePreemptRequest() {
+        if (preemptRequested) {
+            preemptRequested = false;
+            return true;
+        }
+        return false;
+    }
+
+    boolean hasWork() {
+        return !runDeque.isEmpty();
+    }
+
+    int queueLength() {
+        return runDeque.size();
+    }
+
+    /**
+     * Parks the carrier's host thread until {@link #wake()} or the timeout.
+     * Must be called on the carrier's own host thread.
+     *
+     * @param nanos The timeout, or a negative value to wait for {@link #wake()} only.
+     */
+    void parkIdle(long nanos) {
+        idle = true;
+        // Re-check after publishing 'idle': whoever queued work or shut down before that did not wake us
+        if (!hasWork() && !scheduler.isCarrierShutdown()) {
+            if (nanos < 0) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+        idle = false;
+    }
+
+    void wake() {
+        if (idle) {
+            LockSupport.unpark(host);
+        }
+    }
+
+    boolean isIdle() {
+        return idle;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    long getSteals() {
+        return steals;
+    }
+
+    long getDispatches() {
+        return dispatches;
+    }
+
+    @Override
+    public String toString() {
+        return "Carrier[" + index + ", queued=" + runDeque.size() + ", dispatches=" + dispatches + ", steals=" + steals + "]";
+    }
+}
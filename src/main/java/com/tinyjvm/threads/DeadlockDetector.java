@@ -0,0 +1,173 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.memory.JVMObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds guest threads that are deadlocked on monitors.
+ * <p>
+ * The wait-for graph is not kept here: it is already maintained by {@link Monitor}. A thread that
+ * queues on a contended monitor records it as {@link JVMThread#getBlockedOn() blocked on}, and clears
+ * it once it acquires the monitor; the monitor's owner is the thread it waits for. Only the contended
+ * path touches these edges, so uncontended (thin or inflated) locking pays nothing for detection.
+ * <p>
+ * Each thread waits for at most one other thread, so every cycle is found by following chains, in
+ * time linear in the number of threads. A cycle found while guest threads are running is re-checked
+ * before it is reported; when all of them are parked, as when the scheduler runs out of work,
+ * the result is exact.
+ */
+public final class DeadlockDetector {
+    private static final AtomicLong detected = new AtomicLong();
+
+    private DeadlockDetector() {
+    }
+
+    /**
+     * A set of threads each waiting for a monitor owned by the next, the last one by the first.
+     */
+    public static final class Deadlock {
+        private final List<JVMThread> threads;
+        private final List<Monitor> monitors;
+
+        Deadlock(List<JVMThread> threads, List<Monitor> monitors) {
+            this.threads = Collections.unmodifiableList(threads);
+            this.monitors = Collections.unmodifiableList(monitors);
+        }
+
+        /**
+         * @return The threads of the cycle.
+         */
+        public List<JVMThread> getThreads() {
+            return threads;
+        }
+
+        /**
+         * @return The monitor each thread waits for, in the order of {@link #getThreads()}.
+         */
+        public List<Monitor> getMonitors() {
+            return monitors;
+        }
+
+        /**
+         * Describes the cycle like a thread dump: each thread, the monitor it waits for and its
+         * owner, and the thread's guest stack, innermost frame first.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Found a deadlock between " + threads.size() + " threads:");
+            for (int i = 0; i < threads.size(); i++) {
+                JVMThread thread = threads.get(i);
+                Monitor monitor = monitors.get(i);
+                JVMThread owner = threads.get((i + 1) % threads.size());
+                sb.append("\n\"Thread-").append(thread.getThreadId()).append("\" ").append(thread.getState())
+                        .append(", waiting to lock ").append(describe(monitor))
+                        .append(", which is held by \"Thread-").append(owner.getThreadId()).append('"');
+                List<JFrame> frames = thread.getStack().getFrames();
+                for (JFrame frame : frames) {
+                    sb.append("\n    at pc ").append(frame.pc);
+                    if (frame.pc >= 0 && frame.pc < frame.code.length) {
+                        sb.append(" (opcode 0x").append(String.format("%02X", frame.code[frame.pc])).append(')');
+                    }
+                    sb.append(" in ").append(frame.getMethodName()).append(" [").append(frame.code.length).append(" bytes]");
+                }
+                if (frames.isEmpty()) {
+                    sb.append("\n    (no guest frames)");
+                }
+            }
+            return sb.toString();
+        }
+
+        private static String describe(Monitor monitor) {
+            JVMObject obj = ObjectSynchronizer.findObject(monitor);
+            String id = "monitor@" + Integer.toHexString(System.identityHashCode(monitor));
+            return obj != null ? id + " of a " + obj.getLayout().getClassName() + " at " + obj.getAddress() : id;
+        }
+    }
+
+    /**
+     * Looks for deadlocks among all live guest threads.
+     *
+     * @return The deadlocks found, empty if there are none.
+     */
+    public static List<Deadlock> findDeadlocks() {
+        return findDeadlocks(JVMThread.getLiveThreads());
+    }
+
+    /**
+     * Looks for deadlocks among the given threads. A cycle through a thread not in the collection is not found.
+     *
+     * @param threads The threads to check.
+     * @return The deadlocks found, empty if there are none.
+     */
+    public static List<Deadlock> findDeadlocks(Collection<JVMThread> threads) {
+        List<Deadlock> deadlocks = new ArrayList<>();
+        Map<JVMThread, Integer> visitedInChain = new HashMap<>(); // Thread -> number of the chain that reached it
+        int chain = 0;
+        for (JVMThread start : threads) {
+            chain++;
+            JVMThread thread = start;
+            while (thread != null && !visitedInChain.containsKey(thread)) {
+                visitedInChain.put(thread, chain);
+                thread = waitsFor(thread);
+            }
+            if (thread == null || visitedInChain.get(thread) != chain) {
+                continue; // The chain ends, or runs into one already explored
+            }
+            Deadlock deadlock = collectCycle(thread);
+            if (deadlock != null) {
+                deadlocks.add(deadlock);
+            }
+        }
+        detected.addAndGet(deadlocks.size());
+        return deadlocks;
+    }
+
+    /**
+     * Walks the cycle through a thread, checking that each edge still holds.
+     *
+     * @return The deadlock, or null if the cycle came from reading the graph while it changed.
+     */
+    private static Deadlock collectCycle(JVMThread first) {
+        List<JVMThread> threads = new ArrayList<>();
+        List<Monitor> monitors = new ArrayList<>();
+        JVMThread thread = first;
+        do {
+            Monitor monitor = thread.getBlockedOn();
+            JVMThread owner = monitor != null ? monitor.getOwner() : null;
+            if (owner == null || owner == thread || threads.contains(owner) && owner != first) {
+                return null;
+            }
+            threads.add(thread);
+            monitors.add(monitor);
+            thread = owner;
+        } while (thread != first);
+        return new Deadlock(threads, monitors);
+    }
+
+    /**
+     * @return The thread owning the monitor the given thread is queued on, or null if it is not waiting for another thread.
+     */
+    private static JVMThread waitsFor(JVMThread thread) {
+        Monitor monitor = thread.getBlockedOn();
+        if (monitor == null) {
+            return null;
+        }
+        JVMThread owner = monitor.getOwner();
+        return owner != thread ? owner : null; // A fair handoff makes the queued thread the owner before it dequeues
+    }
+
+    /**
+     * @return The number of deadlocks found by all searches since startup.
+     */
+    public static long getDetectedCount() {
+        return detected.get();
+    }
+}
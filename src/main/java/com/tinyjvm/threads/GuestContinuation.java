@@ -0,0 +1,142 @@
+package com.tinyjvm.threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the host-side {@link Runnable} target of a {@link JVMThread} so that it can be suspended midway.
+ * <p>
+ * Java 8 has no way to suspend a running stack, so a target that yields or blocks on a monitor
+ * midway needs a host stack of its own. Run inline on the carrier, it could either not give up the
+ * processor at all, or would park the carrier and every guest queued on it. The target therefore
+ * runs on a separate host thread, but only while the scheduler has handed it control:
+ * {@link #resume()} passes control to the target and waits until the target calls {@link #suspend()}
+ * (because it yielded or parked) or returns. Exactly one of the two host threads runs at any time,
+ * so the target still behaves as if it ran on the scheduler thread. The host thread reports
+ * its guest as {@link Scheduler#getCurrentThread()}, whichever carrier resumed it.
+ * <p>
+ * Host threads are only held while a target is running or suspended: they are virtual threads
+ * where the host supports them, and otherwise come from a shared pool that takes them back as soon
+ * as a target completes. Targets that just push their frames and return thus cost no thread of their own.
+ * <p>
+ * A guest that already has a host thread of its own (virtual-thread mode) uses an
+ * {@link #inline} continuation instead, which just runs the target to completion in {@link #resume()}.
+ */
+final class GuestContinuation {
+    private static final AtomicInteger poolThreads = new AtomicInteger();
+    // Platform hosts are reused by later targets; idle ones exit after a minute
+    private static final ExecutorService PLATFORM_HOSTS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "tinyjvm-guest-host-" + poolThreads.getAndIncrement());
+        thread.setDaemon(true); // Threads left blocked forever must not keep the VM alive
+        return thread;
+    });
+
+    private final JVMThread guest;
+    private final Runnable body;
+    private final boolean inline;   // Run on the caller's thread, never suspended
+    private volatile Thread host;   // Set by the host thread while it runs the target
+    private boolean launched;       // Only touched by the resuming carrier
+    private Thread resumer;         // Host thread waiting in resume(); the carrier may change between quanta
+    private volatile boolean guestTurn = false;
+    private volatile boolean done = false;
+    private volatile Throwable failure;
+
+    GuestContinuation(JVMThread guest, Runnable body) {
+        this(guest, body, false);
+    }
+
+    private GuestContinuation(JVMThread guest, Runnable body, boolean inline) {
+        this.guest = guest;
+        this.body = body;
+        this.inline = inline;
+    }
+
+    /**
+     * Creates a continuation that runs the target directly on the thread calling {@link #resume()}.
+     * The target then blocks and yields its host thread itself.
+     */
+    static GuestContinuation inline(JVMThread guest, Runnable body) {
+        return new GuestContinuation(guest, body, true);
+    }
+
+    /**
+     * Runs the target until it suspends or completes. Called by the scheduler.
+     *
+     * @return true once the target has completed.
+     */
+    boolean resume() {
+        if (inline) {
+            try {
+                body.run();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            done = true;
+            return true;
+        }
+        resumer = Thread.currentThread();
+        guestTurn = true;
+        if (!launched) {
+            launched = true;
+            if (VirtualThreadRunner.isVirtualThreadSupported()) {
+                VirtualThreadRunner.newHostThread(this::runBody).start();
+            } else {
+                PLATFORM_HOSTS.execute(this::runBody);
+            }
+        } else {
+            LockSupport.unpark(host);
+        }
+        while (guestTurn) {
+            LockSupport.park(this);
+        }
+        return done;
+    }
+
+    /**
+     * Hands control back to the scheduler and waits until the target is resumed.
+     * Must be called on the target's own host thread.
+     */
+    void suspend() {
+        guestTurn = false;
+        LockSupport.unpark(resumer);
+        while (!guestTurn) {
+            LockSupport.park(this);
+        }
+    }
+
+    private void runBody() {
+        host = Thread.currentThread(); // Before the target can suspend, so resume() can unpark it
+        Scheduler.bindCurrentThread(guest);
+        try {
+            body.run();
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            Scheduler.bindCurrentThread(null); // A pooled host goes on to serve other guests
+            host = null;
+            done = true;
+            guestTurn = false;
+            LockSupport.unpark(resumer);
+        }
+    }
+
+    /**
+     * @return true if the caller is running on this continuation's host thread.
+     */
+    boolean isCurrent() {
+        return Thread.currentThread() == host;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return The exception that ended the target, or null if it returned normally.
+     */
+    Throwable getFailure() {
+        return failure;
+    }
+}
@@ -5,46 +5,129 @@ import com.tinyjvm.interpreter.BytecodeInterpreter;
 import com.tinyjvm.interpreter.JVMHeap; // Required for interpreter instantiation
 import com.tinyjvm.interpreter.JVMStack;
 import com.tinyjvm.interpreter.JFrame; // For when target.run() might create a frame
+import com.tinyjvm.memory.ThreadLocalAllocationBuffer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class JVMThread {
+    public static final int MIN_PRIORITY = 1;
+    public static final int NORM_PRIORITY = 5;
+    public static final int MAX_PRIORITY = 10;
+
     // ... (idCounter, threadId, state, stack, programCounter, target, ThreadState enum are the same)
-    private static int idCounter = 1;
+    private static final AtomicInteger idCounter = new AtomicInteger(1); // Threads may be created on any carrier
     private final int threadId;
     private volatile ThreadState state;
     private final JVMStack stack;
     private int programCounter;
     private final Runnable target;
     private final BytecodeInterpreter interpreter; // Interpreter instance for this thread
+    private ThreadLocalAllocationBuffer tlab; // Private allocation buffer, created by JVMHeap on first allocation
+    private GuestContinuation continuation; // Runs 'target' so it can be suspended, created on first run
+    private volatile Monitor blockedOn; // Monitor whose entry queue holds this thread, if any
+    private long lockWaitStartNanos; // When it queued on blockedOn, if the lock profiler is on; 0 otherwise
+    private volatile boolean started;
+    private final AtomicInteger unstartedThinLocks = new AtomicInteger(); // Thin locks held while not started, see thinLockAcquired()
+    private final AtomicBoolean parkPermit = new AtomicBoolean(); // Set by an unpark that found the thread not yet parked
+    private volatile Thread parkedHost; // Host thread blocked in Scheduler.park outside of a continuation
+    private volatile Carrier carrier; // Carrier that queued or last ran this thread, for affinity
+    private final AtomicBoolean queued = new AtomicBoolean(); // On a carrier's run deque
+    private final AtomicBoolean mounted = new AtomicBoolean(); // A carrier is running a quantum of this thread
+    private volatile Thread host; // Host thread of its own in virtual-thread mode, null otherwise
+    private volatile boolean inQuantum; // Counted as running (not at a safepoint) by the scheduler's Safepoint
+    private final Queue<JVMThread> joiners = new ConcurrentLinkedQueue<>(); // Threads in join() on this one
+    private volatile int priority = NORM_PRIORITY;
+    // Time-sliced scheduling; only touched by the host thread running or queueing this thread
+    private long virtualRuntime;    // CPU time scaled by priority weight; lowest runs first
+    private int sliceBoost = 1;     // Grows while the thread uses up its slices (CPU-bound)
+    private long queueSequence;     // FIFO order among equal virtual runtimes
+    private volatile long cpuTimeNanos;
+    // Open flight recorder events, see GuestEvents; never touched by two host threads at once
+    Object quantumEvent;
+    Object monitorEvent;
+
+    private static final AtomicReferenceFieldUpdater<JVMThread, ThreadState> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(JVMThread.class, ThreadState.class, "state");
 
     // Assuming JVMHeap is a singleton for now, for interpreter instantiation.
     // This should be refined later if heap is managed differently.
     private static JVMHeap sharedHeapInstance;
+
+    // Started threads that have not terminated, by id; thin lock words only record the owner's id
+    private static final Map<Integer, JVMThread> liveThreads = new ConcurrentHashMap<>();
+    // Threads that were never started but hold thin locks, taken by host code on their behalf
+    private static final Map<Integer, JVMThread> unstartedLockOwners = new ConcurrentHashMap<>();
     public static void setSharedHeapInstance(JVMHeap heap) { sharedHeapInstance = heap; }
+    public static JVMHeap getSharedHeapInstance() { return sharedHeapInstance; }
 
     public enum ThreadState { NEW, RUNNABLE, RUNNING, BLOCKED, WAITING, TERMINATED }
 
     public JVMThread(Runnable target, int stackSize) {
-        this.threadId = idCounter++;
+        this.threadId = idCounter.getAndIncrement();
         this.state = ThreadState.NEW;
         this.target = target;
         this.stack = new JVMStack(stackSize);
         this.programCounter = 0;
+        JVMThread creator = Scheduler.getCurrentThread();
+        if (creator != null) {
+            this.priority = creator.priority; // Like java.lang.Thread, inherit the creator's priority
+        }
         if (sharedHeapInstance == null) {
             // This is a temporary measure. Heap should be properly initialized and passed.
             // throw new IllegalStateException("Shared JVMHeap instance not set for JVMThread constructor.");
             // For now, allow it to be null if tests don't immediately use opcodes needing heap.
             Logger.error("Warning: JVMThread created but sharedHeapInstance is null. Interpreter might fail for heap operations.");
+        } else {
+            sharedHeapInstance.registerThread(this); // Our stack is a source of GC roots
         }
         this.interpreter = new BytecodeInterpreter(sharedHeapInstance);
     }
 
+    /**
+     * Sets the id the next thread gets, so tests can create threads with large ids.
+     *
+     * @param nextId The next id to hand out.
+     * @return The id that would have been handed out instead.
+     */
+    static int setNextThreadId(int nextId) {
+        return idCounter.getAndSet(nextId);
+    }
+
+    /**
+     * Looks up a started thread that has not terminated yet, or an unstarted one holding a thin lock.
+     *
+     * @param threadId The thread id.
+     * @return The thread, or null if there is no such live thread.
+     */
+    public static JVMThread findById(int threadId) {
+        JVMThread thread = liveThreads.get(threadId);
+        return thread != null ? thread : unstartedLockOwners.get(threadId);
+    }
+
+    /**
+     * @return A view of the started threads that have not terminated yet.
+     */
+    static Collection<JVMThread> getLiveThreads() {
+        return liveThreads.values();
+    }
+
     // start(), getters, setters, toString() mostly remain the same...
     public void start() {
         if (state != ThreadState.NEW) {
             throw new IllegalThreadStateException("Thread has already been started.");
         }
         state = ThreadState.RUNNABLE;
-        Logger.info("Thread " + threadId + " state set to RUNNABLE. Target: " + (target != null ? target.getClass().getName() : "null"));
+        started = true;
+        liveThreads.put(threadId, this);
+        unstartedLockOwners.remove(threadId); // Found through liveThreads from now on
+        Logger.info("Thread {} state set to RUNNABLE. Target: {}", threadId, target != null ? target.getClass().getName() : null);
         Scheduler.getInstance().registerThread(this); // Now we can uncomment this
     }
 
@@ -54,32 +137,37 @@ public class JVMThread {
             // this can happen. Only execute if truly RUNNING.
             // Or, the scheduler should ensure it only calls on RUNNING threads.
             // For now, let's be defensive.
-            Logger.debug("Thread " + threadId + " executeNextInstruction called when not RUNNING. State: " + state);
+            Logger.debug("Thread {} executeNextInstruction called when not RUNNING. State: {}", threadId, state);
             return state == ThreadState.RUNNABLE; // If runnable, it's okay, scheduler will handle. If other, it's an issue.
         }
 
-        // Initial execution of target.run() if stack is empty
+        // Run the host-side target first; it may suspend (yield or park) and resume in later quanta
         if (stack.isEmpty()) {
-            if (target != null) {
-                Logger.debug("Thread " + threadId + " [State:" + state + "]: Executing target.run() for the first time.");
-                try {
-                    target.run(); // This might push frames and set up for bytecode execution
-                } catch (Exception e) {
-                    Logger.error("Thread " + threadId + " threw an exception in target.run(): " + e.getMessage());
-                    state = ThreadState.TERMINATED;
+            if (target != null && (continuation == null || !continuation.isDone())) {
+                if (continuation == null) {
+                    continuation = host != null ? GuestContinuation.inline(this, target) : new GuestContinuation(this, target);
+                    Logger.debug("Thread {} [State:{}]: Executing target.run() for the first time.", threadId, state);
+                }
+                if (!continuation.resume()) {
+                    return false; // Suspended; the target has set the state (RUNNABLE or BLOCKED)
+                }
+                Throwable failure = continuation.getFailure();
+                if (failure != null) {
+                    Logger.error("Thread {} threw an exception in target.run(): {}", threadId, failure);
+                    setState(ThreadState.TERMINATED);
                     return false;
                 }
 
                 if (stack.isEmpty()) {
                     // If target.run() was self-contained and didn't push frames for bytecode.
-                    state = ThreadState.TERMINATED;
-                    Logger.info("Thread " + threadId + " [State:" + state + "]: Terminated (target.run() completed and no new frames pushed).");
+                    setState(ThreadState.TERMINATED);
+                    Logger.info("Thread {} [State:{}]: Terminated (target.run() completed and no new frames pushed).", threadId, state);
                     return false;
                 }
                 // If frames were pushed, execution will proceed to interpreter below.
             } else {
-                state = ThreadState.TERMINATED;
-                Logger.info("Thread " + threadId + " [State:" + state + "]: Terminated (no target and stack empty).");
+                setState(ThreadState.TERMINATED);
+                Logger.info("Thread {} [State:{}]: Terminated (no target and stack empty).", threadId, state);
                 return false;
             }
         }
@@ -95,13 +183,113 @@ public class JVMThread {
         return shouldContinue;
     }
 
+    /**
+     * Waits for this thread to terminate. Must be called from another guest thread.
+     *
+     * @param timeoutMillis Maximum time to wait, 0 to wait forever.
+     * @return true if this thread has terminated.
+     */
+    public boolean join(long timeoutMillis) {
+        return Scheduler.join(Scheduler.getCurrentThread(), this, timeoutMillis);
+    }
+
+    /**
+     * Sets the scheduling priority. With time slicing, a higher priority gets longer slices and a
+     * larger share of the processor; with instruction quanta it has no effect.
+     *
+     * @param priority {@link #MIN_PRIORITY} to {@link #MAX_PRIORITY}.
+     */
+    public void setPriority(int priority) {
+        if (priority < MIN_PRIORITY || priority > MAX_PRIORITY) {
+            throw new IllegalArgumentException("Priority out of range: " + priority);
+        }
+        this.priority = priority;
+    }
+
+    public int getPriority() { return priority; }
+
+    /**
+     * @return The time this thread has spent running under the time-sliced scheduler.
+     */
+    public long getCpuTimeNanos() { return cpuTimeNanos; }
+
+    /**
+     * @return The next opcode of the top frame, or -1 if the thread is about to run host-side target code.
+     */
+    int nextOpcode() {
+        JFrame frame = stack.isEmpty() ? null : stack.peek();
+        return frame != null && frame.pc < frame.code.length ? Byte.toUnsignedInt(frame.code[frame.pc]) : -1;
+    }
+
+    /**
+     * Called by {@link ObjectSynchronizer} when this thread takes a thin lock that was free. Host code may
+     * lock on behalf of a thread it never starts; such a thread is registered while it holds thin locks,
+     * so that inflation can find the owner from the id in the lock word.
+     */
+    void thinLockAcquired() {
+        if (!started && unstartedThinLocks.getAndIncrement() == 0) {
+            unstartedLockOwners.put(threadId, this);
+        }
+    }
+
+    /**
+     * Called when a thin lock of this thread is freed, or moved into a monitor that refers to this thread.
+     */
+    void thinLockReleased() {
+        if (!started && unstartedThinLocks.decrementAndGet() == 0) {
+            unstartedLockOwners.remove(threadId, this);
+        }
+    }
+
     // getters/setters (threadId, state, stack, pc, target) as before
     public int getThreadId() { return threadId; }
     public ThreadState getState() { return state; }
-    public void setState(ThreadState state) { this.state = state; }
+    public void setState(ThreadState state) {
+        this.state = state;
+        if (state == ThreadState.TERMINATED) {
+            liveThreads.remove(threadId);
+            unstartedLockOwners.remove(threadId);
+            stack.getCounters().retire();
+            JVMThread joiner;
+            while ((joiner = joiners.poll()) != null) {
+                Scheduler.unpark(joiner);
+            }
+        }
+    }
     public JVMStack getStack() { return stack; }
     public int getProgramCounter() { return programCounter; }
     public void setProgramCounter(int pc) { this.programCounter = pc; }
     public Runnable getTarget() { return target; }
+    public boolean compareAndSetState(ThreadState expect, ThreadState update) { return STATE.compareAndSet(this, expect, update); }
+    public ThreadLocalAllocationBuffer getTlab() { return tlab; }
+    public void setTlab(ThreadLocalAllocationBuffer tlab) { this.tlab = tlab; }
+    public Monitor getBlockedOn() { return blockedOn; }
+    void setBlockedOn(Monitor monitor) { this.blockedOn = monitor; }
+    long getLockWaitStartNanos() { return lockWaitStartNanos; }
+    void setLockWaitStartNanos(long nanos) { this.lockWaitStartNanos = nanos; }
+    GuestContinuation getContinuation() { return continuation; }
+    boolean consumeParkPermit() { return parkPermit.getAndSet(false); }
+    void grantParkPermit() { parkPermit.set(true); }
+    Thread getParkedHost() { return parkedHost; }
+    void setParkedHost(Thread host) { this.parkedHost = host; }
+    Carrier getCarrier() { return carrier; }
+    void setCarrier(Carrier carrier) { this.carrier = carrier; }
+    boolean markQueued() { return queued.compareAndSet(false, true); }
+    void clearQueued() { queued.set(false); }
+    boolean tryMount() { return mounted.compareAndSet(false, true); }
+    void unmount() { mounted.set(false); }
+    void addJoiner(JVMThread thread) { joiners.add(thread); }
+    void removeJoiner(JVMThread thread) { joiners.remove(thread); }
+    Thread getHost() { return host; }
+    void setHost(Thread host) { this.host = host; }
+    boolean isInQuantum() { return inQuantum; }
+    void setInQuantum(boolean inQuantum) { this.inQuantum = inQuantum; }
+    long getVirtualRuntime() { return virtualRuntime; }
+    void setVirtualRuntime(long virtualRuntime) { this.virtualRuntime = virtualRuntime; }
+    int getSliceBoost() { return sliceBoost; }
+    void setSliceBoost(int sliceBoost) { this.sliceBoost = sliceBoost; }
+    long getQueueSequence() { return queueSequence; }
+    void setQueueSequence(long queueSequence) { this.queueSequence = queueSequence; }
+    void addCpuTime(long nanos) { cpuTimeNanos += nanos; } // Single writer: the host thread running the quantum
     @Override public String toString() { return "JVMThread[ID=" + threadId + ", State=" + state + "]"; }
 }
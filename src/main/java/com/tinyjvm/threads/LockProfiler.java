@@ -0,0 +1,287 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.memory.JVMObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional lock contention statistics, turned on with {@code -Dtinyjvm.monitor.profile=true}
+ * or {@link #setEnabled(boolean)}.
+ * <p>
+ * Statistics are kept per {@link Site}: the class of the lock object and the guest instruction
+ * that allocated it. Objects allocated by host code, or before profiling was turned on, share a
+ * site per class. Every counter is striped ({@link LongAdder}, {@link LongAccumulator}), so threads
+ * locking different objects of one site do not contend on the statistics themselves.
+ * <p>
+ * Thin locks are counted on acquisition only: they are never contended, and timing them would
+ * make the uncontended path measurably slower. Hold times are therefore those of inflated monitors.
+ * While profiling is off the lock paths only read a flag.
+ */
+public final class LockProfiler {
+    private static final int HOLD_BUCKETS = 40; // Bucket i counts holds of less than 2^i ns; the last one everything longer
+    private static final Site UNATTRIBUTED = new Site("<monitor>", null, -1); // Monitors created directly, not for an object
+
+    private static volatile boolean enabled = Boolean.getBoolean("tinyjvm.monitor.profile");
+    private static final Map<Key, Site> sites = new ConcurrentHashMap<>();
+
+    private LockProfiler() {
+    }
+
+    /** Identifies a site; kept apart from {@link Site} so lookups do not build a set of counters. */
+    private static final class Key {
+        final String className;
+        final byte[] code;
+        final int pc;
+
+        Key(String className, byte[] code, int pc) {
+            this.className = className;
+            this.code = code;
+            this.pc = pc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return code == other.code && pc == other.pc && className.equals(other.className);
+        }
+
+        @Override
+        public int hashCode() {
+            return (className.hashCode() * 31 + System.identityHashCode(code)) * 31 + pc;
+        }
+    }
+
+    /**
+     * Contention statistics of the locks of all objects allocated at one place.
+     */
+    public static final class Site {
+        private final String className;
+        private final byte[] code; // The allocating method, compared by identity; null if allocated by host code
+        private final int pc;      // Address of its new instruction
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contendedAcquisitions = new LongAdder();
+        private final LongAdder blockedNanos = new LongAdder();
+        private final LongAccumulator maxQueueLength = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] holdHistogram = new LongAdder[HOLD_BUCKETS];
+
+        Site(String className, byte[] code, int pc) {
+            this.className = className;
+            this.code = code;
+            this.pc = pc;
+            for (int i = 0; i < HOLD_BUCKETS; i++) {
+                holdHistogram[i] = new LongAdder();
+            }
+        }
+
+        void recordAcquisition() {
+            acquisitions.increment();
+        }
+
+        /** Records an acquisition of a lock that was held when the thread asked for it. */
+        void recordContendedAcquisition(long waitedNanos) {
+            acquisitions.increment();
+            contendedAcquisitions.increment();
+            blockedNanos.add(waitedNanos);
+        }
+
+        void recordQueueLength(int length) {
+            maxQueueLength.accumulate(length);
+        }
+
+        void recordHold(long nanos) {
+            int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, nanos));
+            holdHistogram[Math.min(bucket, HOLD_BUCKETS - 1)].increment();
+        }
+
+        void reset() {
+            acquisitions.reset();
+            contendedAcquisitions.reset();
+            blockedNanos.reset();
+            maxQueueLength.reset();
+            for (LongAdder bucket : holdHistogram) {
+                bucket.reset();
+            }
+        }
+
+        /**
+         * @return The name of the lock objects' class.
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return Address of the allocating new instruction, or -1 if the objects were allocated by host code.
+         */
+        public int getPc() {
+            return pc;
+        }
+
+        /**
+         * @return How often a lock of this site was acquired, not counting recursive entries.
+         */
+        public long getAcquisitions() {
+            return acquisitions.sum();
+        }
+
+        /**
+         * @return How many of those acquisitions found the lock held and had to spin or queue.
+         */
+        public long getContendedAcquisitions() {
+            return contendedAcquisitions.sum();
+        }
+
+        /**
+         * @return Total time threads spent spinning or queued for locks of this site.
+         */
+        public long getBlockedNanos() {
+            return blockedNanos.sum();
+        }
+
+        /**
+         * @return The longest entry queue seen on a lock of this site.
+         */
+        public long getMaxQueueLength() {
+            return maxQueueLength.get();
+        }
+
+        /**
+         * @return Hold counts of inflated monitors by bucket: bucket i counts holds shorter than 2^i ns
+         *         (and at least 2^(i-1) ns), the last bucket all longer ones.
+         */
+        public long[] getHoldHistogram() {
+            long[] counts = new long[HOLD_BUCKETS];
+            for (int i = 0; i < HOLD_BUCKETS; i++) {
+                counts[i] = holdHistogram[i].sum();
+            }
+            return counts;
+        }
+
+        /**
+         * @param fraction A fraction of the holds, e.g. 0.99.
+         * @return An upper bound for the hold time of that fraction of the holds, 0 if none was recorded.
+         */
+        public long getHoldPercentileNanos(double fraction) {
+            long[] counts = getHoldHistogram();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > 0 && seen >= fraction * total) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            if (this == UNATTRIBUTED) {
+                return "monitors not backing an object";
+            }
+            if (code == null) {
+                return className + " (allocated by host code)";
+            }
+            return className + " (new at pc " + pc + " in method@" + Integer.toHexString(System.identityHashCode(code)) + ")";
+        }
+    }
+
+    /**
+     * @return true if lock statistics are being collected.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns collection on or off. Statistics collected so far are kept.
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Returns the site for objects of a class allocated by a guest instruction, creating it on first use.
+     *
+     * @param className The class of the objects.
+     * @param code      The allocating method's code, or null for objects allocated by host code.
+     * @param pc        Address of the new instruction, or -1.
+     * @return The site.
+     */
+    public static Site siteOf(String className, byte[] code, int pc) {
+        return sites.computeIfAbsent(new Key(className, code, pc), key -> new Site(key.className, key.code, key.pc));
+    }
+
+    /**
+     * Returns the site an object's lock is profiled under, attributing it to its class if its
+     * allocation site is unknown.
+     */
+    static Site siteOf(JVMObject obj) {
+        Site site = obj.getAllocationSite();
+        if (site == null) {
+            site = siteOf(obj.getLayout().getClassName(), null, -1);
+            obj.setAllocationSite(site);
+        }
+        return site;
+    }
+
+    static Site unattributed() {
+        return UNATTRIBUTED;
+    }
+
+    /**
+     * @param limit The maximum number of sites to return.
+     * @return The sites with the most contended acquisitions, then the longest blocked time, most contended first.
+     */
+    public static List<Site> getTopContended(int limit) {
+        List<Site> all = new ArrayList<>(sites.values());
+        if (UNATTRIBUTED.getAcquisitions() > 0) {
+            all.add(UNATTRIBUTED);
+        }
+        all.sort(Comparator.comparingLong(Site::getContendedAcquisitions)
+                .thenComparingLong(Site::getBlockedNanos).reversed());
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    /**
+     * Formats the most contended sites as a table.
+     *
+     * @param limit The maximum number of sites to list.
+     * @return The report.
+     */
+    public static String report(int limit) {
+        StringBuilder sb = new StringBuilder("Lock contention by allocation site" + (enabled ? "" : " (profiling is off)") + ":\n");
+        sb.append(String.format("%12s %12s %12s %9s %12s %12s  %s%n",
+                "acquired", "contended", "blocked ms", "max queue", "p50 hold ns", "p99 hold ns", "site"));
+        for (Site site : getTopContended(limit)) {
+            sb.append(String.format("%12d %12d %12.3f %9d %12d %12d  %s%n",
+                    site.getAcquisitions(), site.getContendedAcquisitions(),
+                    site.getBlockedNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1), site.getMaxQueueLength(),
+                    site.getHoldPercentileNanos(0.5), site.getHoldPercentileNanos(0.99), site));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Zeroes the statistics of every site. Sites stay known, since objects keep pointing at theirs.
+     */
+    public static void reset() {
+        for (Site site : sites.values()) {
+            site.reset();
+        }
+        UNATTRIBUTED.reset();
+    }
+}
@@ -1,26 +1,118 @@
 package com.tinyjvm.threads;
 
+import com.tinyjvm.jfr.GuestEvents;
+import com.tinyjvm.memory.JVMObject;
 import com.tinyjvm.utils.Logger;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Set;
-import java.util.HashSet;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implements a monitor for object synchronization, similar to Java's intrinsic locks.
- * This monitor supports reentrant locking and a queue for threads waiting to acquire the lock.
- * It uses a dedicated lock object for internal synchronization of its state.
+ * This monitor supports reentrant locking and a FIFO queue for threads waiting to acquire the lock.
+ * <p>
+ * The owner is an atomic reference and the entry queue is a lock-free {@link ConcurrentLinkedQueue},
+ * so no operation takes a host lock. A thread that cannot acquire the monitor queues itself
+ * and is parked through {@link Scheduler#park(JVMThread)}; it uses no scheduler cycles until
+ * {@link #exit(JVMThread)} unparks it. Only the thread at the head of the queue competes for the lock,
+ * and it removes itself from the queue once it gets it, so nothing is ever removed from the middle.
+ * <p>
+ * By default a released monitor can be taken by a newly arriving thread before the woken head
+ * (barging), which keeps throughput high. A fair monitor hands ownership directly to the head instead.
+ * The default is chosen with {@code -Dtinyjvm.monitor.fair=true}.
+ * <p>
+ * {@link #await(JVMThread, long)}, {@link #notifyOne(JVMThread)} and {@link #notifyAll(JVMThread)}
+ * implement {@code Object.wait/notify/notifyAll} with a FIFO wait set. Notified threads are moved
+ * straight into the entry queue without being woken, so {@code notifyAll} does not cause a
+ * thundering herd: each one is unparked only when the lock is handed on to it.
+ * <p>
+ * On a multi-processor host, a thread that finds the lock held by a guest that is running on another
+ * host thread (another carrier, or its own host thread in virtual-thread mode) first spins briefly
+ * before it queues, since a short critical section is usually over sooner than a park and unpark.
+ * How long it spins adapts per monitor: never longer than twice the recent average hold time,
+ * and the limit doubles after each spin that got the lock and halves after each that did not.
+ * Monitors whose average hold time exceeds the maximum ({@code -Dtinyjvm.monitor.maxSpinNanos},
+ * 20 us by default) are not spun on at all.
+ * <p>
+ * With {@link LockProfiler} on, acquisitions, time spent spinning or queued, queue lengths and hold
+ * times are recorded for the allocation site of the monitor's object. Time spent in the entry queue
+ * is also reported to a running flight recording, see {@link GuestEvents}.
+ * <p>
+ * Objects only get a Monitor once their thin lock is inflated by {@link ObjectSynchronizer}.
  */
 public class Monitor {
-    private volatile JVMThread owner = null;        // The thread that currently owns the monitor, null if unlocked
-    private volatile int entryCount = 0;          // Reentrancy count: how many times the owner has entered
-    private final Queue<JVMThread> entryQueue = new LinkedList<>(); // Threads waiting to acquire this monitor
-    private final Set<JVMThread> waitingThreads = new HashSet<>(); // Threads waiting to acquire this monitor (for quick check)
-    private final Object internalLock = new Object(); // Dedicated lock for synchronizing access to monitor's state
+    private static final boolean DEFAULT_FAIR = Boolean.getBoolean("tinyjvm.monitor.fair");
+    // Spinning cannot help when the owner needs our processor to get anywhere
+    private static final boolean SPIN = Runtime.getRuntime().availableProcessors() > 1;
+    private static final long MAX_SPIN_NANOS = Long.getLong("tinyjvm.monitor.maxSpinNanos", 20_000L);
+    private static final long MIN_SPIN_NANOS = 500;
+    private static final AtomicLong totalSpinSuccesses = new AtomicLong();
+    private static final AtomicLong totalSpinFailures = new AtomicLong();
+
+    private final AtomicReference<JVMThread> owner = new AtomicReference<>(); // null if unlocked
+    private int entryCount = 0; // Reentrancy count, only touched by the owner
+    private final ConcurrentLinkedQueue<JVMThread> entryQueue = new ConcurrentLinkedQueue<>(); // Threads waiting to acquire this monitor
+    private final AtomicInteger queueLength = new AtomicInteger(); // Size of entryQueue, which cannot count itself cheaply
+    private final ConcurrentLinkedQueue<Waiter> waitSet = new ConcurrentLinkedQueue<>(); // Threads in wait(), FIFO
+    private final AtomicInteger waiting = new AtomicInteger(); // Waiters not yet notified or timed out
+    private final boolean fair;
+    volatile boolean pinned = false; // Handed out through ObjectSynchronizer.getMonitor, never deflated
+    private long acquiredAtNanos; // When the owner took the lock, only touched by the owner
+    private volatile long averageHoldNanos; // Moving average over the last few releases
+    private volatile long spinLimitNanos = MAX_SPIN_NANOS;
+    private final AtomicLong spinSuccesses = new AtomicLong();
+    private final AtomicLong spinFailures = new AtomicLong();
+    private volatile LockProfiler.Site profileSite; // Where LockProfiler records this monitor, resolved on first use
+
+    /**
+     * An entry in the wait set. The state is decided once, by whichever of notify and the timeout gets there first.
+     */
+    private static final class Waiter {
+        static final int WAITING = 0, NOTIFIED = 1, TIMED_OUT = 2;
+
+        final JVMThread thread;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(JVMThread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * Constructs an unowned monitor with the default fairness.
+     */
+    public Monitor() {
+        this(DEFAULT_FAIR);
+    }
+
+    /**
+     * Constructs an unowned monitor.
+     *
+     * @param fair true to hand the lock directly to the longest waiting thread on exit.
+     */
+    public Monitor(boolean fair) {
+        this.fair = fair;
+    }
 
     /**
-     * Acquires the monitor. If the monitor is already owned by another thread,
-     * the calling thread will be blocked and placed in the entry queue until the monitor is free.
+     * Constructs a monitor that takes over a thin lock during inflation.
+     *
+     * @param owner      The thread holding the thin lock.
+     * @param entryCount Its recursion count.
+     */
+    Monitor(JVMThread owner, int entryCount) {
+        this(DEFAULT_FAIR);
+        this.owner.set(owner);
+        this.entryCount = entryCount;
+        startHold();
+    }
+
+    /**
+     * Acquires the monitor. If the monitor is already owned by another thread, the calling
+     * thread spins for a while if the owner is running, then is queued and parked until the monitor is handed to it.
      * If the calling thread already owns the monitor, the entry count is incremented (reentrancy).
      *
      * @param thread The JVMThread attempting to acquire the monitor.
@@ -30,66 +122,164 @@ public class Monitor {
         if (thread == null) {
             throw new NullPointerException("Thread attempting to enter monitor cannot be null");
         }
+        while (!tryEnter(thread)) {
+            Logger.debug("Monitor: Thread {} is BLOCKED by monitor, parking.", thread.getThreadId());
+            Scheduler.park(thread);
+        }
+    }
 
-        // Fast path for reentrancy: check if current thread is already the owner.
-        // This initial check is outside the synchronized block for performance.
-        if (owner == thread) {
-            synchronized (internalLock) {
-                // Double-check inside synchronized block to ensure atomicity if 'owner' changed.
-                if (owner == thread) {
-                    entryCount++;
-                    Logger.debug("Monitor: Thread " + thread.getThreadId() + " re-entered. Owner: " + (owner != null ? owner.getThreadId() : "none") + ". New Entry Count: " + entryCount);
-                    return;
-                }
+    /**
+     * Attempts to acquire the monitor without parking, spinning briefly if the owner is running. If that fails, the thread stays queued
+     * and will be unparked when the monitor is released; it must then call this method again.
+     * Used by the interpreter, which cannot park in the middle of an instruction.
+     *
+     * @param thread The JVMThread attempting to acquire the monitor.
+     * @return true if the monitor is now owned by the thread.
+     */
+    public boolean tryEnter(JVMThread thread) {
+        if (thread.getBlockedOn() == this) {
+            return acquireQueued(thread);
+        }
+        JVMThread current = owner.get();
+        if (current == thread) {
+            entryCount++;
+            return true;
+        }
+        if (current == null && (!fair || entryQueue.isEmpty()) && owner.compareAndSet(null, thread)) {
+            entryCount = 1;
+            startHold();
+            if (LockProfiler.isEnabled()) {
+                profileSite().recordAcquisition();
+            }
+            return true;
+        }
+        if (spin(thread)) {
+            return true;
+        }
+        Logger.debug("Monitor: Thread {} found lock held. Adding to entry queue.", thread.getThreadId());
+        enqueue(thread);
+        // Re-check after queuing: an exit that ran before we were visible in the queue woke nobody
+        return acquireQueued(thread);
+    }
+
+    /**
+     * Acquires the monitor for a queued thread if it was handed the lock, or if it is at the head
+     * of the queue and the lock is free.
+     */
+    private boolean acquireQueued(JVMThread thread) {
+        if (owner.get() == thread || (entryQueue.peek() == thread && owner.compareAndSet(null, thread))) {
+            entryQueue.poll(); // Only the head ever acquires, so this removes the thread itself
+            queueLength.decrementAndGet();
+            entryCount = 1;
+            startHold();
+            thread.setBlockedOn(null);
+            long queuedAt = thread.getLockWaitStartNanos();
+            if (queuedAt != 0) {
+                thread.setLockWaitStartNanos(0);
+                profileSite().recordContendedAcquisition(System.nanoTime() - queuedAt);
+            }
+            if (thread.monitorEvent != null) {
+                GuestEvents.monitorAcquired(thread.monitorEvent, thread);
+                thread.monitorEvent = null;
             }
+            Logger.debug("Monitor: Thread {} acquired lock from the entry queue.", thread.getThreadId());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a thread to the entry queue; it is unparked when the lock is released to it.
+     */
+    private void enqueue(JVMThread thread) {
+        thread.setBlockedOn(this);
+        entryQueue.add(thread);
+        int length = queueLength.incrementAndGet();
+        thread.monitorEvent = GuestEvents.monitorBlocked(this, owner.get());
+        if (LockProfiler.isEnabled()) {
+            thread.setLockWaitStartNanos(System.nanoTime());
+            profileSite().recordQueueLength(length);
         }
+    }
+
+    /**
+     * @return The lock profiling site of the object this monitor belongs to, looked up once.
+     */
+    private LockProfiler.Site profileSite() {
+        LockProfiler.Site site = profileSite;
+        if (site == null) {
+            // Inflated before profiling was turned on, or created directly
+            JVMObject obj = ObjectSynchronizer.findObject(this);
+            site = obj != null ? LockProfiler.siteOf(obj) : LockProfiler.unattributed();
+            profileSite = site;
+        }
+        return site;
+    }
+
+    void setProfileSite(LockProfiler.Site site) {
+        this.profileSite = site;
+    }
 
-        boolean acquired = false;
-        while (!acquired) {
-            synchronized (internalLock) {
-                if (owner == null) {
-                    // Monitor is free, acquire it.
-                    owner = thread;
+    /**
+     * Spins while the owner is running on another host thread, for at most the monitor's current
+     * spin limit and twice its average hold time. Gives up as soon as the owner stops running,
+     * since it cannot release the lock before it is scheduled again.
+     *
+     * @return true if the lock was acquired while spinning.
+     */
+    private boolean spin(JVMThread thread) {
+        if (!SPIN || fair) {
+            return false;
+        }
+        long hold = averageHoldNanos;
+        JVMThread current = owner.get();
+        if (hold > MAX_SPIN_NANOS || (current != null && current.getState() != JVMThread.ThreadState.RUNNING)) {
+            return false;
+        }
+        long limit = spinLimitNanos;
+        long start = System.nanoTime();
+        long deadline = start + Math.min(limit, Math.max(MIN_SPIN_NANOS, 2 * hold));
+        int iterations = 0;
+        while (true) {
+            current = owner.get();
+            if (current == null) {
+                if (owner.compareAndSet(null, thread)) {
                     entryCount = 1;
-                    acquired = true;
-                    Logger.debug("Monitor: Thread " + thread.getThreadId() + " acquired lock. Owner: " + owner.getThreadId() + ". Entry Count: " + entryCount);
-                    // Remove from entry queue if it was added in a previous iteration (e.g. lost race, then parked)
-                    entryQueue.remove(thread);
-                    waitingThreads.remove(thread);
-
-                    // Ensure the thread is in a runnable state for the scheduler.
-                    // If it was BLOCKED by this monitor, it needs to become RUNNABLE and be known to scheduler.
-                    if (thread.getState() == JVMThread.ThreadState.BLOCKED) {
-                        thread.setState(JVMThread.ThreadState.RUNNABLE);
-                        Scheduler.getInstance().registerThread(thread);
-                    }
-                } else {
-                    // Monitor is owned by another thread, or we lost a race.
-                    // Add to entry queue if not already present.
-                    if (!waitingThreads.contains(thread)) {
-                        Logger.debug("Monitor: Thread " + thread.getThreadId() + " found lock held by " + (owner != null ? owner.getThreadId() : "unknown") + ". Adding to entry queue ("+ entryQueue.size() +" waiting).");
-                        waitingThreads.add(thread);
-                        entryQueue.add(thread);
+                    startHold();
+                    spinLimitNanos = Math.min(MAX_SPIN_NANOS, 2 * limit);
+                    spinSuccesses.incrementAndGet();
+                    totalSpinSuccesses.incrementAndGet();
+                    if (LockProfiler.isEnabled()) {
+                        profileSite().recordContendedAcquisition(System.nanoTime() - start);
                     }
+                    return true;
                 }
-            } // End of synchronized block
-
-            if (!acquired) {
-                // If lock was not acquired, park the thread cooperatively.
-                // Set state to BLOCKED before parking.
-                thread.setState(JVMThread.ThreadState.BLOCKED);
-                Logger.debug("Monitor: Thread " + thread.getThreadId() + " is BLOCKED by monitor, parking cooperatively.");
-                parkThreadCooperatively(thread); // This call will yield until the thread's state is no longer BLOCKED.
-                Logger.debug("Monitor: Thread " + thread.getThreadId() + " unparked or state changed (now "+thread.getState()+"), re-contending for lock.");
+            } else if (current.getState() != JVMThread.ThreadState.RUNNING) {
+                break; // Descheduled or parked while holding the lock
+            }
+            // Reading the clock costs more than an iteration, so only check it now and then
+            if ((++iterations & 63) == 0 && System.nanoTime() - deadline > 0) {
+                break;
             }
         }
+        spinLimitNanos = Math.max(MIN_SPIN_NANOS, limit / 2);
+        spinFailures.incrementAndGet();
+        totalSpinFailures.incrementAndGet();
+        Logger.debug("Monitor: Thread {} gave up spinning after {} iterations.", thread.getThreadId(), iterations);
+        return false;
+    }
+
+    private void startHold() {
+        if (SPIN || LockProfiler.isEnabled()) {
+            acquiredAtNanos = System.nanoTime();
+        }
     }
 
     /**
      * Releases the monitor. If the calling thread is not the owner, an
      * IllegalMonitorStateException is thrown. If the entry count becomes zero
-     * as a result of this exit, the monitor becomes unowned. If there are threads
-     * waiting in the entry queue, one is chosen, made RUNNABLE, and registered with the scheduler.
+     * as a result of this exit, the monitor becomes unowned (or, if fair, is handed
+     * to the head of the entry queue) and the head of the queue is unparked.
      *
      * @param thread The JVMThread attempting to release the monitor.
      * @throws IllegalMonitorStateException if the calling thread is not the owner.
@@ -99,52 +289,170 @@ public class Monitor {
         if (thread == null) {
             throw new NullPointerException("Thread attempting to exit monitor cannot be null");
         }
+        JVMThread current = owner.get();
+        if (current != thread) {
+            throw new IllegalMonitorStateException("Thread " + thread.getThreadId() + " is not the owner of this monitor. Current owner: " + (current != null ? current.getThreadId() : "none"));
+        }
+        if (--entryCount > 0) {
+            return;
+        }
+        release(thread);
+    }
 
-        synchronized (internalLock) {
-            if (owner != thread) {
-                throw new IllegalMonitorStateException("Thread " + thread.getThreadId() + " is not the owner of this monitor. Current owner: " + (owner != null ? owner.getThreadId() : "none"));
+    /**
+     * Gives up ownership completely and unparks (or, if fair, hands the lock to) the head of the entry queue.
+     */
+    private void release(JVMThread thread) {
+        if (acquiredAtNanos != 0) {
+            long held = System.nanoTime() - acquiredAtNanos;
+            acquiredAtNanos = 0;
+            if (SPIN) {
+                long average = averageHoldNanos;
+                averageHoldNanos = average + (held - average) / 8;
             }
+            if (LockProfiler.isEnabled()) {
+                profileSite().recordHold(held);
+            }
+        }
+        JVMThread next = entryQueue.peek();
+        if (fair && next != null) {
+            owner.set(next); // Direct handoff; the successor dequeues itself when it runs
+            Logger.debug("Monitor: Thread {} handed the lock to thread {}", thread.getThreadId(), next.getThreadId());
+            Scheduler.unpark(next);
+            return;
+        }
+        owner.set(null);
+        // Read the queue only after releasing, so a thread that queued concurrently is either seen
+        // here or sees the free lock itself
+        next = entryQueue.peek();
+        if (next != null) {
+            Logger.debug("Monitor: Lock released by thread {}, unparking thread {}", thread.getThreadId(), next.getThreadId());
+            Scheduler.unpark(next);
+        }
+    }
 
-            entryCount--;
-            Logger.debug("Monitor: Thread " + thread.getThreadId() + " exited monitor. Owner: " + (owner != null ? owner.getThreadId() : "none") + ". New Entry Count: " + entryCount);
-
-            if (entryCount == 0) {
-                owner = null;
-                Logger.debug("Monitor: Lock fully released by thread " + thread.getThreadId());
-                if (!entryQueue.isEmpty()) {
-                    JVMThread nextThreadToWake = entryQueue.poll(); // Retrieve and remove the head of the queue.
-                    if (nextThreadToWake != null) {
-                        waitingThreads.remove(nextThreadToWake);
-                        Logger.debug("Monitor: Notifying thread " + nextThreadToWake.getThreadId() + " from entry queue to become RUNNABLE.");
-                        nextThreadToWake.setState(JVMThread.ThreadState.RUNNABLE);
-                        // Crucially, the scheduler must be informed that this thread is now runnable.
-                        Scheduler.getInstance().registerThread(nextThreadToWake);
-                    }
+    /**
+     * Implements {@code Object.wait}: releases the monitor completely, waits until notified or until
+     * the timeout elapses, then reacquires the monitor with the saved recursion count.
+     *
+     * @param thread        The owning thread.
+     * @param timeoutMillis Maximum time to wait in milliseconds, 0 to wait until notified.
+     * @return true if the thread was notified, false if the timeout elapsed.
+     * @throws IllegalMonitorStateException if the thread does not own the monitor.
+     */
+    public boolean await(JVMThread thread, long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        checkOwner(thread, "wait");
+        int savedEntryCount = entryCount;
+        Waiter waiter = new Waiter(thread);
+        waitSet.add(waiter);
+        waiting.incrementAndGet();
+        TimerWheel.Timeout timeout = null;
+        if (timeoutMillis > 0) {
+            timeout = Scheduler.getInstance().schedule(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis), () -> {
+                if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.TIMED_OUT)) {
+                    waiting.decrementAndGet();
+                    Scheduler.unpark(waiter.thread);
                 }
+            });
+        }
+        Logger.debug("Monitor: Thread {} waiting, timeout {} ms", thread.getThreadId(), timeoutMillis);
+        entryCount = 0;
+        release(thread);
+
+        while (waiter.state.get() == Waiter.WAITING) {
+            Scheduler.park(thread, JVMThread.ThreadState.WAITING);
+        }
+        boolean notified = waiter.state.get() == Waiter.NOTIFIED;
+        if (notified) {
+            if (timeout != null) {
+                timeout.cancel();
             }
+        } else {
+            waitSet.remove(waiter); // Notify only polls out what it finds; a timed-out waiter must not pile up
         }
+        // A notified thread is already in the entry queue; a timed-out one queues up like any other
+        enter(thread);
+        entryCount = savedEntryCount;
+        return notified;
     }
 
     /**
-     * Cooperatively parks the calling thread. The thread's state should be set to BLOCKED
-     * before calling this method or within the enter method before this is called.
-     * This method will repeatedly call the scheduler's reschedule
-     * mechanism (yield) as long as the thread remains in the BLOCKED state.
+     * Implements {@code Object.notify}: moves the longest waiting thread to the entry queue.
      *
-     * @param thread The thread to park (which should be the current thread of execution).
+     * @param thread The owning thread.
+     * @throws IllegalMonitorStateException if the thread does not own the monitor.
      */
-    private void parkThreadCooperatively(JVMThread thread) {
-        // This thread is already marked BLOCKED by the enter() method before this call.
-        Logger.debug("Monitor: parkThreadCooperatively for thread " + thread.getThreadId() + ". State: " + thread.getState() + ". Yielding control.");
+    public void notifyOne(JVMThread thread) {
+        checkOwner(thread, "notify");
+        Waiter waiter;
+        while ((waiter = waitSet.poll()) != null) {
+            if (transfer(waiter)) {
+                return;
+            }
+        }
+    }
 
-        // Loop as long as the thread is marked BLOCKED.
-        // An external action (like unparking in exit()) must change its state to RUNNABLE.
-        while (thread.getState() == JVMThread.ThreadState.BLOCKED) {
-            Scheduler.reschedule(); // Signal to scheduler to run other threads.
-                                  // This is our equivalent of Thread.yield() from the article's Monitor.
+    /**
+     * Implements {@code Object.notifyAll}: moves every waiting thread to the entry queue, in wait order.
+     *
+     * @param thread The owning thread.
+     * @throws IllegalMonitorStateException if the thread does not own the monitor.
+     */
+    public void notifyAll(JVMThread thread) {
+        checkOwner(thread, "notifyAll");
+        Waiter waiter;
+        while ((waiter = waitSet.poll()) != null) {
+            transfer(waiter);
         }
-        // When the loop exits, the thread's state is no longer BLOCKED.
-        Logger.debug("Monitor: Thread " + thread.getThreadId() + " is no longer BLOCKED in parkThreadCooperatively. Current state: " + thread.getState());
+    }
+
+    /**
+     * Moves a waiter into the entry queue, unless its wait already timed out.
+     * It stays parked until the lock is released to it.
+     */
+    private boolean transfer(Waiter waiter) {
+        if (!waiter.state.compareAndSet(Waiter.WAITING, Waiter.NOTIFIED)) {
+            return false; // Timed out; it queues for the lock on its own
+        }
+        waiting.decrementAndGet();
+        JVMThread notified = waiter.thread;
+        enqueue(notified);
+        // WAITING -> BLOCKED on monitor reentry, as in the JVM. If it has not parked yet, it will see NOTIFIED.
+        Scheduler.transferToBlocked(notified);
+        Logger.debug("Monitor: Thread {} notified, moved to the entry queue.", notified.getThreadId());
+        return true;
+    }
+
+    private void checkOwner(JVMThread thread, String operation) {
+        if (owner.get() != thread) {
+            throw new IllegalMonitorStateException("Thread " + thread.getThreadId() + " cannot " + operation + ": it is not the owner of this monitor");
+        }
+    }
+
+    /**
+     * @return The number of entries in the wait set, including timed-out waiters not removed yet.
+     */
+    int getWaitSetSize() {
+        return waitSet.size();
+    }
+
+    /**
+     * @return The number of threads waiting in this monitor's wait set.
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    /**
+     * Checks whether the monitor is owned or has threads queued or waiting on it.
+     * The garbage collector treats the objects of such monitors as roots.
+     * @return true if the monitor is currently in use.
+     */
+    public boolean isInUse() {
+        return owner.get() != null || !entryQueue.isEmpty() || waiting.get() > 0;
     }
 
     /**
@@ -153,8 +461,63 @@ public class Monitor {
      * @return true if the specified thread owns this monitor, false otherwise.
      */
     public boolean isOwner(JVMThread thread) {
-        synchronized(internalLock) {
-            return owner == thread;
-        }
+        return owner.get() == thread;
+    }
+
+    /**
+     * @return The owning thread, or null if the monitor is free.
+     */
+    JVMThread getOwner() {
+        return owner.get();
+    }
+
+    /**
+     * @return The number of times a thread acquired this monitor by spinning.
+     */
+    public long getSpinSuccesses() {
+        return spinSuccesses.get();
+    }
+
+    /**
+     * @return The number of times a thread spun on this monitor and then had to queue.
+     */
+    public long getSpinFailures() {
+        return spinFailures.get();
+    }
+
+    /**
+     * @return The current upper bound on how long a thread spins on this monitor, in nanoseconds.
+     */
+    public long getSpinLimitNanos() {
+        return spinLimitNanos;
+    }
+
+    /**
+     * @return The moving average of how long this monitor was held, in nanoseconds; 0 on a single processor,
+     *         where hold times are not measured.
+     */
+    public long getAverageHoldNanos() {
+        return averageHoldNanos;
+    }
+
+    /**
+     * @return The number of spins that acquired a monitor, over all monitors since startup.
+     */
+    public static long getTotalSpinSuccesses() {
+        return totalSpinSuccesses.get();
+    }
+
+    /**
+     * @return The number of spins that ended in queuing, over all monitors since startup.
+     */
+    public static long getTotalSpinFailures() {
+        return totalSpinFailures.get();
+    }
+
+    /**
+     * @return true if this monitor hands the lock directly to the longest waiting thread.
+     */
+    public boolean isFair() {
+        return fair;
     }
 }
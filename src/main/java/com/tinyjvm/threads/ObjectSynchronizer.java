@@ -0,0 +1,346 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.utils.Logger;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implements object locking on top of the lock word in every {@link JVMObject}.
+ * <p>
+ * An uncontended lock is <i>thin</i>: the lock word holds the owner's thread id and a recursion
+ * count, and entering or exiting is a single compare-and-set. A full {@link Monitor} is only
+ * <i>inflated</i> when a second thread contends for the lock, when the recursion count overflows,
+ * when a thread waits on the object, or when a caller asks for the monitor itself. Threads whose id
+ * does not fit in the owner bits of the lock word always lock through the inflated monitor.
+ * Inflation first swaps the lock word to {@link #INFLATING}, so the owner cannot release the
+ * thin lock while its state is being moved into the monitor.
+ * <p>
+ * Inflated monitors that have become idle are deflated again by {@link #deflateIdleMonitors()},
+ * which the heap calls while guest threads are stopped for a collection.
+ */
+public final class ObjectSynchronizer {
+    /** Lock word of an unlocked object. */
+    public static final int UNLOCKED = 0;
+    /** Lock word of an object whose lock state lives in its inflated {@link Monitor}. */
+    public static final int INFLATED = -1;
+    /** Transient lock word while a thread is inflating the lock. */
+    public static final int INFLATING = -2;
+
+    private static final int OWNER_SHIFT = 8;
+    private static final int COUNT_MASK = (1 << OWNER_SHIFT) - 1; // Thin recursion count, 1..255
+    /** Largest thread id a thin lock word can hold; larger ones would make the word negative or wrap. */
+    static final int MAX_THIN_OWNER = Integer.MAX_VALUE >>> OWNER_SHIFT;
+
+    // Objects whose monitor is inflated, so idle ones can be found for deflation
+    private static final Set<JVMObject> inflatedObjects = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong inflations = new AtomicLong();
+    private static final AtomicLong deflations = new AtomicLong();
+
+    private ObjectSynchronizer() {}
+
+    /**
+     * Acquires the lock of an object for a thread, blocking on the inflated monitor if it is contended.
+     *
+     * @param obj    The object to lock.
+     * @param thread The acquiring thread.
+     */
+    public static void enter(JVMObject obj, JVMThread thread) {
+        if (thread == null) {
+            throw new NullPointerException("Thread attempting to enter monitor cannot be null");
+        }
+        int self = thinOwner(thread);
+        if (self == 0) {
+            inflate(obj).enter(thread);
+            return;
+        }
+        while (true) {
+            int word = obj.getLockWord();
+            if (word == UNLOCKED) {
+                if (obj.compareAndSetLockWord(UNLOCKED, self | 1)) {
+                    thread.thinLockAcquired();
+                    if (LockProfiler.isEnabled()) {
+                        LockProfiler.siteOf(obj).recordAcquisition();
+                    }
+                    return;
+                }
+            } else if (word == INFLATED) {
+                obj.getInflatedMonitor().enter(thread);
+                return;
+            } else if (word == INFLATING) {
+                Thread.yield(); // Another thread is publishing the monitor
+            } else if ((word & ~COUNT_MASK) == self && (word & COUNT_MASK) < COUNT_MASK) {
+                if (obj.compareAndSetLockWord(word, word + 1)) {
+                    return;
+                }
+            } else {
+                inflate(obj); // Contended, or the recursion count is full
+            }
+        }
+    }
+
+    /**
+     * Attempts to acquire the lock of an object without parking. If the lock is contended the
+     * thread is queued on the inflated monitor, which unparks it on release; it must then retry.
+     *
+     * @param obj    The object to lock.
+     * @param thread The acquiring thread.
+     * @return true if the thread now holds the lock.
+     */
+    public static boolean tryEnter(JVMObject obj, JVMThread thread) {
+        int self = thinOwner(thread);
+        if (self == 0) {
+            return inflate(obj).tryEnter(thread);
+        }
+        while (true) {
+            int word = obj.getLockWord();
+            if (word == UNLOCKED) {
+                if (obj.compareAndSetLockWord(UNLOCKED, self | 1)) {
+                    thread.thinLockAcquired();
+                    if (LockProfiler.isEnabled()) {
+                        LockProfiler.siteOf(obj).recordAcquisition();
+                    }
+                    return true;
+                }
+            } else if (word == INFLATED) {
+                return obj.getInflatedMonitor().tryEnter(thread);
+            } else if (word == INFLATING) {
+                Thread.yield();
+            } else if ((word & ~COUNT_MASK) == self && (word & COUNT_MASK) < COUNT_MASK) {
+                if (obj.compareAndSetLockWord(word, word + 1)) {
+                    return true;
+                }
+            } else {
+                inflate(obj);
+            }
+        }
+    }
+
+    /**
+     * Releases one level of an object's lock.
+     *
+     * @param obj    The object to unlock.
+     * @param thread The releasing thread.
+     * @throws IllegalMonitorStateException if the thread does not own the lock.
+     */
+    public static void exit(JVMObject obj, JVMThread thread) {
+        if (thread == null) {
+            throw new NullPointerException("Thread attempting to exit monitor cannot be null");
+        }
+        int self = thinOwner(thread); // 0 never matches a thin owner, so such a thread only owns inflated locks
+        while (true) {
+            int word = obj.getLockWord();
+            if (word == INFLATED) {
+                obj.getInflatedMonitor().exit(thread);
+                return;
+            }
+            if (word == INFLATING) {
+                Thread.yield();
+                continue;
+            }
+            if (word == UNLOCKED || (word & ~COUNT_MASK) != self) {
+                throw new IllegalMonitorStateException("Thread " + thread.getThreadId() + " does not own the lock of " + obj);
+            }
+            int next = (word & COUNT_MASK) == 1 ? UNLOCKED : word - 1;
+            if (obj.compareAndSetLockWord(word, next)) {
+                if (next == UNLOCKED) {
+                    thread.thinLockReleased();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The thread's owner bits for a thin lock word, or 0 if its id does not fit and it must use the inflated monitor.
+     */
+    private static int thinOwner(JVMThread thread) {
+        int id = thread.getThreadId();
+        return id > 0 && id <= MAX_THIN_OWNER ? id << OWNER_SHIFT : 0;
+    }
+
+    /**
+     * Implements {@code Object.wait}. Waiting needs a wait set, so the lock is inflated first.
+     *
+     * @param obj           The object to wait on; its lock must be held by the thread.
+     * @param thread        The waiting thread.
+     * @param timeoutMillis Maximum time to wait in milliseconds, 0 to wait until notified.
+     * @return true if notified, false if the timeout elapsed.
+     * @throws IllegalMonitorStateException if the thread does not own the lock.
+     */
+    public static boolean wait(JVMObject obj, JVMThread thread, long timeoutMillis) {
+        if (!holdsLock(obj, thread)) {
+            throw new IllegalMonitorStateException("Thread " + thread.getThreadId() + " cannot wait on " + obj + " without holding its lock");
+        }
+        return inflate(obj).await(thread, timeoutMillis);
+    }
+
+    /**
+     * Implements {@code Object.notify}. A thin lock has no waiters, so only inflated locks have anything to do.
+     *
+     * @param obj    The object; its lock must be held by the thread.
+     * @param thread The notifying thread.
+     * @throws IllegalMonitorStateException if the thread does not own the lock.
+     */
+    public static void notify(JVMObject obj, JVMThread thread) {
+        if (!holdsLock(obj, thread)) {
+            throw new IllegalMonitorStateException("Thread " + thread.getThreadId() + " cannot notify on " + obj + " without holding its lock");
+        }
+        if (obj.getLockWord() == INFLATED) {
+            obj.getInflatedMonitor().notifyOne(thread);
+        }
+    }
+
+    /**
+     * Implements {@code Object.notifyAll}.
+     *
+     * @param obj    The object; its lock must be held by the thread.
+     * @param thread The notifying thread.
+     * @throws IllegalMonitorStateException if the thread does not own the lock.
+     */
+    public static void notifyAll(JVMObject obj, JVMThread thread) {
+        if (!holdsLock(obj, thread)) {
+            throw new IllegalMonitorStateException("Thread " + thread.getThreadId() + " cannot notify on " + obj + " without holding its lock");
+        }
+        if (obj.getLockWord() == INFLATED) {
+            obj.getInflatedMonitor().notifyAll(thread);
+        }
+    }
+
+    /**
+     * Checks whether a thread holds an object's lock.
+     *
+     * @param obj    The object.
+     * @param thread The thread.
+     * @return true if the thread owns the lock, thin or inflated.
+     */
+    public static boolean holdsLock(JVMObject obj, JVMThread thread) {
+        int word = obj.getLockWord();
+        if (word == INFLATED) {
+            return obj.getInflatedMonitor().isOwner(thread);
+        }
+        return word > 0 && (word >>> OWNER_SHIFT) == thread.getThreadId();
+    }
+
+    /**
+     * Inflates an object's lock into a full {@link Monitor}, carrying over a thin owner and recursion count.
+     *
+     * @param obj The object.
+     * @return The object's monitor.
+     */
+    public static Monitor inflate(JVMObject obj) {
+        while (true) {
+            int word = obj.getLockWord();
+            if (word == INFLATED) {
+                return obj.getInflatedMonitor();
+            }
+            if (word == INFLATING) {
+                Thread.yield();
+                continue;
+            }
+            if (!obj.compareAndSetLockWord(word, INFLATING)) {
+                continue;
+            }
+            // The thin state is frozen now; nobody else can change the word until we publish
+            JVMThread owner = word == UNLOCKED ? null : JVMThread.findById(word >>> OWNER_SHIFT);
+            Monitor monitor = owner != null ? new Monitor(owner, word & COUNT_MASK) : new Monitor();
+            if (LockProfiler.isEnabled()) {
+                monitor.setProfileSite(LockProfiler.siteOf(obj));
+            }
+            obj.setInflatedMonitor(monitor);
+            obj.setLockWord(INFLATED);
+            if (owner != null) {
+                owner.thinLockReleased(); // The monitor refers to the owner from now on
+            }
+            inflatedObjects.add(obj);
+            inflations.incrementAndGet();
+            if (Logger.isDebugEnabled()) {
+                Logger.debug("ObjectSynchronizer: Inflated lock of object {}, owner {}",
+                        obj.getAddress(), owner != null ? owner.getThreadId() : null);
+            }
+            return monitor;
+        }
+    }
+
+    /**
+     * Returns an object's monitor for direct use, inflating it if necessary. A monitor handed out
+     * this way may be held on to by the caller, so it is never deflated.
+     *
+     * @param obj The object.
+     * @return The object's monitor.
+     */
+    public static Monitor getMonitor(JVMObject obj) {
+        Monitor monitor = inflate(obj);
+        monitor.pinned = true;
+        return monitor;
+    }
+
+    /**
+     * Deflates every inflated monitor that is neither owned nor has queued threads, and forgets
+     * objects that have been collected. Must only be called while no guest thread is running.
+     *
+     * @return The number of monitors deflated.
+     */
+    public static int deflateIdleMonitors() {
+        int deflated = 0;
+        Iterator<JVMObject> it = inflatedObjects.iterator();
+        while (it.hasNext()) {
+            JVMObject obj = it.next();
+            if (obj.getAddress() == 0) {
+                it.remove(); // Collected
+                continue;
+            }
+            Monitor monitor = obj.getInflatedMonitor();
+            if (!monitor.pinned && !monitor.isInUse()) {
+                obj.setInflatedMonitor(null);
+                obj.setLockWord(UNLOCKED);
+                it.remove();
+                deflated++;
+            }
+        }
+        deflations.addAndGet(deflated);
+        if (deflated > 0) {
+            Logger.debug("ObjectSynchronizer: Deflated {} idle monitors, {} remain inflated", deflated, inflatedObjects.size());
+        }
+        return deflated;
+    }
+
+    /**
+     * Finds the object an inflated monitor belongs to, for diagnostics. Scans all inflated locks.
+     *
+     * @param monitor The monitor.
+     * @return The object, or null if the monitor was not inflated from an object's lock.
+     */
+    static JVMObject findObject(Monitor monitor) {
+        for (JVMObject obj : inflatedObjects) {
+            if (obj.getInflatedMonitor() == monitor) {
+                return obj;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of objects whose lock is currently inflated.
+     */
+    public static int getInflatedCount() {
+        return inflatedObjects.size();
+    }
+
+    /**
+     * @return The number of inflations since startup.
+     */
+    public static long getInflations() {
+        return inflations.get();
+    }
+
+    /**
+     * @return The number of deflations since startup.
+     */
+    public static long getDeflations() {
+        return deflations.get();
+    }
+}
@@ -0,0 +1,189 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.utils.Logger;
+
+import java.util.function.Supplier;
+
+/**
+ * Brings every guest thread to a safepoint for a VM operation (garbage collection, heap dump, ...)
+ * and keeps track of the quanta currently running, so the coordinator knows when all guests have stopped.
+ * <p>
+ * Carriers bracket every quantum with {@link #enterQuantum()} and {@link #exitQuantum()}. A quantum
+ * that ends is a safepoint, but with long time slices waiting for that could take many milliseconds;
+ * so the interpreter also polls the global {@link #isRequested()} flag at loop back-edges and method
+ * returns, where the thread's frames are consistent, and a thread that sees it parks in {@link #block()}
+ * until the operation is over. Host-side target code reaches a safepoint when it yields or parks.
+ * <p>
+ * {@link #stopTheWorld} raises the flag, blocks new quanta from starting, waits until no guest is
+ * running, runs the operation and releases everyone. The requester may itself be inside a quantum
+ * (a guest allocating on the slow path); it stops counting as running for the duration of the
+ * request, so two carriers requesting a stop at the same time simply run one after the other.
+ * Time-to-safepoint (from the request until the last guest stopped) and the operation's own
+ * duration are recorded for every operation.
+ */
+public final class Safepoint {
+    private static volatile boolean requested = false; // Polled by the interpreter; static so the poll is a single load
+
+    private int running = 0;         // Quanta in progress and not at a safepoint, guarded by 'this'
+    private boolean stopped = false; // An operation is pending or running, guarded by 'this'
+
+    private volatile long operations = 0;
+    private volatile String lastOperation = "none";
+    private volatile long lastTimeToSafepointNanos = 0;
+    private volatile long maxTimeToSafepointNanos = 0;
+    private volatile long totalTimeToSafepointNanos = 0;
+    private volatile long lastOperationNanos = 0;
+    private volatile long maxOperationNanos = 0;
+    private volatile long totalOperationNanos = 0;
+    private volatile long threadsBlocked = 0; // Times a guest parked at a poll rather than at the end of its quantum
+
+    Safepoint() {
+    }
+
+    /**
+     * @return true while a VM operation wants the guests stopped. Cheap enough to check on every back-edge.
+     */
+    public static boolean isRequested() {
+        return requested;
+    }
+
+    /**
+     * Interpreter poll: parks the calling guest while a VM operation is pending or running.
+     *
+     * @param thread The calling guest thread.
+     */
+    public static void poll(JVMThread thread) {
+        if (requested && thread.isInQuantum()) {
+            Scheduler.getInstance().getSafepoint().block();
+        }
+    }
+
+    /**
+     * Waits until no operation is in progress, then counts the caller's quantum as running.
+     */
+    synchronized void enterQuantum() {
+        boolean interrupted = awaitRelease();
+        running++;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ends the caller's quantum, letting a pending operation proceed once no other quantum is running.
+     */
+    synchronized void exitQuantum() {
+        if (--running == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Parks the caller, which is inside a quantum, at a safepoint until the pending operation is over.
+     */
+    synchronized void block() {
+        if (!stopped) {
+            return; // Released before we got here
+        }
+        threadsBlocked++;
+        if (--running == 0) {
+            notifyAll();
+        }
+        boolean interrupted = awaitRelease();
+        running++;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean awaitRelease() {
+        boolean interrupted = false;
+        while (stopped) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        return interrupted;
+    }
+
+    /**
+     * Runs an operation while every guest is at a safepoint.
+     *
+     * @param operation Name of the operation, for logging and statistics.
+     * @param inQuantum true if the caller runs inside a quantum that it must not wait for.
+     * @param action    The action to run.
+     * @return The action's result.
+     */
+    <T> T stopTheWorld(String operation, boolean inQuantum, Supplier<T> action) {
+        boolean interrupted;
+        long requestedAt;
+        long reachedAt;
+        synchronized (this) {
+            if (inQuantum && --running == 0) {
+                notifyAll();
+            }
+            interrupted = awaitRelease(); // Another operation goes first
+            stopped = true;
+            requested = true;
+            requestedAt = System.nanoTime();
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            reachedAt = System.nanoTime();
+        }
+        try {
+            return action.get();
+        } finally {
+            long doneAt = System.nanoTime();
+            synchronized (this) {
+                record(operation, reachedAt - requestedAt, doneAt - reachedAt);
+                requested = false;
+                stopped = false;
+                if (inQuantum) {
+                    running++; // Resume our own quantum
+                }
+                notifyAll();
+            }
+            Logger.debug("Safepoint: {} took {} us after {} us to reach the safepoint.",
+                    operation, (doneAt - reachedAt) / 1000, (reachedAt - requestedAt) / 1000);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void record(String operation, long timeToSafepointNanos, long operationNanos) {
+        operations++;
+        lastOperation = operation;
+        lastTimeToSafepointNanos = timeToSafepointNanos;
+        maxTimeToSafepointNanos = Math.max(maxTimeToSafepointNanos, timeToSafepointNanos);
+        totalTimeToSafepointNanos += timeToSafepointNanos;
+        lastOperationNanos = operationNanos;
+        maxOperationNanos = Math.max(maxOperationNanos, operationNanos);
+        totalOperationNanos += operationNanos;
+    }
+
+    public long getOperations() { return operations; }
+    public String getLastOperation() { return lastOperation; }
+    public long getLastTimeToSafepointNanos() { return lastTimeToSafepointNanos; }
+    public long getMaxTimeToSafepointNanos() { return maxTimeToSafepointNanos; }
+    public long getTotalTimeToSafepointNanos() { return totalTimeToSafepointNanos; }
+    public long getLastOperationNanos() { return lastOperationNanos; }
+    public long getMaxOperationNanos() { return maxOperationNanos; }
+    public long getTotalOperationNanos() { return totalOperationNanos; }
+    public long getThreadsBlocked() { return threadsBlocked; }
+
+    @Override
+    public String toString() {
+        return String.format("Safepoints: %d operations (last: %s), time to safepoint last %.3f ms, max %.3f ms, total %.3f ms;"
+                        + " operations last %.3f ms, max %.3f ms, total %.3f ms; %d threads stopped at polls",
+                operations, lastOperation, lastTimeToSafepointNanos / 1e6, maxTimeToSafepointNanos / 1e6, totalTimeToSafepointNanos / 1e6,
+                lastOperationNanos / 1e6, maxOperationNanos / 1e6, totalOperationNanos / 1e6, threadsBlocked);
+    }
+}
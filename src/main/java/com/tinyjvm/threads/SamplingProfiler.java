@@ -0,0 +1,314 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.utils.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sampling profiler for guest code, turned on with {@code -Dtinyjvm.sampler=true} (from the next
+ * {@link Scheduler#start()}) or {@link #start()}, and off again with {@link #stop()}.
+ * <p>
+ * A daemon host thread wakes every {@code -Dtinyjvm.sampler.intervalMicros} (1000 by default) and
+ * records the stack of every guest thread that is RUNNING at that moment: the method and pc of each
+ * frame. Guests are not stopped or signalled; the sampler reads their stacks as they are, so a sample
+ * may be a few instructions off, but profiling costs the guests nothing besides the host CPU the
+ * sampler uses. A guest running host-side target code is sampled as {@code [host code]}.
+ * <p>
+ * Samples are aggregated as collapsed stacks ({@code Thread-1;outer;inner 42}, the input format of
+ * flame graph tools, see {@link #writeCollapsed(Writer)}) and per method, as self samples (the method
+ * was executing), total samples (it was on the stack) and self samples by pc. Times are samples
+ * multiplied by the interval. With {@code -Dtinyjvm.sampler.output=file}, the collapsed stacks are
+ * written to that file and the per-method report to stdout when the VM exits.
+ */
+public final class SamplingProfiler {
+    private static final String HOST_CODE = "[host code]";
+
+    private static volatile long intervalNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("tinyjvm.sampler.intervalMicros", 1000));
+    private static volatile Thread sampler;
+    private static final AtomicLong samples = new AtomicLong();
+    // Concurrent, since samples can also be taken on demand and reports are read while the sampler runs
+    private static final Map<String, AtomicLong> collapsed = new ConcurrentHashMap<>();
+    private static final Map<String, MethodProfile> methods = new ConcurrentHashMap<>();
+    private static boolean exitHookInstalled; // Guarded by SamplingProfiler.class
+
+    private SamplingProfiler() {
+    }
+
+    /**
+     * Samples attributed to one guest method.
+     */
+    public static final class MethodProfile {
+        private final String method;
+        private final AtomicLong selfSamples = new AtomicLong();
+        private final AtomicLong totalSamples = new AtomicLong();
+        private final Map<Integer, AtomicLong> selfSamplesByPc = new ConcurrentHashMap<>();
+
+        MethodProfile(String method) {
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return Samples in which this method was executing, i.e. was the innermost frame.
+         */
+        public long getSelfSamples() {
+            return selfSamples.get();
+        }
+
+        /**
+         * @return Samples in which this method was on the stack; recursive calls are counted once.
+         */
+        public long getTotalSamples() {
+            return totalSamples.get();
+        }
+
+        /**
+         * @return Self samples by the pc of the instruction being executed, lowest pc first.
+         */
+        public Map<Integer, Long> getSelfSamplesByPc() {
+            Map<Integer, Long> byPc = new TreeMap<>();
+            selfSamplesByPc.forEach((pc, count) -> byPc.put(pc, count.get()));
+            return byPc;
+        }
+
+        /**
+         * @return The pc with the most self samples, or -1 if there are none.
+         */
+        public int getHottestPc() {
+            int hottest = -1;
+            long most = 0;
+            for (Map.Entry<Integer, AtomicLong> entry : selfSamplesByPc.entrySet()) {
+                if (entry.getValue().get() > most) {
+                    most = entry.getValue().get();
+                    hottest = entry.getKey();
+                }
+            }
+            return hottest;
+        }
+    }
+
+    /**
+     * Starts sampling if {@code -Dtinyjvm.sampler=true} and it is not running yet.
+     */
+    static void startIfRequested() {
+        if (Boolean.getBoolean("tinyjvm.sampler") && !isRunning()) {
+            start();
+        }
+    }
+
+    /**
+     * Starts the sampler thread, if it is not running. Samples taken before are kept.
+     */
+    public static synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        String output = System.getProperty("tinyjvm.sampler.output");
+        if (output != null && !exitHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeOnExit(Paths.get(output)), "tinyjvm-sampler-output"));
+            exitHookInstalled = true;
+        }
+        Thread thread = new Thread(SamplingProfiler::run, "tinyjvm-sampler");
+        thread.setDaemon(true);
+        sampler = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the sampler thread and waits for it to finish its current sample.
+     */
+    public static void stop() {
+        Thread thread;
+        synchronized (SamplingProfiler.class) {
+            thread = sampler;
+            sampler = null;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static boolean isRunning() {
+        return sampler != null;
+    }
+
+    /**
+     * Sets the time between samples; takes effect from the next sample.
+     */
+    public static void setIntervalMicros(long micros) {
+        intervalNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, micros));
+    }
+
+    public static long getIntervalMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(intervalNanos);
+    }
+
+    private static void run() {
+        Thread self = Thread.currentThread();
+        while (sampler == self) {
+            sampleOnce();
+            LockSupport.parkNanos(intervalNanos);
+        }
+    }
+
+    /**
+     * Takes one sample of every RUNNING guest thread. Called by the sampler thread; also usable on demand.
+     */
+    public static void sampleOnce() {
+        sampleOnce(JVMThread.getLiveThreads());
+    }
+
+    /**
+     * Takes one sample of each of the given threads that is RUNNING.
+     *
+     * @param threads The threads to sample, e.g. those of one guest program.
+     */
+    public static void sampleOnce(Collection<JVMThread> threads) {
+        for (JVMThread thread : threads) {
+            if (thread.getState() == JVMThread.ThreadState.RUNNING) {
+                record(thread);
+            }
+        }
+    }
+
+    private static void record(JVMThread thread) {
+        List<JFrame> frames = thread.getStack().getFrames(); // Innermost first; a copy, taken under the stack's lock
+        StringBuilder stack = new StringBuilder("Thread-").append(thread.getThreadId());
+        samples.incrementAndGet();
+        if (frames.isEmpty()) {
+            stack.append(';').append(HOST_CODE);
+            profileOf(HOST_CODE).selfSamples.incrementAndGet();
+            profileOf(HOST_CODE).totalSamples.incrementAndGet();
+        } else {
+            Set<String> seen = new HashSet<>();
+            for (int i = frames.size() - 1; i >= 0; i--) {
+                String method = frames.get(i).getMethodName();
+                stack.append(';').append(method);
+                if (seen.add(method)) {
+                    profileOf(method).totalSamples.incrementAndGet();
+                }
+            }
+            JFrame leaf = frames.get(0);
+            MethodProfile profile = profileOf(leaf.getMethodName());
+            profile.selfSamples.incrementAndGet();
+            // The pc has already moved past the opcode being executed
+            profile.selfSamplesByPc.computeIfAbsent(Math.max(0, leaf.pc - 1), pc -> new AtomicLong()).incrementAndGet();
+        }
+        collapsed.computeIfAbsent(stack.toString(), key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static MethodProfile profileOf(String method) {
+        return methods.computeIfAbsent(method, MethodProfile::new);
+    }
+
+    /**
+     * @return Number of thread stacks sampled so far.
+     */
+    public static long getSampleCount() {
+        return samples.get();
+    }
+
+    /**
+     * @return Sample counts by collapsed stack: the thread, then the frames outermost first, separated by ';'.
+     */
+    public static Map<String, Long> getCollapsedStacks() {
+        Map<String, Long> stacks = new TreeMap<>();
+        collapsed.forEach((stack, count) -> stacks.put(stack, count.get()));
+        return stacks;
+    }
+
+    /**
+     * Writes the collapsed stacks, one "stack count" line each, as read by flame graph tools.
+     */
+    public static void writeCollapsed(Writer out) throws IOException {
+        for (Map.Entry<String, Long> entry : getCollapsedStacks().entrySet()) {
+            out.write(entry.getKey() + " " + entry.getValue() + "\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * @return Every sampled method, most self samples first.
+     */
+    public static List<MethodProfile> getMethodProfiles() {
+        List<MethodProfile> all = new ArrayList<>(methods.values());
+        all.sort(Comparator.comparingLong(MethodProfile::getSelfSamples)
+                .thenComparingLong(MethodProfile::getTotalSamples).reversed());
+        return all;
+    }
+
+    /**
+     * @return The profile of a method, or null if it was never sampled.
+     */
+    public static MethodProfile getMethodProfile(String method) {
+        return methods.get(method);
+    }
+
+    /**
+     * Formats the methods with the most self time as a table.
+     *
+     * @param limit The maximum number of methods to list.
+     * @return The report.
+     */
+    public static String report(int limit) {
+        long total = Math.max(1, samples.get());
+        double msPerSample = intervalNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        StringBuilder sb = new StringBuilder("Guest CPU samples by method (" + samples.get() + " samples, every "
+                + getIntervalMicros() + " us):\n");
+        sb.append(String.format("%10s %7s %10s %7s %8s  %s%n", "self ms", "self %", "total ms", "total %", "hot pc", "method"));
+        List<MethodProfile> profiles = getMethodProfiles();
+        for (MethodProfile profile : profiles.subList(0, Math.min(limit, profiles.size()))) {
+            sb.append(String.format("%10.1f %6.1f%% %10.1f %6.1f%% %8s  %s%n",
+                    profile.getSelfSamples() * msPerSample, 100.0 * profile.getSelfSamples() / total,
+                    profile.getTotalSamples() * msPerSample, 100.0 * profile.getTotalSamples() / total,
+                    profile.getHottestPc() < 0 ? "-" : String.valueOf(profile.getHottestPc()), profile.getMethod()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Discards all samples.
+     */
+    public static void reset() {
+        collapsed.clear();
+        methods.clear();
+        samples.set(0);
+    }
+
+    private static void writeOnExit(Path file) {
+        stop();
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCollapsed(out);
+        } catch (IOException e) {
+            Logger.error("SamplingProfiler: Could not write {}: {}", file, e.getMessage());
+        }
+        System.out.print(report(20)); // Directly: the logger's own exit hook may already have run
+        System.out.flush();
+    }
+}
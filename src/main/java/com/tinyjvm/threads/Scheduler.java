@@ -1,18 +1,133 @@
 package com.tinyjvm.threads;
 
+import com.tinyjvm.interpreter.InstructionCost;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.jfr.GuestEvents;
+import com.tinyjvm.metrics.VmMetrics;
 import com.tinyjvm.utils.Logger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 /**
  * Manages the scheduling and execution of JVMThreads in a cooperative manner.
  * It uses a round-robin algorithm to give each thread a chance to run.
+ * <p>
+ * Threads that block are parked with {@link #park(JVMThread)}: they leave the run queue
+ * entirely and only come back when {@link #unpark(JVMThread)} registers them again.
+ * While parked they are kept in a per-reason set ({@link #getBlockedThreads()} for monitor entry,
+ * {@link #getWaitingThreads()} for wait sets), besides the monitor's own queue, so no scheduler
+ * pass ever looks at them. If the scheduler runs out of work while threads are still parked on
+ * monitor entry, it checks them with the {@link DeadlockDetector} and logs any deadlock.
+ * Timed operations register a {@link TimerWheel.Timeout} in a {@link TimerWheel}; the scheduler runs expired timeouts between quanta
+ * and sleeps until the next deadline when only timed-out threads are left to wake. Idle host
+ * threads are woken by events only (new work, a due timeout, shutdown), never by polling.
+ * <p>
+ * By default all guests share the host thread that called {@link #start()}. With
+ * {@code -Dtinyjvm.carriers=N} (or {@link #setCarrierCount(int)}) they are multiplexed over N
+ * {@link Carrier} host threads instead, each with its own run deque and stealing from the others
+ * when it runs dry. Work that needs every guest stopped goes through {@link #stopTheWorld(String, Supplier)},
+ * which brings them to a {@link Safepoint}.
+ * Alternatively, {@code -Dtinyjvm.scheduler=virtual} selects {@link ExecutionMode#VIRTUAL_THREADS},
+ * which leaves scheduling to the host: see {@link VirtualThreadRunner}.
+ * <p>
+ * Quanta are a fixed number of instructions by default. With {@code -Dtinyjvm.slicing=time} (or
+ * {@link #setSlicePolicy(SlicePolicy)}) they are measured in elapsed time instead and honor
+ * {@link JVMThread#setPriority(int) priorities}; see {@link SlicePolicy#TIME}.
+ * <p>
+ * With {@code -Dtinyjvm.sampler=true}, {@link #start()} also starts the {@link SamplingProfiler}, and with
+ * {@code -Dtinyjvm.metrics.jmx=true} it registers the {@link VmMetrics} MBean.
  */
 public class Scheduler {
     private static Scheduler instance;
-    private final Queue<JVMThread> runQueue = new LinkedList<>();
-    private int quantum = 100; // Default number of instructions per thread quantum
-    private static JVMThread currentThread = null; // Track the currently executing thread
+    // Lowest virtual runtime first, FIFO among equals (always, with instruction quanta); guarded by itself
+    private static final Comparator<JVMThread> RUN_ORDER =
+            Comparator.comparingLong(JVMThread::getVirtualRuntime).thenComparingLong(JVMThread::getQueueSequence);
+    private final Queue<JVMThread> runQueue = new PriorityQueue<>(RUN_ORDER); // Carriers use their own deques
+    private long queueSequence = 0; // Guarded by runQueue
+    private volatile int quantum = 100; // Default number of instructions per thread quantum
+    // The guest running on the calling host thread: set by carriers for a quantum, and for good by continuation threads
+    private static final ThreadLocal<JVMThread> CURRENT = new ThreadLocal<>();
+    private final AtomicLong dispatches = new AtomicLong(); // Number of quanta handed out, for diagnostics
+    private final AtomicLong contextSwitches = new AtomicLong(); // Quanta of a different guest than the host thread's last
+    private static final ThreadLocal<JVMThread> LAST_GUEST = new ThreadLocal<>(); // Guest of the host thread's previous quantum; also drives the JFR switch events
+    private final Object timerLock = new Object();
+    private final TimerWheel timers = new TimerWheel(timerLock); // Guarded by timerLock
+    private final Safepoint safepoint = new Safepoint();
+    private final Set<JVMThread> blockedThreads = ConcurrentHashMap.newKeySet(); // Parked on monitor entry
+    private volatile List<DeadlockDetector.Deadlock> detectedDeadlocks = Collections.emptyList();
+    private final Set<JVMThread> waitingThreads = ConcurrentHashMap.newKeySet(); // Parked in a wait set or join
+    private final Set<JVMThread> sleepingThreads = ConcurrentHashMap.newKeySet(); // Parked in sleep()
+    private final AtomicLong idleWakeups = new AtomicLong(); // Times an idle host thread resumed, for diagnostics
+
+    private volatile int carrierCount = Math.max(1, Integer.getInteger("tinyjvm.carriers", 1));
+    private volatile Carrier[] carriers; // Non-null while carriers are running
+    private volatile boolean carrierShutdown = false;
+    private final AtomicInteger nextPlacement = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger(); // Threads queued on or running on a carrier, and running timeouts
+    private volatile ExecutionMode executionMode = ExecutionMode.fromProperty(System.getProperty("tinyjvm.scheduler"));
+    private volatile SlicePolicy slicePolicy = SlicePolicy.fromProperty(System.getProperty("tinyjvm.slicing"));
+    private volatile long targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(4); // Every runnable thread runs once per period
+    private volatile long minGranularityNanos = TimeUnit.MICROSECONDS.toNanos(250); // Shortest slice, however many are runnable
+    private final AtomicLong minVirtualRuntime = new AtomicLong(); // Virtual runtime of the most recently started slice, monotonic
+    private volatile long timerDueNanos = Long.MAX_VALUE; // When the timer wheel next needs attention, if timersDue
+    private volatile boolean timersDue = false;
+    private volatile boolean preemptRequested = false; // A thread woke up to run next on the single scheduling loop
+
+    private static final int MAX_SLICE_BOOST = 8;
+    private static final int NORM_WEIGHT = 1024;
+    // Share of the processor per priority (index), each step 1.25 times the one below, as with Linux nice levels
+    private static final int[] PRIORITY_WEIGHTS = {0, 419, 524, 655, 819, 1024, 1280, 1600, 2000, 2500, 3125};
+    private volatile VirtualThreadRunner virtualRunner; // Non-null while running in VIRTUAL_THREADS mode
+
+    /**
+     * How guest threads are mapped onto host threads.
+     */
+    public enum ExecutionMode {
+        /** Guests take turns on the scheduler's own carrier thread(s), one quantum at a time. */
+        COOPERATIVE,
+        /** Every guest runs on a host virtual thread of its own (platform threads before Java 21). */
+        VIRTUAL_THREADS;
+
+        static ExecutionMode fromProperty(String value) {
+            return "virtual".equalsIgnoreCase(value) ? VIRTUAL_THREADS : COOPERATIVE;
+        }
+    }
+
+    /**
+     * How long a quantum lasts.
+     */
+    public enum SlicePolicy {
+        /** A fixed number of instructions ({@link #setQuantum(int)}); threads take turns round-robin. */
+        INSTRUCTIONS,
+        /**
+         * Elapsed time. Each slice is the target latency shared among the runnable threads, scaled by
+         * the thread's priority weight, and doubled (up to 8 times) for a thread that used up its previous
+         * slice, so CPU-bound threads are switched less often; a thread that yields or blocks early is
+         * back to the base slice. The clock is only read once the slice's estimated
+         * {@link InstructionCost instruction cost} reaches a threshold. The single scheduling loop runs the
+         * thread with the lowest priority-weighted CPU time next; a thread that wakes up is credited
+         * at most half a target latency below the others, and on carriers goes to the head of the deque.
+         * A running slice ends early, once it has lasted the minimum granularity, when a timeout is due or a
+         * thread was queued to run next, so interactive threads are not held up by boosted slices.
+         */
+        TIME;
+
+        static SlicePolicy fromProperty(String value) {
+            return "time".equalsIgnoreCase(value) ? TIME : INSTRUCTIONS;
+        }
+    }
 
     /**
      * Private constructor for Singleton pattern.
@@ -34,15 +149,41 @@ public class Scheduler {
     /**
      * Registers a thread with the scheduler, adding it to the run queue.
      * The thread should be in the RUNNABLE state.
+     * While carriers are running, the thread goes to the deque of the carrier that last ran it,
+     * or for a new thread, of the carrier its creator is running on.
      *
      * @param thread The JVMThread to register.
      */
     public void registerThread(JVMThread thread) {
         if (thread != null && thread.getState() == JVMThread.ThreadState.RUNNABLE) {
-            runQueue.add(thread);
-            Logger.info("Scheduler: Registered thread " + thread.getThreadId() + ". Run queue size: " + runQueue.size());
+            VirtualThreadRunner runner = virtualRunner;
+            if (runner != null) {
+                runner.launchOrWake(thread);
+                return;
+            }
+            boolean timeSliced = slicePolicy == SlicePolicy.TIME;
+            if (timeSliced) {
+                // New or just woken: no credit for more than half a period of sleep, so it cannot monopolize the processor
+                thread.setVirtualRuntime(Math.max(thread.getVirtualRuntime(), minVirtualRuntime.get() - targetLatencyNanos / 2));
+            }
+            Carrier[] active = carriers;
+            if (active != null) {
+                Carrier carrier = placementFor(thread, active);
+                enqueue(thread, carrier, timeSliced);
+                if (timeSliced) {
+                    carrier.requestPreempt();
+                }
+                Logger.debug("Scheduler: Registered thread {} on carrier {}.", thread.getThreadId(), thread.getCarrier().getIndex());
+                return;
+            }
+            synchronized (runQueue) {
+                addToRunQueue(thread);
+                preemptRequested = timeSliced;
+                Logger.info("Scheduler: Registered thread {}. Run queue size: {}", thread.getThreadId(), runQueue.size());
+            }
         } else {
-            Logger.error("Scheduler: Could not register thread. It might be null or not in RUNNABLE state: " + thread);
+            Logger.error("Scheduler: Could not register thread {}. It might be null or not in RUNNABLE state: {}",
+                    thread != null ? thread.getThreadId() : null, thread != null ? thread.getState() : null);
         }
     }
 
@@ -50,62 +191,457 @@ public class Scheduler {
      * Starts the scheduling loop.
      * This method will continuously pick threads from the run queue and execute them
      * for a defined quantum until the run queue is empty.
+     * With more than one carrier configured (see {@link #setCarrierCount(int)}), the queued threads
+     * are spread over the carriers instead and this method returns once all carriers ran out of work.
      */
     public void start() {
-        Logger.info("Scheduler: Starting execution. Quantum: " + quantum + " instructions.");
-        while (!runQueue.isEmpty()) {
-            JVMThread threadToRun = runQueue.poll();
+        SamplingProfiler.startIfRequested();
+        VmMetrics.registerIfRequested();
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            startVirtualThreads();
+        } else if (carrierCount > 1) {
+            startCarriers();
+        } else {
+            runSingleLoop();
+        }
+        reportDeadlocks();
+    }
+
+    /**
+     * Runs all guests on the calling host thread until none is queued and no timeout is pending.
+     */
+    private void runSingleLoop() {
+        Logger.info("Scheduler: Starting execution. Quantum: {}.", describeQuantum());
+        while (!isRunQueueEmpty() || hasTimeouts()) {
+            runExpiredTimeouts(isRunQueueEmpty()); // Sleeps for the next deadline if nothing else can run
+            JVMThread threadToRun;
+            synchronized (runQueue) {
+                threadToRun = runQueue.poll();
+            }
             if (threadToRun == null) continue;
 
-            Logger.debug("Scheduler: Picking thread " + threadToRun.getThreadId() + " from run queue. State: " + threadToRun.getState());
+            if (dispatch(threadToRun)) {
+                synchronized (runQueue) {
+                    addToRunQueue(threadToRun);
+                }
+            }
+        }
+        Logger.info("Scheduler: All dispatchable threads have completed. Run queue is empty.");
+    }
 
-            if (threadToRun.getState() == JVMThread.ThreadState.TERMINATED) {
-                Logger.debug("Scheduler: Thread " + threadToRun.getThreadId() + " is already TERMINATED. Skipping.");
-                continue;
+    /**
+     * Called once no guest can run any more: threads still parked on monitor entry can only be
+     * waiting for each other, so any cycle among them is a deadlock and is logged.
+     */
+    private void reportDeadlocks() {
+        if (blockedThreads.isEmpty()) {
+            return;
+        }
+        List<DeadlockDetector.Deadlock> found = DeadlockDetector.findDeadlocks(blockedThreads);
+        for (DeadlockDetector.Deadlock deadlock : found) {
+            Logger.error("Scheduler: {}", deadlock.toString()); // Describes the threads' current state and stacks, so formatted now
+        }
+        detectedDeadlocks = Collections.unmodifiableList(found);
+    }
+
+    /**
+     * Runs one quantum of a thread taken from a run queue.
+     *
+     * @param threadToRun The thread.
+     * @return true if the thread must be queued again.
+     */
+    private boolean dispatch(JVMThread threadToRun) {
+        Logger.debug("Scheduler: Picking thread {} from run queue. State: {}", threadToRun.getThreadId(), threadToRun.getState());
+
+        if (threadToRun.getState() == JVMThread.ThreadState.TERMINATED) {
+            Logger.debug("Scheduler: Thread {} is already TERMINATED. Skipping.", threadToRun.getThreadId());
+            return false;
+        }
+
+        // If a thread is BLOCKED or WAITING, it should not be in the runQueue unless
+        // it was just made RUNNABLE by a monitor or notification.
+        // If it's here and still in BLOCKED/WAITING, it's a state issue or it needs to be handled by monitor logic primarily.
+        // A parked thread is re-registered by unpark() once it may run again, so it is simply dropped here.
+        if (threadToRun.getState() == JVMThread.ThreadState.BLOCKED || threadToRun.getState() == JVMThread.ThreadState.WAITING) {
+            Logger.debug("Scheduler: Thread {} is {}. Dropping it until it is unparked.", threadToRun.getThreadId(), threadToRun.getState());
+            return false;
+        }
+
+        if (threadToRun.getState() != JVMThread.ThreadState.RUNNABLE) {
+             Logger.debug("Scheduler: Thread {} is in state {} instead of RUNNABLE. Re-queuing.", threadToRun.getThreadId(), threadToRun.getState());
+             return true; // Re-queue, expecting state to become RUNNABLE.
+        }
+
+        threadToRun.setState(JVMThread.ThreadState.RUNNING);
+        CURRENT.set(threadToRun);
+        Logger.debug("Scheduler: Executing thread {} (State: {})", threadToRun.getThreadId(), threadToRun.getState());
+        try {
+            runHostQuantum(threadToRun);
+        } finally {
+            CURRENT.remove(); // Clear current thread after execution attempt
+        }
+
+        // No guest is running between quanta, so pending collector pauses can run here
+        JVMHeap heap = JVMThread.getSharedHeapInstance();
+        if (heap != null) {
+            heap.runPendingCollectorWork();
+        }
+
+        // Re-queue if still runnable or was running (meaning it yielded or quantum ended)
+        if (threadToRun.getState() == JVMThread.ThreadState.RUNNABLE) {
+            Logger.debug("Scheduler: Re-queuing thread {} (State: {})", threadToRun.getThreadId(), threadToRun.getState());
+            return true;
+        } else if (threadToRun.getState() == JVMThread.ThreadState.RUNNING) {
+             // If it's still RUNNING, it means its quantum finished abruptly or without a state change by executeNextInstruction.
+             // Set to RUNNABLE before re-queuing.
+            threadToRun.setState(JVMThread.ThreadState.RUNNABLE);
+            Logger.debug("Scheduler: Thread {} quantum ended, set to RUNNABLE and re-queued.", threadToRun.getThreadId());
+            return true;
+        } else if (threadToRun.getState() == JVMThread.ThreadState.TERMINATED) {
+            Logger.info("Scheduler: Thread {} terminated.", threadToRun.getThreadId());
+        } else {
+            // If BLOCKED or WAITING, it should be re-registered by the Monitor/Object.wait logic
+            // when it becomes RUNNABLE. It should not be re-queued automatically here if in these states.
+            Logger.debug("Scheduler: Thread {} finished quantum in state {}. Not re-queuing automatically.", threadToRun.getThreadId(), threadToRun.getState());
+        }
+        return false;
+    }
+
+    /**
+     * Runs one quantum of a RUNNING thread on the calling host thread, counted by the safepoint coordinator.
+     */
+    void runHostQuantum(JVMThread thread) {
+        dispatches.incrementAndGet();
+        JVMThread last = LAST_GUEST.get();
+        if (last != thread) {
+            LAST_GUEST.set(thread);
+            contextSwitches.incrementAndGet();
+            GuestEvents.contextSwitched(last, thread);
+        }
+        enterQuantum(thread);
+        try {
+            executeThreadQuantum(thread);
+        } catch (RuntimeException | Error e) {
+            thread.setState(JVMThread.ThreadState.TERMINATED); // The guest cannot go on; do not leave it registered as live
+            throw e;
+        } finally {
+            exitQuantum(thread);
+        }
+    }
+
+    private void enterQuantum(JVMThread thread) {
+        safepoint.enterQuantum();
+        thread.setInQuantum(true);
+        thread.quantumEvent = GuestEvents.quantumStarted(thread);
+    }
+
+    private void exitQuantum(JVMThread thread) {
+        GuestEvents.quantumEnded(thread.quantumEvent, thread);
+        thread.quantumEvent = null;
+        thread.setInQuantum(false);
+        safepoint.exitQuantum();
+    }
+
+    /**
+     * Virtual-thread mode: gives every queued thread a host thread and waits until they are done.
+     */
+    private void startVirtualThreads() {
+        VirtualThreadRunner runner = new VirtualThreadRunner(this);
+        Logger.info("Scheduler: Starting execution on {} host threads. Quantum: {}.",
+                VirtualThreadRunner.isVirtualThreadSupported() ? "virtual" : "platform", describeQuantum());
+        synchronized (runQueue) {
+            virtualRunner = runner;
+            JVMThread queued;
+            while ((queued = runQueue.poll()) != null) {
+                runner.launchOrWake(queued);
             }
+        }
+        try {
+            runner.await();
+        } finally {
+            virtualRunner = null;
+        }
+        Logger.info("Scheduler: All dispatchable threads have completed. Host threads finished.");
+    }
 
-            // If a thread is BLOCKED or WAITING, it should not be in the runQueue unless
-            // it was just made RUNNABLE by a monitor or notification.
-            // If it's here and still in BLOCKED/WAITING, it's a state issue or it needs to be handled by monitor logic primarily.
-            if (threadToRun.getState() == JVMThread.ThreadState.BLOCKED || threadToRun.getState() == JVMThread.ThreadState.WAITING) {
-                Logger.debug("Scheduler: Thread " + threadToRun.getThreadId() + " is " + threadToRun.getState() + ". It should become RUNNABLE before being processed. Re-queuing for now.");
-                runQueue.add(threadToRun); // Re-queue with the hope its state will be updated by other mechanisms.
-                // Potentially add a small delay or use a separate queue for such threads to avoid busy spinning.
-                continue;
+    /**
+     * M:N mode: spreads the queued threads over the carriers round-robin, runs the carriers
+     * and waits until none of them has work left.
+     */
+    private void startCarriers() {
+        Carrier[] started = new Carrier[carrierCount];
+        for (int i = 0; i < started.length; i++) {
+            started[i] = new Carrier(this, i);
+        }
+        Logger.info("Scheduler: Starting execution on {} carriers. Quantum: {}.", started.length, describeQuantum());
+        carrierShutdown = false;
+        synchronized (runQueue) {
+            carriers = started;
+            JVMThread queued;
+            while ((queued = runQueue.poll()) != null) {
+                enqueue(queued, started[nextPlacement.getAndIncrement() % started.length], false);
+            }
+        }
+        for (Carrier carrier : started) {
+            carrier.start();
+        }
+        try {
+            for (Carrier carrier : started) {
+                carrier.join();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            carrierShutdown = true;
+        } finally {
+            carriers = null;
+        }
+        for (Carrier carrier : started) {
+            Logger.info("Scheduler: {}", carrier.toString()); // Formatted now; the carrier's counters keep changing
+        }
+        Logger.info("Scheduler: All dispatchable threads have completed. Carriers stopped.");
+    }
+
+    private Carrier placementFor(JVMThread thread, Carrier[] active) {
+        Carrier last = thread.getCarrier();
+        if (last != null && last.getIndex() < active.length && active[last.getIndex()] == last) {
+            return last; // Affinity: back to the carrier that ran it before
+        }
+        JVMThread creator = getCurrentThread();
+        if (creator != null && creator.getCarrier() != null && active[creator.getCarrier().getIndex()] == creator.getCarrier()) {
+            return creator.getCarrier(); // New threads start next to their creator and are stolen if that carrier is busy
+        }
+        return active[nextPlacement.getAndIncrement() % active.length];
+    }
 
-            if (threadToRun.getState() != JVMThread.ThreadState.RUNNABLE) {
-                 Logger.debug("Scheduler: Thread " + threadToRun.getThreadId() + " is in state "+ threadToRun.getState() +" instead of RUNNABLE. Re-queuing.");
-                 runQueue.add(threadToRun); // Re-queue, expecting state to become RUNNABLE.
-                 continue;
+    /**
+     * Puts a thread on a carrier's deque unless it is queued already, and makes sure an idle
+     * carrier notices the new work.
+     *
+     * @param runNext true to queue it at the head of the deque rather than the tail.
+     */
+    private void enqueue(JVMThread thread, Carrier carrier, boolean runNext) {
+        if (!thread.markQueued()) {
+            return;
+        }
+        pending.incrementAndGet();
+        thread.setCarrier(carrier);
+        if (runNext) {
+            carrier.pushFirst(thread);
+        } else {
+            carrier.push(thread);
+        }
+        if (!carrier.isIdle()) {
+            Carrier[] active = carriers;
+            if (active != null) {
+                for (Carrier other : active) {
+                    if (other.isIdle()) {
+                        other.wake(); // Let it steal
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one quantum of a thread taken from a carrier's deque (or stolen) on that carrier.
+     */
+    void runOnCarrier(JVMThread thread, Carrier carrier) {
+        thread.clearQueued();
+        if (!thread.tryMount()) {
+            // Still finishing its previous quantum elsewhere (it was unparked while suspending)
+            enqueue(thread, carrier, false);
+            pending.decrementAndGet();
+            Thread.yield();
+            return;
+        }
+        boolean requeue;
+        try {
+            thread.setCarrier(carrier);
+            requeue = dispatch(thread);
+        } finally {
+            thread.unmount();
+        }
+        if (requeue) {
+            enqueue(thread, carrier, false);
+        }
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Takes a thread from another carrier's deque, starting at a random victim.
+     *
+     * @return The stolen thread, or null if every other deque is empty.
+     */
+    JVMThread steal(Carrier thief) {
+        Carrier[] active = carriers;
+        if (active == null || active.length < 2) {
+            return null;
+        }
+        int start = ThreadLocalRandom.current().nextInt(active.length);
+        for (int i = 0; i < active.length; i++) {
+            Carrier victim = active[(start + i) % active.length];
+            if (victim != thief) {
+                JVMThread stolen = victim.steal();
+                if (stolen != null) {
+                    Logger.debug("Scheduler: Carrier {} stole thread {} from carrier {}.", thief.getIndex(), stolen.getThreadId(), victim.getIndex());
+                    return stolen;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called by a carrier that found no work: waits for new work or the next timeout, and shuts
+     * all carriers down once no thread is queued or running and no timeout is pending.
+     */
+    void idle(Carrier carrier) {
+        if (pending.get() == 0 && !hasTimeouts()) {
+            carrierShutdown = true;
+            for (Carrier other : carriers) {
+                other.wake();
+            }
+            return;
+        }
+        long nextTimeout = nanosUntilNextTimeout();
+        if (nextTimeout != 0) {
+            carrier.parkIdle(nextTimeout); // Until the deadline, or new work if there is no timeout
+            idleWakeups.incrementAndGet();
+        }
+    }
+
+    boolean isCarrierShutdown() {
+        return carrierShutdown;
+    }
+
+    /**
+     * Runs a VM operation, e.g. a garbage collection, while every guest thread is stopped at a safepoint:
+     * between two quanta, or at a back-edge or method return in the middle of one.
+     * The calling guest thread, if any, stays where it is.
+     * With a single carrier no other guest can be running, so the action runs immediately.
+     *
+     * @param operation Name of the operation, for the {@link Safepoint} statistics.
+     * @param action    The action.
+     * @return The action's result.
+     */
+    public <T> T stopTheWorld(String operation, Supplier<T> action) {
+        JVMThread current = getCurrentThread();
+        return safepoint.stopTheWorld(operation, current != null && current.isInQuantum(), action);
+    }
+
+    /**
+     * Runs an unnamed VM operation at a safepoint; see {@link #stopTheWorld(String, Supplier)}.
+     *
+     * @param action The action.
+     * @return The action's result.
+     */
+    public <T> T stopTheWorld(Supplier<T> action) {
+        return stopTheWorld("VM operation", action);
+    }
+
+    /**
+     * @return The safepoint coordinator, with time-to-safepoint statistics.
+     */
+    public Safepoint getSafepoint() {
+        return safepoint;
+    }
+
+    /**
+     * Registers an action to run on the scheduler thread once a deadline has passed.
+     *
+     * @param deadlineNanos Deadline in {@link System#nanoTime()} units.
+     * @param action        The action; it runs while no guest thread is running.
+     * @return A handle to cancel the timeout.
+     */
+    public TimerWheel.Timeout schedule(long deadlineNanos, Runnable action) {
+        long now = System.nanoTime();
+        synchronized (timerLock) {
+            long previous = timers.nanosUntilNextEvent(now);
+            TimerWheel.Timeout timeout = timers.schedule(deadlineNanos, action);
+            refreshTimerDue(now);
+            VirtualThreadRunner runner = virtualRunner;
+            if (runner != null && (previous < 0 || deadlineNanos - now < previous)) {
+                runner.wakeWaiter(); // It may be sleeping past the new deadline
             }
+            return timeout;
+        }
+    }
 
-            threadToRun.setState(JVMThread.ThreadState.RUNNING);
-            currentThread = threadToRun;
-            Logger.debug("Scheduler: Executing thread " + threadToRun.getThreadId() + " (State: " + threadToRun.getState() + ")");
+    /**
+     * @return Nanoseconds until the timer wheel next needs attention (0 if now), or -1 if there are no timeouts.
+     *         Never later than the earliest deadline.
+     */
+    long nanosUntilNextTimeout() {
+        synchronized (timerLock) {
+            return timers.nanosUntilNextEvent(System.nanoTime());
+        }
+    }
+
+    /**
+     * Publishes when the timer wheel next needs attention, so a time slice can end in time for it
+     * without taking the timer lock. Called with timerLock held; a cancelled timeout may leave it early.
+     */
+    private void refreshTimerDue(long now) {
+        long next = timers.nanosUntilNextEvent(now);
+        timersDue = next >= 0;
+        timerDueNanos = now + Math.max(0, next);
+    }
 
-            executeThreadQuantum(threadToRun);
-            currentThread = null; // Clear current thread after execution attempt
+    private void addToRunQueue(JVMThread thread) {
+        thread.setQueueSequence(queueSequence++);
+        runQueue.add(thread);
+    }
 
-            // Re-queue if still runnable or was running (meaning it yielded or quantum ended)
-            if (threadToRun.getState() == JVMThread.ThreadState.RUNNABLE) {
-                Logger.debug("Scheduler: Re-queuing thread " + threadToRun.getThreadId() + " (State: " + threadToRun.getState() + ")");
-                runQueue.add(threadToRun);
-            } else if (threadToRun.getState() == JVMThread.ThreadState.RUNNING) {
-                 // If it's still RUNNING, it means its quantum finished abruptly or without a state change by executeNextInstruction.
-                 // Set to RUNNABLE before re-queuing.
-                threadToRun.setState(JVMThread.ThreadState.RUNNABLE);
-                Logger.debug("Scheduler: Thread " + threadToRun.getThreadId() + " quantum ended, set to RUNNABLE and re-queued.");
-                runQueue.add(threadToRun);
-            } else if (threadToRun.getState() == JVMThread.ThreadState.TERMINATED) {
-                Logger.info("Scheduler: Thread " + threadToRun.getThreadId() + " terminated.");
+    private boolean isRunQueueEmpty() {
+        synchronized (runQueue) {
+            return runQueue.isEmpty();
+        }
+    }
+
+    private boolean hasTimeouts() {
+        synchronized (timerLock) {
+            return !timers.isEmpty();
+        }
+    }
+
+    /**
+     * Runs every timeout whose deadline has passed.
+     *
+     * @param idle true if no thread is runnable, in which case the host thread sleeps until the earliest deadline.
+     */
+    void runExpiredTimeouts(boolean idle) {
+        while (true) {
+            List<TimerWheel.Timeout> expired = null;
+            long remaining;
+            long now = System.nanoTime();
+            synchronized (timerLock) {
+                remaining = timers.nanosUntilNextEvent(now); // O(1): no per-timeout work until one is due
+                if (remaining < 0) {
+                    return;
+                }
+                if (remaining == 0) {
+                    expired = new ArrayList<>();
+                    timers.advance(now, expired);
+                    refreshTimerDue(now);
+                    pending.addAndGet(expired.size()); // Idle carriers must not shut down while these may still wake a thread
+                }
+            }
+            if (expired != null) {
+                for (TimerWheel.Timeout timeout : expired) {
+                    try {
+                        timeout.run();
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+            } else if (idle && isRunQueueEmpty()) {
+                Logger.debug("Scheduler: No runnable threads, sleeping {} us until the next timeout.", remaining / 1000);
+                LockSupport.parkNanos(this, remaining);
             } else {
-                // If BLOCKED or WAITING, it should be re-registered by the Monitor/Object.wait logic
-                // when it becomes RUNNABLE. It should not be re-queued automatically here if in these states.
-                Logger.debug("Scheduler: Thread " + threadToRun.getThreadId() + " finished quantum in state " + threadToRun.getState() + ". Not re-queuing automatically.");
+                return;
             }
         }
-        Logger.info("Scheduler: All dispatchable threads have completed. Run queue is empty.");
     }
 
     /**
@@ -114,18 +650,22 @@ public class Scheduler {
      * @param thread The JVMThread to execute.
      */
     private void executeThreadQuantum(JVMThread thread) {
+        if (slicePolicy == SlicePolicy.TIME) {
+            executeTimeSlice(thread);
+            return;
+        }
         int executedInstructions = 0;
         // The thread must be in RUNNING state to execute instructions.
         while (executedInstructions < quantum && thread.getState() == JVMThread.ThreadState.RUNNING) {
             if (!thread.executeNextInstruction()) {
                 // executeNextInstruction returns false if thread terminates, yields, or an error occurs.
                 // The state (TERMINATED or RUNNABLE for yield) should be set within executeNextInstruction or by YIELD bytecode.
-                Logger.debug("Scheduler: Thread " + thread.getThreadId() + " signaled to stop its current execution slice (e.g. yielded, terminated, or error). State: " + thread.getState());
+                Logger.debug("Scheduler: Thread {} signaled to stop its current execution slice (e.g. yielded, terminated, or error). State: {}", thread.getThreadId(), thread.getState());
                 break;
             }
             executedInstructions++;
         }
-        Logger.debug("Scheduler: Thread " + thread.getThreadId() + " finished quantum part. Executed: " + executedInstructions + " instructions. Final state in quantum: " + thread.getState());
+        Logger.debug("Scheduler: Thread {} finished quantum part. Executed: {} instructions. Final state in quantum: {}", thread.getThreadId(), executedInstructions, thread.getState());
 
         // If thread is still RUNNING after the loop (quantum exhausted without self-yield/termination),
         // set it to RUNNABLE so it can be re-queued by the main loop.
@@ -134,13 +674,119 @@ public class Scheduler {
         }
     }
 
+    /**
+     * Executes a thread for a slice of elapsed time, see {@link SlicePolicy#TIME}, and charges the
+     * time to its virtual runtime.
+     *
+     * @param thread The JVMThread to execute.
+     */
+    private void executeTimeSlice(JVMThread thread) {
+        long budget = sliceNanos(thread, runnableCount());
+        long start = System.nanoTime();
+        minVirtualRuntime.accumulateAndGet(thread.getVirtualRuntime(), Math::max);
+        long cost = 0;
+        long nextClockCheck = InstructionCost.UNKNOWN; // Cost units between two clock reads
+        boolean exhausted = false;
+        while (thread.getState() == JVMThread.ThreadState.RUNNING) {
+            int opcode = thread.nextOpcode();
+            if (!thread.executeNextInstruction()) {
+                break; // Yielded, blocked or terminated, as in executeThreadQuantum
+            }
+            cost += InstructionCost.of(opcode);
+            if (cost >= nextClockCheck) {
+                long now = System.nanoTime();
+                if (now - start >= budget) {
+                    exhausted = true;
+                    break;
+                }
+                if (now - start >= minGranularityNanos && shouldPreempt(thread, now)) {
+                    break;
+                }
+                nextClockCheck = cost + InstructionCost.UNKNOWN;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        int weight = PRIORITY_WEIGHTS[thread.getPriority()];
+        thread.addCpuTime(elapsed);
+        thread.setVirtualRuntime(thread.getVirtualRuntime() + elapsed * NORM_WEIGHT / weight);
+        thread.setSliceBoost(exhausted ? Math.min(thread.getSliceBoost() * 2, MAX_SLICE_BOOST) : 1);
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("Scheduler: Thread {} ran {} us of a {} us slice.", thread.getThreadId(), elapsed / 1000, budget / 1000);
+        }
+
+        if (thread.getState() == JVMThread.ThreadState.RUNNING) {
+            thread.setState(JVMThread.ThreadState.RUNNABLE);
+        }
+    }
+
+    /**
+     * @return true if a timeout is due or a woken thread waits to run next on the calling host thread.
+     */
+    private boolean shouldPreempt(JVMThread thread, long now) {
+        if (timersDue && now - timerDueNanos >= 0) {
+            return true;
+        }
+        Carrier carrier = carriers != null ? thread.getCarrier() : null;
+        if (carrier != null) {
+            return carrier.takePreemptRequest();
+        }
+        if (preemptRequested) {
+            preemptRequested = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Length of a thread's next time slice: the target latency divided among the runnable threads
+     * (never below the minimum granularity), scaled by the thread's weight and slice boost.
+     * Boosted slices shrink again as more threads become runnable.
+     */
+    long sliceNanos(JVMThread thread, int runnable) {
+        long fair = Math.max(minGranularityNanos, targetLatencyNanos / runnable);
+        long slice = fair * thread.getSliceBoost() * PRIORITY_WEIGHTS[thread.getPriority()] / NORM_WEIGHT;
+        long cap = Math.max(fair, targetLatencyNanos * MAX_SLICE_BOOST / runnable);
+        return Math.max(minGranularityNanos, Math.min(slice, cap));
+    }
+
+    /**
+     * @return The number of threads competing for the calling host thread, including the one about to run.
+     */
+    private int runnableCount() {
+        Carrier[] active = carriers;
+        if (active != null) {
+            return Math.max(1, (pending.get() + active.length - 1) / active.length);
+        }
+        VirtualThreadRunner runner = virtualRunner;
+        if (runner != null) {
+            return Math.max(1, runner.getLiveCount() / Runtime.getRuntime().availableProcessors());
+        }
+        synchronized (runQueue) {
+            return runQueue.size() + 1;
+        }
+    }
+
+    private String describeQuantum() {
+        return slicePolicy == SlicePolicy.TIME
+                ? "time-sliced, target latency " + targetLatencyNanos / 1000 + " us"
+                : quantum + " instructions";
+    }
+
     /**
      * Gets the currently executing thread.
      *
      * @return The currently running JVMThread, or null if no thread is running.
      */
     public static JVMThread getCurrentThread() {
-        return currentThread;
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a guest to the calling host thread, or unbinds it with null. Used by continuation host
+     * threads for as long as they run their guest's target.
+     */
+    static void bindCurrentThread(JVMThread thread) {
+        CURRENT.set(thread);
     }
 
     /**
@@ -152,21 +798,352 @@ public class Scheduler {
     public static void reschedule() {
         JVMThread self = getCurrentThread(); // Use 'self' which is defined
         if (self != null) {
-            Logger.debug("Scheduler: Thread " + self.getThreadId() + " is yielding. Current state: " + self.getState());
+            Logger.debug("Scheduler: Thread {} is yielding. Current state: {}", self.getThreadId(), self.getState());
             // Ensure its state is RUNNABLE if it's yielding.
             // This should typically be done by the YIELD bytecode or the method calling yield.
             if (self.getState() == JVMThread.ThreadState.RUNNING) {
                  self.setState(JVMThread.ThreadState.RUNNABLE);
             }
-            // The main loop in start() will pick it up if it's RUNNABLE and re-queue it.
-            // The executeThreadQuantum loop also breaks when executeNextInstruction returns false (on yield).
+            // Host-side target code gives the processor back right here; the main loop re-queues it.
+            // Bytecode breaks out of executeThreadQuantum when executeNextInstruction returns false instead.
+            GuestContinuation continuation = self.getContinuation();
+            if (continuation != null && continuation.isCurrent()) {
+                continuation.suspend();
+            } else if (self.getHost() == Thread.currentThread() && self.isInQuantum()) {
+                // Virtual-thread mode: let the host schedule someone else, without holding up a collection
+                getInstance().exitQuantum(self);
+                Thread.yield();
+                getInstance().enterQuantum(self);
+                self.compareAndSetState(JVMThread.ThreadState.RUNNABLE, JVMThread.ThreadState.RUNNING);
+            }
         } else {
             Logger.error("Scheduler: reschedule() called but no current thread is set!");
         }
     }
 
     /**
-     * Sets the instruction quantum for thread execution.
+     * Marks a thread BLOCKED unless an {@link #unpark(JVMThread)} already arrived for it.
+     * Used directly by the interpreter, which retries the blocking instruction once the thread is
+     * scheduled again; host code should call {@link #park(JVMThread)} instead.
+     *
+     * @param thread The thread about to block.
+     * @return true if the thread must stop running, false if it was unparked in the meantime.
+     */
+    public static boolean prepareToBlock(JVMThread thread) {
+        return prepareToPark(thread, JVMThread.ThreadState.BLOCKED);
+    }
+
+    private static boolean prepareToPark(JVMThread thread, JVMThread.ThreadState parkState) {
+        Scheduler scheduler = getInstance();
+        return prepareToPark(thread, parkState, parkState == JVMThread.ThreadState.BLOCKED ? scheduler.blockedThreads : scheduler.waitingThreads);
+    }
+
+    private static boolean prepareToPark(JVMThread thread, JVMThread.ThreadState parkState, Set<JVMThread> parked) {
+        if (thread.consumeParkPermit()) {
+            return false;
+        }
+        Scheduler scheduler = getInstance();
+        parked.add(thread); // Before the state change, so an unpark always finds it to remove
+        thread.setState(parkState);
+        // Re-check: an unpark between the first check and the state change saw a running thread
+        if (thread.consumeParkPermit() && thread.compareAndSetState(parkState, JVMThread.ThreadState.RUNNING)) {
+            parked.remove(thread);
+            return false;
+        }
+        VirtualThreadRunner runner = scheduler.virtualRunner;
+        if (runner != null) {
+            runner.onGuestParked(scheduler.blockedThreads.size() + scheduler.waitingThreads.size());
+        }
+        return true;
+    }
+
+    /**
+     * Parks a guest for at least the given time, like {@code Thread.sleep}. The thread is kept in
+     * the sleeping set and costs no scheduler work until the timer wheel wakes it.
+     *
+     * @param thread The calling guest thread.
+     * @param millis The time to sleep.
+     */
+    public static void sleep(JVMThread thread, long millis) {
+        Scheduler scheduler = getInstance();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        TimerWheel.Timeout timeout = scheduler.schedule(deadline, () -> unpark(thread));
+        try {
+            while (deadline - System.nanoTime() > 0) {
+                park(thread, JVMThread.ThreadState.WAITING, scheduler.sleepingThreads);
+            }
+        } finally {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Waits until another thread has terminated, like {@code Thread.join}.
+     *
+     * @param thread        The calling guest thread.
+     * @param target        The thread to wait for.
+     * @param timeoutMillis Maximum time to wait, 0 to wait forever.
+     * @return true if the target has terminated, false if the timeout elapsed first.
+     */
+    public static boolean join(JVMThread thread, JVMThread target, long timeoutMillis) {
+        if (thread == null) {
+            throw new IllegalStateException("join() must be called from a guest thread");
+        }
+        Scheduler scheduler = getInstance();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        TimerWheel.Timeout timeout = timeoutMillis > 0 ? scheduler.schedule(deadline, () -> unpark(thread)) : null;
+        target.addJoiner(thread);
+        try {
+            while (target.getState() != JVMThread.ThreadState.TERMINATED
+                    && (timeout == null || deadline - System.nanoTime() > 0)) {
+                park(thread, JVMThread.ThreadState.WAITING, scheduler.waitingThreads);
+            }
+        } finally {
+            target.removeJoiner(thread);
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+        return target.getState() == JVMThread.ThreadState.TERMINATED;
+    }
+
+    /**
+     * Moves a parked thread from WAITING to BLOCKED, for a notification that queued it on the monitor.
+     * It stays parked until the monitor's owner unparks it.
+     *
+     * @param thread A thread parked in a wait set.
+     */
+    static void transferToBlocked(JVMThread thread) {
+        Scheduler scheduler = getInstance();
+        scheduler.blockedThreads.add(thread);
+        if (thread.compareAndSetState(JVMThread.ThreadState.WAITING, JVMThread.ThreadState.BLOCKED)) {
+            scheduler.waitingThreads.remove(thread);
+        } else {
+            scheduler.blockedThreads.remove(thread); // Not parked yet; it sees the notification itself
+        }
+    }
+
+    /**
+     * Parks a thread until it is unparked. A guest running host-side target code gives its
+     * processor back to the scheduler and is not scheduled again until {@link #unpark(JVMThread)};
+     * any other caller blocks its host thread. Like {@link LockSupport#park()}, this may return
+     * spuriously, so callers re-check their condition in a loop.
+     *
+     * @param thread The thread to park, which must be the calling thread.
+     */
+    public static void park(JVMThread thread) {
+        park(thread, JVMThread.ThreadState.BLOCKED);
+    }
+
+    /**
+     * Parks a thread in the given state, e.g. WAITING for {@code Object.wait}.
+     *
+     * @param thread    The thread to park, which must be the calling thread.
+     * @param parkState BLOCKED or WAITING.
+     */
+    public static void park(JVMThread thread, JVMThread.ThreadState parkState) {
+        Scheduler scheduler = getInstance();
+        park(thread, parkState, parkState == JVMThread.ThreadState.BLOCKED ? scheduler.blockedThreads : scheduler.waitingThreads);
+    }
+
+    private static void park(JVMThread thread, JVMThread.ThreadState parkState, Set<JVMThread> parked) {
+        GuestContinuation continuation = thread.getContinuation();
+        if (continuation != null && continuation.isCurrent()) {
+            if (prepareToPark(thread, parkState, parked)) {
+                continuation.suspend(); // Resumed by the main loop after unpark() re-registered us
+            }
+            return;
+        }
+        thread.setParkedHost(Thread.currentThread()); // Before BLOCKED is visible, so unpark finds it
+        boolean inQuantum = thread.isInQuantum(); // A guest on its own host thread; a collection must not wait for it
+        try {
+            if (prepareToPark(thread, parkState, parked)) {
+                if (inQuantum) {
+                    getInstance().exitQuantum(thread);
+                }
+                while (thread.getState() == parkState) {
+                    LockSupport.park(thread);
+                }
+            }
+        } finally {
+            thread.setParkedHost(null);
+            if (inQuantum && !thread.isInQuantum()) {
+                getInstance().enterQuantum(thread);
+                thread.compareAndSetState(JVMThread.ThreadState.RUNNABLE, JVMThread.ThreadState.RUNNING);
+            }
+        }
+    }
+
+    /**
+     * Makes a parked thread runnable again, or lets its next park return immediately if it has not parked yet.
+     *
+     * @param thread The thread to unpark.
+     */
+    public static void unpark(JVMThread thread) {
+        thread.grantParkPermit();
+        if (thread.compareAndSetState(JVMThread.ThreadState.BLOCKED, JVMThread.ThreadState.RUNNABLE)
+                || thread.compareAndSetState(JVMThread.ThreadState.WAITING, JVMThread.ThreadState.RUNNABLE)) {
+            thread.consumeParkPermit(); // Delivered by the state change itself
+            Scheduler scheduler = getInstance();
+            scheduler.blockedThreads.remove(thread);
+            scheduler.waitingThreads.remove(thread);
+            scheduler.sleepingThreads.remove(thread);
+            Thread host = thread.getParkedHost();
+            if (host != null) {
+                LockSupport.unpark(host);
+            } else {
+                getInstance().registerThread(thread);
+            }
+        }
+    }
+
+    /**
+     * @return The number of quanta dispatched since startup.
+     */
+    public long getDispatchCount() {
+        return dispatches.get();
+    }
+
+    /**
+     * @return The number of quanta in which a host thread ran a different guest than in its previous one.
+     */
+    public long getContextSwitchCount() {
+        return contextSwitches.get();
+    }
+
+    /**
+     * @return The number of threads waiting to run, on the shared run queue and on every carrier's deque.
+     */
+    public int getRunQueueLength() {
+        int length;
+        synchronized (runQueue) {
+            length = runQueue.size();
+        }
+        Carrier[] running = carriers;
+        if (running != null) {
+            for (Carrier carrier : running) {
+                length += carrier.queueLength();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Looks for deadlocks among the threads parked on monitor entry, e.g. from a watchdog while guests run.
+     *
+     * @return The deadlocks found, empty if there are none.
+     */
+    public List<DeadlockDetector.Deadlock> findDeadlocks() {
+        return DeadlockDetector.findDeadlocks(blockedThreads);
+    }
+
+    /**
+     * @return The deadlocks found when the last {@link #start()} ran out of work, empty if there were none.
+     */
+    public List<DeadlockDetector.Deadlock> getDetectedDeadlocks() {
+        return detectedDeadlocks;
+    }
+
+    /**
+     * @return The threads parked while trying to enter a monitor.
+     */
+    public Set<JVMThread> getBlockedThreads() {
+        return Collections.unmodifiableSet(blockedThreads);
+    }
+
+    /**
+     * @return The threads parked in a monitor's wait set or in {@link #join}.
+     */
+    public Set<JVMThread> getWaitingThreads() {
+        return Collections.unmodifiableSet(waitingThreads);
+    }
+
+    /**
+     * @return The threads parked in {@link #sleep}.
+     */
+    public Set<JVMThread> getSleepingThreads() {
+        return Collections.unmodifiableSet(sleepingThreads);
+    }
+
+    /**
+     * @return The number of pending timeouts (sleeps, timed waits and joins).
+     */
+    public int getPendingTimeoutCount() {
+        synchronized (timerLock) {
+            return timers.size();
+        }
+    }
+
+    /**
+     * @return How often an idle carrier or the virtual-thread waiter resumed, whether for work,
+     *         a timeout or shutdown. Stays flat while every guest is parked.
+     */
+    public long getIdleWakeups() {
+        return idleWakeups.get();
+    }
+
+    void recordIdleWakeup() {
+        idleWakeups.incrementAndGet();
+    }
+
+    /**
+     * Sets the number of carrier host threads used by the next {@link #start()}.
+     * @param count 1 for the single-threaded scheduling loop, more for M:N scheduling.
+     */
+    public void setCarrierCount(int count) {
+        this.carrierCount = Math.max(1, count);
+    }
+
+    public int getCarrierCount() {
+        return carrierCount;
+    }
+
+    /**
+     * Selects how the next {@link #start()} maps guests onto host threads.
+     * @param mode The execution mode.
+     */
+    public void setExecutionMode(ExecutionMode mode) {
+        this.executionMode = mode;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * @return true if {@link ExecutionMode#VIRTUAL_THREADS} gets real virtual threads (Java 21+),
+     *         false if it falls back to platform threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadRunner.isVirtualThreadSupported();
+    }
+
+    /**
+     * Selects how long quanta last, from the next quantum on.
+     * @param policy The slice policy.
+     */
+    public void setSlicePolicy(SlicePolicy policy) {
+        this.slicePolicy = policy;
+    }
+
+    public SlicePolicy getSlicePolicy() {
+        return slicePolicy;
+    }
+
+    /**
+     * Sets the period in which every runnable thread should get a time slice, for {@link SlicePolicy#TIME}.
+     * @param nanos The target latency; slices never get shorter than a quarter millisecond.
+     */
+    public void setTargetLatencyNanos(long nanos) {
+        this.targetLatencyNanos = Math.max(minGranularityNanos, nanos);
+    }
+
+    public long getTargetLatencyNanos() {
+        return targetLatencyNanos;
+    }
+
+    /**
+     * Sets the instruction quantum for thread execution, for {@link SlicePolicy#INSTRUCTIONS}.
      * @param newQuantum The number of instructions per timeslice.
      */
     public void setQuantum(int newQuantum) {
@@ -1,5 +1,7 @@
 package com.tinyjvm.threads;
 
+import com.tinyjvm.utils.Logger;
+
 /**
  * Utility class for thread-related operations, such as yielding.
  */
@@ -14,7 +16,7 @@ public class ThreadUtils {
     public static void yield() {
         JVMThread currentThread = Scheduler.getCurrentThread();
         if (currentThread != null) {
-            System.out.println("ThreadUtils: Thread " + currentThread.getThreadId() + " is yielding. Setting state to RUNNABLE.");
+            Logger.debug("ThreadUtils: Thread {} is yielding. Setting state to RUNNABLE.", currentThread.getThreadId());
             currentThread.setState(JVMThread.ThreadState.RUNNABLE);
             Scheduler.reschedule(); // Notify the scheduler to pick another thread
         } else {
@@ -23,4 +25,24 @@ public class ThreadUtils {
             // when yield is called from within a running thread's code.
         }
     }
+
+    /**
+     * Suspends the currently executing {@link JVMThread} for at least the given time without
+     * occupying the scheduler; see {@link Scheduler#sleep(JVMThread, long)}.
+     * Called outside a guest thread, it sleeps the host thread instead.
+     *
+     * @param millis The time to sleep in milliseconds.
+     */
+    public static void sleep(long millis) {
+        JVMThread currentThread = Scheduler.getCurrentThread();
+        if (currentThread != null) {
+            Scheduler.sleep(currentThread, millis);
+        } else {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
@@ -0,0 +1,247 @@
+package com.tinyjvm.threads;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timer wheel holding the scheduler's pending {@link Timeout}s.
+ * <p>
+ * Time is divided into ticks of {@link #TICK_NANOS}. Level 0 has one slot per tick for the current
+ * block of 64 ticks, level 1 one slot per 64 ticks for the current block of 4096 ticks, and so on
+ * for {@link #LEVELS} levels (about 12 days); later deadlines wait in an overflow list. A timeout sits
+ * on the lowest level whose block also contains its deadline, in a doubly linked slot list, so
+ * scheduling and cancelling are O(1). When the clock reaches the start of a higher-level slot, that
+ * slot is cascaded: its timeouts are re-inserted and move down towards level 0, where they expire
+ * all at once with the rest of their tick's slot. Per-level occupancy bitmaps let {@link #advance}
+ * skip runs of empty ticks and give {@link #nanosUntilNextEvent} in a few instructions.
+ * <p>
+ * Deadlines are rounded up to whole ticks, so a timeout never fires early, and at most one tick late
+ * plus the time until the scheduler next looks. The wheel is not thread-safe; the scheduler guards it.
+ */
+public final class TimerWheel {
+    public static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    static final int LEVELS = 5;
+    private static final int OVERFLOW = LEVELS; // 'level' of timeouts in the overflow list
+
+    /**
+     * A pending timed action. Returned by {@link Scheduler#schedule(long, Runnable)}.
+     */
+    public static final class Timeout {
+        private final long deadlineNanos;
+        private final Runnable action;
+        private final TimerWheel wheel;
+        private long tick;         // Expiry tick
+        private int level = -1;    // -1 while not in the wheel
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimerWheel wheel, long deadlineNanos, Runnable action) {
+            this.wheel = wheel;
+            this.deadlineNanos = deadlineNanos;
+            this.action = action;
+        }
+
+        /**
+         * Cancels the timeout if it has not run yet.
+         */
+        public void cancel() {
+            synchronized (wheel.lock) {
+                if (level >= 0) {
+                    wheel.unlink(this);
+                }
+            }
+        }
+
+        long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+
+        void run() {
+            action.run();
+        }
+    }
+
+    private final Object lock;
+    private final long origin = System.nanoTime();
+    private long currentTick = 0; // Every tick up to and including this one has been expired
+    private final Timeout[][] slots = new Timeout[LEVELS + 1][SLOTS]; // Last row: overflow list in slot 0
+    private final long[] occupied = new long[LEVELS];
+    private int size = 0;
+
+    /**
+     * @param lock The object callers synchronize on around every other method; also used by {@link Timeout#cancel()}.
+     */
+    TimerWheel(Object lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Adds a timeout. O(1).
+     *
+     * @param deadlineNanos Deadline in {@link System#nanoTime()} units; a past deadline fires at the next advance.
+     * @param action        What to run on expiry.
+     * @return The handle to cancel it.
+     */
+    Timeout schedule(long deadlineNanos, Runnable action) {
+        Timeout timeout = new Timeout(this, deadlineNanos, action);
+        if (size == 0) {
+            currentTick = Math.max(currentTick, (System.nanoTime() - origin) / TICK_NANOS); // Catch up after idling
+        }
+        long delta = deadlineNanos - origin;
+        timeout.tick = Math.max(currentTick + 1, delta <= 0 ? 0 : (delta + TICK_NANOS - 1) / TICK_NANOS);
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    private void insert(Timeout timeout) {
+        long tick = Math.max(timeout.tick, currentTick); // Cascaded timeouts may be due right now
+        int level = 0;
+        while (level < LEVELS && (tick >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = level == OVERFLOW ? 0 : (int) (tick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+        if (level < LEVELS) {
+            occupied[level] |= 1L << slot;
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        int level = timeout.level;
+        int slot = timeout.slot;
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[level][slot] = timeout.next;
+            if (timeout.next == null && level < LEVELS) {
+                occupied[level] &= ~(1L << slot);
+            }
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+        size--;
+    }
+
+    /**
+     * Moves the clock to {@code nowNanos} and removes every timeout that is due.
+     *
+     * @param nowNanos The current {@link System#nanoTime()}.
+     * @param expired  Receives the due timeouts, to be run by the caller outside the lock.
+     */
+    void advance(long nowNanos, List<Timeout> expired) {
+        long nowTick = Math.max(0, (nowNanos - origin) / TICK_NANOS);
+        while (currentTick < nowTick) {
+            if (size == 0) {
+                currentTick = nowTick;
+                return;
+            }
+            // Jump to the next occupied level-0 slot or the end of the block, whichever comes first
+            int index = (int) currentTick & (SLOTS - 1);
+            long later = index == SLOTS - 1 ? 0 : occupied[0] & (-1L << (index + 1));
+            long target = later != 0
+                    ? (currentTick & ~(long) (SLOTS - 1)) + Long.numberOfTrailingZeros(later)
+                    : (currentTick | (SLOTS - 1)) + 1;
+            currentTick = Math.min(target, nowTick);
+            if (currentTick != target) {
+                return; // Nothing due in between
+            }
+            if ((currentTick & (SLOTS - 1)) == 0) {
+                cascade();
+            }
+            drainSlot(0, (int) currentTick & (SLOTS - 1), expired);
+        }
+    }
+
+    /**
+     * At a block boundary, re-inserts the slots of higher levels that now start, top level first.
+     */
+    private void cascade() {
+        int top = 1;
+        while (top < LEVELS && (currentTick & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        if (top == LEVELS) {
+            reinsert(OVERFLOW, 0); // The whole wheel wrapped; some overflow timeouts may fit now
+        }
+        for (int level = Math.min(top, LEVELS - 1); level >= 1; level--) {
+            reinsert(level, (int) (currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+        }
+    }
+
+    private void reinsert(int level, int slot) {
+        Timeout timeout = slots[level][slot];
+        slots[level][slot] = null;
+        if (level < LEVELS) {
+            occupied[level] &= ~(1L << slot);
+        }
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            insert(timeout);
+            timeout = next;
+        }
+    }
+
+    private void drainSlot(int level, int slot, List<Timeout> expired) {
+        Timeout timeout = slots[level][slot];
+        slots[level][slot] = null;
+        occupied[level] &= ~(1L << slot);
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.level = -1;
+            size--;
+            expired.add(timeout);
+            timeout = next;
+        }
+    }
+
+    /**
+     * Time until the wheel next needs to be advanced: the earliest deadline if it is on level 0,
+     * otherwise the next cascade that moves timeouts towards it. Never later than the earliest deadline.
+     *
+     * @param nowNanos The current {@link System#nanoTime()}.
+     * @return Nanoseconds to wait (0 if something is due), or -1 if the wheel is empty.
+     */
+    long nanosUntilNextEvent(long nowNanos) {
+        if (size == 0) {
+            return -1;
+        }
+        long eventTick = -1;
+        for (int level = 0; level < LEVELS && eventTick < 0; level++) {
+            if (occupied[level] != 0) {
+                int shift = SLOT_BITS * level;
+                int slot = Long.numberOfTrailingZeros(occupied[level]); // Occupied slots all lie ahead of the clock
+                long blockStart = (currentTick >>> (shift + SLOT_BITS)) << (shift + SLOT_BITS);
+                eventTick = level == 0 ? blockStart + slot : blockStart + ((long) slot << shift);
+            }
+        }
+        if (eventTick < 0) {
+            eventTick = ((currentTick >>> (SLOT_BITS * LEVELS)) + 1) << (SLOT_BITS * LEVELS); // Only overflow left
+        }
+        return Math.max(0, origin + eventTick * TICK_NANOS - nowNanos);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
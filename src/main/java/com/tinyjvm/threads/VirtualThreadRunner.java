@@ -0,0 +1,188 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.utils.Logger;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs every {@link JVMThread} on a host thread of its own, the scheduler's
+ * {@link Scheduler.ExecutionMode#VIRTUAL_THREADS} mode.
+ * <p>
+ * Each guest's interpreter loop runs on a Java virtual thread, so yields and blocking map onto
+ * the host's {@link Thread#yield()} and {@link LockSupport#park()}, and the host's scheduler spreads
+ * the guests over all cores. The Runnable target runs inline on the same host thread rather
+ * than through a {@link GuestContinuation}. Virtual threads need Java 21; the factory is looked up
+ * reflectively so the VM still builds for Java 8, and on older hosts platform daemon threads are
+ * used instead, which work the same way but do not scale to large numbers of guests.
+ * <p>
+ * The thread that called {@link Scheduler#start()} runs the scheduler's timeouts and returns once
+ * every guest has terminated, or once all remaining guests are parked with no timeout left to wake them.
+ * It sleeps until the next timeout and is otherwise only woken when the last guest terminates or
+ * when so many guests are parked that all of them might be.
+ */
+final class VirtualThreadRunner {
+    private static final ThreadFactory FACTORY = createFactory();
+    private static final boolean VIRTUAL = FACTORY != null;
+    private static final AtomicInteger platformThreads = new AtomicInteger();
+
+    private final Scheduler scheduler;
+    private final Thread waiter;
+    private final Set<JVMThread> guests = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger live = new AtomicInteger();
+
+    VirtualThreadRunner(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.waiter = Thread.currentThread();
+    }
+
+    private static ThreadFactory createFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "tinyjvm-vthread-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // Before Java 21, or preview features disabled
+        }
+    }
+
+    /**
+     * @return true if the host supports virtual threads; otherwise guests get platform threads.
+     */
+    static boolean isVirtualThreadSupported() {
+        return VIRTUAL;
+    }
+
+    /**
+     * @return An unstarted host thread: a virtual thread if supported, otherwise a platform daemon thread.
+     */
+    static Thread newHostThread(Runnable body) {
+        if (VIRTUAL) {
+            return FACTORY.newThread(body);
+        }
+        Thread thread = new Thread(body, "tinyjvm-pthread-" + platformThreads.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Starts a guest on a new host thread, or wakes the host thread it already has.
+     *
+     * @param thread A RUNNABLE guest.
+     */
+    synchronized void launchOrWake(JVMThread thread) {
+        Thread host = thread.getHost();
+        if (host != null) {
+            LockSupport.unpark(host); // Made runnable by an unpark that did not find it parked yet
+            return;
+        }
+        host = newHostThread(() -> runGuest(thread));
+        thread.setHost(host);
+        guests.add(thread);
+        live.incrementAndGet();
+        host.start();
+    }
+
+    private void runGuest(JVMThread thread) {
+        Scheduler.bindCurrentThread(thread);
+        try {
+            while (thread.getState() != JVMThread.ThreadState.TERMINATED) {
+                JVMThread.ThreadState state = thread.getState();
+                if (state == JVMThread.ThreadState.BLOCKED || state == JVMThread.ThreadState.WAITING) {
+                    parkHost(thread); // Bytecode stopped at a contended monitorenter
+                    continue;
+                }
+                thread.compareAndSetState(JVMThread.ThreadState.RUNNABLE, JVMThread.ThreadState.RUNNING);
+                scheduler.runHostQuantum(thread);
+
+                JVMHeap heap = JVMThread.getSharedHeapInstance();
+                if (heap != null) {
+                    heap.runPendingCollectorWork();
+                }
+                if (thread.getState() == JVMThread.ThreadState.RUNNABLE) {
+                    Thread.yield(); // End of quantum or a YIELD opcode
+                }
+            }
+        } catch (Throwable t) {
+            Logger.error("Thread {} failed on its host thread: {}", thread.getThreadId(), t);
+            thread.setState(JVMThread.ThreadState.TERMINATED);
+        } finally {
+            guests.remove(thread);
+            if (live.decrementAndGet() == 0) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    private static void parkHost(JVMThread thread) {
+        thread.setParkedHost(Thread.currentThread());
+        try {
+            while (thread.getState() == JVMThread.ThreadState.BLOCKED || thread.getState() == JVMThread.ThreadState.WAITING) {
+                LockSupport.park(thread);
+            }
+        } finally {
+            thread.setParkedHost(null);
+        }
+    }
+
+    /**
+     * Runs timeouts on the calling thread until all guests are done or blocked for good.
+     */
+    void await() {
+        while (true) {
+            scheduler.runExpiredTimeouts(false);
+            long nextTimeout = scheduler.nanosUntilNextTimeout();
+            if (nextTimeout < 0) {
+                if (live.get() == 0) {
+                    return;
+                }
+                if (allParked()) {
+                    Logger.info("Scheduler: {} threads remain parked with nothing left to wake them.", live.get());
+                    return;
+                }
+            }
+            if (nextTimeout < 0) {
+                LockSupport.park(this);
+            } else if (nextTimeout > 0) {
+                LockSupport.parkNanos(this, nextTimeout);
+            }
+            scheduler.recordIdleWakeup();
+        }
+    }
+
+    /**
+     * Wakes the thread in {@link #await()}, e.g. because a timeout with an earlier deadline was registered.
+     */
+    void wakeWaiter() {
+        LockSupport.unpark(waiter);
+    }
+
+    /**
+     * Called whenever a thread parks, with the number of parked threads.
+     */
+    void onGuestParked(int parkedThreads) {
+        if (parkedThreads >= live.get()) {
+            wakeWaiter(); // Possibly every guest is parked now; await() checks
+        }
+    }
+
+    private boolean allParked() {
+        for (JVMThread guest : guests) {
+            JVMThread.ThreadState state = guest.getState();
+            if (state != JVMThread.ThreadState.BLOCKED && state != JVMThread.ThreadState.WAITING
+                    && state != JVMThread.ThreadState.TERMINATED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getLiveCount() {
+        return live.get();
+    }
+}
@@ -1,5 +1,28 @@
 package com.tinyjvm.utils;
 
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Leveled logging to stdout (DEBUG, INFO) and stderr (ERROR).
+ * <p>
+ * Messages below the current level cost one volatile read. Hot call sites should not build their
+ * message unless it is needed: they pass a template with {@code {}} placeholders and up to three
+ * arguments, a {@link Supplier}, or check {@link #isDebugEnabled()} first.
+ * <p>
+ * Enabled messages are not written by the calling thread. They go into a preallocated ring
+ * buffer of {@code -Dtinyjvm.log.bufferSize} records (8192 by default), and a daemon thread formats
+ * them and writes them out in batches. Templates are only filled in on that thread, so logging
+ * allocates nothing on the caller's side besides boxing its arguments. Because of that, arguments
+ * must be immutable values: pass an object's address or lock word, not the object, or its state may
+ * have changed by the time the message is written. If the buffer is full, the
+ * caller waits for the writer, so messages are neither lost nor reordered. {@link #flush()} waits until everything
+ * logged so far is written; it also runs on shutdown. {@code -Dtinyjvm.log.async=false} writes
+ * every message synchronously, and {@code -Dtinyjvm.log.level} sets the initial level.
+ */
 public class Logger {
 
     public enum LogLevel {
@@ -9,27 +32,300 @@ public class Logger {
         NONE
     }
 
-    private static LogLevel currentLevel = LogLevel.INFO;
+    private static final boolean ASYNC = !"false".equalsIgnoreCase(System.getProperty("tinyjvm.log.async"));
+    private static final int BATCH = 256; // Records formatted before the batch is written out
+
+    private static volatile LogLevel currentLevel = initialLevel();
+    private static final AtomicLong fullWaits = new AtomicLong();
+    private static final RingBuffer ring = ASYNC ? new RingBuffer(Integer.getInteger("tinyjvm.log.bufferSize", 8192)) : null;
+
+    private static LogLevel initialLevel() {
+        String level = System.getProperty("tinyjvm.log.level");
+        return level != null ? LogLevel.valueOf(level.toUpperCase()) : LogLevel.INFO;
+    }
 
     public static void setLevel(LogLevel level) {
         currentLevel = level;
     }
 
+    public static LogLevel getLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * @return true if DEBUG messages are written; guards call sites that must compute their arguments.
+     */
+    public static boolean isDebugEnabled() {
+        return currentLevel == LogLevel.DEBUG;
+    }
+
+    /**
+     * @return true if INFO messages are written.
+     */
+    public static boolean isInfoEnabled() {
+        return currentLevel.ordinal() <= LogLevel.INFO.ordinal();
+    }
+
     public static void debug(String message) {
-        if (currentLevel.ordinal() <= LogLevel.DEBUG.ordinal()) {
-            System.out.println("[DEBUG] " + message);
+        if (isDebugEnabled()) {
+            log(LogLevel.DEBUG, message, 0, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a DEBUG message whose {@code {}} placeholders are replaced by the arguments, in order.
+     */
+    public static void debug(String template, Object arg) {
+        if (isDebugEnabled()) {
+            log(LogLevel.DEBUG, template, 1, arg, null, null);
+        }
+    }
+
+    public static void debug(String template, Object arg1, Object arg2) {
+        if (isDebugEnabled()) {
+            log(LogLevel.DEBUG, template, 2, arg1, arg2, null);
+        }
+    }
+
+    public static void debug(String template, Object arg1, Object arg2, Object arg3) {
+        if (isDebugEnabled()) {
+            log(LogLevel.DEBUG, template, 3, arg1, arg2, arg3);
+        }
+    }
+
+    /**
+     * Logs a DEBUG message built by the supplier, which is only called if DEBUG is enabled.
+     */
+    public static void debug(Supplier<String> message) {
+        if (isDebugEnabled()) {
+            log(LogLevel.DEBUG, message.get(), 0, null, null, null);
         }
     }
 
     public static void info(String message) {
-        if (currentLevel.ordinal() <= LogLevel.INFO.ordinal()) {
-            System.out.println("[INFO] " + message);
+        if (isInfoEnabled()) {
+            log(LogLevel.INFO, message, 0, null, null, null);
+        }
+    }
+
+    public static void info(String template, Object arg) {
+        if (isInfoEnabled()) {
+            log(LogLevel.INFO, template, 1, arg, null, null);
+        }
+    }
+
+    public static void info(String template, Object arg1, Object arg2) {
+        if (isInfoEnabled()) {
+            log(LogLevel.INFO, template, 2, arg1, arg2, null);
+        }
+    }
+
+    public static void info(String template, Object arg1, Object arg2, Object arg3) {
+        if (isInfoEnabled()) {
+            log(LogLevel.INFO, template, 3, arg1, arg2, arg3);
+        }
+    }
+
+    public static void info(Supplier<String> message) {
+        if (isInfoEnabled()) {
+            log(LogLevel.INFO, message.get(), 0, null, null, null);
         }
     }
 
     public static void error(String message) {
         if (currentLevel.ordinal() <= LogLevel.ERROR.ordinal()) {
-            System.err.println("[ERROR] " + message);
+            log(LogLevel.ERROR, message, 0, null, null, null);
+        }
+    }
+
+    public static void error(String template, Object arg) {
+        if (currentLevel.ordinal() <= LogLevel.ERROR.ordinal()) {
+            log(LogLevel.ERROR, template, 1, arg, null, null);
+        }
+    }
+
+    public static void error(String template, Object arg1, Object arg2) {
+        if (currentLevel.ordinal() <= LogLevel.ERROR.ordinal()) {
+            log(LogLevel.ERROR, template, 2, arg1, arg2, null);
+        }
+    }
+
+    /**
+     * Waits until every message logged so far has been written, then flushes stdout and stderr.
+     */
+    public static void flush() {
+        if (ring != null) {
+            ring.awaitDrained();
+        }
+        System.out.flush();
+        System.err.flush();
+    }
+
+    /**
+     * @return How many messages had to wait for room in the ring buffer.
+     */
+    public static long getFullBufferWaits() {
+        return fullWaits.get();
+    }
+
+    private static void log(LogLevel level, String template, int argCount, Object arg1, Object arg2, Object arg3) {
+        if (ring != null && ring.offer(level, template, argCount, arg1, arg2, arg3)) {
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        format(line, level, template, argCount, arg1, arg2, arg3);
+        streamFor(level).print(line);
+    }
+
+    private static PrintStream streamFor(LogLevel level) {
+        return level == LogLevel.ERROR ? System.err : System.out;
+    }
+
+    /** Appends "[LEVEL] message" and a line separator, filling in the template's placeholders. */
+    private static void format(StringBuilder sb, LogLevel level, String template, int argCount, Object arg1, Object arg2, Object arg3) {
+        sb.append('[').append(level.name()).append("] ");
+        String text = String.valueOf(template);
+        int from = 0;
+        for (int i = 0; i < argCount; i++) {
+            int at = text.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            sb.append(text, from, at).append(i == 0 ? arg1 : i == 1 ? arg2 : arg3);
+            from = at + 2;
+        }
+        sb.append(text, from, text.length()).append(System.lineSeparator());
+    }
+
+    /** A preallocated log record; a slot of the ring buffer. */
+    private static final class Record {
+        volatile long sequence; // The sequence number this slot was last published for
+        LogLevel level;
+        String template;
+        int argCount;
+        Object arg1, arg2, arg3;
+
+        Record(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Multi-producer, single-consumer ring of records. Producers claim a sequence number with a
+     * compare-and-set, fill the record in its slot and publish it by storing the sequence number;
+     * the writer thread consumes records strictly in sequence order.
+     */
+    private static final class RingBuffer implements Runnable {
+        private final Record[] slots;
+        private final int mask;
+        private final AtomicLong claimed = new AtomicLong(); // Next sequence number to hand out
+        private volatile long consumed; // Next sequence number the writer will read
+        private volatile long written;  // Every record before this one is out
+        private volatile boolean sleeping;
+        private final Thread writer;
+
+        RingBuffer(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity));
+            slots = new Record[size];
+            mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Record(i - size); // Not yet published for sequence i
+            }
+            writer = new Thread(this, "tinyjvm-logger");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush, "tinyjvm-logger-flush"));
+        }
+
+        /**
+         * Queues a record, waiting for the writer if the buffer is full.
+         *
+         * @return false if there is no writer any more.
+         */
+        boolean offer(LogLevel level, String template, int argCount, Object arg1, Object arg2, Object arg3) {
+            long sequence;
+            boolean waited = false;
+            while (true) {
+                sequence = claimed.get();
+                if (sequence - consumed >= slots.length) {
+                    if (!writer.isAlive()) {
+                        return false;
+                    }
+                    if (!waited) {
+                        fullWaits.incrementAndGet();
+                        waited = true;
+                    }
+                    LockSupport.unpark(writer);
+                    Thread.yield(); // Full: wait for the writer rather than reorder or drop messages
+                } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+            }
+            Record record = slots[(int) sequence & mask];
+            record.level = level;
+            record.template = template;
+            record.argCount = argCount;
+            record.arg1 = arg1;
+            record.arg2 = arg2;
+            record.arg3 = arg3;
+            record.sequence = sequence; // Publishes the fields above
+            if (sleeping) {
+                LockSupport.unpark(writer);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            StringBuilder out = new StringBuilder();
+            StringBuilder err = new StringBuilder();
+            int batched = 0;
+            while (true) {
+                long next = consumed;
+                Record record = slots[(int) next & mask];
+                if (record.sequence != next) {
+                    write(out, err, next);
+                    batched = 0;
+                    sleeping = true;
+                    if (record.sequence != next) { // Re-check, or a producer that missed 'sleeping' would not wake us
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                format(record.level == LogLevel.ERROR ? err : out, record.level, record.template, record.argCount, record.arg1, record.arg2, record.arg3);
+                record.template = null; // Do not keep arguments alive until the slot is reused
+                record.arg1 = record.arg2 = record.arg3 = null;
+                consumed = next + 1;
+                if (++batched == BATCH) {
+                    write(out, err, next + 1);
+                    batched = 0;
+                }
+            }
+        }
+
+        /** Writes out the formatted batch, which holds every record before sequence number {@code upTo}. */
+        private void write(StringBuilder out, StringBuilder err, long upTo) {
+            if (out.length() > 0) {
+                System.out.print(out);
+                System.out.flush();
+                out.setLength(0);
+            }
+            if (err.length() > 0) {
+                System.err.print(err);
+                System.err.flush();
+                err.setLength(0);
+            }
+            written = upTo;
+        }
+
+        /** Waits until the writer has written every record claimed so far. */
+        void awaitDrained() {
+            long target = claimed.get();
+            while (written < target && writer.isAlive() && Thread.currentThread() != writer) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
         }
     }
 }
@@ -1,5 +1,6 @@
 package dev.jvm.core.classfile;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -8,8 +9,11 @@ import java.util.ArrayList;
 
 public class ClassFileParser {
     public ClassFile parse(Path classFilePath) throws IOException {
-        byte[] bytes = Files.readAllBytes(classFilePath);
-        try (DataInputStream dis = new DataInputStream(Files.newInputStream(classFilePath))) {
+        return parse(Files.readAllBytes(classFilePath));
+    }
+
+    public ClassFile parse(byte[] classBytes) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(classBytes))) {
             ClassFile classFile = new ClassFile();
 
             // Parse magic number (0xCAFEBABE)
@@ -38,10 +42,19 @@ public class ClassFileParser {
                     case 3: // Integer
                         classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readInt()));
                         break;
+                    case 4: // Float
+                        classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readFloat()));
+                        break;
                     case 5: // Long
                         classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readLong()));
+                        classFile.constantPool.add(ConstantPoolEntry.UNUSABLE);
                         i++; // Long takes two slots in constant pool
                         break;
+                    case 6: // Double
+                        classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readDouble()));
+                        classFile.constantPool.add(ConstantPoolEntry.UNUSABLE);
+                        i++; // So does Double
+                        break;
                     case 7: // Class reference
                         classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readUnsignedShort()));
                         break;
@@ -58,6 +71,20 @@ public class ClassFileParser {
                         classFile.constantPool.add(new ConstantPoolEntry(tag,
                                 new int[] {dis.readUnsignedShort(), dis.readUnsignedShort()}));
                         break;
+                    case 15: // MethodHandle: reference kind, reference index
+                        classFile.constantPool.add(new ConstantPoolEntry(tag,
+                                new int[] {dis.readUnsignedByte(), dis.readUnsignedShort()}));
+                        break;
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        classFile.constantPool.add(new ConstantPoolEntry(tag, dis.readUnsignedShort()));
+                        break;
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        classFile.constantPool.add(new ConstantPoolEntry(tag,
+                                new int[] {dis.readUnsignedShort(), dis.readUnsignedShort()}));
+                        break;
                     default:
                         throw new IllegalArgumentException("Unknown constant pool tag: " + tag);
                 }
@@ -75,6 +102,18 @@ public class ClassFileParser {
                 classFile.interfaces.add(dis.readUnsignedShort());
             }
 
+            // Fields (not kept - skipped so that the methods after them are read from the right offset)
+            int fieldsCount = dis.readUnsignedShort();
+            for (int i = 0; i < fieldsCount; i++) {
+                dis.skipBytes(6); // access flags, name index, descriptor index
+                int attributesCount = dis.readUnsignedShort();
+                for (int j = 0; j < attributesCount; j++) {
+                    dis.readUnsignedShort(); // name index
+                    int attributeLength = dis.readInt();
+                    dis.skipBytes(attributeLength);
+                }
+            }
+
             // Methods (simplified - we're not parsing attributes yet)
             int methodsCount = dis.readUnsignedShort();
             classFile.methods = new ArrayList<>(methodsCount);
@@ -0,0 +1,73 @@
+package com.tinyjvm.examples;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.Scheduler;
+import com.tinyjvm.utils.Logger;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Compares the built-in cooperative scheduler (single and multi-carrier) with the virtual-thread
+ * execution mode: the cost of a context switch, and the time to run a large number of short guests.
+ * Usage: {@code SchedulerComparison [guestThreads] [yieldsPerThread]}.
+ */
+public class SchedulerComparison {
+    private static final PrintStream out = System.out;
+
+    public static void main(String[] args) {
+        int guests = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int yields = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        boolean virtual = Scheduler.isVirtualThreadSupported();
+        int hostThreadGuests = virtual ? guests : Math.min(guests, 5_000);
+
+        // Keep logging and guest output out of the measurements
+        Logger.setLevel(Logger.LogLevel.NONE);
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        out.println("Context switch (2 threads x " + yields + " yields):");
+        out.printf("  cooperative, 1 carrier : %8.1f ns/switch%n", switchCost(Scheduler.ExecutionMode.COOPERATIVE, 1, yields));
+        out.printf("  cooperative, 4 carriers: %8.1f ns/switch%n", switchCost(Scheduler.ExecutionMode.COOPERATIVE, 4, yields));
+        out.printf("  host threads           : %8.1f ns/switch%n", switchCost(Scheduler.ExecutionMode.VIRTUAL_THREADS, 1, yields));
+
+        out.println("Spawn and run short guests:");
+        out.printf("  cooperative, 1 carrier : %8.1f ms for %d threads%n", spawnAndRun(Scheduler.ExecutionMode.COOPERATIVE, 1, guests), guests);
+        out.printf("  cooperative, 4 carriers: %8.1f ms for %d threads%n", spawnAndRun(Scheduler.ExecutionMode.COOPERATIVE, 4, guests), guests);
+        out.printf("  host threads           : %8.1f ms for %d threads%s%n", spawnAndRun(Scheduler.ExecutionMode.VIRTUAL_THREADS, 1, hostThreadGuests),
+                hostThreadGuests, virtual ? "" : " (platform threads: virtual threads need Java 21)");
+    }
+
+    private static double switchCost(Scheduler.ExecutionMode mode, int carriers, int yields) {
+        byte[] code = new byte[yields + 1];
+        Arrays.fill(code, (byte) 0xFF); // YIELD
+        code[yields] = (byte) 0xb1;     // return
+        long nanos = run(mode, carriers, 2, code);
+        return nanos / (2.0 * yields);
+    }
+
+    private static double spawnAndRun(Scheduler.ExecutionMode mode, int carriers, int threads) {
+        return run(mode, carriers, threads, new byte[]{(byte) 0xFF, (byte) 0xb1}) / 1e6;
+    }
+
+    private static long run(Scheduler.ExecutionMode mode, int carriers, int threads, byte[] code) {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        Scheduler scheduler = Scheduler.getInstance();
+        scheduler.setExecutionMode(mode);
+        scheduler.setCarrierCount(carriers);
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            JVMThread thread = new JVMThread(null, 4);
+            thread.getStack().push(new JFrame(0, 1, code));
+            thread.start();
+        }
+        scheduler.start();
+        return System.nanoTime() - start;
+    }
+}
@@ -3,6 +3,7 @@ package com.tinyjvm.examples;
 import com.tinyjvm.interpreter.JVMHeap;
 import com.tinyjvm.memory.JVMObject;
 import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.ObjectSynchronizer;
 import com.tinyjvm.threads.Scheduler;
 import com.tinyjvm.threads.ThreadUtils;
 
@@ -47,14 +48,14 @@ public class SyncTest {
                         }
                     }
 
-                    lockObject.getMonitor().enter(currentJvmThread);
+                    ObjectSynchronizer.enter(lockObject, currentJvmThread);
                     try {
                         int temp = counter;
                         // Yield to force contention and test if synchronization is working
                         ThreadUtils.yield();
                         counter = temp + 1;
                     } finally {
-                        lockObject.getMonitor().exit(currentJvmThread);
+                        ObjectSynchronizer.exit(lockObject, currentJvmThread);
                     }
                 }
                 System.out.println("Thread " + threadNum + " finished its increments.");
@@ -3,6 +3,7 @@ package com.tinyjvm.examples;
 import com.tinyjvm.interpreter.JVMHeap;
 import com.tinyjvm.memory.JVMObject;
 import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.ObjectSynchronizer;
 import com.tinyjvm.threads.Scheduler;
 import com.tinyjvm.threads.ThreadUtils;
 
@@ -20,11 +21,11 @@ public class ThreadTest {
         final JVMObject lock = heap.allocate(null, "LockObject");
         // 'null' for thread in allocate if it's a globally available object not tied to a specific thread's direct alloc count
         // or, we can assign it to a conceptual "main" thread if one exists.
-        // For this test, passing null is fine as allocate primarily uses it for the allocationsByThread map.
+        // For this test, passing null is fine; such allocations come from the heap's shared allocation buffer.
 
         new JVMThread(() -> {
             System.out.println("Thread A: Attempting to acquire lock...");
-            lock.getMonitor().enter(Scheduler.getCurrentThread());
+            ObjectSynchronizer.enter(lock, Scheduler.getCurrentThread());
             System.out.println("Thread A: Lock acquired.");
             try {
                 for (int i = 0; i < 5; i++) {
@@ -38,14 +39,14 @@ public class ThreadTest {
                 }
             } finally {
                 System.out.println("Thread A: Releasing lock.");
-                lock.getMonitor().exit(Scheduler.getCurrentThread());
+                ObjectSynchronizer.exit(lock, Scheduler.getCurrentThread());
             }
             System.out.println("Thread A: Finished.");
         }, 1024).start(); // 1024 is stack size
 
         new JVMThread(() -> {
             System.out.println("Thread B: Attempting to acquire lock...");
-            lock.getMonitor().enter(Scheduler.getCurrentThread());
+            ObjectSynchronizer.enter(lock, Scheduler.getCurrentThread());
             System.out.println("Thread B: Lock acquired.");
             try {
                 for (int i = 0; i < 5; i++) {
@@ -54,7 +55,7 @@ public class ThreadTest {
                 }
             } finally {
                 System.out.println("Thread B: Releasing lock.");
-                lock.getMonitor().exit(Scheduler.getCurrentThread());
+                ObjectSynchronizer.exit(lock, Scheduler.getCurrentThread());
             }
             System.out.println("Thread B: Finished.");
         }, 1024).start();
@@ -0,0 +1,139 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.ClassFile;
+import com.tinyjvm.ConstantPoolEntry;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.threads.JVMThread;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassLinkerTest {
+
+    // Compiled with the tests; the long and double initializers put wide constants into the pool
+    static class Particle {
+        static int created;
+        long id = 1234567890123L;
+        double mass = 0.5;
+        int charge;
+        Particle next;
+
+        void attach(Particle other) {
+            next = other;
+            charge += other.charge;
+        }
+    }
+
+    static class Ion extends Particle {
+        float ratio = 2.5f;
+
+        Ion() {
+            charge = 1;
+        }
+    }
+
+    private ClassLinker linker;
+
+    @BeforeEach
+    void setUp() {
+        linker = new ClassLinker();
+    }
+
+    private static byte[] classBytes(Class<?> type) throws Exception {
+        String resource = type.getName().substring(type.getName().lastIndexOf('.') + 1) + ".class";
+        return Files.readAllBytes(Paths.get(type.getResource(resource).toURI()));
+    }
+
+    /** @return The constant-pool index of the Fieldref to the named field. */
+    private static int fieldref(ClassFile classFile, String fieldName) {
+        for (int index = 1; index <= classFile.constantPool.size(); index++) {
+            ConstantPoolEntry entry = classFile.constantPool.get(index - 1);
+            if (entry.tag == 9) {
+                int[] nameAndType = (int[]) classFile.constantPool.get(((int[]) entry.value)[1] - 1).value;
+                if (fieldName.equals(classFile.constantPool.get(nameAndType[0] - 1).value)) {
+                    return index;
+                }
+            }
+        }
+        throw new AssertionError("No Fieldref to " + fieldName);
+    }
+
+    @Test
+    void testWideConstantsKeepLaterIndicesInPlace() throws Exception {
+        ClassLinker.LinkedClass particle = linker.load(classBytes(Particle.class));
+        ClassFile classFile = particle.getClassFile();
+
+        int longIndex = -1;
+        for (int index = 1; index <= classFile.constantPool.size(); index++) {
+            if (Long.valueOf(1234567890123L).equals(classFile.constantPool.get(index - 1).value)) {
+                longIndex = index;
+            }
+        }
+        assertTrue(longIndex > 0, "The long initializer is in the constant pool");
+        assertSame(ConstantPoolEntry.UNUSABLE, classFile.constantPool.get(longIndex), "The slot after a long is unusable");
+
+        ClassLayout layout = particle.getLayout();
+        assertTrue(layout.getClassName().endsWith("ClassLinkerTest$Particle"));
+        assertEquals(ClassLayout.FieldKind.LONG, layout.getField("id").getKind());
+        assertEquals(ClassLayout.FieldKind.DOUBLE, layout.getField("mass").getKind());
+        assertEquals(ClassLayout.FieldKind.INT, layout.getField("charge").getKind());
+        assertEquals(ClassLayout.FieldKind.REFERENCE, layout.getField("next").getKind());
+        assertNull(layout.getField("created"), "Static fields are not part of the instance layout");
+
+        Object[] resolved = particle.getResolvedConstants();
+        assertSame(layout, resolved[classFile.thisClass]);
+        for (String field : new String[]{"id", "mass", "next"}) {
+            assertSame(layout.getField(field), resolved[fieldref(classFile, field)], field);
+        }
+    }
+
+    @Test
+    void testSubclassIsLinkedOnTopOfItsLoadedSuperclass() throws Exception {
+        assertThrows(IllegalStateException.class, () -> linker.load(classBytes(Ion.class)));
+
+        ClassLayout particle = linker.load(classBytes(Particle.class)).getLayout();
+        ClassLinker.LinkedClass ion = linker.load(classBytes(Ion.class));
+
+        ClassLayout layout = ion.getLayout();
+        for (ClassLayout.Field inherited : particle.getFields()) {
+            assertEquals(inherited.getOffset(), layout.getField(inherited.getName()).getOffset());
+        }
+        assertTrue(layout.getField("ratio").getOffset() >= particle.getInstanceSize());
+        assertSame(layout.getField("charge"), ion.getResolvedConstants()[fieldref(ion.getClassFile(), "charge")]);
+        assertSame(ion, linker.getLoadedClass(layout.getClassName()));
+    }
+
+    @Test
+    void testLoadedClassRunsInTheInterpreter() throws Exception {
+        ClassLinker.LinkedClass particle = linker.load(classBytes(Particle.class));
+        int classIndex = particle.getClassFile().thisClass;
+        int charge = fieldref(particle.getClassFile(), "charge");
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMThread thread = new JVMThread(null, 16);
+
+        // new #Particle; astore_0; aload_0; bipush 7; putfield #charge; aload_0; getfield #charge; istore_1
+        byte[] code = {
+                (byte) 0xbb, (byte) (classIndex >> 8), (byte) classIndex, 0x4b,
+                0x2a, 0x10, 7, (byte) 0xb5, (byte) (charge >> 8), (byte) charge,
+                0x2a, (byte) 0xb4, (byte) (charge >> 8), (byte) charge, 0x3c
+        };
+        JFrame frame = new JFrame(2, 4, code);
+        frame.setResolvedConstants(particle.getResolvedConstants());
+        thread.getStack().push(frame);
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(interpreter.executeCurrentInstruction(thread));
+        }
+
+        assertEquals(7, frame.getLocal(1));
+        JVMObject obj = heap.getObjectByAddress(frame.getLocal(0));
+        assertSame(particle.getLayout(), obj.getLayout());
+        assertEquals(7, obj.getInt(particle.getLayout().getField("charge").getOffset()));
+    }
+}
@@ -0,0 +1,81 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.threads.JVMThread;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionCountersTest {
+
+    // iconst_3; istore 0; loop: iinc 0 -1; iload_0; ifgt loop; return
+    private static final byte[] COUNTDOWN = {0x06, 0x36, 0, (byte) 0x84, 0, -1, 0x1a, (byte) 0x9d, (byte) 0xFF, (byte) 0xFC, (byte) 0xb1};
+
+    private JVMHeap heap;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+    }
+
+    private JVMThread run(String method) {
+        JVMThread thread = new JVMThread(null, 16);
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        JFrame frame = new JFrame(1, 1, COUNTDOWN.clone()); // A method of its own
+        frame.setMethodName(method);
+        thread.getStack().push(frame);
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+        while (interpreter.executeCurrentInstruction(thread)) {
+            // Keep going
+        }
+        return thread;
+    }
+
+    @Test
+    void testInvocationsBackEdgesAndOpcodesAreCounted() {
+        ExecutionCounters.Snapshot before = ExecutionCounters.snapshot();
+        run("Loop.countdown");
+        ExecutionCounters.Snapshot after = ExecutionCounters.snapshot();
+
+        assertEquals(1, after.getInvocations("Loop.countdown"));
+        assertEquals(2, after.getBackEdges("Loop.countdown"), "The last ifgt falls through");
+        assertEquals(3, after.getOpcodeCount(0x84) - before.getOpcodeCount(0x84));
+        assertEquals(3, after.getOpcodeCount(0x9d) - before.getOpcodeCount(0x9d));
+        assertEquals(1, after.getOpcodeCount(0xb1) - before.getOpcodeCount(0xb1));
+        assertEquals(12, after.getInstructions() - before.getInstructions());
+    }
+
+    @Test
+    void testCountsOfTerminatedThreadsAreKept() {
+        JVMThread first = run("Loop.retired");
+        JVMThread second = run("Loop.retired");
+        assertEquals(JVMThread.ThreadState.TERMINATED, first.getState());
+        assertEquals(JVMThread.ThreadState.TERMINATED, second.getState());
+
+        ExecutionCounters.Snapshot snapshot = ExecutionCounters.snapshot();
+        assertEquals(2, snapshot.getInvocations("Loop.retired"), "Merged across threads");
+        assertEquals(4, snapshot.getBackEdges("Loop.retired"));
+
+        first.getStack().getCounters().retire(); // Already retired on termination
+        assertEquals(2, ExecutionCounters.snapshot().getInvocations("Loop.retired"));
+    }
+
+    @Test
+    void testEachThreadCountsItsOwnInvocations() {
+        JVMThread thread = new JVMThread(null, 16);
+        JFrame outer = new JFrame(0, 0, COUNTDOWN.clone());
+        outer.setMethodName("Calls.outer");
+        thread.getStack().push(outer);
+        for (int i = 0; i < 5; i++) {
+            JFrame inner = new JFrame(0, 0, new byte[]{(byte) 0xb1});
+            inner.setMethodName("Calls.inner");
+            thread.getStack().push(inner);
+            thread.getStack().pop();
+        }
+
+        ExecutionCounters.Snapshot snapshot = ExecutionCounters.snapshot();
+        assertEquals(1, snapshot.getInvocations("Calls.outer"));
+        assertEquals(5, snapshot.getInvocations("Calls.inner"), "Distinct code arrays of one name are summed");
+    }
+}
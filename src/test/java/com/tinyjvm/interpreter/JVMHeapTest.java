@@ -0,0 +1,293 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.GenerationalCollector;
+import com.tinyjvm.memory.HandleTable;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.threads.JVMThread;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JVMHeapTest {
+
+    private JVMHeap heap;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+    }
+
+    @Test
+    void testAllocationsAreCountedPerThread() {
+        JVMThread first = new JVMThread(null, 16);
+        JVMThread second = new JVMThread(null, 16);
+
+        for (int i = 0; i < 3; i++) {
+            heap.allocate(first, "first-" + i);
+        }
+        heap.allocate(second, "second");
+        heap.allocate(null, "vm");
+
+        assertEquals(3, heap.getAllocationCount(first));
+        assertEquals(1, heap.getAllocationCount(second));
+        assertEquals(5, heap.getTotalObjectsInHeap());
+        assertEquals(3, heap.getThreadAllocationCount(), "Two threads plus the shared VM buffer allocated");
+    }
+
+    @Test
+    void testTlabRefillsAfterChunkIsExhausted() {
+        JVMThread thread = new JVMThread(null, 16);
+        int count = HandleTable.CHUNK_SIZE * 2 + 1;
+        for (int i = 0; i < count; i++) {
+            heap.allocate(thread, i);
+        }
+
+        assertEquals(count, heap.getAllocationCount(thread));
+        assertEquals(3, thread.getTlab().getRefills(), "Each exhausted chunk should cost exactly one refill");
+    }
+
+    @Test
+    void testThreadsDoNotShareHandles() {
+        JVMThread first = new JVMThread(null, 16);
+        JVMThread second = new JVMThread(null, 16);
+        JVMObject a = heap.allocate(first, "a");
+        JVMObject b = heap.allocate(second, "b");
+
+        int found = 0;
+        for (int address = 1; address < HandleTable.CHUNK_SIZE * 3; address++) {
+            JVMObject obj = heap.getObjectByAddress(address);
+            if (obj == a || obj == b) {
+                found++;
+            }
+        }
+        assertEquals(2, found, "Both objects should be reachable through distinct handles");
+        assertNull(heap.getObjectByAddress(0), "Handle 0 is reserved for null");
+    }
+
+    @Test
+    void testCollectReclaimsUnreachableObjects() {
+        JVMThread thread = new JVMThread(null, 16);
+        JFrame frame = new JFrame(2, 2, new byte[0]);
+        thread.getStack().push(frame);
+
+        JVMObject root = heap.allocate(thread, "root", 1);
+        JVMObject child = heap.allocate(thread, "child");
+        JVMObject garbage = heap.allocate(thread, "garbage");
+        heap.storeReference(root, 0, child);
+        frame.setLocalReference(0, root.getAddress());
+        frame.setLocal(1, garbage.getAddress()); // A plain int that happens to equal a handle is not a root
+
+        assertEquals(1, heap.collect());
+        assertSame(root, heap.getObjectByAddress(root.getAddress()));
+        assertSame(child, heap.loadReference(root, 0));
+        assertEquals(0, garbage.getAddress(), "Swept objects lose their handle");
+        assertEquals(2, heap.getTotalObjectsInHeap());
+    }
+
+    @Test
+    void testStaticsAndHeldMonitorsAreRoots() {
+        JVMThread thread = new JVMThread(null, 16);
+        JVMObject stat = heap.allocate(null, "static");
+        JVMObject locked = heap.allocate(null, "locked");
+        heap.allocate(null, "garbage");
+        heap.putStatic("Test.field", stat);
+        locked.getMonitor().enter(thread);
+
+        assertEquals(1, heap.collect());
+        assertSame(stat, heap.getStatic("Test.field"));
+        assertNotEquals(0, locked.getAddress());
+
+        locked.getMonitor().exit(thread);
+        assertEquals(1, heap.collect(), "Once released the lock object is garbage");
+    }
+
+    @Test
+    void testReclaimedHandlesAreReused() {
+        JVMThread thread = new JVMThread(null, 16);
+        for (int i = 1; i < HandleTable.CHUNK_SIZE; i++) { // Fills chunk 0, whose handle 0 is reserved
+            heap.allocate(thread, i);
+        }
+        heap.collect();
+        thread.getTlab().retire();
+        JVMObject reused = heap.allocate(thread, "reused");
+
+        assertTrue(reused.getAddress() < HandleTable.CHUNK_SIZE, "A reclaimed handle should be handed out before a new chunk");
+    }
+
+    @Test
+    void testAllocationVolumeTriggersCollection() {
+        heap.setGcThreshold(JVMObject.HEADER_SIZE * HandleTable.CHUNK_SIZE);
+        JVMThread thread = new JVMThread(null, 16);
+        for (int i = 0; i < HandleTable.CHUNK_SIZE * 4; i++) {
+            heap.allocate(thread, i);
+        }
+
+        assertTrue(heap.getGcStats().getCollections() > 0);
+        assertTrue(heap.getTotalObjectsInHeap() <= HandleTable.CHUNK_SIZE * 2);
+    }
+
+    @Test
+    void testMinorCollectionPromotesSurvivorsAndUpdatesRoots() {
+        heap = new JVMHeap(JVMHeap.GcMode.GENERATIONAL, HandleTable.CHUNK_SIZE * 4);
+        JVMThread.setSharedHeapInstance(heap);
+        JVMThread thread = new JVMThread(null, 16);
+        JFrame frame = new JFrame(1, 1, new byte[0]);
+        thread.getStack().push(frame);
+
+        JVMObject survivor = heap.allocate(thread, "survivor", 1);
+        JVMObject child = heap.allocate(thread, "child");
+        heap.allocate(thread, "garbage");
+        heap.storeReference(survivor, 0, child);
+        frame.setLocalReference(0, survivor.getAddress());
+        assertTrue(GenerationalCollector.isYoung(survivor.getAddress()));
+
+        heap.collect();
+
+        int[] local = new int[1];
+        frame.visitReferences(handle -> local[0] = handle);
+        assertFalse(GenerationalCollector.isYoung(local[0]), "The frame slot should now point into old space");
+        assertSame(survivor, heap.getObjectByAddress(local[0]));
+        assertSame(child, heap.loadReference(survivor, 0));
+        assertEquals(2, heap.getTotalObjectsInHeap());
+    }
+
+    @Test
+    void testWriteBarrierKeepsYoungObjectsReferencedFromOldSpace() {
+        heap = new JVMHeap(JVMHeap.GcMode.GENERATIONAL, HandleTable.CHUNK_SIZE);
+        JVMThread.setSharedHeapInstance(heap);
+        JVMThread thread = new JVMThread(null, 16);
+
+        JVMObject old = heap.allocate(thread, "old", 1);
+        heap.putStatic("Test.old", old);
+        heap.collect(); // Promote 'old'
+
+        // Fill the nursery; the object stored into 'old' is only reachable through the card table
+        JVMObject young = heap.allocate(thread, "young");
+        heap.storeReference(old, 0, young);
+        for (int i = 0; i < HandleTable.CHUNK_SIZE * 2; i++) {
+            heap.allocate(thread, i);
+        }
+
+        assertTrue(heap.getMinorGcStats().getCollections() >= 2, "Filling the nursery should trigger minor collections");
+        assertFalse(GenerationalCollector.isYoung(young.getAddress()));
+        assertSame(young, heap.loadReference(old, 0));
+        assertEquals(1, heap.getGcStats().getCollections(), "Minor collections must not run the full collector");
+    }
+
+    @Test
+    void testConcurrentCycleReclaimsGarbageWithShortPauses() {
+        heap = new JVMHeap(JVMHeap.GcMode.CONCURRENT_MARK_SWEEP);
+        heap.setGcThreshold(JVMObject.HEADER_SIZE * HandleTable.CHUNK_SIZE);
+        JVMThread.setSharedHeapInstance(heap);
+        JVMThread thread = new JVMThread(null, 16);
+        JFrame frame = new JFrame(1, 1, new byte[0]);
+        thread.getStack().push(frame);
+
+        JVMObject root = heap.allocate(thread, "root", 1);
+        JVMObject child = heap.allocate(thread, "child");
+        heap.storeReference(root, 0, child);
+        frame.setLocalReference(0, root.getAddress());
+        JVMObject garbage = heap.allocate(thread, "garbage");
+
+        while (!heap.isConcurrentCycleActive()) {
+            heap.allocate(thread, "filler");
+        }
+        // Allocated during the cycle, so above TAMS and implicitly live
+        JVMObject late = heap.allocate(thread, "late");
+        heap.storeReference(root, 0, late);
+
+        while (heap.isConcurrentCycleActive()) {
+            heap.runPendingCollectorWork();
+            Thread.yield();
+        }
+
+        assertEquals(1, heap.getInitialMarkStats().getCollections());
+        assertEquals(1, heap.getRemarkStats().getCollections());
+        assertEquals(0, garbage.getAddress(), "Unreachable objects below TAMS are swept");
+        assertNotEquals(0, root.getAddress());
+        assertNotEquals(0, late.getAddress());
+        assertSame(late, heap.loadReference(root, 0));
+    }
+
+    @Test
+    void testFullCollectionWaitsForTheConcurrentCycle() {
+        heap = new JVMHeap(JVMHeap.GcMode.CONCURRENT_MARK_SWEEP);
+        heap.setGcThreshold(JVMObject.HEADER_SIZE * HandleTable.CHUNK_SIZE);
+        JVMThread.setSharedHeapInstance(heap);
+        JVMThread thread = new JVMThread(null, 16);
+        JVMObject garbage = heap.allocate(thread, "garbage");
+        while (!heap.isConcurrentCycleActive()) {
+            heap.allocate(thread, "filler");
+        }
+
+        heap.collect();
+
+        assertFalse(heap.isConcurrentCycleActive());
+        assertEquals(1, heap.getConcurrentCycleStats().getCollections());
+        assertEquals(1, heap.getRemarkStats().getCollections(), "The waiting collector runs the remark pause itself");
+        assertEquals(0, garbage.getAddress());
+    }
+
+    @Test
+    void testConcurrentHeapsShareOneBackgroundThread() {
+        for (int i = 0; i < 3; i++) {
+            heap = new JVMHeap(JVMHeap.GcMode.CONCURRENT_MARK_SWEEP);
+            heap.setGcThreshold(JVMObject.HEADER_SIZE * HandleTable.CHUNK_SIZE);
+            JVMThread.setSharedHeapInstance(heap);
+            JVMThread thread = new JVMThread(null, 16);
+            while (!heap.isConcurrentCycleActive()) {
+                heap.allocate(thread, "filler");
+            }
+            heap.collect();
+        }
+
+        long collectorThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals("tinyjvm-concurrent-gc"))
+                .count();
+        assertEquals(1, collectorThreads, "Heaps that are dropped must not leave their collector thread behind");
+    }
+
+    @Test
+    void testFieldsAreStoredAtLayoutOffsetsAndSurvivePromotion() {
+        heap = new JVMHeap(JVMHeap.GcMode.GENERATIONAL, HandleTable.CHUNK_SIZE * 4);
+        JVMThread.setSharedHeapInstance(heap);
+        JVMThread thread = new JVMThread(null, 16);
+        ClassLayout point = ClassLayout.compute("Point", null,
+                Arrays.asList("x", "weight", "next"), Arrays.asList("I", "J", "LPoint;"));
+        ClassLayout.Field x = point.getField("x");
+        ClassLayout.Field weight = point.getField("weight");
+        ClassLayout.Field next = point.getField("next");
+
+        // new #1; astore_0; aload_0; bipush 7; putfield #2; aload_0; getfield #2; istore_1
+        byte[] code = {
+                (byte) 0xbb, 0, 1, 0x4b,
+                0x2a, 0x10, 7, (byte) 0xb5, 0, 2,
+                0x2a, (byte) 0xb4, 0, 2, 0x3c
+        };
+        JFrame frame = new JFrame(2, 4, code);
+        frame.setResolvedConstants(new Object[]{null, point, x});
+        thread.getStack().push(frame);
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(interpreter.executeCurrentInstruction(thread));
+        }
+        assertEquals(7, frame.getLocal(1));
+
+        JVMObject obj = heap.getObjectByAddress(frame.getLocal(0));
+        obj.putLong(weight.getOffset(), 1L << 40);
+        heap.storeReference(obj, next.getReferenceSlot(), obj);
+        assertEquals(point.getInstanceSize(), obj.getSizeInBytes());
+
+        heap.collect();
+
+        assertFalse(GenerationalCollector.isYoung(obj.getAddress()));
+        assertEquals(7, obj.getInt(x.getOffset()));
+        assertEquals(1L << 40, obj.getLong(weight.getOffset()));
+        assertSame(obj, heap.loadReference(obj, next.getReferenceSlot()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.threads.JVMThread;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LockElisionTest {
+
+    private JVMHeap heap;
+    private JVMThread thread;
+    private ClassLayout node;
+    private ClassLayout.Field next;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        thread = new JVMThread(null, 16);
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        node = ClassLayout.compute("Node", null, Arrays.asList("next"), Arrays.asList("LNode;"));
+        next = node.getField("next");
+    }
+
+    private JFrame frame(byte[] code) {
+        JFrame frame = new JFrame(2, 4, code);
+        frame.setResolvedConstants(new Object[]{null, node, next});
+        thread.getStack().push(frame);
+        return frame;
+    }
+
+    /** Runs until the thread yields or returns. */
+    private void runUntilStop(BytecodeInterpreter interpreter) {
+        while (interpreter.executeCurrentInstruction(thread)) {
+            // Keep going
+        }
+    }
+
+    @Test
+    void testLockOnThreadLocalObjectIsNeverTaken() {
+        // new #1; astore_0; aload_0; monitorenter; yield; aload_0; monitorexit; return
+        byte[] code = {
+                (byte) 0xbb, 0, 1, 0x4b,
+                0x2a, (byte) 0xc2, (byte) 0xff,
+                0x2a, (byte) 0xc3, (byte) 0xb1
+        };
+        JFrame frame = frame(code);
+        long before = LockElision.getElidedCount();
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+
+        runUntilStop(interpreter); // Stops at the yield inside the region
+        JVMObject obj = heap.getObjectByAddress(frame.getLocal(0));
+        assertFalse(obj.isLocked(), "A non-escaping object must not be locked");
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        runUntilStop(interpreter);
+
+        assertEquals(2, frame.getLockElision().getThreadLocalCount());
+        assertEquals(2, LockElision.getElidedCount() - before);
+    }
+
+    @Test
+    void testEscapingObjectIsStillLocked() {
+        // new #1; astore_0; aload_1; aload_0; putfield #2; aload_0; monitorenter; yield; aload_0; monitorexit; return
+        byte[] code = {
+                (byte) 0xbb, 0, 1, 0x4b,
+                0x2b, 0x2a, (byte) 0xb5, 0, 2,
+                0x2a, (byte) 0xc2, (byte) 0xff,
+                0x2a, (byte) 0xc3, (byte) 0xb1
+        };
+        JVMObject holder = heap.allocate(thread, node);
+        JFrame frame = frame(code);
+        frame.setLocalReference(1, holder.getAddress());
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+
+        runUntilStop(interpreter);
+        JVMObject obj = heap.getObjectByAddress(frame.getLocal(0));
+        assertTrue(obj.isLocked(), "Stored into a field, so another thread could lock it");
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        runUntilStop(interpreter);
+
+        assertFalse(obj.isLocked());
+        assertEquals(0, frame.getLockElision().getThreadLocalCount());
+    }
+
+    @Test
+    void testAdjacentRegionsOnTheSameObjectAreMerged() {
+        // aload_1; monitorenter; aload_1; monitorexit; iconst_1; istore_0; aload_1; monitorenter; yield; aload_1; monitorexit; return
+        byte[] code = {
+                0x2b, (byte) 0xc2, 0x2b, (byte) 0xc3,
+                0x04, 0x3b,
+                0x2b, (byte) 0xc2, (byte) 0xff,
+                0x2b, (byte) 0xc3, (byte) 0xb1
+        };
+        JVMObject shared = heap.allocate(thread, node);
+        JFrame frame = frame(code);
+        frame.setLocalReference(1, shared.getAddress());
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+
+        LockElision elision = frame.getLockElision();
+        assertEquals(2, elision.getCoarsenedCount());
+        assertEquals(0, elision.getThreadLocalCount());
+
+        runUntilStop(interpreter);
+        assertTrue(shared.isLocked(), "The merged region still holds the lock");
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        runUntilStop(interpreter);
+        assertFalse(shared.isLocked());
+    }
+
+    @Test
+    void testRegionsAreNotMergedAcrossABranchTarget() {
+        // aload_1; monitorenter; aload_1; monitorexit; iload_0; ifeq +4; yield; aload_1; monitorenter; aload_1; monitorexit; return
+        // The second region can be entered by the branch, without passing the first exit
+        byte[] code = {
+                0x2b, (byte) 0xc2, 0x2b, (byte) 0xc3,
+                0x1a, (byte) 0x99, 0, 4,
+                (byte) 0xff,
+                0x2b, (byte) 0xc2, 0x2b, (byte) 0xc3, (byte) 0xb1
+        };
+        JVMObject shared = heap.allocate(thread, node);
+        JFrame frame = frame(code);
+        frame.setLocalReference(1, shared.getAddress());
+
+        assertEquals(0, frame.getLockElision().getCoarsenedCount());
+    }
+}
@@ -0,0 +1,127 @@
+package com.tinyjvm.interpreter;
+
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.threads.JVMThread;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScalarReplacementTest {
+
+    private JVMHeap heap;
+    private JVMThread thread;
+    private ClassLayout node;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        thread = new JVMThread(null, 16);
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        node = ClassLayout.compute("Node", null, Arrays.asList("x", "weight", "next"), Arrays.asList("I", "J", "LNode;"));
+    }
+
+    private JFrame frame(byte[] code) {
+        JFrame frame = new JFrame(3, 4, code);
+        frame.setResolvedConstants(new Object[]{null, node, node.getField("x"), node.getField("weight"), node.getField("next")});
+        thread.getStack().push(frame);
+        return frame;
+    }
+
+    private void runUntilStop(BytecodeInterpreter interpreter) {
+        while (interpreter.executeCurrentInstruction(thread)) {
+            // Keep going
+        }
+    }
+
+    @Test
+    void testTemporaryObjectsInALoopNeverTouchTheHeap() {
+        // for (i = 0; i < 10; i++) { n = new Node(); n.x = i; sum += n.x; }
+        byte[] code = {
+                0x03, 0x3c, 0x03, 0x3d,                  // 0: i = 0; sum = 0
+                0x1b, 0x10, 10, (byte) 0xa2, 0, 25,      // 4: if (i >= 10) goto 32
+                (byte) 0xbb, 0, 1, 0x4b,                 // 10: n = new Node
+                0x2a, 0x1b, (byte) 0xb5, 0, 2,           // 14: n.x = i
+                0x2a, (byte) 0xb4, 0, 2, 0x1c, 0x60, 0x3d, // 19: sum += n.x
+                (byte) 0x84, 1, 1,                       // 26: i++
+                (byte) 0xa7, (byte) 0xff, (byte) 0xe7,   // 29: goto 4
+                (byte) 0xb1                              // 32: return
+        };
+        JFrame frame = frame(code);
+        long allocated = heap.getAllocationCount(thread);
+        long replaced = ScalarReplacement.getReplacedCount();
+        long deoptimizations = ScalarReplacement.getDeoptimizationCount();
+
+        runUntilStop(new BytecodeInterpreter(heap));
+
+        assertEquals(45, frame.getLocal(2));
+        assertEquals(1, frame.getScalarReplacement().getVirtualSiteCount());
+        assertEquals(10, ScalarReplacement.getReplacedCount() - replaced);
+        assertEquals(allocated, heap.getAllocationCount(thread), "No allocation may reach the heap");
+
+        // Host code looking at the object deoptimizes the frame and gets a real heap object
+        JVMObject last = heap.getObjectByAddress(frame.getLocal(0));
+        assertTrue(frame.isDeoptimized());
+        assertEquals(1, ScalarReplacement.getDeoptimizationCount() - deoptimizations);
+        assertEquals(9, last.getInt(node.getField("x").getOffset()));
+    }
+
+    @Test
+    void testVirtualFieldsKeepTheirReferentsAlive() {
+        // n = new Node; n.next = param; n.weight = 7L << 32 | 1; param = null; yield; param = n.next; ...
+        byte[] code = {
+                (byte) 0xbb, 0, 1, 0x4b,                 // 0: n = new Node
+                0x2a, 0x2b, (byte) 0xb5, 0, 4,           // 4: n.next = param
+                0x2a, 0x10, 7, 0x04, (byte) 0xb5, 0, 3,  // 9: n.weight = (7 << 32) | 1
+                0x01, 0x4c,                              // 16: param = null
+                (byte) 0xff,                             // 18: yield
+                0x2a, (byte) 0xb4, 0, 4, 0x4c,           // 19: param = n.next
+                0x2a, (byte) 0xb4, 0, 3, 0x3d, 0x3d,     // 24: local 2 = high word of n.weight
+                (byte) 0xb1                              // 30: return
+        };
+        JVMObject param = heap.allocate(thread, node);
+        JFrame frame = frame(code);
+        frame.setLocalReference(1, param.getAddress());
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+
+        runUntilStop(interpreter);
+        heap.collect(); // param is only reachable from the virtual object's field
+        assertNotEquals(0, param.getAddress());
+
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        runUntilStop(interpreter);
+        assertEquals(7, frame.getLocal(2));
+        assertEquals(param.getAddress(), frame.getLocal(1));
+        assertFalse(frame.isDeoptimized());
+    }
+
+    @Test
+    void testFramesOfAMethodShareOneAnalysis() {
+        // n = new Node; synchronized (n) { n.x = 1 }; return
+        byte[] code = {
+                (byte) 0xbb, 0, 1, 0x4b,                 // 0: n = new Node
+                0x2a, (byte) 0xc2,                       // 4: monitorenter n
+                0x2a, 0x04, (byte) 0xb5, 0, 2,           // 6: n.x = 1
+                0x2a, (byte) 0xc3,                       // 11: monitorexit n
+                (byte) 0xb1                              // 13: return
+        };
+        JFrame first = new JFrame(3, 4, code);
+        first.setResolvedConstants(new Object[]{null, node, node.getField("x")});
+        JFrame second = new JFrame(3, 4, code);
+        second.setResolvedConstants(new Object[]{null, node, node.getField("x")});
+
+        // Whichever decision a frame asks for first, both come from the same analysis
+        assertSame(first.getLockElision(), second.getLockElision());
+        assertSame(second.getScalarReplacement(), first.getScalarReplacement());
+        assertEquals(2, first.getLockElision().getThreadLocalCount());
+        assertEquals(1, first.getScalarReplacement().getVirtualSiteCount());
+
+        JFrame copy = new JFrame(3, 4, code.clone());
+        copy.setResolvedConstants(new Object[]{null, node, node.getField("x")});
+        assertNotSame(first.getScalarReplacement(), copy.getScalarReplacement(), "Methods are told apart by code array identity");
+    }
+}
@@ -0,0 +1,150 @@
+package com.tinyjvm.jfr;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.ObjectSynchronizer;
+import com.tinyjvm.threads.Scheduler;
+import com.tinyjvm.threads.ThreadUtils;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class GuestEventsTest {
+
+    private JVMHeap heap;
+    private Recording recording;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(GuestEvents.isAvailable() && FlightRecorder.isAvailable(), "No flight recorder on this host");
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        recording = new Recording();
+        for (String name : new String[]{"GuestMethod", "Quantum", "ContextSwitch", "MonitorBlocked", "AllocationSample", "GcPhase"}) {
+            recording.enable("tinyjvm." + name);
+        }
+        recording.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (recording != null) {
+            recording.close();
+        }
+        GuestEvents.setAllocationSampleBytes(64 * 1024);
+    }
+
+    private List<RecordedEvent> stopAndRead() throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("tinyjvm", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    void testGuestMethodsAndQuantaCarryTheGuestStack() throws IOException {
+        // bipush 42; ireturn
+        JFrame frame = new JFrame(0, 1, new byte[]{0x10, 42, (byte) 0xac});
+        frame.setMethodName("Answer.compute");
+        JVMThread thread = new JVMThread(null, 16);
+        thread.getStack().push(frame);
+        thread.start();
+
+        Scheduler.getInstance().start();
+
+        List<RecordedEvent> events = stopAndRead();
+        List<RecordedEvent> methods = named(events, "tinyjvm.GuestMethod");
+        assertEquals(1, methods.size());
+        RecordedEvent method = methods.get(0);
+        assertEquals("Answer.compute", method.getString("method"));
+        assertEquals(thread.getThreadId(), method.getInt("guestThread"));
+        assertEquals("Answer.compute (pc 3)\n", method.getString("guestStack"));
+
+        List<RecordedEvent> quanta = named(events, "tinyjvm.Quantum").stream()
+                .filter(event -> event.getInt("guestThread") == thread.getThreadId())
+                .collect(Collectors.toList());
+        assertFalse(quanta.isEmpty());
+        assertEquals("TERMINATED", quanta.get(quanta.size() - 1).getString("endState"));
+    }
+
+    @Test
+    void testBlockedThreadIsReportedWithTheOwner() throws IOException {
+        JVMObject lock = heap.allocate(null, "lock");
+        JVMThread holder = new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            for (int i = 0; i < 5; i++) {
+                ThreadUtils.yield(); // Keep the lock while the other thread queues
+            }
+            ObjectSynchronizer.exit(lock, self);
+        }, 16);
+        JVMThread waiter = new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            ObjectSynchronizer.exit(lock, self);
+        }, 16);
+        holder.start();
+        waiter.start();
+
+        Scheduler.getInstance().start();
+
+        List<RecordedEvent> events = stopAndRead();
+        List<RecordedEvent> blocked = named(events, "tinyjvm.MonitorBlocked");
+        assertEquals(1, blocked.size());
+        assertEquals(waiter.getThreadId(), blocked.get(0).getInt("guestThread"));
+        assertEquals(holder.getThreadId(), blocked.get(0).getInt("ownerThread"));
+        assertTrue(blocked.get(0).getDuration().toNanos() > 0);
+
+        List<RecordedEvent> switches = named(events, "tinyjvm.ContextSwitch").stream()
+                .filter(event -> event.getInt("fromThread") == holder.getThreadId())
+                .collect(Collectors.toList());
+        assertTrue(switches.stream().anyMatch(event -> event.getInt("toThread") == waiter.getThreadId()));
+    }
+
+    @Test
+    void testAllocationsAreSampledAndCollectionsRecorded() throws IOException {
+        ClassLayout point = ClassLayout.compute("Point", null, Arrays.asList("x", "y"), Arrays.asList("I", "I"));
+        GuestEvents.setAllocationSampleBytes(point.getInstanceSize() * 10L);
+        for (int i = 0; i < 100; i++) {
+            heap.allocate(null, point);
+        }
+        heap.collect();
+
+        List<RecordedEvent> events = stopAndRead();
+        List<RecordedEvent> samples = named(events, "tinyjvm.AllocationSample");
+        assertTrue(samples.size() >= 9 && samples.size() <= 10, "About one sample per 10 objects: " + samples.size());
+        assertEquals("Point", samples.get(0).getString("className"));
+        assertEquals(point.getInstanceSize(), samples.get(0).getLong("size"));
+        assertEquals(-1, samples.get(0).getInt("guestThread"));
+
+        List<RecordedEvent> phases = named(events, "tinyjvm.GcPhase");
+        assertEquals(1, phases.size());
+        assertEquals(100, phases.get(0).getLong("freed"));
+        assertEquals(0, phases.get(0).getLong("live"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.tinyjvm.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassLayoutTest {
+
+    @Test
+    void testPrimitivesArePackedLargestFirstAndReferencesLast() {
+        ClassLayout layout = ClassLayout.compute("Sample", null,
+                Arrays.asList("flag", "next", "count", "total", "ch"),
+                Arrays.asList("Z", "LSample;", "I", "J", "C"));
+
+        assertEquals(ClassLayout.HEADER_SIZE, layout.getField("total").getOffset(), "8-byte fields come right after the header");
+        assertEquals(16, layout.getField("count").getOffset());
+        assertEquals(20, layout.getField("ch").getOffset());
+        assertEquals(22, layout.getField("flag").getOffset());
+        assertEquals(24, layout.getField("next").getOffset(), "References follow the primitives, 4-byte aligned");
+        assertEquals(32, layout.getInstanceSize(), "Instance size is rounded up to 8 bytes");
+        assertEquals(1, layout.getReferenceCount());
+        assertEquals(24, layout.getReferenceOffset(layout.getField("next").getReferenceSlot()));
+    }
+
+    @Test
+    void testSubclassKeepsSuperclassOffsets() {
+        ClassLayout base = ClassLayout.compute("Base", null, Arrays.asList("x", "parent"), Arrays.asList("I", "LBase;"));
+        ClassLayout derived = ClassLayout.compute("Derived", base, Arrays.asList("y", "child"), Arrays.asList("D", "LBase;"));
+
+        assertEquals(base.getField("x").getOffset(), derived.getField("x").getOffset());
+        assertEquals(base.getField("parent").getOffset(), derived.getField("parent").getOffset());
+        assertTrue(derived.getField("y").getOffset() >= base.getInstanceSize());
+        assertEquals(0, derived.getField("y").getOffset() % 8);
+        assertEquals(2, derived.getReferenceCount(), "The oop map includes inherited reference fields");
+    }
+
+    @Test
+    void testArenaReusesFreedBlocksOnceFull() {
+        ObjectArena arena = new ObjectArena(ObjectArena.PAGE_SIZE);
+        long region = arena.allocateRegion(ObjectArena.PAGE_SIZE);
+        assertEquals(0, ObjectArena.offset(region));
+        assertEquals(-1, arena.allocateRegion(ObjectArena.REGION_SIZE), "The arena is at its limit");
+
+        arena.page(region).putLong(ObjectArena.offset(region) + 8, 42L);
+        arena.free(region, 16);
+        assertEquals(-1, arena.allocateFree(24), "Free lists are exact-size");
+        assertEquals(region, arena.allocateFree(16));
+        assertEquals(0L, arena.page(region).getLong(ObjectArena.offset(region) + 8), "Reused blocks are zeroed");
+    }
+}
@@ -0,0 +1,71 @@
+package com.tinyjvm.metrics;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.threads.JVMThread;
+import com.tinyjvm.threads.Scheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VmMetricsTest {
+
+    private JVMHeap heap;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+    }
+
+    @Test
+    void testSnapshotHasInterpreterSchedulerAndHeapMetrics() {
+        VmMetrics metrics = new VmMetrics();
+        ClassLayout point = ClassLayout.compute("Point", null, Arrays.asList("x", "y"), Arrays.asList("I", "I"));
+        for (int i = 0; i < 10; i++) {
+            heap.allocate(null, point);
+        }
+        long switches = Scheduler.getInstance().getContextSwitchCount();
+        for (int i = 0; i < 2; i++) {
+            JVMThread thread = new JVMThread(null, 16);
+            JFrame frame = new JFrame(0, 1, new byte[]{0x10, 7, (byte) 0xac}); // bipush 7; ireturn
+            frame.setMethodName("Metrics \"quoted\"");
+            thread.getStack().push(frame);
+            thread.start();
+        }
+        assertEquals(2, metrics.getRunQueueLength());
+
+        Scheduler.getInstance().start();
+
+        assertEquals(0, metrics.getRunQueueLength());
+        assertEquals(switches + 2, metrics.getContextSwitchCount());
+        assertEquals(10, metrics.getLiveObjects());
+        assertEquals(10L * point.getInstanceSize(), metrics.getAllocatedBytes());
+        assertEquals(2L, metrics.getMethodInvocationCounts().get("Metrics \"quoted\""));
+
+        String snapshot = metrics.snapshot();
+        assertTrue(snapshot.contains("\ntinyjvm_method_invocations_total{method=\"Metrics \\\"quoted\\\"\"} 2\n"), snapshot);
+        assertTrue(snapshot.contains("\ntinyjvm_heap_live_objects 10\n"), snapshot);
+        assertTrue(snapshot.contains("\n# TYPE tinyjvm_scheduler_context_switches_total counter\n"), snapshot);
+        assertTrue(snapshot.matches("(?s).*\ntinyjvm_opcode_executions_total\\{opcode=\"0xAC\"} [1-9][0-9]*\n.*"), snapshot);
+    }
+
+    @Test
+    void testMBeanIsRegisteredOnce() throws Exception {
+        VmMetrics metrics = VmMetrics.registerMBean();
+        assertSame(metrics, VmMetrics.registerMBean());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(VmMetrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        assertEquals(metrics.getInstructionsExecuted(), (long) server.getAttribute(name, "InstructionsExecuted"));
+        assertTrue(((String) server.getAttribute(name, "Snapshot")).contains("tinyjvm_instructions_total"));
+    }
+}
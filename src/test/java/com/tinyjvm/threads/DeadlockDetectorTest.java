@@ -0,0 +1,103 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.memory.JVMObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlockDetectorTest {
+
+    private JVMHeap heap;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+    }
+
+    /** A thread that is not running, so contenders queue on its monitors without spinning. */
+    private JVMThread idleThread() {
+        JVMThread thread = new JVMThread(null, 16);
+        thread.setState(JVMThread.ThreadState.BLOCKED);
+        return thread;
+    }
+
+    @Test
+    void testCycleIsFoundButNotTheThreadsWaitingOnIt() {
+        Monitor a = new Monitor();
+        Monitor b = new Monitor();
+        JVMThread first = idleThread();
+        JVMThread second = idleThread();
+        JVMThread bystander = idleThread();
+        assertTrue(a.tryEnter(first));
+        assertTrue(b.tryEnter(second));
+        assertFalse(b.tryEnter(first));
+        assertFalse(a.tryEnter(bystander)); // Waits for the cycle, but is not part of it
+        assertTrue(DeadlockDetector.findDeadlocks(Arrays.asList(first, second, bystander)).isEmpty());
+
+        assertFalse(a.tryEnter(second));
+        List<DeadlockDetector.Deadlock> found = DeadlockDetector.findDeadlocks(Arrays.asList(bystander, first, second));
+
+        assertEquals(1, found.size());
+        DeadlockDetector.Deadlock deadlock = found.get(0);
+        assertEquals(new HashSet<>(Arrays.asList(first, second)), new HashSet<>(deadlock.getThreads()));
+        int i = deadlock.getThreads().indexOf(first);
+        assertSame(b, deadlock.getMonitors().get(i), "Each thread is listed with the monitor it waits for");
+        assertSame(a, deadlock.getMonitors().get(1 - i));
+    }
+
+    @Test
+    void testChainEndingInARunnableOwnerIsNoDeadlock() {
+        Monitor a = new Monitor();
+        Monitor b = new Monitor();
+        JVMThread owner = idleThread();
+        JVMThread middle = idleThread();
+        JVMThread last = idleThread();
+        assertTrue(a.tryEnter(owner));
+        assertTrue(b.tryEnter(middle));
+        assertFalse(a.tryEnter(middle));
+        assertFalse(b.tryEnter(last));
+
+        assertTrue(DeadlockDetector.findDeadlocks(Arrays.asList(last, middle, owner)).isEmpty());
+
+        a.exit(owner); // Hands nothing off yet; the queued thread takes the lock when it runs again
+        assertTrue(a.tryEnter(middle));
+        assertTrue(DeadlockDetector.findDeadlocks(Arrays.asList(last, middle, owner)).isEmpty());
+    }
+
+    @Test
+    void testSchedulerReportsGuestsDeadlockedOnThinLocks() {
+        JVMObject left = heap.allocate(null, "left");
+        JVMObject right = heap.allocate(null, "right");
+        JVMThread one = new JVMThread(() -> lockBoth(left, right), 16);
+        JVMThread two = new JVMThread(() -> lockBoth(right, left), 16);
+        one.start();
+        two.start();
+
+        Scheduler.getInstance().start(); // Returns once both are parked for good
+
+        List<DeadlockDetector.Deadlock> found = Scheduler.getInstance().getDetectedDeadlocks();
+        assertEquals(1, found.size());
+        DeadlockDetector.Deadlock deadlock = found.get(0);
+        assertEquals(new HashSet<>(Arrays.asList(one, two)), new HashSet<>(deadlock.getThreads()));
+        String report = deadlock.toString();
+        assertTrue(report.contains("\"Thread-" + one.getThreadId() + "\" BLOCKED"), report);
+        assertTrue(report.contains("which is held by \"Thread-" + two.getThreadId() + "\""), report);
+        assertEquals(found.size(), Scheduler.getInstance().findDeadlocks().size(), "Still deadlocked on demand");
+    }
+
+    private static void lockBoth(JVMObject first, JVMObject second) {
+        JVMThread self = Scheduler.getCurrentThread();
+        ObjectSynchronizer.enter(first, self);
+        ThreadUtils.yield(); // Let the other thread take its first lock
+        ObjectSynchronizer.enter(second, self);
+        ObjectSynchronizer.exit(second, self);
+        ObjectSynchronizer.exit(first, self);
+    }
+}
@@ -0,0 +1,112 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.BytecodeInterpreter;
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.memory.ClassLayout;
+import com.tinyjvm.memory.JVMObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LockProfilerTest {
+
+    private JVMHeap heap;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        LockProfiler.reset();
+        LockProfiler.setEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        LockProfiler.setEnabled(false);
+    }
+
+    @Test
+    void testContendedLockIsAttributedToItsClass() {
+        ClassLayout account = ClassLayout.compute("Account", null, Collections.emptyList(), Collections.emptyList());
+        JVMObject lock = heap.allocate(null, account);
+        int contenders = 3;
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            for (int i = 0; i < 10; i++) {
+                ThreadUtils.yield(); // Hold the lock while all contenders queue
+            }
+            ObjectSynchronizer.exit(lock, self);
+        }, 16).start();
+        for (int i = 0; i < contenders; i++) {
+            new JVMThread(() -> {
+                JVMThread self = Scheduler.getCurrentThread();
+                ObjectSynchronizer.enter(lock, self);
+                ObjectSynchronizer.exit(lock, self);
+            }, 16).start();
+        }
+
+        Scheduler.getInstance().start();
+
+        LockProfiler.Site site = lock.getAllocationSite();
+        assertNotNull(site);
+        assertEquals("Account", site.getClassName());
+        assertEquals(-1, site.getPc(), "Allocated by host code");
+        assertEquals(contenders + 1, site.getAcquisitions());
+        assertEquals(contenders, site.getContendedAcquisitions());
+        assertEquals(contenders, site.getMaxQueueLength());
+        assertTrue(site.getBlockedNanos() > 0);
+        assertEquals(contenders + 1, Arrays.stream(site.getHoldHistogram()).sum(), "Every hold of the inflated lock, including the first");
+        assertSame(site, LockProfiler.getTopContended(1).get(0));
+        assertTrue(LockProfiler.report(5).contains("Account (allocated by host code)"));
+    }
+
+    @Test
+    void testGuestAllocationSiteIsRecorded() {
+        ClassLayout node = ClassLayout.compute("Node", null, Arrays.asList("next"), Arrays.asList("LNode;"));
+        // aload_0; new #1; putfield #2; return -- the new object escapes into the holder
+        byte[] code = {0x2a, (byte) 0xbb, 0, 1, (byte) 0xb5, 0, 2, (byte) 0xb1};
+        JVMThread thread = new JVMThread(null, 16);
+        thread.setState(JVMThread.ThreadState.RUNNING);
+        JVMObject holder = heap.allocate(thread, node);
+        JFrame frame = new JFrame(1, 2, code);
+        frame.setResolvedConstants(new Object[]{null, node, node.getField("next")});
+        frame.setLocalReference(0, holder.getAddress());
+        thread.getStack().push(frame);
+        BytecodeInterpreter interpreter = new BytecodeInterpreter(heap);
+        while (interpreter.executeCurrentInstruction(thread)) {
+            // Keep going
+        }
+
+        JVMObject allocated = heap.loadReference(holder, 0);
+        ObjectSynchronizer.enter(allocated, thread);
+        ObjectSynchronizer.exit(allocated, thread);
+
+        LockProfiler.Site site = allocated.getAllocationSite();
+        assertEquals("Node", site.getClassName());
+        assertEquals(1, site.getPc());
+        assertEquals(1, site.getAcquisitions());
+        assertEquals(0, site.getContendedAcquisitions());
+        assertSame(site, LockProfiler.siteOf("Node", code, 1));
+    }
+
+    @Test
+    void testNothingIsRecordedWhileDisabled() {
+        LockProfiler.setEnabled(false);
+        JVMObject lock = heap.allocate(null, "quiet");
+        JVMThread thread = new JVMThread(null, 16);
+        ObjectSynchronizer.enter(lock, thread);
+        ObjectSynchronizer.exit(lock, thread);
+
+        assertNull(lock.getAllocationSite());
+        List<LockProfiler.Site> top = LockProfiler.getTopContended(10);
+        assertTrue(top.stream().allMatch(site -> site.getAcquisitions() == 0));
+    }
+}
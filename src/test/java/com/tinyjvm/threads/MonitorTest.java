@@ -0,0 +1,245 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.memory.JVMObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class MonitorTest {
+
+    private JVMHeap heap;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+    }
+
+    @Test
+    void testBlockedThreadsAreNotScheduledUntilUnparked() {
+        JVMObject lock = heap.allocate(null, "lock");
+        int holdYields = 50;
+        int contenders = 4;
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            for (int i = 0; i < holdYields; i++) {
+                ThreadUtils.yield(); // Keep the lock while the others try to get it
+            }
+            events.add("holder-exit");
+            ObjectSynchronizer.exit(lock, self);
+        }, 16).start();
+        for (int i = 0; i < contenders; i++) {
+            new JVMThread(() -> {
+                JVMThread self = Scheduler.getCurrentThread();
+                ObjectSynchronizer.enter(lock, self);
+                events.add("contender");
+                ObjectSynchronizer.exit(lock, self);
+            }, 16).start();
+        }
+
+        long before = Scheduler.getInstance().getDispatchCount();
+        Scheduler.getInstance().start();
+        long dispatched = Scheduler.getInstance().getDispatchCount() - before;
+
+        assertEquals(contenders + 1, events.size());
+        assertEquals("holder-exit", events.get(0), "No contender may get the lock while it is held");
+        // Holder: one quantum per yield plus the last; contenders: one to block, one after unpark
+        assertTrue(dispatched <= holdYields + 1 + 2 * contenders,
+                "Parked threads must not be polled by the scheduler, dispatched " + dispatched);
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    void testFairMonitorHandsOffInArrivalOrder() {
+        Monitor monitor = new Monitor(true);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        JVMThread holder = new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            monitor.enter(self);
+            ThreadUtils.yield();
+            monitor.exit(self);
+            // Re-entering right away must not overtake the queued threads
+            monitor.enter(self);
+            order.add(self.getThreadId());
+            monitor.exit(self);
+        }, 16);
+        holder.start();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            JVMThread waiter = new JVMThread(() -> {
+                JVMThread self = Scheduler.getCurrentThread();
+                monitor.enter(self);
+                order.add(self.getThreadId());
+                monitor.exit(self);
+            }, 16);
+            expected.add(waiter.getThreadId());
+            waiter.start();
+        }
+        expected.add(holder.getThreadId());
+
+        Scheduler.getInstance().start();
+
+        assertEquals(expected, order);
+        assertFalse(monitor.isInUse());
+    }
+
+    @Test
+    void testProducerConsumerWaitsInsteadOfPolling() {
+        JVMObject queueLock = heap.allocate(null, "queue");
+        List<Integer> queue = new ArrayList<>();
+        List<Integer> consumed = new ArrayList<>();
+        int items = 20;
+
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            for (int i = 0; i < items; i++) {
+                ObjectSynchronizer.enter(queueLock, self);
+                ObjectSynchronizer.enter(queueLock, self); // Recursion must survive wait/reacquire
+                while (queue.isEmpty()) {
+                    ObjectSynchronizer.wait(queueLock, self, 0);
+                }
+                consumed.add(queue.remove(0));
+                ObjectSynchronizer.exit(queueLock, self);
+                assertTrue(ObjectSynchronizer.holdsLock(queueLock, self));
+                ObjectSynchronizer.exit(queueLock, self);
+            }
+        }, 16).start();
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            for (int i = 0; i < items; i++) {
+                ObjectSynchronizer.enter(queueLock, self);
+                queue.add(i);
+                ObjectSynchronizer.notifyAll(queueLock, self);
+                ObjectSynchronizer.exit(queueLock, self);
+                ThreadUtils.yield();
+            }
+        }, 16).start();
+
+        long before = Scheduler.getInstance().getDispatchCount();
+        Scheduler.getInstance().start();
+        long dispatched = Scheduler.getInstance().getDispatchCount() - before;
+
+        assertEquals(items, consumed.size());
+        for (int i = 0; i < items; i++) {
+            assertEquals(i, consumed.get(i));
+        }
+        assertTrue(dispatched <= 3 * items + 2, "A waiting consumer must not burn quanta, dispatched " + dispatched);
+        assertEquals(0, ObjectSynchronizer.inflate(queueLock).getWaitingCount());
+    }
+
+    @Test
+    void testTimedWaitReturnsAfterTimeoutAndReacquires() {
+        JVMObject lock = heap.allocate(null, "timed");
+        boolean[] result = {true};
+        long[] elapsed = new long[1];
+
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            long start = System.nanoTime();
+            result[0] = ObjectSynchronizer.wait(lock, self, 20);
+            elapsed[0] = System.nanoTime() - start;
+            assertTrue(ObjectSynchronizer.holdsLock(lock, self));
+            ObjectSynchronizer.exit(lock, self);
+        }, 16).start();
+
+        Scheduler.getInstance().start();
+
+        assertFalse(result[0], "Nobody notified, so the wait must time out");
+        assertTrue(elapsed[0] >= 20_000_000L, "Timed out too early: " + elapsed[0] + " ns");
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    void testTimedOutWaitersLeaveTheWaitSet() {
+        JVMObject lock = heap.allocate(null, "polled");
+        int[] timedOut = new int[1];
+
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            for (int i = 0; i < 50; i++) { // Polls with wait(timeout) and is never notified
+                if (!ObjectSynchronizer.wait(lock, self, 1)) {
+                    timedOut[0]++;
+                }
+            }
+            ObjectSynchronizer.exit(lock, self);
+        }, 16).start();
+
+        Scheduler.getInstance().start();
+
+        assertEquals(50, timedOut[0]);
+        Monitor monitor = ObjectSynchronizer.inflate(lock);
+        assertEquals(0, monitor.getWaitingCount());
+        assertEquals(0, monitor.getWaitSetSize(), "Timed-out waiters must not stay in the wait set");
+    }
+
+    @Test
+    void testNotifyWithoutOwningThrows() {
+        JVMThread thread = new JVMThread(null, 16);
+        JVMObject obj = heap.allocate(thread, "unowned");
+        assertThrows(IllegalMonitorStateException.class, () -> ObjectSynchronizer.notify(obj, thread));
+        assertThrows(IllegalMonitorStateException.class, () -> ObjectSynchronizer.wait(obj, thread, 0));
+    }
+
+    @Test
+    void testContenderSpinsOnShortCriticalSections() throws InterruptedException {
+        assumeTrue(Runtime.getRuntime().availableProcessors() > 1, "Spinning is disabled on a single processor");
+        Monitor monitor = new Monitor(false);
+        JVMThread holder = new JVMThread(null, 16);
+        JVMThread contender = new JVMThread(null, 16);
+        holder.setState(JVMThread.ThreadState.RUNNING); // Both run on host threads of their own
+        contender.setState(JVMThread.ThreadState.RUNNING);
+        int rounds = 20_000;
+        int[] counter = {0};
+
+        Thread host = new Thread(() -> {
+            for (int i = 0; i < rounds; i++) {
+                monitor.enter(holder);
+                counter[0]++;
+                monitor.exit(holder);
+            }
+        });
+        host.start();
+        for (int i = 0; i < rounds; i++) {
+            monitor.enter(contender);
+            counter[0]++;
+            monitor.exit(contender);
+        }
+        host.join();
+
+        assertEquals(2 * rounds, counter[0]);
+        assertTrue(monitor.getSpinSuccesses() > 0, "Short holds by a running owner should be waited out by spinning");
+        assertTrue(Monitor.getTotalSpinSuccesses() >= monitor.getSpinSuccesses());
+        assertTrue(monitor.getSpinLimitNanos() > 0);
+        assertFalse(monitor.isInUse());
+    }
+
+    @Test
+    void testNoSpinningWhileOwnerIsDescheduled() {
+        Monitor monitor = new Monitor(false);
+        JVMThread holder = new JVMThread(null, 16);
+        JVMThread contender = new JVMThread(null, 16);
+        holder.setState(JVMThread.ThreadState.RUNNING);
+        monitor.enter(holder);
+        holder.setState(JVMThread.ThreadState.RUNNABLE); // Preempted with the lock held
+
+        assertFalse(monitor.tryEnter(contender), "The owner cannot release the lock, so the contender must queue");
+        assertEquals(0, monitor.getSpinSuccesses() + monitor.getSpinFailures());
+
+        monitor.exit(holder);
+        assertTrue(monitor.tryEnter(contender));
+        monitor.exit(contender);
+        assertFalse(monitor.isInUse());
+    }
+}
@@ -0,0 +1,148 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.memory.JVMObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectSynchronizerTest {
+
+    private JVMHeap heap;
+
+    @BeforeEach
+    void setUp() {
+        heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+    }
+
+    @Test
+    void testUncontendedLockingStaysThin() {
+        JVMThread thread = new JVMThread(null, 16);
+        JVMObject obj = heap.allocate(thread, "thin");
+
+        ObjectSynchronizer.enter(obj, thread);
+        ObjectSynchronizer.enter(obj, thread);
+        assertTrue(ObjectSynchronizer.holdsLock(obj, thread));
+        assertTrue(obj.isLocked());
+        assertNull(obj.getInflatedMonitor(), "Recursive uncontended locking must not inflate");
+
+        ObjectSynchronizer.exit(obj, thread);
+        assertTrue(ObjectSynchronizer.holdsLock(obj, thread));
+        ObjectSynchronizer.exit(obj, thread);
+        assertEquals(ObjectSynchronizer.UNLOCKED, obj.getLockWord());
+        assertThrows(IllegalMonitorStateException.class, () -> ObjectSynchronizer.exit(obj, thread));
+    }
+
+    @Test
+    void testInflationCarriesOverOwnerAndRecursion() {
+        JVMThread owner = new JVMThread(null, 16);
+        JVMThread other = new JVMThread(null, 16);
+        JVMObject obj = heap.allocate(owner, "inflated");
+        ObjectSynchronizer.enter(obj, owner);
+        ObjectSynchronizer.enter(obj, owner);
+
+        Monitor monitor = ObjectSynchronizer.inflate(obj);
+        assertEquals(ObjectSynchronizer.INFLATED, obj.getLockWord());
+        assertTrue(monitor.isOwner(owner));
+        assertFalse(ObjectSynchronizer.holdsLock(obj, other));
+        assertThrows(IllegalMonitorStateException.class, () -> ObjectSynchronizer.exit(obj, other));
+
+        ObjectSynchronizer.exit(obj, owner);
+        assertTrue(monitor.isOwner(owner), "The thin recursion count moves into the monitor");
+        ObjectSynchronizer.exit(obj, owner);
+        assertFalse(obj.isLocked());
+    }
+
+    @Test
+    void testIdleMonitorsAreDeflatedByCollection() {
+        JVMThread thread = new JVMThread(null, 16);
+        JVMObject idle = heap.allocate(thread, "idle");
+        JVMObject held = heap.allocate(thread, "held");
+        JVMObject pinned = heap.allocate(thread, "pinned");
+        heap.putStatic("Test.idle", idle);
+        heap.putStatic("Test.pinned", pinned);
+        ObjectSynchronizer.inflate(idle);
+        ObjectSynchronizer.enter(held, thread);
+        ObjectSynchronizer.inflate(held);
+        pinned.getMonitor();
+
+        heap.collect();
+
+        assertNull(idle.getInflatedMonitor());
+        assertEquals(ObjectSynchronizer.UNLOCKED, idle.getLockWord());
+        assertNotNull(held.getInflatedMonitor(), "A held monitor must stay inflated");
+        assertNotNull(pinned.getInflatedMonitor(), "A monitor handed out by getMonitor() is never deflated");
+
+        ObjectSynchronizer.enter(idle, thread);
+        assertTrue(ObjectSynchronizer.holdsLock(idle, thread), "A deflated object locks thin again");
+        ObjectSynchronizer.exit(idle, thread);
+        ObjectSynchronizer.exit(held, thread);
+    }
+
+    @Test
+    void testUnstartedThreadIsOnlyFoundWhileItHoldsThinLocks() {
+        JVMThread thread = new JVMThread(null, 16);
+        JVMObject first = heap.allocate(thread, "first");
+        JVMObject second = heap.allocate(thread, "second");
+        assertNull(JVMThread.findById(thread.getThreadId()), "Threads are registered by start(), not on creation");
+
+        ObjectSynchronizer.enter(first, thread);
+        ObjectSynchronizer.enter(second, thread);
+        assertSame(thread, JVMThread.findById(thread.getThreadId()), "Inflation must find a thin owner by its id");
+        ObjectSynchronizer.exit(first, thread);
+        assertSame(thread, JVMThread.findById(thread.getThreadId()));
+        ObjectSynchronizer.exit(second, thread);
+
+        assertNull(JVMThread.findById(thread.getThreadId()));
+    }
+
+    @Test
+    void testThreadsWithIdsBeyondTheOwnerBitsLockThroughTheMonitor() {
+        JVMThread small = new JVMThread(null, 16);
+        int saved = JVMThread.setNextThreadId(ObjectSynchronizer.MAX_THIN_OWNER);
+        JVMThread largest;
+        JVMThread beyond;
+        JVMThread wrapped;
+        try {
+            largest = new JVMThread(null, 16);
+            beyond = new JVMThread(null, 16);
+            JVMThread.setNextThreadId(small.getThreadId() + (1 << 24)); // Would share small's owner bits if shifted
+            wrapped = new JVMThread(null, 16);
+        } finally {
+            JVMThread.setNextThreadId(saved);
+        }
+
+        // The largest id that fits still locks thin, all the way to a full recursion count
+        JVMObject thin = heap.allocate(largest, "thin");
+        for (int i = 0; i < 300; i++) {
+            ObjectSynchronizer.enter(thin, largest);
+        }
+        assertTrue(ObjectSynchronizer.holdsLock(thin, largest));
+        for (int i = 0; i < 300; i++) {
+            ObjectSynchronizer.exit(thin, largest);
+        }
+        assertFalse(thin.isLocked());
+
+        // Larger ids go straight to the monitor and never produce a sentinel lock word
+        JVMObject obj = heap.allocate(beyond, "beyond");
+        for (int i = 0; i < 300; i++) {
+            ObjectSynchronizer.enter(obj, beyond);
+        }
+        assertEquals(ObjectSynchronizer.INFLATED, obj.getLockWord());
+        assertTrue(ObjectSynchronizer.holdsLock(obj, beyond));
+        for (int i = 0; i < 300; i++) {
+            ObjectSynchronizer.exit(obj, beyond);
+        }
+        assertFalse(obj.isLocked());
+
+        // An id that would wrap onto another thread's owner bits must not re-enter that thread's thin lock
+        JVMObject held = heap.allocate(small, "held");
+        ObjectSynchronizer.enter(held, small);
+        assertFalse(ObjectSynchronizer.holdsLock(held, wrapped));
+        assertThrows(IllegalMonitorStateException.class, () -> ObjectSynchronizer.exit(held, wrapped));
+        assertFalse(ObjectSynchronizer.tryEnter(held, wrapped), "The lock is held by another thread");
+        assertTrue(ObjectSynchronizer.holdsLock(held, small));
+    }
+}
@@ -0,0 +1,132 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.utils.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SafepointTest {
+
+    @AfterEach
+    void tearDown() {
+        Scheduler.getInstance().setCarrierCount(1);
+        Scheduler.getInstance().setQuantum(100);
+    }
+
+    /**
+     * Counts local 0 up to local 1: {@code while (i < n) i++;} with a goto back-edge.
+     */
+    private static JFrame countingLoop(int iterations) {
+        byte[] code = {
+                0x1a,                          // 0: iload_0
+                0x1b,                          // 1: iload_1
+                (byte) 0xa2, 0x00, 0x09,       // 2: if_icmpge +9 (to 11)
+                (byte) 0x84, 0x00, 0x01,       // 5: iinc 0, 1
+                (byte) 0xa7, (byte) 0xff, (byte) 0xf8, // 8: goto -8 (to 0)
+                (byte) 0xb1                    // 11: return
+        };
+        JFrame frame = new JFrame(2, 2, code);
+        frame.setLocal(1, iterations);
+        return frame;
+    }
+
+    private static void startQuietly(Scheduler scheduler) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            scheduler.start();
+        } finally {
+            Logger.flush(); // Written by a background thread; let it finish before switching back
+            System.setOut(out);
+        }
+    }
+
+    @Test
+    void testLoopsRunAndOperationsAreRecorded() {
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMThread thread = new JVMThread(null, 4);
+        JFrame loop = countingLoop(1000);
+        thread.getStack().push(loop);
+        thread.start();
+        startQuietly(Scheduler.getInstance());
+
+        assertEquals(1000, loop.getLocal(0));
+        Safepoint safepoint = Scheduler.getInstance().getSafepoint();
+        long before = safepoint.getOperations();
+        heap.collect();
+        assertEquals(before + 1, safepoint.getOperations());
+        assertEquals("GC", safepoint.getLastOperation());
+        assertFalse(Safepoint.isRequested());
+    }
+
+    @Test
+    void testThreadsStopAtBackEdgesInsteadOfFinishingTheirQuantum() throws InterruptedException {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        Scheduler scheduler = Scheduler.getInstance();
+        scheduler.setQuantum(Integer.MAX_VALUE); // Quanta never end on their own
+        List<JVMThread> threads = new ArrayList<>();
+        List<JFrame> loops = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            JVMThread thread = new JVMThread(null, 4);
+            JFrame loop = countingLoop(150_000);
+            thread.getStack().push(loop);
+            threads.add(thread);
+            loops.add(loop);
+            thread.start();
+        }
+        AtomicReference<String> failure = new AtomicReference<>();
+        Safepoint safepoint = scheduler.getSafepoint();
+        long blockedBefore = safepoint.getThreadsBlocked();
+
+        // A VM service thread, not a guest, requests the operation while both loops are mid-quantum
+        Thread requester = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                scheduler.stopTheWorld("Test", () -> {
+                    int[] counts = {loops.get(0).getLocal(0), loops.get(1).getLocal(0)};
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    for (int t = 0; t < 2; t++) {
+                        if (loops.get(t).getLocal(0) != counts[t]) {
+                            failure.set("Thread " + t + " kept running during the operation");
+                        }
+                    }
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        requester.start();
+        scheduler.setCarrierCount(3);
+        startQuietly(scheduler);
+        requester.join();
+
+        assertNull(failure.get(), failure::get);
+        for (int t = 0; t < 2; t++) {
+            assertEquals(JVMThread.ThreadState.TERMINATED, threads.get(t).getState());
+            assertEquals(150_000, loops.get(t).getLocal(0));
+        }
+        assertEquals("Test", safepoint.getLastOperation());
+        assertTrue(safepoint.getThreadsBlocked() - blockedBefore >= 1, "Threads must have stopped at a poll");
+        assertTrue(safepoint.getLastTimeToSafepointNanos() < 100_000_000L,
+                "Time to safepoint: " + safepoint.getLastTimeToSafepointNanos() / 1000 + " us");
+    }
+}
@@ -0,0 +1,132 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SamplingProfilerTest {
+
+    @BeforeEach
+    void setUp() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        SamplingProfiler.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SamplingProfiler.stop();
+        SamplingProfiler.setIntervalMicros(1000);
+    }
+
+    private static JFrame frame(String method, int pc) {
+        JFrame frame = new JFrame(0, 1, new byte[8]);
+        frame.setMethodName(method);
+        frame.pc = pc;
+        return frame;
+    }
+
+    /** @return The collapsed stacks of the given threads only; other test classes may leave guests behind. */
+    private static Map<String, Long> samplesOf(JVMThread... threads) {
+        Map<String, Long> stacks = new TreeMap<>();
+        SamplingProfiler.getCollapsedStacks().forEach((stack, count) -> {
+            for (JVMThread thread : threads) {
+                if (stack.startsWith("Thread-" + thread.getThreadId() + ";")) {
+                    stacks.put(stack, count);
+                }
+            }
+        });
+        return stacks;
+    }
+
+    @Test
+    void testSamplesAreAggregatedByStackAndMethod() throws IOException {
+        JVMThread thread = new JVMThread(null, 16);
+        thread.getStack().push(frame("Main.main", 3));
+        thread.getStack().push(frame("Main.work", 5));
+        JVMThread idle = new JVMThread(null, 16);
+        idle.getStack().push(frame("Idle.run", 1));
+        idle.setState(JVMThread.ThreadState.BLOCKED); // Not on a CPU, so never sampled
+        thread.setState(JVMThread.ThreadState.RUNNING);
+
+        List<JVMThread> threads = Arrays.asList(thread, idle);
+        SamplingProfiler.sampleOnce(threads);
+        SamplingProfiler.sampleOnce(threads);
+        thread.getStack().pop();
+        thread.getStack().peek().pc = 4;
+        SamplingProfiler.sampleOnce(threads);
+        thread.setState(JVMThread.ThreadState.TERMINATED);
+        idle.setState(JVMThread.ThreadState.TERMINATED);
+
+        String prefix = "Thread-" + thread.getThreadId() + ";Main.main";
+        Map<String, Long> stacks = samplesOf(thread, idle);
+        assertEquals(2L, stacks.get(prefix + ";Main.work"));
+        assertEquals(1L, stacks.get(prefix));
+        assertEquals(2, stacks.size());
+
+        SamplingProfiler.MethodProfile work = SamplingProfiler.getMethodProfile("Main.work");
+        assertEquals(2, work.getSelfSamples());
+        assertEquals(2, work.getTotalSamples());
+        assertEquals(Collections.singletonMap(4, 2L), work.getSelfSamplesByPc(), "The pc of the executing instruction");
+        SamplingProfiler.MethodProfile main = SamplingProfiler.getMethodProfile("Main.main");
+        assertEquals(1, main.getSelfSamples());
+        assertEquals(3, main.getTotalSamples());
+        assertEquals(3, main.getHottestPc());
+        assertNull(SamplingProfiler.getMethodProfile("Idle.run"));
+        assertSame(work, SamplingProfiler.getMethodProfiles().get(0));
+
+        StringWriter out = new StringWriter();
+        SamplingProfiler.writeCollapsed(out);
+        assertEquals(prefix + " 1\n" + prefix + ";Main.work 2\n", out.toString());
+    }
+
+    @Test
+    void testRecursionCountsOnceTowardsTotal() {
+        JVMThread thread = new JVMThread(null, 16);
+        thread.getStack().push(frame("Tree.walk", 2));
+        thread.getStack().push(frame("Tree.walk", 2));
+        thread.setState(JVMThread.ThreadState.RUNNING);
+
+        SamplingProfiler.sampleOnce(Collections.singleton(thread));
+        thread.setState(JVMThread.ThreadState.TERMINATED);
+
+        assertEquals(1, SamplingProfiler.getMethodProfile("Tree.walk").getTotalSamples());
+        assertEquals(1L, SamplingProfiler.getCollapsedStacks().get("Thread-" + thread.getThreadId() + ";Tree.walk;Tree.walk"));
+    }
+
+    @Test
+    void testBackgroundSamplerSeesRunningGuests() {
+        SamplingProfiler.setIntervalMicros(200);
+        SamplingProfiler.start();
+        assertTrue(SamplingProfiler.isRunning());
+        JVMThread busy = new JVMThread(() -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() < end) {
+                // Spin in host code
+            }
+        }, 16);
+        busy.start();
+
+        Scheduler.getInstance().start();
+        SamplingProfiler.stop();
+
+        assertFalse(SamplingProfiler.isRunning());
+        assertTrue(SamplingProfiler.getCollapsedStacks().getOrDefault("Thread-" + busy.getThreadId() + ";[host code]", 0L) > 0);
+        assertTrue(SamplingProfiler.report(5).contains("[host code]"));
+        Map<String, Long> after = samplesOf(busy);
+        SamplingProfiler.sampleOnce(Collections.singleton(busy)); // It is not running any more
+        assertEquals(after, samplesOf(busy));
+    }
+}
@@ -0,0 +1,480 @@
+package com.tinyjvm.threads;
+
+import com.tinyjvm.interpreter.JFrame;
+import com.tinyjvm.interpreter.JVMHeap;
+import com.tinyjvm.memory.JVMObject;
+import com.tinyjvm.utils.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchedulerTest {
+
+    @AfterEach
+    void tearDown() {
+        Scheduler.getInstance().setCarrierCount(1);
+        Scheduler.getInstance().setExecutionMode(Scheduler.ExecutionMode.COOPERATIVE);
+        Scheduler.getInstance().setSlicePolicy(Scheduler.SlicePolicy.INSTRUCTIONS);
+    }
+
+    /**
+     * A guest that runs straight-line bytecode for a while: iload_0/istore_0 pairs, then return.
+     */
+    private static JVMThread cpuBoundThread(int instructionPairs, int priority) {
+        byte[] code = new byte[2 * instructionPairs + 1];
+        for (int i = 0; i < instructionPairs; i++) {
+            code[2 * i] = 0x1a;     // iload_0
+            code[2 * i + 1] = 0x3b; // istore_0
+        }
+        code[code.length - 1] = (byte) 0xb1; // return
+        JVMThread thread = new JVMThread(null, 16);
+        thread.getStack().push(new JFrame(1, 1, code));
+        thread.setPriority(priority);
+        return thread;
+    }
+
+    /**
+     * Runs the scheduler without its log output on stdout.
+     */
+    private static void startQuietly(Scheduler scheduler) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            scheduler.start();
+        } finally {
+            Logger.flush(); // Written by a background thread; let it finish before switching back
+            System.setOut(out);
+        }
+    }
+
+    @Test
+    void testThreadsAreLiveFromStartUntilTheyTerminate() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        JVMThread finishes = cpuBoundThread(10, JVMThread.NORM_PRIORITY);
+        JVMThread fails = new JVMThread(null, 16);
+        fails.getStack().push(new JFrame(0, 1, new byte[]{(byte) 0xbb, 0, 1})); // new #1, with nothing resolved
+        assertFalse(JVMThread.getLiveThreads().contains(finishes), "Threads that are never started are not registered");
+
+        finishes.start();
+        assertSame(finishes, JVMThread.findById(finishes.getThreadId()));
+        startQuietly(Scheduler.getInstance());
+        assertNull(JVMThread.findById(finishes.getThreadId()));
+
+        fails.start();
+        assertThrows(RuntimeException.class, () -> startQuietly(Scheduler.getInstance()));
+        assertEquals(JVMThread.ThreadState.TERMINATED, fails.getState());
+        assertNull(JVMThread.findById(fails.getThreadId()), "A guest that failed in the interpreter is not left registered");
+    }
+
+    @Test
+    void testCompletedTargetsHandTheirHostThreadToTheNextGuest() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        Set<Thread> hosts = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 50; i++) {
+            new JVMThread(() -> hosts.add(Thread.currentThread()), 16).start();
+        }
+
+        startQuietly(Scheduler.getInstance());
+
+        // Each target completes in its first quantum and gives its host back before the next one runs
+        assertFalse(hosts.contains(Thread.currentThread()), "Targets run on continuation hosts, not on the carrier");
+        assertTrue(hosts.size() < 10, "Guests must not need a host thread each: " + hosts.size());
+    }
+
+    @Test
+    void testCarriersRunAllThreadsUnderMutualExclusion() {
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMObject lock = heap.allocate(null, "lock");
+        int threads = 16;
+        int iterations = 200;
+        int[] counter = new int[1];
+        Set<Integer> carriersUsed = ConcurrentHashMap.newKeySet();
+        List<JVMThread> started = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            JVMThread thread = new JVMThread(() -> {
+                JVMThread self = Scheduler.getCurrentThread();
+                for (int i = 0; i < iterations; i++) {
+                    ObjectSynchronizer.enter(lock, self);
+                    counter[0]++; // Only safe because the monitor excludes the other carriers
+                    ObjectSynchronizer.exit(lock, self);
+                    carriersUsed.add(self.getCarrier().getIndex());
+                    ThreadUtils.yield();
+                }
+            }, 16);
+            started.add(thread);
+            thread.start();
+        }
+
+        Scheduler.getInstance().setCarrierCount(4);
+        Scheduler.getInstance().start();
+
+        assertEquals(threads * iterations, counter[0]);
+        for (JVMThread thread : started) {
+            assertEquals(JVMThread.ThreadState.TERMINATED, thread.getState());
+        }
+        assertEquals(4, carriersUsed.size(), "Queued threads are spread over all carriers");
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    void testIdleCarriersStealThreadsStartedOnAnotherCarrier() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        int children = 8;
+        Set<Integer> carriersUsed = ConcurrentHashMap.newKeySet();
+
+        new JVMThread(() -> {
+            // Children are queued next to their creator; only stealing moves them elsewhere
+            for (int c = 0; c < children; c++) {
+                new JVMThread(() -> {
+                    JVMThread self = Scheduler.getCurrentThread();
+                    for (int i = 0; i < 50; i++) {
+                        carriersUsed.add(self.getCarrier().getIndex());
+                        ThreadUtils.yield();
+                    }
+                }, 16).start();
+            }
+        }, 16).start();
+
+        Scheduler.getInstance().setCarrierCount(4);
+        Scheduler.getInstance().start();
+
+        assertTrue(carriersUsed.size() > 1, "Children should have been stolen, ran on " + carriersUsed);
+    }
+
+    @Test
+    void testCollectionsStopAllCarriers() {
+        JVMHeap heap = new JVMHeap(JVMHeap.GcMode.GENERATIONAL, 4096);
+        JVMThread.setSharedHeapInstance(heap);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int threads = 6;
+
+        for (int t = 0; t < threads; t++) {
+            String name = "kept" + t;
+            new JVMThread(() -> {
+                try {
+                    JVMThread self = Scheduler.getCurrentThread();
+                    JVMObject kept = heap.allocate(self, name);
+                    heap.putStatic(name, kept);
+                    for (int i = 0; i < 20_000; i++) {
+                        heap.allocate(self, i); // Garbage: fills the nursery over and over
+                        if (i % 1000 == 0) {
+                            ThreadUtils.yield();
+                        }
+                    }
+                    assertSame(kept, heap.getStatic(name), "Rooted object must survive collections");
+                    assertNotEquals(0, kept.getAddress());
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, 16).start();
+        }
+
+        Scheduler.getInstance().setCarrierCount(3);
+        Scheduler.getInstance().start();
+
+        assertNull(failure.get(), () -> "Guest failed: " + failure.get());
+        assertTrue(heap.getMinorGcStats().getCollections() > 0);
+    }
+
+    @Test
+    void testVirtualThreadModeRunsEachGuestOnItsOwnHostThread() {
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMObject lock = heap.allocate(null, "lock");
+        int threads = 8;
+        int iterations = 100;
+        int[] counter = new int[1];
+        Set<Thread> hosts = ConcurrentHashMap.newKeySet();
+
+        for (int t = 0; t < threads; t++) {
+            new JVMThread(() -> {
+                JVMThread self = Scheduler.getCurrentThread();
+                hosts.add(Thread.currentThread());
+                for (int i = 0; i < iterations; i++) {
+                    ObjectSynchronizer.enter(lock, self);
+                    int value = counter[0];
+                    ThreadUtils.yield(); // Holds the lock across a host yield
+                    counter[0] = value + 1;
+                    ObjectSynchronizer.exit(lock, self);
+                }
+            }, 16).start();
+        }
+
+        Scheduler.getInstance().setExecutionMode(Scheduler.ExecutionMode.VIRTUAL_THREADS);
+        Scheduler.getInstance().start();
+
+        assertEquals(threads * iterations, counter[0]);
+        assertEquals(threads, hosts.size());
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    void testVirtualThreadModeRunsBytecodeAndTimeouts() {
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMObject lock = heap.allocate(null, "timed");
+        List<JVMThread> bytecodeThreads = new ArrayList<>();
+        boolean[] notified = {true};
+
+        for (int t = 0; t < 4; t++) {
+            JVMThread thread = new JVMThread(null, 16);
+            thread.getStack().push(new JFrame(0, 1, new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xb1})); // yield, yield, return
+            bytecodeThreads.add(thread);
+            thread.start();
+        }
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            notified[0] = ObjectSynchronizer.wait(lock, self, 20);
+            ObjectSynchronizer.exit(lock, self);
+        }, 16).start();
+
+        Scheduler.getInstance().setExecutionMode(Scheduler.ExecutionMode.VIRTUAL_THREADS);
+        Scheduler.getInstance().start();
+
+        for (JVMThread thread : bytecodeThreads) {
+            assertEquals(JVMThread.ThreadState.TERMINATED, thread.getState());
+        }
+        assertFalse(notified[0], "The timeout must fire in virtual-thread mode too");
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    void testParkedThreadsAreKeptPerReason() {
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMObject lock = heap.allocate(null, "lock");
+        JVMObject condition = heap.allocate(null, "condition");
+        Scheduler scheduler = Scheduler.getInstance();
+        JVMThread[] parked = new JVMThread[2];
+        boolean[] seen = new boolean[2];
+
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            for (int i = 0; i < 5; i++) {
+                ThreadUtils.yield(); // Let the others block and wait
+            }
+            seen[0] = scheduler.getBlockedThreads().contains(parked[0]);
+            seen[1] = scheduler.getWaitingThreads().contains(parked[1]);
+            ObjectSynchronizer.enter(condition, self);
+            ObjectSynchronizer.notify(condition, self);
+            ObjectSynchronizer.exit(condition, self);
+            ObjectSynchronizer.exit(lock, self);
+        }, 16).start();
+        parked[0] = new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            ObjectSynchronizer.exit(lock, self);
+        }, 16);
+        parked[0].start();
+        parked[1] = new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(condition, self);
+            ObjectSynchronizer.wait(condition, self, 0);
+            ObjectSynchronizer.exit(condition, self);
+        }, 16);
+        parked[1].start();
+
+        scheduler.start();
+
+        assertTrue(seen[0], "A contender must be in the blocked set");
+        assertTrue(seen[1], "A waiter must be in the waiting set");
+        for (JVMThread thread : parked) {
+            assertEquals(JVMThread.ThreadState.TERMINATED, thread.getState());
+            assertFalse(scheduler.getBlockedThreads().contains(thread));
+            assertFalse(scheduler.getWaitingThreads().contains(thread));
+        }
+    }
+
+    @Test
+    void testIdleCarriersSleepUntilTheNextTimeout() {
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMObject lock = heap.allocate(null, "timed");
+        Scheduler scheduler = Scheduler.getInstance();
+        boolean[] notified = {true};
+
+        new JVMThread(() -> {
+            JVMThread self = Scheduler.getCurrentThread();
+            ObjectSynchronizer.enter(lock, self);
+            notified[0] = ObjectSynchronizer.wait(lock, self, 200);
+            ObjectSynchronizer.exit(lock, self);
+        }, 16).start();
+
+        scheduler.setCarrierCount(4);
+        long before = scheduler.getIdleWakeups();
+        scheduler.start();
+        long wakeups = scheduler.getIdleWakeups() - before;
+
+        assertFalse(notified[0]);
+        // Polling every millisecond would be about 800 wake-ups; each carrier should only wake for the deadline
+        assertTrue(wakeups < 40, "Idle carriers woke up " + wakeups + " times");
+    }
+
+    @Test
+    void testVirtualThreadModeReturnsWhenAllGuestsAreParkedForGood() {
+        JVMHeap heap = new JVMHeap();
+        JVMThread.setSharedHeapInstance(heap);
+        JVMObject lock = heap.allocate(null, "never notified");
+        Scheduler scheduler = Scheduler.getInstance();
+        List<JVMThread> waiters = new ArrayList<>();
+
+        for (int t = 0; t < 3; t++) {
+            JVMThread thread = new JVMThread(() -> {
+                JVMThread self = Scheduler.getCurrentThread();
+                ObjectSynchronizer.enter(lock, self);
+                ObjectSynchronizer.wait(lock, self, 0);
+            }, 16);
+            waiters.add(thread);
+            thread.start();
+        }
+
+        scheduler.setExecutionMode(Scheduler.ExecutionMode.VIRTUAL_THREADS);
+        long before = scheduler.getIdleWakeups();
+        scheduler.start();
+
+        assertTrue(scheduler.getIdleWakeups() - before <= 6, "The waiter must be woken by parking guests, not poll");
+        assertTrue(scheduler.getWaitingThreads().containsAll(waiters));
+    }
+
+    @Test
+    void testSleepAndTimedJoin() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        long[] slept = new long[1];
+        boolean[] joined = {true, false};
+
+        JVMThread sleeper = new JVMThread(() -> {
+            long start = System.nanoTime();
+            ThreadUtils.sleep(50);
+            slept[0] = System.nanoTime() - start;
+        }, 16);
+        sleeper.start();
+        new JVMThread(() -> {
+            joined[0] = sleeper.join(5);
+            joined[1] = sleeper.join(0);
+        }, 16).start();
+
+        Scheduler.getInstance().start();
+
+        assertTrue(slept[0] >= 50_000_000L, "Woke after " + slept[0] + "ns");
+        assertFalse(joined[0], "The sleeper cannot have finished within 5ms");
+        assertTrue(joined[1]);
+        assertTrue(Scheduler.getInstance().getSleepingThreads().isEmpty());
+    }
+
+    @Test
+    void testSleepingThreadsCostNoDispatches() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        Scheduler scheduler = Scheduler.getInstance();
+        int threads = 1000;
+        int[] woken = new int[1];
+
+        for (int t = 0; t < threads; t++) {
+            long millis = 20 + t % 50;
+            new JVMThread(() -> {
+                ThreadUtils.sleep(millis);
+                woken[0]++;
+            }, 16).start();
+        }
+
+        long before = scheduler.getDispatchCount();
+        scheduler.start();
+        long dispatches = scheduler.getDispatchCount() - before;
+
+        assertEquals(threads, woken[0]);
+        // One dispatch to start each thread and one after it wakes; sleeping threads are never polled
+        assertTrue(dispatches <= 2L * threads, dispatches + " dispatches");
+        assertEquals(0, scheduler.getPendingTimeoutCount());
+    }
+
+    @Test
+    void testTimeSlicesAdaptToPriorityLoadAndBoost() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        Scheduler scheduler = Scheduler.getInstance();
+        JVMThread normal = new JVMThread(null, 4);
+        JVMThread high = new JVMThread(null, 4);
+        high.setPriority(JVMThread.MAX_PRIORITY);
+
+        long alone = scheduler.sliceNanos(normal, 1);
+        assertEquals(scheduler.getTargetLatencyNanos(), alone);
+        assertTrue(scheduler.sliceNanos(normal, 8) < alone, "Slices shrink when many threads are runnable");
+        assertTrue(scheduler.sliceNanos(high, 8) > scheduler.sliceNanos(normal, 8), "Higher priority gets longer slices");
+
+        normal.setSliceBoost(8); // Used up its last slices
+        assertTrue(scheduler.sliceNanos(normal, 1) > alone, "CPU-bound threads get longer slices");
+        assertTrue(scheduler.sliceNanos(normal, 64) < alone, "... but not when the scheduler is crowded");
+        assertThrows(IllegalArgumentException.class, () -> high.setPriority(11));
+    }
+
+    @Test
+    void testTimeSlicingFavorsHigherPriority() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        Scheduler scheduler = Scheduler.getInstance();
+        scheduler.setSlicePolicy(Scheduler.SlicePolicy.TIME);
+        JVMThread low = cpuBoundThread(20_000, JVMThread.MIN_PRIORITY);
+        JVMThread high = cpuBoundThread(20_000, JVMThread.MAX_PRIORITY);
+        long[] cpuWhenHighFinished = new long[2];
+
+        low.start();
+        high.start();
+        new JVMThread(() -> {
+            high.join(0);
+            cpuWhenHighFinished[0] = high.getCpuTimeNanos();
+            cpuWhenHighFinished[1] = low.getCpuTimeNanos();
+        }, 16).start();
+        startQuietly(scheduler);
+
+        assertEquals(JVMThread.ThreadState.TERMINATED, low.getState());
+        // Weights 3125 vs 419: the low-priority thread gets roughly an eighth of the processor meanwhile
+        assertTrue(cpuWhenHighFinished[1] * 2 < cpuWhenHighFinished[0],
+                "high: " + cpuWhenHighFinished[0] + "ns, low: " + cpuWhenHighFinished[1] + "ns");
+    }
+
+    @Test
+    void testWokenThreadPreemptsCpuBoundThreads() {
+        JVMThread.setSharedHeapInstance(new JVMHeap());
+        Scheduler scheduler = Scheduler.getInstance();
+        scheduler.setSlicePolicy(Scheduler.SlicePolicy.TIME);
+        long[] lateness = new long[21];
+        List<JVMThread> batch = new ArrayList<>();
+
+        for (int t = 0; t < 3; t++) {
+            JVMThread thread = cpuBoundThread(100_000, JVMThread.NORM_PRIORITY);
+            batch.add(thread);
+            thread.start();
+        }
+        new JVMThread(() -> {
+            for (int i = 0; i < lateness.length; i++) {
+                long deadline = System.nanoTime() + 2_000_000L;
+                ThreadUtils.sleep(2);
+                lateness[i] = System.nanoTime() - deadline;
+            }
+        }, 16).start();
+        startQuietly(scheduler);
+
+        for (JVMThread thread : batch) {
+            assertEquals(JVMThread.ThreadState.TERMINATED, thread.getState());
+        }
+        // Without preemption it would wait for the boosted slice in progress, about 10ms with three batch threads
+        Arrays.sort(lateness);
+        long median = lateness[lateness.length / 2];
+        assertTrue(median < scheduler.getTargetLatencyNanos(), "Typically woke " + median / 1000 + " us late");
+    }
+}
@@ -0,0 +1,87 @@
+package com.tinyjvm.threads;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTest {
+
+    @Test
+    void testTimeoutsNeverFireEarlyOnAnyLevel() {
+        TimerWheel wheel = new TimerWheel(new Object());
+        long start = System.nanoTime();
+        long[] delays = {
+                TimeUnit.MILLISECONDS.toNanos(5),   // level 0
+                TimeUnit.MILLISECONDS.toNanos(70),  // level 1
+                TimeUnit.SECONDS.toNanos(5),        // level 2
+                TimeUnit.SECONDS.toNanos(300),      // level 3
+                TimeUnit.DAYS.toNanos(20)           // overflow
+        };
+        List<TimerWheel.Timeout> fired = new ArrayList<>();
+        for (long delay : delays) {
+            wheel.schedule(start + delay, () -> { });
+        }
+
+        // Step a simulated clock through every deadline: each timeout fires within a tick of it
+        for (long delay : delays) {
+            List<TimerWheel.Timeout> expired = new ArrayList<>();
+            wheel.advance(start + delay - TimerWheel.TICK_NANOS, expired);
+            assertTrue(expired.isEmpty(), "Fired before " + delay + "ns");
+            wheel.advance(start + delay + 2 * TimerWheel.TICK_NANOS, expired);
+            assertEquals(1, expired.size(), "Not fired by " + delay + "ns");
+            assertTrue(expired.get(0).getDeadlineNanos() <= start + delay + 2 * TimerWheel.TICK_NANOS);
+            fired.addAll(expired);
+        }
+        assertEquals(delays.length, fired.size());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    void testCancelledTimeoutsDoNotFire() {
+        TimerWheel wheel = new TimerWheel(new Object());
+        long start = System.nanoTime();
+        List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+        int[] runs = new int[1];
+        for (int i = 0; i < 10_000; i++) {
+            timeouts.add(wheel.schedule(start + TimeUnit.MILLISECONDS.toNanos(1 + i % 5000), () -> runs[0]++));
+        }
+        for (int i = 0; i < timeouts.size(); i += 2) {
+            timeouts.get(i).cancel();
+            timeouts.get(i).cancel(); // Cancelling twice is harmless
+        }
+        assertEquals(5_000, wheel.size());
+
+        List<TimerWheel.Timeout> expired = new ArrayList<>();
+        wheel.advance(start + TimeUnit.SECONDS.toNanos(6), expired);
+        expired.forEach(TimerWheel.Timeout::run);
+
+        assertEquals(5_000, runs[0]);
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    void testNextEventIsNeverLaterThanTheEarliestDeadline() {
+        TimerWheel wheel = new TimerWheel(new Object());
+        long start = System.nanoTime();
+        assertEquals(-1, wheel.nanosUntilNextEvent(start));
+
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(300);
+        wheel.schedule(deadline, () -> { });
+        wheel.schedule(start + TimeUnit.SECONDS.toNanos(10), () -> { });
+
+        long now = start;
+        List<TimerWheel.Timeout> expired = new ArrayList<>();
+        while (expired.isEmpty()) {
+            long wait = wheel.nanosUntilNextEvent(now);
+            assertTrue(wait >= 0 && now + wait <= deadline + TimerWheel.TICK_NANOS, "Would sleep past the deadline");
+            now += Math.max(wait, 1);
+            wheel.advance(now, expired);
+        }
+        assertTrue(now >= deadline);
+        assertEquals(1, wheel.size());
+    }
+}
@@ -0,0 +1,73 @@
+package com.tinyjvm.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggerTest {
+
+    private PrintStream out;
+    private ByteArrayOutputStream captured;
+
+    @BeforeEach
+    void setUp() {
+        Logger.flush();
+        out = System.out;
+        captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Logger.flush();
+        System.setOut(out);
+        Logger.setLevel(Logger.LogLevel.INFO);
+    }
+
+    @Test
+    void testPlaceholdersAreFilledInOrder() {
+        Logger.info("Thread {} moved from {} to {}", 7, "RUNNING", "BLOCKED");
+        Logger.info("No {} placeholders left: {}", "two");
+        Logger.flush();
+
+        String[] lines = captured.toString().split(System.lineSeparator());
+        assertEquals("[INFO] Thread 7 moved from RUNNING to BLOCKED", lines[0]);
+        assertEquals("[INFO] No two placeholders left: {}", lines[1]);
+    }
+
+    @Test
+    void testDisabledMessagesAreNeverBuilt() {
+        AtomicInteger built = new AtomicInteger();
+        Logger.setLevel(Logger.LogLevel.INFO);
+        Logger.debug(() -> "built " + built.incrementAndGet());
+        assertFalse(Logger.isDebugEnabled());
+
+        Logger.setLevel(Logger.LogLevel.DEBUG);
+        Logger.debug(() -> "built " + built.incrementAndGet());
+        Logger.flush();
+
+        assertEquals(1, built.get());
+        assertEquals("[DEBUG] built 1" + System.lineSeparator(), captured.toString());
+    }
+
+    @Test
+    void testMessagesKeepTheirOrderBeyondTheBufferSize() {
+        int messages = 20_000; // More than the ring holds, so the caller has to wait for the writer
+        for (int i = 0; i < messages; i++) {
+            Logger.info("message {}", i);
+        }
+        Logger.flush();
+
+        String[] lines = captured.toString().split(System.lineSeparator());
+        assertEquals(messages, lines.length);
+        for (int i = 0; i < messages; i++) {
+            assertEquals("[INFO] message " + i, lines[i]);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -32,6 +33,59 @@ public class ClassFileParserTest {
         return Paths.get(getClass().getResource(resourceName).toURI());
     }
 
+    /**
+     * A class file with one constant of every tag javac emits, a static field with a ConstantValue
+     * attribute, and a method. The wide constants sit in the middle of the pool, so every later
+     * index is only right if they take two slots.
+     */
+    static byte[] taggedClass() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(55);
+        out.writeShort(26); // Constant pool count: entries 1 to 25
+        out.writeByte(1); out.writeUTF("Tags");                     // 1
+        out.writeByte(7); out.writeShort(1);                        // 2: Class Tags
+        out.writeByte(1); out.writeUTF("java/lang/Object");         // 3
+        out.writeByte(7); out.writeShort(3);                        // 4: Class java/lang/Object
+        out.writeByte(4); out.writeFloat(1.5f);                     // 5: Float
+        out.writeByte(5); out.writeLong(42L);                       // 6 and 7: Long
+        out.writeByte(6); out.writeDouble(2.5);                     // 8 and 9: Double
+        out.writeByte(1); out.writeUTF("run");                      // 10
+        out.writeByte(1); out.writeUTF("()V");                      // 11
+        out.writeByte(12); out.writeShort(10); out.writeShort(11);  // 12: NameAndType run:()V
+        out.writeByte(10); out.writeShort(2); out.writeShort(12);   // 13: Methodref Tags.run
+        out.writeByte(15); out.writeByte(6); out.writeShort(13);    // 14: MethodHandle REF_invokeStatic
+        out.writeByte(16); out.writeShort(11);                      // 15: MethodType ()V
+        out.writeByte(17); out.writeShort(0); out.writeShort(12);   // 16: Dynamic
+        out.writeByte(18); out.writeShort(1); out.writeShort(12);   // 17: InvokeDynamic
+        out.writeByte(1); out.writeUTF("tags.module");              // 18
+        out.writeByte(19); out.writeShort(18);                      // 19: Module
+        out.writeByte(1); out.writeUTF("tags/pkg");                 // 20
+        out.writeByte(20); out.writeShort(20);                      // 21: Package
+        out.writeByte(1); out.writeUTF("count");                    // 22
+        out.writeByte(1); out.writeUTF("I");                        // 23
+        out.writeByte(1); out.writeUTF("ConstantValue");            // 24
+        out.writeByte(3); out.writeInt(7);                          // 25: Integer
+        out.writeShort(0x21);                                       // public super
+        out.writeShort(2);
+        out.writeShort(4);
+        out.writeShort(0);                                          // Interfaces
+        out.writeShort(1);                                          // Fields
+        out.writeShort(0x19); out.writeShort(22); out.writeShort(23);
+        out.writeShort(1); out.writeShort(24); out.writeInt(2); out.writeShort(25);
+        out.writeShort(1);                                          // Methods
+        out.writeShort(0x09); out.writeShort(10); out.writeShort(11);
+        out.writeShort(0);
+        out.writeShort(0);                                          // Class attributes
+        return bytes.toByteArray();
+    }
+
+    private static ConstantPoolEntry entry(ClassFile classFile, int index) {
+        return classFile.constantPool.get(index - 1);
+    }
+
     @Test
     void testParseValidSimpleClass() throws Exception {
         Path simpleClassPath = getResourcePath(SIMPLE_CLASS_RESOURCE_PATH);
@@ -96,6 +150,37 @@ public class ClassFileParserTest {
         assertEquals("<init>", constructorNameEntry.value, "Constructor name should be <init>");
     }
 
+    @Test
+    void testParseEveryConstantTag() throws IOException {
+        ClassFile classFile = parser.parse(taggedClass());
+
+        assertEquals(25, classFile.constantPool.size(), "Long and Double take two constant pool slots");
+        assertEquals(1.5f, entry(classFile, 5).value);
+        assertEquals(42L, entry(classFile, 6).value);
+        assertSame(ConstantPoolEntry.UNUSABLE, entry(classFile, 7));
+        assertEquals(2.5, entry(classFile, 8).value);
+        assertSame(ConstantPoolEntry.UNUSABLE, entry(classFile, 9));
+        assertArrayEquals(new int[]{6, 13}, (int[]) entry(classFile, 14).value, "MethodHandle");
+        assertEquals(11, entry(classFile, 15).value, "MethodType");
+        assertArrayEquals(new int[]{0, 12}, (int[]) entry(classFile, 16).value, "Dynamic");
+        assertArrayEquals(new int[]{1, 12}, (int[]) entry(classFile, 17).value, "InvokeDynamic");
+        assertEquals(18, entry(classFile, 19).value, "Module");
+        assertEquals(20, entry(classFile, 21).value, "Package");
+        assertEquals(7, entry(classFile, 25).value);
+        assertEquals("Tags", entry(classFile, (Integer) entry(classFile, classFile.thisClass).value).value);
+    }
+
+    @Test
+    void testFieldsAreSkippedBeforeTheMethods() throws IOException {
+        ClassFile classFile = parser.parse(taggedClass());
+
+        // The field and its ConstantValue attribute must be skipped, or the method is read from the wrong offset
+        assertEquals(1, classFile.methods.size());
+        assertEquals(0x09, classFile.methods.get(0).accessFlags);
+        assertEquals("run", entry(classFile, classFile.methods.get(0).nameIndex).value);
+        assertEquals("()V", entry(classFile, classFile.methods.get(0).descriptorIndex).value);
+    }
+
     @Test
     void testParseInvalidMagicNumber(@TempDir Path tempDir) throws IOException {
         Path invalidFile = tempDir.resolve("InvalidClass.class");